@@ -0,0 +1,204 @@
+/*
+ * Bundle Commons is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * Commons is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018-2020 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * Commons is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Commons is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Commons. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.commons.sketch;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Space-Saving sketch keeping the most frequent values of a stream in a fixed number of counters. When all the counters
+ * are used, a new value replaces the least frequent one and inherits its count, so that the counts are
+ * over-estimated by at most the count of the least frequent counter. The counts are exact while the stream contains
+ * less distinct values than counters. Sketches filled in parallel can be merged.
+ *
+ * @param <T> Type of the values.
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public class SpaceSaving<T> {
+
+    /** Number of counters kept per requested top value, to make the top values reliable */
+    public static final int COUNTERS_PER_VALUE = 10;
+    /** Minimal number of counters of a sketch created with {@link #forTopK(int)} */
+    public static final int MIN_COUNTERS = 100;
+
+    /** Maximum number of counters */
+    private final int capacity;
+    /** Counters of the values */
+    private final Map<T, Counter<T>> counters = new HashMap<>();
+    /** Counters sorted by count, the first being replaced first */
+    private final TreeSet<Counter<T>> sorted = new TreeSet<>(
+            Comparator.<Counter<T>>comparingLong(counter -> counter.count).thenComparingLong(counter -> counter.id));
+    /** Identifier of the next counter */
+    private long nextId = 0;
+
+    /**
+     * Create a sketch with the given number of counters.
+     *
+     * @param capacity Number of counters, greater than 0.
+     */
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity should be greater than 0.");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Create a sketch sized to find the k most frequent values.
+     *
+     * @param k Number of values to find.
+     * @return A new sketch.
+     */
+    public static <T> SpaceSaving<T> forTopK(int k) {
+        return new SpaceSaving<>((int) Math.min(Integer.MAX_VALUE,
+                Math.max(MIN_COUNTERS, (long) k * COUNTERS_PER_VALUE)));
+    }
+
+    /**
+     * Add a value to the sketch. The null values are ignored.
+     *
+     * @param value Value to add.
+     */
+    public void add(T value) {
+        if (value == null) {
+            return;
+        }
+        Counter<T> counter = counters.get(value);
+        if (counter != null) {
+            sorted.remove(counter);
+            counter.count++;
+            sorted.add(counter);
+        } else if (counters.size() < capacity) {
+            put(value, 1, 0);
+        } else {
+            Counter<T> min = sorted.pollFirst();
+            counters.remove(min.value);
+            put(value, min.count + 1, min.count);
+        }
+    }
+
+    /**
+     * Merge the given sketch into this one. A value missing from a full sketch may have been counted up to the count
+     * of its least frequent counter, which is added to the count of the value and to its error.
+     *
+     * @param other Sketch to merge.
+     * @return This sketch.
+     */
+    public SpaceSaving<T> merge(SpaceSaving<T> other) {
+        long min = counters.size() < capacity ? 0 : sorted.first().count;
+        long otherMin = other.counters.size() < other.capacity ? 0 : other.sorted.first().count;
+        Map<T, long[]> merged = new HashMap<>();
+        counters.forEach((value, counter) -> {
+            Counter<T> otherCounter = other.counters.get(value);
+            merged.put(value, otherCounter == null ?
+                    new long[]{counter.count + otherMin, counter.error + otherMin} :
+                    new long[]{counter.count + otherCounter.count, counter.error + otherCounter.error});
+        });
+        other.counters.forEach((value, counter) -> merged.putIfAbsent(value,
+                new long[]{counter.count + min, counter.error + min}));
+        counters.clear();
+        sorted.clear();
+        merged.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<T, long[]> entry) -> entry.getValue()[0]).reversed())
+                .limit(capacity)
+                .forEach(entry -> put(entry.getKey(), entry.getValue()[0], entry.getValue()[1]));
+        return this;
+    }
+
+    /**
+     * Return the k most frequent values with their counts, sorted by decreasing count.
+     *
+     * @param k Number of values.
+     * @return The most frequent values and their counts.
+     */
+    public Map<T, Long> top(int k) {
+        Map<T, Long> top = new LinkedHashMap<>();
+        for (Counter<T> counter : sorted.descendingSet()) {
+            if (top.size() >= k) {
+                break;
+            }
+            top.put(counter.value, counter.count);
+        }
+        return top;
+    }
+
+    /**
+     * Return the maximal over-estimation of the count of the given value.
+     *
+     * @param value Value.
+     * @return The error of the count of the value, -1 if it is not counted.
+     */
+    public long getError(T value) {
+        Counter<T> counter = counters.get(value);
+        return counter == null ? -1 : counter.error;
+    }
+
+    /**
+     * Add a new counter.
+     *
+     * @param value Value.
+     * @param count Count of the value.
+     * @param error Over-estimation of the count.
+     */
+    private void put(T value, long count, long error) {
+        Counter<T> counter = new Counter<>(value, count, error, nextId++);
+        counters.put(value, counter);
+        sorted.add(counter);
+    }
+
+    /**
+     * Count of a value.
+     */
+    private static final class Counter<T> {
+        private final T value;
+        private long count;
+        private final long error;
+        /** Identifier distinguishing the counters with the same count */
+        private final long id;
+
+        private Counter(T value, long count, long error, long id) {
+            this.value = value;
+            this.count = count;
+            this.error = error;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Bundle Commons is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * Commons is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2019-2020 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * Commons is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Commons is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Commons. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.commons.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class dedicated to {@link HyperLogLog} class.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public class HyperLogLogTest {
+
+    /**
+     * Test the {@link HyperLogLog#add(Object)} and {@link HyperLogLog#estimate()} methods.
+     */
+    @Test
+    void estimateTest() {
+        HyperLogLog hll = new HyperLogLog();
+        assertEquals(0, hll.estimate());
+        for (int i = 0; i < 3; i++) {
+            hll.add("a");
+            hll.add("b");
+            hll.add(null);
+        }
+        assertEquals(2, hll.estimate());
+
+        hll = new HyperLogLog();
+        for (int i = 0; i < 1000000; i++) {
+            hll.add(i);
+            hll.add((long) i);
+        }
+        assertEquals(1000000, hll.estimate(), 30000);
+
+        HyperLogLog strings = new HyperLogLog(12);
+        IntStream.range(0, 100000).forEach(i -> strings.add("value" + i));
+        assertEquals(100000, strings.estimate(), 6000);
+
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(3));
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(19));
+    }
+
+    /**
+     * Test the {@link HyperLogLog#merge(HyperLogLog)} method.
+     */
+    @Test
+    void mergeTest() {
+        HyperLogLog hll = IntStream.range(0, 200000).parallel().collect(HyperLogLog::new, HyperLogLog::add,
+                HyperLogLog::merge);
+        assertEquals(200000, hll.estimate(), 6000);
+
+        HyperLogLog left = new HyperLogLog();
+        HyperLogLog right = new HyperLogLog();
+        IntStream.range(0, 1000).forEach(left::add);
+        IntStream.range(500, 1500).forEach(right::add);
+        assertEquals(1500, left.merge(right).estimate(), 30);
+
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog().merge(new HyperLogLog(10)));
+    }
+}
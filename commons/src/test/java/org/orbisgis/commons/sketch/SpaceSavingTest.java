@@ -0,0 +1,112 @@
+/*
+ * Bundle Commons is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * Commons is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2019-2020 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * Commons is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Commons is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Commons. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.commons.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class dedicated to {@link SpaceSaving} class.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public class SpaceSavingTest {
+
+    /**
+     * Test the {@link SpaceSaving#add(Object)} and {@link SpaceSaving#top(int)} methods.
+     */
+    @Test
+    void topTest() {
+        SpaceSaving<String> sketch = new SpaceSaving<>(10);
+        for (int i = 0; i < 5; i++) {
+            sketch.add("a");
+        }
+        sketch.add("b");
+        sketch.add("c");
+        sketch.add("c");
+        sketch.add(null);
+        Map<String, Long> top = sketch.top(2);
+        assertEquals(Arrays.asList("a", "c"), new ArrayList<>(top.keySet()));
+        assertEquals(5L, top.get("a"));
+        assertEquals(2L, top.get("c"));
+        assertEquals(0, sketch.getError("a"));
+        assertEquals(-1, sketch.getError("d"));
+        assertEquals(3, sketch.top(10).size());
+
+        //Frequent values among many rare ones
+        SpaceSaving<Integer> ints = SpaceSaving.forTopK(3);
+        for (int i = 0; i < 100000; i++) {
+            ints.add(i % 10 == 0 ? -1 : i % 20 == 1 ? -2 : i % 50 == 3 ? -3 : i);
+        }
+        Map<Integer, Long> intTop = ints.top(3);
+        assertEquals(Arrays.asList(-1, -2, -3), new ArrayList<>(intTop.keySet()));
+        assertTrue(intTop.get(-1) >= 10000);
+        assertTrue(intTop.get(-1) - ints.getError(-1) <= 10000);
+
+        assertThrows(IllegalArgumentException.class, () -> new SpaceSaving<>(0));
+    }
+
+    /**
+     * Test the {@link SpaceSaving#merge(SpaceSaving)} method.
+     */
+    @Test
+    void mergeTest() {
+        SpaceSaving<Integer> sketch = IntStream.range(0, 100000).parallel().boxed().collect(
+                () -> new SpaceSaving<>(100), (s, i) -> s.add(i % 7 == 0 ? -1 : i), SpaceSaving::merge);
+        Map<Integer, Long> top = sketch.top(1);
+        assertEquals(-1, top.keySet().iterator().next());
+        assertTrue(top.get(-1) >= 14286);
+
+        SpaceSaving<String> left = new SpaceSaving<>(10);
+        SpaceSaving<String> right = new SpaceSaving<>(10);
+        left.add("a");
+        left.add("b");
+        right.add("b");
+        right.add("c");
+        Map<String, Long> merged = left.merge(right).top(3);
+        assertEquals(2L, merged.get("b"));
+        assertEquals(1L, merged.get("a"));
+        assertEquals(1L, merged.get("c"));
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Bundle DataManager API is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * DataManager API is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2019-2020 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * DataManager API is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * DataManager API is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * DataManager API. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.api.dataset;
+
+/**
+ * Statistics of a column of an {@link IJdbcTable}, computed by the database. The minimum and maximum values are only
+ * computed for the numeric, text and temporal columns, the estimated distinct count for them and the boolean columns
+ * and the mean value and the histogram for the numeric columns.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public interface IColumnSummary {
+
+    /**
+     * Return the name of the column.
+     *
+     * @return The name of the column.
+     */
+    String getName();
+
+    /**
+     * Return the name of the database type of the column.
+     *
+     * @return The name of the type of the column.
+     */
+    String getType();
+
+    /**
+     * Return the number of null values of the column.
+     *
+     * @return The number of null values.
+     */
+    long getNullCount();
+
+    /**
+     * Return the minimum value of the column, null if it is not computed or if the column only contains null values.
+     *
+     * @return The minimum value of the column.
+     */
+    Object getMin();
+
+    /**
+     * Return the maximum value of the column, null if it is not computed or if the column only contains null values.
+     *
+     * @return The maximum value of the column.
+     */
+    Object getMax();
+
+    /**
+     * Return the mean value of the column, null if it is not computed or if the column only contains null values.
+     *
+     * @return The mean value of the column.
+     */
+    Double getMean();
+
+    /**
+     * Return an estimation of the number of distinct non null values of the column, -1 if it is not computed.
+     *
+     * @return The number of distinct values.
+     */
+    long getDistinctCount();
+
+    /**
+     * Return the number of non null values in each of the bins of equal width between the minimum and the maximum
+     * values of the column, null if the histogram is not computed.
+     *
+     * @return The counts of the bins of the histogram.
+     */
+    long[] getHistogram();
+}
@@ -0,0 +1,126 @@
+/*
+ * Bundle DataManager API is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * DataManager API is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2019-2020 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * DataManager API is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * DataManager API is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * DataManager API. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.api.dataset;
+
+/**
+ * Profile of a geometry column of an {@link ISpatialTable} : the geometry type, the SRID and the coordinate dimension
+ * of its values. The profile is read from the column declaration when it is constrained, otherwise it is inferred
+ * from the values of all the rows, of a sample of them or of the first ones, as told by its {@link Confidence}.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public interface IGeometryProfile {
+
+    /**
+     * Source of the profile, from the most to the least reliable.
+     */
+    enum Confidence {
+        /** Read from the type and the SRID constraints of the column */
+        DECLARED,
+        /** Inferred from the values of all the rows */
+        EXACT,
+        /** Inferred from the values of a sample of the rows, other values may differ */
+        SAMPLED,
+        /** Inferred from the values of the first rows, which may not be representative of the other ones */
+        HEAD
+    }
+
+    /**
+     * Return the name of the geometry column.
+     *
+     * @return The name of the geometry column.
+     */
+    String getColumnName();
+
+    /**
+     * Return the geometry type of the column, for example {@code POINT} or {@code MULTIPOLYGONZ}, or
+     * {@code GEOMETRY} if the values have different types.
+     *
+     * @return The geometry type of the column.
+     */
+    String getGeometryType();
+
+    /**
+     * Return the SRID of the column, 0 if it is unknown or if the values have different SRID.
+     *
+     * @return The SRID of the column.
+     */
+    int getSrid();
+
+    /**
+     * Return the coordinate dimension of the column, from 2 to 4.
+     *
+     * @return The coordinate dimension of the column.
+     */
+    int getDimension();
+
+    /**
+     * Return true if the values have Z coordinates.
+     *
+     * @return True if the values have Z coordinates.
+     */
+    boolean hasZ();
+
+    /**
+     * Return true if the values have M coordinates.
+     *
+     * @return True if the values have M coordinates.
+     */
+    boolean hasM();
+
+    /**
+     * Return the number of values read to infer the profile, 0 for a declared profile.
+     *
+     * @return The number of values read.
+     */
+    long getSampleSize();
+
+    /**
+     * Return the number of null values among the values read.
+     *
+     * @return The number of null values read.
+     */
+    long getNullCount();
+
+    /**
+     * Return the {@link Confidence} of the profile.
+     *
+     * @return The {@link Confidence} of the profile.
+     */
+    Confidence getConfidence();
+}
@@ -36,7 +36,16 @@
  */
 package org.orbisgis.data.api.dataset;
 
+import org.locationtech.jts.geom.Geometry;
+import org.orbisgis.data.api.datasource.IJdbcDataSource;
 
+import java.io.OutputStream;
+import java.nio.DoubleBuffer;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Extension of the {@link IJdbcTable} and {@link ISpatialTable} interfaces.
@@ -45,4 +54,229 @@ package org.orbisgis.data.api.dataset;
  * @author Sylvain PALOMINOS (Lab-STICC UBS 2019)
  */
 public interface IJdbcSpatialTable<T> extends IJdbcTable<T>, ISpatialTable<T> {
+
+    /**
+     * Spatial predicates which can be used to join two tables. The predicate is evaluated as
+     * {@code left PREDICATE right}.
+     */
+    enum SpatialPredicate {
+        INTERSECTS, CONTAINS, WITHIN, COVERS, COVERED_BY, TOUCHES, CROSSES, OVERLAPS, EQUALS
+    }
+
+    /**
+     * Return a {@link Stream} of the rows of the table read through a pipeline : one thread reads the raw rows from
+     * the database cursor while a pool of threads decodes the geometries by batches.
+     * Each row is a {@link Map} containing the column labels as key and the values, with the geometries decoded into
+     * JTS objects.
+     *
+     * The returned {@link Stream} should be closed to release the cursor and the threads if it is not fully consumed.
+     *
+     * @param batchSize    Number of rows decoded by a thread at once.
+     * @param decoderCount Number of decoder threads.
+     * @param ordered      True to get the rows in the table order, false to get them as soon as they are decoded.
+     * @return A {@link Stream} of the rows with decoded geometries.
+     */
+    Stream<Map<String, Object>> pipelinedStream(int batchSize, int decoderCount, boolean ordered) throws Exception;
+
+    /**
+     * Return a {@link Stream} of the rows of the table read through a pipeline using batches of 1000 rows and one
+     * decoder thread per available processor.
+     *
+     * @param ordered True to get the rows in the table order, false to get them as soon as they are decoded.
+     * @return A {@link Stream} of the rows with decoded geometries.
+     */
+    default Stream<Map<String, Object>> pipelinedStream(boolean ordered) throws Exception {
+        return pipelinedStream(1000, Runtime.getRuntime().availableProcessors(), ordered);
+    }
+
+    /**
+     * Return a {@link Stream} of the rows of the table read through a pipeline, with all their geometries reprojected
+     * in memory to the given SRID. Unlike {@link #reproject(int)}, the database is not used to transform the
+     * coordinates.
+     *
+     * @param srid EPSG code of the target coordinate reference system.
+     * @return A {@link Stream} of the rows with reprojected geometries.
+     */
+    Stream<Map<String, Object>> reprojectedStream(int srid) throws Exception;
+
+    /**
+     * Return a {@link Stream} of the rows of the table with all their geometries simplified for the given level of
+     * detail, see {@link #lod(double)}. The simplification is done by the database when possible, otherwise in
+     * memory. The simplified rows are cached until the table is modified, so they are shared and cannot be modified,
+     * nor should their geometries.
+     *
+     * @param tolerance Simplification tolerance, in the units of the coordinate reference system.
+     * @return A {@link Stream} of the rows with simplified geometries.
+     */
+    Stream<Map<String, Object>> lodStream(double tolerance) throws Exception;
+
+    /**
+     * Bin the features of the table into a grid, by the centroid of their first geometry column. The binning can be
+     * done in memory, reading the rows in parallel, when the database cannot do it or for the query tables which
+     * are cheaper to read once than to run again.
+     *
+     * @param cellType     Shape of the cells.
+     * @param cellSize     Side of the squares or edge of the hexagons, in the units of the coordinate reference
+     *                     system.
+     * @param clientSide   True to bin the features in memory, false to let the database bin them when possible.
+     * @param aggregations Aggregations computed for each cell : COUNT, SUM, AVG, MIN or MAX of a column.
+     * @return The grid of the binned features.
+     */
+    ISpatialGrid binToGrid(ISpatialGrid.CellType cellType, double cellSize, boolean clientSide,
+                           String... aggregations) throws Exception;
+
+    /**
+     * Return the k nearest rows of the table around each given {@link Geometry}, see
+     * {@link #nearestAll(Collection, int)}.
+     *
+     * @param geometries Geometries to search around, with the SRID of the table or 0.
+     * @param k          Maximum number of rows to return for a geometry.
+     * @param clientSide True to search the rows in the in memory {@link ISpatialIndex} of the table, false to let
+     *                   the database search them when possible.
+     * @return For each geometry, in the iteration order, its k nearest rows sorted by distance.
+     */
+    List<List<Map<String, Object>>> nearestAll(Collection<Geometry> geometries, int k, boolean clientSide)
+            throws Exception;
+
+    /**
+     * Return the coordinates of the points of the given column packed into an array, see
+     * {@link #coordinates(String, boolean)}.
+     *
+     * @param column     Name of the point column, null for the first geometry column.
+     * @param withZ      True to read x, y and z, false to read x and y.
+     * @param clientSide True to parse the WKB points in parallel in memory, false to let PostGIS extract the
+     *                   coordinates with {@code ST_X}, {@code ST_Y} and {@code ST_Z}.
+     * @return The packed coordinates of the points.
+     */
+    double[] coordinates(String column, boolean withZ, boolean clientSide) throws Exception;
+
+    /**
+     * Return the coordinates of the points of the given column packed into a direct {@link DoubleBuffer}, see
+     * {@link #coordinatesBuffer(String, boolean)}.
+     *
+     * @param column     Name of the point column, null for the first geometry column.
+     * @param withZ      True to read x, y and z, false to read x and y.
+     * @param clientSide True to parse the WKB points in parallel in memory, false to let PostGIS extract the
+     *                   coordinates with {@code ST_X}, {@code ST_Y} and {@code ST_Z}.
+     * @return The packed coordinates of the points.
+     */
+    DoubleBuffer coordinatesBuffer(String column, boolean withZ, boolean clientSide) throws Exception;
+
+    /**
+     * Check the validity of the geometries of the first geometry column and optionally repair the invalid ones in
+     * the table, see {@link #validate(boolean)}.
+     *
+     * @param repair     True to repair the invalid geometries, false to only check them.
+     * @param clientSide True to repair the geometries in memory with the JTS {@code GeometryFixer}, false to let the
+     *                   database repair them with {@code ST_MakeValid} when possible.
+     * @param batchSize  Number of rows checked and repaired by batch.
+     * @return The {@link IValidationReport} of the geometries.
+     */
+    IValidationReport validate(boolean repair, boolean clientSide, int batchSize) throws Exception;
+
+    /**
+     * Return the {@link IGeometryProfile} of each geometry column of the table. The profile of a column whose type
+     * and SRID are declared is read from the declaration, otherwise the geometry headers of a sample of the rows are
+     * read : a {@code TABLESAMPLE} on PostGIS tables and rows spread over the row identifiers on H2 tables, with the
+     * {@link IGeometryProfile.Confidence#SAMPLED} confidence, or the first rows of the query tables, with the
+     * {@link IGeometryProfile.Confidence#HEAD} confidence. All the rows are read if they are not more than the sample
+     * size.
+     *
+     * @param sampleSize Maximum number of rows read.
+     * @return The {@link IGeometryProfile} of each geometry column, by column name.
+     */
+    Map<String, IGeometryProfile> getGeometryProfiles(int sampleSize) throws Exception;
+
+    /**
+     * Return the {@link IGeometryProfile} of each geometry column of the table using samples of 1000 rows, see
+     * {@link #getGeometryProfiles(int)}.
+     *
+     * @return The {@link IGeometryProfile} of each geometry column, by column name.
+     */
+    default Map<String, IGeometryProfile> getGeometryProfiles() throws Exception {
+        return getGeometryProfiles(1000);
+    }
+
+    /**
+     * Return the geometry type of each geometry column, inferred from a sample of the rows when it is not declared,
+     * see {@link #getGeometryProfiles(int)}.
+     *
+     * @param sampleSize Maximum number of rows read.
+     * @return The field names as key and geometry types as value.
+     */
+    default Map<String, String> getGeometryTypes(int sampleSize) throws Exception {
+        Map<String, String> types = new LinkedHashMap<>();
+        getGeometryProfiles(sampleSize).forEach((column, profile) -> types.put(column, profile.getGeometryType()));
+        return types;
+    }
+
+    /**
+     * Write the rows of the table as GeoJSON features with the first geometry column as geometry and the given
+     * columns as properties. The values are streamed from the cursor to the {@link OutputStream}, the geometries
+     * being encoded by the database with {@code ST_AsGeoJSON} when possible.
+     *
+     * @param outputStream  {@link OutputStream} where the UTF-8 text is written. It is flushed but not closed.
+     * @param lineDelimited True to write one feature per line (NDJSON), false to write a FeatureCollection.
+     * @param columns       Columns written as properties, all the non geometric columns if none is given.
+     * @return The number of written features.
+     */
+    default long writeGeoJson(OutputStream outputStream, boolean lineDelimited, String... columns) throws Exception {
+        return writeGeoJson(outputStream, lineDelimited, false, columns);
+    }
+
+    /**
+     * Write the rows of the table as GeoJSON features with the first geometry column as geometry and the given
+     * columns as properties. The values are streamed from the cursor to the {@link OutputStream}.
+     *
+     * @param outputStream  {@link OutputStream} where the UTF-8 text is written. It is flushed but not closed.
+     * @param lineDelimited True to write one feature per line (NDJSON), false to write a FeatureCollection.
+     * @param clientSide    True to transcode the WKB geometries in memory, false to let the database encode them
+     *                      when possible.
+     * @param columns       Columns written as properties, all the non geometric columns if none is given.
+     * @return The number of written features.
+     */
+    long writeGeoJson(OutputStream outputStream, boolean lineDelimited, boolean clientSide, String... columns)
+            throws Exception;
+
+    /**
+     * Join in memory the rows of this table with the rows of another table, which may come from another database,
+     * according to a spatial predicate on their first geometry columns. The geometries of the two tables should have
+     * the same SRID.
+     * The common extent of the tables is split into a grid of partitions read one after the other, so that only
+     * the rows of one partition are kept in memory. The rows of a partition are joined in parallel using an
+     * STRtree.
+     * Each row of the result contains the columns of the two tables, the columns of the right table having the
+     * same name as a column of the left table being suffixed by {@code _2}.
+     *
+     * @param right         Right table of the join.
+     * @param predicate     {@link SpatialPredicate} to check between the left and the right geometries.
+     * @param partitionSize Maximum number of rows of a table expected in a partition.
+     * @return A {@link Stream} of the joined rows.
+     */
+    Stream<Map<String, Object>> spatialJoin(IJdbcSpatialTable<?> right, SpatialPredicate predicate,
+                                            int partitionSize) throws Exception;
+
+    /**
+     * Join in memory the rows of this table with the rows of another table using partitions of the default size of
+     * the implementation.
+     *
+     * @param right     Right table of the join.
+     * @param predicate {@link SpatialPredicate} to check between the left and the right geometries.
+     * @return A {@link Stream} of the joined rows.
+     */
+    Stream<Map<String, Object>> spatialJoin(IJdbcSpatialTable<?> right, SpatialPredicate predicate) throws Exception;
+
+    /**
+     * Join in memory the rows of this table with the rows of another table and save the result into a table of the
+     * given {@link IJdbcDataSource}.
+     *
+     * @param right           Right table of the join.
+     * @param predicate       {@link SpatialPredicate} to check between the left and the right geometries.
+     * @param dataSource      {@link IJdbcDataSource} where the result is saved.
+     * @param outputTableName Name of the output table.
+     * @param deleteTable     True to delete the output table if it already exists.
+     * @return The name of the output table.
+     */
+    String spatialJoin(IJdbcSpatialTable<?> right, SpatialPredicate predicate, IJdbcDataSource dataSource,
+                       String outputTableName, boolean deleteTable) throws Exception;
 }
@@ -121,9 +121,45 @@ public interface IJdbcTable<T> extends ITable<T, T>, ResultSet {
         this.forEach(closure::call);
     }
 
+    /**
+     * Returns the {@link IJdbcTableSummary} of the table with its column count and its row count, without the
+     * statistics of the columns.
+     *
+     * @return The {@link IJdbcTableSummary} of the table.
+     */
     @Override
     IJdbcTableSummary getSummary() throws Exception;
 
+    /**
+     * Returns the {@link IJdbcTableSummary} of the table, optionally with the statistics of its columns and an
+     * histogram of its numeric columns, without the distinct counts of the columns.
+     *
+     * @param columnStatistics True to compute the statistics of the columns.
+     * @param histogramBins    Number of bins of the histograms, 0 for no histogram. The histograms need the column
+     *                         statistics.
+     * @return The {@link IJdbcTableSummary} of the table.
+     */
+    default IJdbcTableSummary getSummary(boolean columnStatistics, int histogramBins) throws Exception {
+        return getSummary(columnStatistics, histogramBins, false);
+    }
+
+    /**
+     * Returns the {@link IJdbcTableSummary} of the table, optionally with the statistics of its columns, an histogram
+     * of its numeric columns and the distinct counts of its columns. The statistics read the whole table : they are
+     * computed by the database with one aggregate query, plus one for the histograms and one for the distinct counts.
+     * On PostGIS, the distinct counts of a table come from its planner statistics when it has been analyzed. The
+     * statistics are kept until the table is reloaded.
+     *
+     * @param columnStatistics True to compute the statistics of the columns.
+     * @param histogramBins    Number of bins of the histograms, 0 for no histogram. The histograms need the column
+     *                         statistics.
+     * @param distinctCounts   True to count the distinct values of the columns. The distinct counts need the column
+     *                         statistics.
+     * @return The {@link IJdbcTableSummary} of the table.
+     */
+    IJdbcTableSummary getSummary(boolean columnStatistics, int histogramBins, boolean distinctCounts)
+            throws Exception;
+
     /**
      * Returns the parameters of the parametrized query.
      *
@@ -38,6 +38,8 @@ package org.orbisgis.data.api.dataset;
 
 import org.h2gis.utilities.TableLocation;
 
+import java.util.List;
+
 /**
  * Extension of the {@link ISummary} interface dedicated to the {@link IJdbcTable}.
  *
@@ -65,4 +67,19 @@ public interface IJdbcTableSummary extends ISummary {
      * @return The column count of the summarized {@link IJdbcTable}.
      */
     int getColumnCount();
+
+    /**
+     * Returns the statistics of the columns of the summarized {@link IJdbcTable}, in the column order.
+     *
+     * @return The list of the {@link IColumnSummary} of the columns.
+     */
+    List<IColumnSummary> getColumnSummaries();
+
+    /**
+     * Returns the statistics of the given column of the summarized {@link IJdbcTable}.
+     *
+     * @param column Name of the column, ignoring the case.
+     * @return The {@link IColumnSummary} of the column, null if the column does not exist.
+     */
+    IColumnSummary getColumnSummary(String column);
 }
\ No newline at end of file
@@ -36,6 +36,7 @@
  */
 package org.orbisgis.data.api.dataset;
 
+import java.nio.ByteBuffer;
 
 /**
  * Raster data.
@@ -52,6 +53,68 @@ public interface IRaster {
      */
     IRasterMetadata getMetadata();
 
+    /**
+     * Returns the width in pixels of the tiles of the raster.
+     *
+     * @return The width of the tiles.
+     */
+    int getTileWidth();
+
+    /**
+     * Returns the height in pixels of the tiles of the raster.
+     *
+     * @return The height of the tiles.
+     */
+    int getTileHeight();
+
+    /**
+     * Returns the number of tiles along the X axis.
+     *
+     * @return The number of tiles along the X axis.
+     */
+    int getTileCountX();
+
+    /**
+     * Returns the number of tiles along the Y axis.
+     *
+     * @return The number of tiles along the Y axis.
+     */
+    int getTileCountY();
+
+    /**
+     * Returns the pixels of a tile of a band as a read only {@link ByteBuffer}, row by row, each pixel being encoded
+     * with the pixel type of the band. The tiles on the right and bottom borders may be smaller than the tile size.
+     *
+     * @param band  Index of the band, starting from 0.
+     * @param tileX Index of the tile along the X axis, starting from 0.
+     * @param tileY Index of the tile along the Y axis, starting from 0.
+     * @return The pixels of the tile.
+     */
+    ByteBuffer getTile(int band, int tileX, int tileY) throws Exception;
+
+    /**
+     * Returns the value of a pixel.
+     *
+     * @param band Index of the band, starting from 0.
+     * @param x    Column of the pixel, starting from 0.
+     * @param y    Row of the pixel, starting from 0.
+     * @return The value of the pixel.
+     */
+    double getValue(int band, int x, int y) throws Exception;
+
+    /**
+     * Returns the values of the pixels of a window of the raster, row by row. Only the tiles intersecting the
+     * window are read.
+     *
+     * @param band   Index of the band, starting from 0.
+     * @param x      Column of the upper left pixel of the window.
+     * @param y      Row of the upper left pixel of the window.
+     * @param width  Width of the window.
+     * @param height Height of the window.
+     * @return The values of the pixels of the window.
+     */
+    double[] getWindow(int band, int x, int y, int width, int height) throws Exception;
+
     /**
      * Convert the current object into another with the given class.
      *
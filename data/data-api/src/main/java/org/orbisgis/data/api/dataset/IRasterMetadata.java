@@ -45,6 +45,92 @@ package org.orbisgis.data.api.dataset;
  */
 public interface IRasterMetadata {
 
+    /**
+     * Returns the width of the raster in pixels.
+     *
+     * @return The width of the raster in pixels.
+     */
+    int getWidth();
+
+    /**
+     * Returns the height of the raster in pixels.
+     *
+     * @return The height of the raster in pixels.
+     */
+    int getHeight();
+
+    /**
+     * Returns the number of bands of the raster.
+     *
+     * @return The number of bands of the raster.
+     */
+    int getBandCount();
+
+    /**
+     * Returns the X coordinate of the upper left corner of the raster.
+     *
+     * @return The X coordinate of the upper left corner of the raster.
+     */
+    double getUpperLeftX();
+
+    /**
+     * Returns the Y coordinate of the upper left corner of the raster.
+     *
+     * @return The Y coordinate of the upper left corner of the raster.
+     */
+    double getUpperLeftY();
+
+    /**
+     * Returns the width of a pixel in the units of the coordinate reference system.
+     *
+     * @return The width of a pixel.
+     */
+    double getScaleX();
+
+    /**
+     * Returns the height of a pixel in the units of the coordinate reference system, negative for north up rasters.
+     *
+     * @return The height of a pixel.
+     */
+    double getScaleY();
+
+    /**
+     * Returns the rotation of the raster about the X axis.
+     *
+     * @return The rotation of the raster about the X axis.
+     */
+    double getSkewX();
+
+    /**
+     * Returns the rotation of the raster about the Y axis.
+     *
+     * @return The rotation of the raster about the Y axis.
+     */
+    double getSkewY();
+
+    /**
+     * Returns the SRID of the raster.
+     *
+     * @return The SRID of the raster.
+     */
+    int getSrid();
+
+    /**
+     * Returns the pixel type of a band, using the PostGIS names (e.g. 8BUI, 16BSI, 32BF).
+     *
+     * @param band Index of the band, starting from 0.
+     * @return The pixel type of the band.
+     */
+    String getPixelType(int band);
+
+    /**
+     * Returns the no data value of a band, null if the band has none.
+     *
+     * @param band Index of the band, starting from 0.
+     * @return The no data value of the band.
+     */
+    Double getNoDataValue(int band);
+
     /**
      * Convert the current object into another with the given class.
      *
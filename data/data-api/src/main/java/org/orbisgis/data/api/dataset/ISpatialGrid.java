@@ -0,0 +1,163 @@
+/*
+ * Bundle DataManager API is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * DataManager API is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2019-2020 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * DataManager API is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * DataManager API is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * DataManager API. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.api.dataset;
+
+import org.locationtech.jts.geom.Polygon;
+
+import java.util.List;
+
+/**
+ * In memory grid of the features of an {@link ISpatialTable} binned by the centroid of their geometry. The values
+ * are stored in primitive arrays covering the rectangle of cells between the first and the last non empty cells,
+ * row by row, starting from the lower left cell.
+ *
+ * A cell is identified by its absolute column and row indexes. The square cell (i, j) covers
+ * [i * size, (i + 1) * size[ x [j * size, (j + 1) * size[. The hexagonal cells follow the layout of the PostGIS
+ * ST_HexagonGrid function : flat topped hexagons of the given edge size, the cell (0, 0) being centered on
+ * (size, 0).
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public interface ISpatialGrid {
+
+    /**
+     * Shape of the cells of a grid.
+     */
+    enum CellType {
+        SQUARE, HEXAGON
+    }
+
+    /**
+     * Return the shape of the cells.
+     *
+     * @return The shape of the cells.
+     */
+    CellType getCellType();
+
+    /**
+     * Return the size of the cells : the side of the squares or the edge of the hexagons.
+     *
+     * @return The size of the cells.
+     */
+    double getCellSize();
+
+    /**
+     * Return the SRID of the binned geometries.
+     *
+     * @return The SRID of the binned geometries.
+     */
+    int getSrid();
+
+    /**
+     * Return the absolute index of the first column of the grid.
+     *
+     * @return The index of the first column.
+     */
+    int getMinColumn();
+
+    /**
+     * Return the absolute index of the first row of the grid.
+     *
+     * @return The index of the first row.
+     */
+    int getMinRow();
+
+    /**
+     * Return the number of columns of the grid.
+     *
+     * @return The number of columns.
+     */
+    int getColumnCount();
+
+    /**
+     * Return the number of rows of the grid.
+     *
+     * @return The number of rows.
+     */
+    int getRowCount();
+
+    /**
+     * Return the aggregations computed for each cell, as given when the grid was built.
+     *
+     * @return The aggregations.
+     */
+    List<String> getAggregations();
+
+    /**
+     * Return the number of features of each cell.
+     *
+     * @return The number of features of each cell, row by row.
+     */
+    long[] getCounts();
+
+    /**
+     * Return the number of features of the given cell, 0 if it is out of the grid.
+     *
+     * @param column Absolute column index of the cell.
+     * @param row    Absolute row index of the cell.
+     * @return The number of features of the cell.
+     */
+    long getCount(int column, int row);
+
+    /**
+     * Return the values of the given aggregation for each cell, NaN for the empty cells.
+     *
+     * @param aggregation Aggregation, as given when the grid was built.
+     * @return The values of the aggregation, row by row.
+     */
+    double[] getValues(String aggregation);
+
+    /**
+     * Return the value of the given aggregation for the given cell, NaN if it is empty or out of the grid.
+     *
+     * @param aggregation Aggregation, as given when the grid was built.
+     * @param column      Absolute column index of the cell.
+     * @param row         Absolute row index of the cell.
+     * @return The value of the aggregation.
+     */
+    double getValue(String aggregation, int column, int row);
+
+    /**
+     * Return the polygon of the given cell.
+     *
+     * @param column Absolute column index of the cell.
+     * @param row    Absolute row index of the cell.
+     * @return The polygon of the cell.
+     */
+    Polygon getCell(int column, int row);
+}
@@ -0,0 +1,99 @@
+/*
+ * Bundle DataManager API is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * DataManager API is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2019-2020 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * DataManager API is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * DataManager API is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * DataManager API. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.api.dataset;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In memory spatial index built from the rows of an {@link ISpatialTable}. Each indexed row is returned as a
+ * {@link Map} containing the indexed geometry and the attribute columns kept when the index was built.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public interface ISpatialIndex {
+
+    /**
+     * Return the name of the indexed geometry column.
+     *
+     * @return The name of the indexed geometry column.
+     */
+    String getGeometryColumn();
+
+    /**
+     * Return the names of the attribute columns stored with the geometries.
+     *
+     * @return The names of the attribute columns stored with the geometries.
+     */
+    List<String> getColumns();
+
+    /**
+     * Return the number of indexed rows.
+     *
+     * @return The number of indexed rows.
+     */
+    int size();
+
+    /**
+     * Return the rows whose geometry envelope intersects the given {@link Envelope}.
+     *
+     * @param envelope The {@link Envelope} to query.
+     * @return The rows whose geometry envelope intersects the given {@link Envelope}.
+     */
+    List<Map<String, Object>> query(Envelope envelope);
+
+    /**
+     * Return the k rows whose geometries are the nearest of the given {@link Geometry}, sorted by distance.
+     *
+     * @param geometry The {@link Geometry} to search around.
+     * @param k        Maximum number of rows to return.
+     * @return The k nearest rows, sorted by distance.
+     */
+    List<Map<String, Object>> nearest(Geometry geometry, int k);
+
+    /**
+     * Return the rows whose geometry contains the given point.
+     *
+     * @param point The point {@link Geometry} to locate.
+     * @return The rows whose geometry contains the given point.
+     */
+    List<Map<String, Object>> contains(Geometry point);
+}
@@ -38,6 +38,9 @@ package org.orbisgis.data.api.dataset;
 
 import org.locationtech.jts.geom.Geometry;
 
+import java.io.File;
+import java.nio.DoubleBuffer;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -186,4 +189,163 @@ public interface ISpatialTable<T> extends ITable<T, T> {
      * @return A reproject {@link ISpatialTable}.
      */
     ISpatialTable<T> reproject(int srid) throws Exception;
+
+    /**
+     * Return a view of the current {@link ISpatialTable} for a level of detail : all the geometries are simplified
+     * preserving their topology with the given tolerance and their coordinates are snapped to a grid of half the
+     * tolerance. It can be used for rendering or previews, with the size of a pixel as tolerance.
+     *
+     * @param tolerance Simplification tolerance, in the units of the coordinate reference system.
+     * @return A simplified {@link ISpatialTable}.
+     */
+    ISpatialTable<T> lod(double tolerance) throws Exception;
+
+    /**
+     * Return the k rows of the table whose first geometry column is the nearest of the given {@link Geometry}, sorted
+     * by distance. The search uses the spatial index of the database when possible : the {@code <->} KNN operator
+     * on PostGIS or the spatial index of an H2GIS table. Otherwise the rows are searched in the in memory
+     * {@link ISpatialIndex} of the table.
+     *
+     * @param geometry {@link Geometry} to search around, with the SRID of the table or 0.
+     * @param k        Maximum number of rows to return.
+     * @return The k nearest rows, each row being a {@link Map} of the column labels and values.
+     */
+    List<Map<String, Object>> nearest(Geometry geometry, int k) throws Exception;
+
+    /**
+     * Return the k nearest rows of the table around each given {@link Geometry}, see {@link #nearest(Geometry, int)}.
+     * The geometries are searched by batches instead of running one query per geometry.
+     *
+     * @param geometries Geometries to search around, with the SRID of the table or 0.
+     * @param k          Maximum number of rows to return for a geometry.
+     * @return For each geometry, in the iteration order, its k nearest rows sorted by distance. The list is empty
+     * for a null or empty geometry.
+     */
+    List<List<Map<String, Object>>> nearestAll(Collection<Geometry> geometries, int k) throws Exception;
+
+    /**
+     * Return the x and y coordinates of the points of the given column packed into an array :
+     * {@code [x0, y0, x1, y1, ...]}. The null and empty points have NaN coordinates so that the coordinates of the
+     * n-th row always start at {@code 2 * n}. No geometry is created.
+     *
+     * @param column Name of the point column, null for the first geometry column.
+     * @return The packed coordinates of the points.
+     */
+    double[] coordinates(String column) throws Exception;
+
+    /**
+     * Return the coordinates of the points of the given column packed into an array, x, y and optionally z of each
+     * row one after the other. The null and empty points have NaN coordinates, as the z of the 2D points.
+     *
+     * @param column Name of the point column, null for the first geometry column.
+     * @param withZ  True to read x, y and z, false to read x and y.
+     * @return The packed coordinates of the points.
+     */
+    double[] coordinates(String column, boolean withZ) throws Exception;
+
+    /**
+     * Return the coordinates of the points of the given column packed into a direct {@link DoubleBuffer} in the
+     * native byte order, see {@link #coordinates(String, boolean)}. The buffer is allocated out of the Java heap and
+     * can be shared with native libraries.
+     *
+     * @param column Name of the point column, null for the first geometry column.
+     * @param withZ  True to read x, y and z, false to read x and y.
+     * @return The packed coordinates of the points.
+     */
+    DoubleBuffer coordinatesBuffer(String column, boolean withZ) throws Exception;
+
+    /**
+     * Check the validity of the geometries of the first geometry column. The geometries are checked in parallel, the
+     * points and the line strings only on their coordinates and their envelope.
+     *
+     * @return The {@link IValidationReport} of the geometries.
+     */
+    IValidationReport validate() throws Exception;
+
+    /**
+     * Check the validity of the geometries of the first geometry column and optionally repair the invalid ones in
+     * the table. The repaired geometries are written by batches, each batch being committed, and the rows which
+     * cannot be repaired are reported instead of stopping the repair.
+     *
+     * @param repair True to repair the invalid geometries, false to only check them. Only the geometries of a table,
+     *               not of a query, can be repaired.
+     * @return The {@link IValidationReport} of the geometries.
+     */
+    IValidationReport validate(boolean repair) throws Exception;
+
+    /**
+     * Build an in memory {@link ISpatialIndex} on the first geometry column of the {@link ISpatialTable}. The
+     * index is cached and reused until the underlying table is modified.
+     *
+     * @param columns Names of the attribute columns to keep with the geometries.
+     * @return An {@link ISpatialIndex} on the first geometry column.
+     */
+    ISpatialIndex toSpatialIndex(String... columns) throws Exception;
+
+    /**
+     * Bin the features of the table into a grid of square cells, by the centroid of their first geometry column.
+     * The binning is done by the database.
+     *
+     * @param cellSize     Side of the cells, in the units of the coordinate reference system.
+     * @param aggregations Aggregations computed for each cell : COUNT, SUM, AVG, MIN or MAX of a column, for
+     *                     example {@code "SUM(population)"}. The number of features is always computed.
+     * @return The grid of the binned features.
+     */
+    ISpatialGrid binToGrid(double cellSize, String... aggregations) throws Exception;
+
+    /**
+     * Bin the features of the table into a grid, by the centroid of their first geometry column. The binning is
+     * done by the database.
+     *
+     * @param cellType     Shape of the cells.
+     * @param cellSize     Side of the squares or edge of the hexagons, in the units of the coordinate reference
+     *                     system.
+     * @param aggregations Aggregations computed for each cell : COUNT, SUM, AVG, MIN or MAX of a column, for
+     *                     example {@code "SUM(population)"}. The number of features is always computed.
+     * @return The grid of the binned features.
+     */
+    ISpatialGrid binToGrid(ISpatialGrid.CellType cellType, double cellSize, String... aggregations) throws Exception;
+
+    /**
+     * Return the Mapbox Vector Tile of the features of the table at the given tile of the Web Mercator (EPSG:3857)
+     * XYZ tiling scheme. The tile contains one layer named as the table, whose features are the first geometry
+     * column, reprojected and clipped to the tile, with the given columns as attributes.
+     *
+     * @param zoom    Zoom level of the tile.
+     * @param x       Column of the tile, from the west.
+     * @param y       Row of the tile, from the north.
+     * @param columns Columns kept as feature attributes, all the non geometric columns if none is given.
+     * @return The encoded tile, an empty array if the tile does not contain any feature.
+     */
+    byte[] getVectorTile(int zoom, int x, int y, String... columns) throws Exception;
+
+    /**
+     * Write the Mapbox Vector Tiles of the table for the given zoom levels into a directory tree of
+     * {@code zoom/x/y.mvt} files. The tiles are generated in parallel, the tiles outside of the extent of the table
+     * and the children of the empty tiles are skipped. The tiles already present in the directory are kept, so that
+     * an interrupted generation can be resumed.
+     *
+     * @param directory Root directory of the tiles.
+     * @param minZoom   Lowest zoom level to generate.
+     * @param maxZoom   Highest zoom level to generate.
+     * @param columns   Columns kept as feature attributes, all the non geometric columns if none is given.
+     * @return The number of written tiles.
+     */
+    int writeVectorTiles(File directory, int minZoom, int maxZoom, String... columns) throws Exception;
+
+    /**
+     * Update the Mapbox Vector Tiles of the table written by {@link #writeVectorTiles(File, int, int, String...)}
+     * after a modification of the table : only the tiles intersecting the modified area are generated again, the
+     * tiles which became empty being removed.
+     *
+     * @param directory   Root directory of the tiles.
+     * @param minZoom     Lowest zoom level to generate.
+     * @param maxZoom     Highest zoom level to generate.
+     * @param changedArea {@link Geometry} covering the modified features, before and after their modification, with
+     *                    its SRID set.
+     * @param columns     Columns kept as feature attributes, all the non geometric columns if none is given.
+     * @return The number of written tiles.
+     */
+    int writeVectorTiles(File directory, int minZoom, int maxZoom, Geometry changedArea, String... columns)
+            throws Exception;
 }
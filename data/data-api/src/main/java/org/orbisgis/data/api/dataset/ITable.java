@@ -37,6 +37,8 @@
 package org.orbisgis.data.api.dataset;
 
 import groovy.lang.Closure;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
 import org.orbisgis.data.api.datasource.IJdbcDataSource;
 import org.orbisgis.data.api.dsl.IQueryBuilder;
 
@@ -59,6 +61,106 @@ import java.util.stream.Stream;
  */
 public interface ITable<T, U> extends IMatrix<T>, IQueryBuilder {
 
+    /**
+     * Order of the rows written by a save operation. The spatial orders sort the rows by the key, on a space filling
+     * curve, of the centroid of the envelope of their geometry snapped on a 2^16 x 2^16 grid covering the extent of
+     * the table. The rows without geometry are written last.
+     */
+    enum ClusterBy {
+        /** Keep the order of the source rows */
+        NONE,
+        /** Sort the rows by the Hilbert curve key of their geometry */
+        SPATIAL,
+        /** Sort the rows by the Z-order curve key of their geometry */
+        Z_ORDER;
+
+        /** Number of bits of each grid coordinate */
+        public static final int ORDER = 16;
+        /** Key of the rows without geometry */
+        public static final long NO_GEOMETRY_KEY = Long.MAX_VALUE;
+
+        /**
+         * Return the key of the given geometry on the space filling curve of this order.
+         *
+         * @param extent   Extent covered by the curve.
+         * @param geometry Geometry to locate.
+         * @return The key of the geometry, {@link #NO_GEOMETRY_KEY} if it is null or empty, 0 for {@link #NONE}.
+         */
+        public long getKey(Envelope extent, Geometry geometry) {
+            if (this == NONE) {
+                return 0;
+            }
+            if (geometry == null || geometry.isEmpty()) {
+                return NO_GEOMETRY_KEY;
+            }
+            Envelope envelope = geometry.getEnvelopeInternal();
+            int x = toGrid(envelope.centre().x, extent.getMinX(), extent.getWidth());
+            int y = toGrid(envelope.centre().y, extent.getMinY(), extent.getHeight());
+            return this == Z_ORDER ? zOrder(x, y) : hilbert(x, y);
+        }
+
+        /**
+         * Return the grid coordinate, between 0 and 2^16 - 1, of the given value.
+         */
+        private static int toGrid(double value, double min, double size) {
+            if (!(size > 0)) {
+                return 0;
+            }
+            int side = 1 << ORDER;
+            int cell = (int) ((value - min) / size * (side - 1));
+            return Math.max(0, Math.min(side - 1, cell));
+        }
+
+        /**
+         * Return the distance along the Hilbert curve of order 16 of the given grid cell.
+         *
+         * @param x Column of the cell, between 0 and 2^16 - 1.
+         * @param y Row of the cell, between 0 and 2^16 - 1.
+         * @return The Hilbert key of the cell.
+         */
+        public static long hilbert(int x, int y) {
+            long key = 0;
+            for (int s = 1 << (ORDER - 1); s > 0; s /= 2) {
+                int rx = (x & s) > 0 ? 1 : 0;
+                int ry = (y & s) > 0 ? 1 : 0;
+                key += (long) s * s * ((3 * rx) ^ ry);
+                if (ry == 0) {
+                    if (rx == 1) {
+                        x = s - 1 - x;
+                        y = s - 1 - y;
+                    }
+                    int t = x;
+                    x = y;
+                    y = t;
+                }
+            }
+            return key;
+        }
+
+        /**
+         * Return the Z-order (Morton) key of the given grid cell, interleaving the bits of its coordinates.
+         *
+         * @param x Column of the cell, between 0 and 2^16 - 1.
+         * @param y Row of the cell, between 0 and 2^16 - 1.
+         * @return The Z-order key of the cell.
+         */
+        public static long zOrder(int x, int y) {
+            return spread(x) | (spread(y) << 1);
+        }
+
+        /**
+         * Insert a zero bit before each of the 16 lowest bits of the given value.
+         */
+        private static long spread(int value) {
+            long v = value & 0xFFFFL;
+            v = (v | (v << 8)) & 0x00FF00FFL;
+            v = (v | (v << 4)) & 0x0F0F0F0FL;
+            v = (v | (v << 2)) & 0x33333333L;
+            v = (v | (v << 1)) & 0x55555555L;
+            return v;
+        }
+    }
+
     /**
      * Apply the given {@link Closure} to each row.
      *
@@ -167,6 +269,37 @@ public interface ITable<T, U> extends IMatrix<T>, IQueryBuilder {
      */
     Collection<String> getUniqueValues(String column) throws Exception;
 
+    /**
+     * Return a {@link Collection} of at most max unique values of the {@link ITable}. The values are read in one pass
+     * which stops as soon as max unique values are found, so that the column may contain more values if the collection
+     * contains max values.
+     *
+     * @param column Name of the column to request.
+     * @param max    Maximum number of unique values to return.
+     * @return A {@link Collection} of at most max unique values of the {@link ITable}.
+     */
+    Collection<String> getUniqueValues(String column, int max) throws Exception;
+
+    /**
+     * Return an estimation of the number of distinct non null values of the given column, computed in one pass with a
+     * HyperLogLog sketch using a fixed memory. The relative error is about 1%.
+     *
+     * @param column Name of the column to request.
+     * @return The estimated number of distinct values.
+     */
+    long approxDistinct(String column) throws Exception;
+
+    /**
+     * Return the k most frequent non null values of the given column with their counts, sorted by decreasing count.
+     * They are computed in one pass with a Space-Saving sketch using a fixed memory : the counts are exact while the
+     * column contains few distinct values, and are over-estimated otherwise.
+     *
+     * @param column Name of the column to request.
+     * @param k      Number of values to return.
+     * @return The most frequent values and their counts.
+     */
+    Map<Object, Long> topK(String column, int k) throws Exception;
+
     /**
      * Save the {@link ITable} into a file.
      *
@@ -264,6 +397,24 @@ public interface ITable<T, U> extends IMatrix<T>, IQueryBuilder {
      */
     String save(IJdbcDataSource dataSource, String outputTableName, boolean deleteTable, int batchSize) throws Exception;
 
+    /**
+     * Save the {@link ITable} into another database, writing the rows in the given order. Clustering the rows
+     * spatially gives a better page locality to the spatially filtered reads of the saved table. The rows of a table
+     * without geometry, or of a table which does not support the clustering, are written in the source order.
+     *
+     * @param dataSource Connection to the output database
+     * @param outputTableName name of the output table
+     * @param deleteTable True to delete the output table is exists
+     * @param batchSize Number of rows that must be accumulated in memory.
+     * @param clusterBy Order of the written rows.
+     * @return The name of the saved table, formatted according the output datasource
+     * Null is the table cannot be saved.
+     */
+    default String save(IJdbcDataSource dataSource, String outputTableName, boolean deleteTable, int batchSize,
+                        ClusterBy clusterBy) throws Exception {
+        return save(dataSource, outputTableName, deleteTable, batchSize);
+    }
+
     /**
      * Return the values of the first row in a {@link List}. If there is no row, return an empty list.
      *
@@ -0,0 +1,104 @@
+/*
+ * Bundle DataManager API is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * DataManager API is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2019-2020 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * DataManager API is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * DataManager API is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * DataManager API. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.api.dataset;
+
+import java.util.Map;
+
+/**
+ * Report of the validation of the geometries of a column of an {@link ISpatialTable}, and of their repair when it
+ * has been requested. The rows are identified by the row identifier of the database ({@code _ROWID_} on H2,
+ * {@code ctid} on PostgreSQL) or by their position, starting from 1, for the query tables.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public interface IValidationReport {
+
+    /** Maximum number of rows kept by {@link #getInvalidRows()} and {@link #getFailedRows()} */
+    int MAX_REPORTED_ROWS = 1000;
+
+    /**
+     * Return the name of the validated geometry column.
+     *
+     * @return The name of the geometry column.
+     */
+    String getColumnName();
+
+    /**
+     * Return the number of checked geometries, the null values being skipped.
+     *
+     * @return The number of checked geometries.
+     */
+    long getCheckedCount();
+
+    /**
+     * Return the number of invalid geometries.
+     *
+     * @return The number of invalid geometries.
+     */
+    long getInvalidCount();
+
+    /**
+     * Return the number of repaired geometries.
+     *
+     * @return The number of repaired geometries, 0 if the repair has not been requested.
+     */
+    long getRepairedCount();
+
+    /**
+     * Return the first {@link #MAX_REPORTED_ROWS} invalid rows with the reason of their invalidity, in the reading
+     * order.
+     *
+     * @return The identifiers of the invalid rows as key and the validation errors as value.
+     */
+    Map<Object, String> getInvalidRows();
+
+    /**
+     * Return the first {@link #MAX_REPORTED_ROWS} invalid rows which could not be repaired with the reason of the
+     * failure, in the reading order.
+     *
+     * @return The identifiers of the rows as key and the repair errors as value.
+     */
+    Map<Object, String> getFailedRows();
+
+    /**
+     * Return true if all the geometries are valid or have been repaired.
+     *
+     * @return True if all the geometries are valid or have been repaired, false otherwise.
+     */
+    boolean isValid();
+}
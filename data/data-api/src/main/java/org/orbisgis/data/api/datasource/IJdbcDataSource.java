@@ -745,6 +745,26 @@ public interface IJdbcDataSource extends IDataSource<ResultSet>, GroovyObject, D
     String load(IJdbcDataSource dataSource, String inputTableName,
                 String outputTableName, boolean deleteIfExists, int batchSize) throws Exception;
 
+    /**
+     * Load a table from another {@link IDataSource}, writing the rows in the given order.
+     *
+     * @param dataSource      DataSource reference to the input database
+     * @param inputTableName  Name of the table to import.
+     * @param outputTableName Name of the imported table in the database.
+     * @param deleteIfExists  True to delete the outputTableName if exists, false otherwise.
+     * @param batchSize       Integer value to queue the data before executing the query
+     * @param clusterBy       Order of the written rows.
+     * @return The name of the loaded table, formatted according this datasource
+     * Null is the table cannot be loaded.
+     */
+    default String load(IJdbcDataSource dataSource, String inputTableName, String outputTableName,
+                        boolean deleteIfExists, int batchSize, ITable.ClusterBy clusterBy) throws Exception {
+        if (clusterBy == null || clusterBy == ITable.ClusterBy.NONE) {
+            return load(dataSource, inputTableName, outputTableName, deleteIfExists, batchSize);
+        }
+        return dataSource.getTable(inputTableName).save(this, outputTableName, deleteIfExists, batchSize, clusterBy);
+    }
+
     /* ********************** */
     /*      Save methods      */
     /* ********************** */
@@ -0,0 +1,211 @@
+/*
+ * Bundle DataManager API is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * DataManager API is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2019-2020 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * DataManager API is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * DataManager API is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * DataManager API. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.api.dsl;
+
+/**
+ * Aggregate function computed on each group of rows by {@link IBuilderResult#aggregate(java.util.Collection,
+ * IAggregate...)}. The aggregates are created with the static methods of this interface, for example
+ * {@code aggregate(["type"], count(), sum("area").as("total"))}.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public interface IAggregate {
+
+    /**
+     * Aggregate functions. As in SQL, the null values are ignored, except by the count of the rows.
+     */
+    enum Function {
+        /** Number of rows, or of non null values of a column */
+        COUNT,
+        /** Sum of the values */
+        SUM,
+        /** Smallest value */
+        MIN,
+        /** Greatest value */
+        MAX,
+        /** Average of the values */
+        AVG
+    }
+
+    /**
+     * Return the aggregate function.
+     *
+     * @return The aggregate function.
+     */
+    Function getFunction();
+
+    /**
+     * Return the aggregated column, null for the count of the rows.
+     *
+     * @return The aggregated column.
+     */
+    String getColumn();
+
+    /**
+     * Return the name of the result column.
+     *
+     * @return The name of the result column.
+     */
+    String getAlias();
+
+    /**
+     * Return a copy of this aggregate with the given result column name.
+     *
+     * @param alias Name of the result column.
+     * @return A copy of this aggregate named with the given alias.
+     */
+    default IAggregate as(String alias) {
+        return of(getFunction(), getColumn(), alias);
+    }
+
+    /**
+     * Count the rows of each group.
+     *
+     * @return The aggregate, named 'count'.
+     */
+    static IAggregate count() {
+        return of(Function.COUNT, null);
+    }
+
+    /**
+     * Count the non null values of a column in each group.
+     *
+     * @param column Column to count.
+     * @return The aggregate, named 'count_' followed by the column name.
+     */
+    static IAggregate count(String column) {
+        return of(Function.COUNT, column);
+    }
+
+    /**
+     * Sum the values of a column in each group.
+     *
+     * @param column Column to sum.
+     * @return The aggregate, named 'sum_' followed by the column name.
+     */
+    static IAggregate sum(String column) {
+        return of(Function.SUM, column);
+    }
+
+    /**
+     * Return the smallest value of a column in each group.
+     *
+     * @param column Column to read.
+     * @return The aggregate, named 'min_' followed by the column name.
+     */
+    static IAggregate min(String column) {
+        return of(Function.MIN, column);
+    }
+
+    /**
+     * Return the greatest value of a column in each group.
+     *
+     * @param column Column to read.
+     * @return The aggregate, named 'max_' followed by the column name.
+     */
+    static IAggregate max(String column) {
+        return of(Function.MAX, column);
+    }
+
+    /**
+     * Average the values of a column in each group.
+     *
+     * @param column Column to average.
+     * @return The aggregate, named 'avg_' followed by the column name.
+     */
+    static IAggregate avg(String column) {
+        return of(Function.AVG, column);
+    }
+
+    /**
+     * Create an aggregate named after its function and column, the characters of the column which can not be used in
+     * an identifier being replaced by '_'.
+     *
+     * @param function Aggregate function.
+     * @param column   Aggregated column, null to count the rows.
+     * @return The aggregate.
+     */
+    static IAggregate of(Function function, String column) {
+        String alias = function.name().toLowerCase();
+        if (column != null) {
+            alias += "_" + column.replaceAll("[^A-Za-z0-9_]+", "_").replaceAll("^_+|_+$", "");
+        }
+        return of(function, column, alias);
+    }
+
+    /**
+     * Create an aggregate.
+     *
+     * @param function Aggregate function.
+     * @param column   Aggregated column, null to count the rows.
+     * @param alias    Name of the result column.
+     * @return The aggregate.
+     */
+    static IAggregate of(Function function, String column, String alias) {
+        if (function == null) {
+            throw new IllegalArgumentException("The aggregate function should not be null.");
+        }
+        if (column == null && function != Function.COUNT) {
+            throw new IllegalArgumentException("The " + function + " aggregate needs a column.");
+        }
+        if (alias == null || alias.isEmpty()) {
+            throw new IllegalArgumentException("The name of the aggregate should not be empty.");
+        }
+        return new IAggregate() {
+            @Override
+            public Function getFunction() {
+                return function;
+            }
+
+            @Override
+            public String getColumn() {
+                return column;
+            }
+
+            @Override
+            public String getAlias() {
+                return alias;
+            }
+
+            @Override
+            public String toString() {
+                return function + "(" + (column == null ? "*" : column) + ") AS " + alias;
+            }
+        };
+    }
+}
@@ -41,6 +41,7 @@ import groovy.lang.Closure;
 import org.orbisgis.data.api.dataset.ISpatialTable;
 import org.orbisgis.data.api.dataset.ITable;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -81,6 +82,64 @@ public interface IBuilderResult {
      */
     ISpatialTable<?> getSpatialTable() throws Exception;
 
+    /**
+     * Sort the result of the SQL request. If a filter has been added, the sort applies on the filtered result.
+     *
+     * @param columns Columns or expressions to sort by, each of them optionally followed by {@code ASC} or
+     *                {@code DESC}.
+     * @return {@link IOrderedBuilderResult} instance to continue building.
+     */
+    IOrderedBuilderResult orderBy(String... columns);
+
+    /**
+     * Limit the number of rows of the result of the SQL request. The rows are cut by the database.
+     *
+     * @param limit Maximum number of rows.
+     * @return {@link IBuilderResult} instance to continue building.
+     */
+    IBuilderResult limit(long limit);
+
+    /**
+     * Skip the first rows of the result of the SQL request. The rows are skipped by the database, which still reads
+     * them : {@link IOrderedBuilderResult#after(Object...)} should be preferred to read the pages of a large result.
+     *
+     * @param offset Number of rows to skip.
+     * @return {@link IBuilderResult} instance to continue building.
+     */
+    IBuilderResult offset(long offset);
+
+    /**
+     * Group the rows of the result of the SQL request and compute the given aggregates on each group. On a database,
+     * the aggregation is done by a single GROUP BY query, the rows are not read by the client. The result contains
+     * the group columns followed by one column per aggregate.
+     *
+     * @param groupBy    Columns or expressions to group the rows by, empty to aggregate all the rows.
+     * @param aggregates Aggregates to compute, created with the static methods of {@link IAggregate}.
+     * @return {@link IBuilderResult} instance to continue building.
+     */
+    IBuilderResult aggregate(Collection<String> groupBy, IAggregate... aggregates);
+
+    /**
+     * Keep a random sample of the rows of the result of the SQL request, each row being kept with the given
+     * probability. A table is sampled by blocks without reading the whole table, with TABLESAMPLE SYSTEM on PostGIS
+     * and with ranges of row identifiers on H2. The sample differs at each call.
+     *
+     * @param fraction Probability for a row to be kept, in ]0, 1].
+     * @return {@link IBuilderResult} instance to continue building.
+     */
+    IBuilderResult sample(double fraction);
+
+    /**
+     * Keep a random sample of the given number of rows of the result of the SQL request. The sample only depends on
+     * the seed and on the rows, so that the same seed gives the same sample. A table is sampled without sorting all
+     * its rows, with TABLESAMPLE BERNOULLI on PostGIS and with randomly drawn row identifiers on H2.
+     *
+     * @param n    Number of rows to keep, all the rows are kept if there are less rows.
+     * @param seed Seed of the sample.
+     * @return {@link IBuilderResult} instance to continue building.
+     */
+    IBuilderResult sample(int n, long seed);
+
     @Override
     String toString();
 
@@ -0,0 +1,115 @@
+/*
+ * Bundle DataManager API is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * DataManager API is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2019-2020 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * DataManager API is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * DataManager API is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * DataManager API. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.api.dsl;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+
+/**
+ * Token used to cancel cooperatively the statements, the row iterations and the transfers of tables. A token is
+ * cancelled either explicitly from any thread with {@link #cancel()} or when its deadline is reached. The running
+ * {@link Statement}s registered to the token are cancelled with it, and the long-running operations check the token
+ * between their batches of rows.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public interface ICancellationToken {
+
+    /** SQL state of a cancelled statement */
+    String CANCELLED_STATE = "57014";
+
+    /**
+     * Cancel the token and the {@link Statement}s registered to it.
+     */
+    void cancel();
+
+    /**
+     * Return true if the token has been cancelled with {@link #cancel()}.
+     *
+     * @return True if the token is cancelled.
+     */
+    boolean isCancelled();
+
+    /**
+     * Return the deadline of the token.
+     *
+     * @return The deadline in milliseconds since the epoch, {@link Long#MAX_VALUE} if there is no deadline.
+     */
+    long getDeadline();
+
+    /**
+     * Return true if the deadline of the token is reached.
+     *
+     * @return True if the deadline is reached.
+     */
+    default boolean isExpired() {
+        return getDeadline() != Long.MAX_VALUE && System.currentTimeMillis() >= getDeadline();
+    }
+
+    /**
+     * Register a running {@link Statement}, so that it is cancelled with the token. The query timeout of the
+     * {@link Statement} is reduced to the time remaining before the deadline.
+     *
+     * @param statement {@link Statement} to register.
+     * @throws SQLException Exception thrown if the token is already cancelled or expired.
+     */
+    void register(Statement statement) throws SQLException;
+
+    /**
+     * Unregister a {@link Statement} which is not running anymore.
+     *
+     * @param statement {@link Statement} to unregister.
+     */
+    void unregister(Statement statement);
+
+    /**
+     * Throw an exception if the token is cancelled or if its deadline is reached.
+     *
+     * @throws SQLException Exception thrown if the token is cancelled, {@link SQLTimeoutException} if its deadline is
+     *                      reached.
+     */
+    default void check() throws SQLException {
+        if (isCancelled()) {
+            throw new SQLException("The operation has been cancelled.", CANCELLED_STATE);
+        }
+        if (isExpired()) {
+            throw new SQLTimeoutException("The deadline of the operation has been reached.", CANCELLED_STATE);
+        }
+    }
+}
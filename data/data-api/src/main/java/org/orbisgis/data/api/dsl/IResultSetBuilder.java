@@ -141,6 +141,24 @@ public interface IResultSetBuilder {
      */
     IResultSetBuilder timeout(int timeout);
 
+    /**
+     * Set the token cancelling the {@link Statement}s, the row iterations and the table transfers started from this
+     * builder. The token is kept by the tables and the query builders created from this builder.
+     *
+     * @param token Cancellation token.
+     * @return This builder.
+     */
+    IResultSetBuilder cancellation(ICancellationToken token);
+
+    /**
+     * Set a deadline to the {@link Statement}s, the row iterations and the table transfers started from this builder.
+     * The deadline is combined with the cancellation token already set, if any.
+     *
+     * @param timeout Time before the deadline in milliseconds.
+     * @return This builder.
+     */
+    IResultSetBuilder deadline(long timeout);
+
     /**
      * Set the {@link java.sql.ResultSet} max row count.
      *
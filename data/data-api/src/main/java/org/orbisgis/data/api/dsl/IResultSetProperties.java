@@ -218,6 +218,20 @@ public interface IResultSetProperties {
      */
     int getMaxFieldSize();
 
+    /**
+     * Sets the token used to cancel the {@link Statement} and the iteration of the {@link ResultSet}.
+     *
+     * @param token Cancellation token, null to disable the cancellation.
+     */
+    void setCancellationToken(ICancellationToken token);
+
+    /**
+     * Returns the token used to cancel the {@link Statement} and the iteration of the {@link ResultSet}.
+     *
+     * @return The cancellation token, null if there is none.
+     */
+    ICancellationToken getCancellationToken();
+
     /**
      * Return a deep copy of this object.
      *
@@ -41,8 +41,10 @@ import org.h2gis.utilities.TableLocation;
 import org.h2gis.utilities.dbtypes.DBTypes;
 import org.junit.jupiter.api.Test;
 import org.orbisgis.data.api.datasource.IJdbcDataSource;
+import org.orbisgis.data.api.dsl.IAggregate;
 import org.orbisgis.data.api.dsl.IBuilderResult;
 import org.orbisgis.data.api.dsl.IFilterBuilder;
+import org.orbisgis.data.api.dsl.IOrderedBuilderResult;
 import org.orbisgis.data.api.dsl.IResultSetProperties;
 
 import javax.sql.rowset.RowSetMetaDataImpl;
@@ -258,6 +260,11 @@ public class IJdbcTableTest {
             return null;
         }
 
+        @Override
+        public IJdbcTableSummary getSummary(boolean columnStatistics, int histogramBins, boolean distinctCounts) {
+            return null;
+        }
+
         
         @Override
         public List<Object> getParams() {
@@ -1108,6 +1115,21 @@ public class IJdbcTableTest {
             return null;
         }
 
+        @Override
+        public Collection<String> getUniqueValues(String column, int max) {
+            return null;
+        }
+
+        @Override
+        public long approxDistinct(String column) {
+            return 0;
+        }
+
+        @Override
+        public Map<Object, Long> topK(String column, int k) {
+            return null;
+        }
+
         @Override
         public String save(String filePath, boolean delete) {
             return null;
@@ -1184,6 +1206,37 @@ public class IJdbcTableTest {
             return null;
         }
 
+        @Override
+        public IOrderedBuilderResult orderBy(String... columns) {
+            return null;
+        }
+
+        @Override
+        public IBuilderResult limit(long limit) {
+            return null;
+        }
+
+        @Override
+        public IBuilderResult offset(long offset) {
+            return null;
+        }
+
+
+        @Override
+        public IBuilderResult aggregate(Collection<String> groupBy, IAggregate... aggregates) {
+            return null;
+        }
+
+        @Override
+        public IBuilderResult sample(double fraction) {
+            return null;
+        }
+
+        @Override
+        public IBuilderResult sample(int n, long seed) {
+            return null;
+        }
+
         @Override
         public IFilterBuilder columns(String... columns) {
             return null;
@@ -40,9 +40,14 @@ import groovy.lang.Closure;
 import groovy.lang.GString;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
 import org.orbisgis.data.api.datasource.IJdbcDataSource;
+import org.orbisgis.data.api.dsl.IAggregate;
 import org.orbisgis.data.api.dsl.IBuilderResult;
 import org.orbisgis.data.api.dsl.IFilterBuilder;
+import org.orbisgis.data.api.dsl.IOrderedBuilderResult;
 
 import java.math.BigDecimal;
 import java.sql.Date;
@@ -123,6 +128,44 @@ public class ITableTest {
         assertNull(table.save("path"));
     }
 
+    /**
+     * Test the {@link ITable.ClusterBy} keys.
+     */
+    @Test
+    public void testClusterBy() throws Exception {
+        assertEquals(0, ITable.ClusterBy.zOrder(0, 0));
+        assertEquals(1, ITable.ClusterBy.zOrder(1, 0));
+        assertEquals(2, ITable.ClusterBy.zOrder(0, 1));
+        assertEquals(3, ITable.ClusterBy.zOrder(1, 1));
+        assertEquals(0xFFFFFFFFL, ITable.ClusterBy.zOrder(0xFFFF, 0xFFFF));
+
+        //Each cell of the Hilbert curve is adjacent to the next one
+        int side = 8;
+        long[][] cells = new long[side * side][];
+        for (int x = 0; x < side; x++) {
+            for (int y = 0; y < side; y++) {
+                long key = ITable.ClusterBy.hilbert(x, y);
+                assertTrue(key < (long) side * side);
+                cells[(int) key] = new long[]{x, y};
+            }
+        }
+        for (int i = 1; i < cells.length; i++) {
+            assertEquals(1, Math.abs(cells[i][0] - cells[i - 1][0]) + Math.abs(cells[i][1] - cells[i - 1][1]));
+        }
+
+        GeometryFactory factory = new GeometryFactory();
+        Envelope extent = new Envelope(0, 100, 0, 100);
+        assertEquals(ITable.ClusterBy.NO_GEOMETRY_KEY, ITable.ClusterBy.SPATIAL.getKey(extent, null));
+        assertEquals(ITable.ClusterBy.NO_GEOMETRY_KEY, ITable.ClusterBy.Z_ORDER.getKey(extent, factory.createPoint()));
+        assertEquals(0, ITable.ClusterBy.NONE.getKey(extent, factory.createPoint(new Coordinate(50, 50))));
+        assertEquals(0, ITable.ClusterBy.SPATIAL.getKey(extent, factory.createPoint(new Coordinate(0, 0))));
+        assertEquals(0xFFFFFFFFL, ITable.ClusterBy.Z_ORDER.getKey(extent, factory.createPoint(new Coordinate(100, 100))));
+        assertEquals(0, ITable.ClusterBy.SPATIAL.getKey(new Envelope(), factory.createPoint(new Coordinate(1, 1))));
+
+        assertNull(table.save(null, "output", true, 100, ITable.ClusterBy.NONE));
+        assertNull(table.save(null, "output", true, 100, ITable.ClusterBy.SPATIAL));
+    }
+
     /**
      * Test the {@link ITable#getNDim()} method.
      */
@@ -250,6 +293,21 @@ public class ITableTest {
             return null;
         }
 
+        @Override
+        public Collection<String> getUniqueValues(String column, int max) {
+            return null;
+        }
+
+        @Override
+        public long approxDistinct(String column) {
+            return 0;
+        }
+
+        @Override
+        public Map<Object, Long> topK(String column, int k) {
+            return null;
+        }
+
         @Override
         public String save(String filePath, boolean delete) {
             return null;
@@ -551,6 +609,37 @@ public class ITableTest {
         public IFilterBuilder columns(String... columns) {
             return null;
         }
+
+        @Override
+        public IOrderedBuilderResult orderBy(String... columns) {
+            return null;
+        }
+
+        @Override
+        public IBuilderResult limit(long limit) {
+            return null;
+        }
+
+        @Override
+        public IBuilderResult offset(long offset) {
+            return null;
+        }
+
+
+        @Override
+        public IBuilderResult aggregate(Collection<String> groupBy, IAggregate... aggregates) {
+            return null;
+        }
+
+        @Override
+        public IBuilderResult sample(double fraction) {
+            return null;
+        }
+
+        @Override
+        public IBuilderResult sample(int n, long seed) {
+            return null;
+        }
     }
 
     private static class DummyIterator implements Iterator {
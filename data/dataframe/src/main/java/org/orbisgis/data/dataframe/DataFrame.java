@@ -38,15 +38,22 @@ package org.orbisgis.data.dataframe;
 
 import groovy.lang.GString;
 import org.h2gis.utilities.TableLocation;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
 import org.orbisgis.commons.printer.Ascii;
 import org.orbisgis.commons.printer.Html;
 import org.orbisgis.commons.printer.ICustomPrinter;
+import org.orbisgis.commons.sketch.HyperLogLog;
+import org.orbisgis.commons.sketch.SpaceSaving;
 import org.orbisgis.data.api.dataset.IJdbcTable;
 import org.orbisgis.data.api.dataset.ISpatialTable;
 import org.orbisgis.data.api.dataset.ITable;
 import org.orbisgis.data.api.datasource.IJdbcDataSource;
+import org.orbisgis.data.api.dsl.IAggregate;
 import org.orbisgis.data.api.dsl.IBuilderResult;
+import org.orbisgis.data.api.dsl.IOrderedBuilderResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import smile.data.Tuple;
@@ -66,7 +73,9 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static org.orbisgis.commons.printer.ICustomPrinter.CellPosition.CENTER;
@@ -256,6 +265,94 @@ public class DataFrame implements smile.data.DataFrame, ITable<BaseVector, Tuple
         return summary();
     }
 
+    /**
+     * Return a {@link Summary} with one row per column containing its type, its number of null values, its minimum,
+     * maximum and mean values, an estimation of its number of distinct values and optionally an histogram of its
+     * numeric values. The statistics are computed in one parallel pass on the rows, plus one for the histograms.
+     *
+     * @param histogramBins Number of bins of the histograms of the numeric columns, 0 for no histogram.
+     * @return The {@link Summary} of the columns.
+     */
+    public Summary getSummary(int histogramBins) {
+        if (histogramBins < 0) {
+            throw new IllegalArgumentException("The number of bins should be positive or zero.");
+        }
+        int columnCount = ncols();
+        ColumnStatistics[] statistics = IntStream.range(0, nrows()).parallel().collect(
+                () -> ColumnStatistics.of(columnCount),
+                (stats, i) -> {
+                    for (int j = 0; j < columnCount; j++) {
+                        stats[j].add(get(i, j));
+                    }
+                },
+                (left, right) -> {
+                    for (int j = 0; j < columnCount; j++) {
+                        left[j].merge(right[j]);
+                    }
+                });
+
+        long[][] histograms = new long[columnCount][];
+        if (histogramBins > 0) {
+            for (int j = 0; j < columnCount; j++) {
+                if (statistics[j].count > 0 && statistics[j].numeric) {
+                    histograms[j] = new long[histogramBins];
+                }
+            }
+            long[][] counts = IntStream.range(0, nrows()).parallel().collect(
+                    () -> new long[columnCount][histogramBins],
+                    (bins, i) -> {
+                        for (int j = 0; j < columnCount; j++) {
+                            Object value = histograms[j] == null ? null : get(i, j);
+                            if (value != null) {
+                                bins[j][statistics[j].getBin(((Number) value).doubleValue(), histogramBins)]++;
+                            }
+                        }
+                    },
+                    (left, right) -> {
+                        for (int j = 0; j < columnCount; j++) {
+                            for (int k = 0; k < histogramBins; k++) {
+                                left[j][k] += right[j][k];
+                            }
+                        }
+                    });
+            for (int j = 0; j < columnCount; j++) {
+                if (histograms[j] != null) {
+                    histograms[j] = counts[j];
+                }
+            }
+        }
+
+        List<StructField> fields = new ArrayList<>(Arrays.asList(
+                new StructField("column", DataTypes.StringType),
+                new StructField("type", DataTypes.StringType),
+                new StructField("nulls", DataTypes.LongType),
+                new StructField("min", DataTypes.StringType),
+                new StructField("max", DataTypes.StringType),
+                new StructField("mean", DataTypes.DoubleObjectType),
+                new StructField("distinct", DataTypes.LongType)));
+        if (histogramBins > 0) {
+            fields.add(new StructField("histogram", DataTypes.StringType));
+        }
+        StructType schema = new StructType(fields);
+        List<Tuple> rows = new ArrayList<>(columnCount);
+        for (int j = 0; j < columnCount; j++) {
+            ColumnStatistics stats = statistics[j];
+            Object[] values = new Object[fields.size()];
+            values[0] = schema().field(j).name;
+            values[1] = String.valueOf(schema().field(j).type);
+            values[2] = stats.nulls;
+            values[3] = stats.min == null ? null : stats.min.toString();
+            values[4] = stats.max == null ? null : stats.max.toString();
+            values[5] = stats.numeric && stats.count > 0 ? stats.sum / stats.count : null;
+            values[6] = stats.distinct.estimate();
+            if (histogramBins > 0) {
+                values[7] = histograms[j] == null ? null : Arrays.toString(histograms[j]);
+            }
+            rows.add(Tuple.of(values, schema));
+        }
+        return new Summary(smile.data.DataFrame.of(rows, schema));
+    }
+
     @Override
     public boolean reload() {
         return false;
@@ -623,13 +720,52 @@ public class DataFrame implements smile.data.DataFrame, ITable<BaseVector, Tuple
 
     @Override
     public Collection<String> getUniqueValues(String column) {
-        int colIndex = columnIndex(column);
-        List<String> values = new ArrayList<>();
+        return getUniqueValues(column, Integer.MAX_VALUE);
+    }
 
-        for (int i = 0; i < nrows(); i++) {
+    @Override
+    public Collection<String> getUniqueValues(String column, int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("The maximum number of values should be positive or zero.");
+        }
+        int colIndex = columnIndex(column);
+        Set<String> values = new LinkedHashSet<>();
+        for (int i = 0; i < nrows() && values.size() < max; i++) {
             values.add(get(i, colIndex).toString());
         }
-        return values.stream().distinct().collect(Collectors.toList());
+        return new ArrayList<>(values);
+    }
+
+    /**
+     * Return an estimation of the number of distinct non null values of the given column, computed in parallel with
+     * HyperLogLog sketches merged at the end.
+     *
+     * @param column Name of the column to request.
+     * @return The estimated number of distinct values.
+     */
+    @Override
+    public long approxDistinct(String column) {
+        int colIndex = columnIndex(column);
+        return IntStream.range(0, nrows()).parallel().collect(HyperLogLog::new,
+                (sketch, i) -> sketch.add(get(i, colIndex)), HyperLogLog::merge).estimate();
+    }
+
+    /**
+     * Return the k most frequent non null values of the given column with their counts, computed in parallel with
+     * Space-Saving sketches merged at the end.
+     *
+     * @param column Name of the column to request.
+     * @param k      Number of values to return.
+     * @return The most frequent values and their counts, sorted by decreasing count.
+     */
+    @Override
+    public Map<Object, Long> topK(String column, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("The number of values should be positive or zero.");
+        }
+        int colIndex = columnIndex(column);
+        return IntStream.range(0, nrows()).parallel().collect(() -> SpaceSaving.forTopK(k),
+                (SpaceSaving<Object> sketch, int i) -> sketch.add(get(i, colIndex)), SpaceSaving::merge).top(k);
     }
 
     @Override
@@ -708,9 +844,16 @@ public class DataFrame implements smile.data.DataFrame, ITable<BaseVector, Tuple
 
     @Override
     public String save(IJdbcDataSource dataSource, String outputTableName, boolean deleteTable, int batchSize) throws Exception {
+        return save(dataSource, outputTableName, deleteTable, batchSize, ClusterBy.NONE);
+    }
+
+    @Override
+    public String save(IJdbcDataSource dataSource, String outputTableName, boolean deleteTable, int batchSize,
+                       ClusterBy clusterBy) throws Exception {
         if (isEmpty()) {
             return null;
         }
+        int[] order = getRowOrder(clusterBy);
         String tableName = TableLocation.parse(outputTableName, dataSource.getDataBaseType()).toString();
         try {
             PreparedStatement preparedStatement = null;
@@ -745,16 +888,15 @@ public class DataFrame implements smile.data.DataFrame, ITable<BaseVector, Tuple
                 outputconnectionStatement.execute(create_table_.toString());
                 preparedStatement = outputconnection.prepareStatement(insertTable.toString());
                 //Check the first row in order to limit the batch size if the query doesn't work
-                this.next();
                 for (int i = 0; i < getColumnCount(); i++) {
-                    preparedStatement.setObject(i + 1, getObject(i));
+                    preparedStatement.setObject(i + 1, get(order[0], i));
                 }
                 preparedStatement.execute();
                 outputconnection.commit();
                 long batch_size = 0;
-                while (this.next()) {
+                for (int r = 1; r < order.length; r++) {
                     for (int i = 0; i < getColumnCount(); i++) {
-                        preparedStatement.setObject(i + 1, getObject(i));
+                        preparedStatement.setObject(i + 1, get(order[r], i));
                     }
                     preparedStatement.addBatch();
                     batch_size++;
@@ -762,7 +904,7 @@ public class DataFrame implements smile.data.DataFrame, ITable<BaseVector, Tuple
                         preparedStatement.executeBatch();
                         outputconnection.commit();
                         preparedStatement.clearBatch();
-                        batchSize = 0;
+                        batch_size = 0;
                     }
                 }
                 if (batch_size > 0) {
@@ -783,6 +925,49 @@ public class DataFrame implements smile.data.DataFrame, ITable<BaseVector, Tuple
         return tableName;
     }
 
+    /**
+     * Return the indexes of the rows in the given order. The geometries of a {@link DataFrame} being stored as WKT,
+     * the rows are sorted by the key of the first {@link String} column containing WKT geometries. If there is no
+     * such column, the rows are kept in their order.
+     *
+     * @param clusterBy Order of the rows.
+     * @return The indexes of the rows.
+     */
+    private int[] getRowOrder(ClusterBy clusterBy) {
+        int[] order = new int[nrows()];
+        Arrays.setAll(order, i -> i);
+        if (clusterBy == null || clusterBy == ClusterBy.NONE) {
+            return order;
+        }
+        WKTReader reader = new WKTReader();
+        DataType[] dataTypes = types();
+        for (int j = 0; j < dataTypes.length; j++) {
+            if (!DataTypes.StringType.equals(dataTypes[j])) {
+                continue;
+            }
+            Geometry[] geometries = new Geometry[order.length];
+            Envelope extent = new Envelope();
+            try {
+                for (int i = 0; i < order.length; i++) {
+                    Object value = get(i, j);
+                    if (value != null) {
+                        geometries[i] = reader.read(value.toString());
+                        extent.expandToInclude(geometries[i].getEnvelopeInternal());
+                    }
+                }
+            } catch (ParseException e) {
+                continue;
+            }
+            long[] keys = new long[order.length];
+            for (int i = 0; i < order.length; i++) {
+                keys[i] = clusterBy.getKey(extent, geometries[i]);
+            }
+            return Arrays.stream(order).boxed().sorted(Comparator.comparingLong(i -> keys[i]))
+                    .mapToInt(Integer::intValue).toArray();
+        }
+        return order;
+    }
+
     @Override
     public List<Object> getFirstRow() {
         List<Object> firstRow = new ArrayList<>();
@@ -814,6 +999,380 @@ public class DataFrame implements smile.data.DataFrame, ITable<BaseVector, Tuple
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public IOrderedBuilderResult orderBy(String... columns) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public IBuilderResult limit(long limit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public IBuilderResult offset(long offset) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Group the rows of this DataFrame and compute the given aggregates on each group. The rows are grouped in
+     * parallel, the groups being sorted in the order of their first row. The result contains the group columns
+     * followed by one column per aggregate : the counts are long values, the sums are long values for the integral
+     * columns and double values otherwise, the averages are double values and the min and max values keep the type of
+     * their column.
+     *
+     * @param groupBy    Columns to group the rows by, empty to aggregate all the rows.
+     * @param aggregates Aggregates to compute.
+     * @return The DataFrame of the aggregated rows.
+     */
+    @Override
+    public DataFrame aggregate(Collection<String> groupBy, IAggregate... aggregates) {
+        List<String> groups = groupBy == null ? Collections.emptyList() : new ArrayList<>(groupBy);
+        IAggregate[] aggs = aggregates == null ? new IAggregate[0] : aggregates;
+        if (groups.isEmpty() && aggs.length == 0) {
+            throw new IllegalArgumentException("At least one group column or one aggregate should be given.");
+        }
+        StructType schema = schema();
+        int[] groupIndexes = groups.stream().mapToInt(this::getColumnIndex).toArray();
+        int[] aggregateIndexes = Arrays.stream(aggs)
+                .mapToInt(aggregate -> aggregate.getColumn() == null ? -1 : getColumnIndex(aggregate.getColumn()))
+                .toArray();
+        Map<List<Object>, Accumulator[]> accumulators = IntStream.range(0, nrows()).parallel().collect(
+                LinkedHashMap::new,
+                (map, i) -> {
+                    List<Object> key = new ArrayList<>(groupIndexes.length);
+                    for (int index : groupIndexes) {
+                        key.add(get(i, index));
+                    }
+                    Accumulator[] row = map.computeIfAbsent(key, k -> Accumulator.of(aggs));
+                    for (int j = 0; j < aggs.length; j++) {
+                        row[j].add(aggregateIndexes[j] < 0 ? Boolean.TRUE : get(i, aggregateIndexes[j]));
+                    }
+                },
+                (left, right) -> right.forEach((key, row) -> left.merge(key, row, (l, r) -> {
+                    for (int j = 0; j < l.length; j++) {
+                        l[j].merge(r[j]);
+                    }
+                    return l;
+                })));
+        //Like SQL, an aggregate without group returns a row even on an empty DataFrame
+        if (groups.isEmpty() && accumulators.isEmpty()) {
+            accumulators.put(Collections.emptyList(), Accumulator.of(aggs));
+        }
+
+        List<StructField> fields = new ArrayList<>();
+        for (int index : groupIndexes) {
+            fields.add(schema.field(index));
+        }
+        for (int j = 0; j < aggs.length; j++) {
+            DataType type = aggregateIndexes[j] < 0 ? null : schema.field(aggregateIndexes[j]).type;
+            fields.add(new StructField(aggs[j].getAlias(), Accumulator.getType(aggs[j].getFunction(), type)));
+        }
+        StructType resultSchema = new StructType(fields);
+        List<Tuple> rows = new ArrayList<>(accumulators.size());
+        accumulators.forEach((key, row) -> {
+            Object[] values = new Object[fields.size()];
+            for (int k = 0; k < key.size(); k++) {
+                values[k] = key.get(k);
+            }
+            for (int j = 0; j < row.length; j++) {
+                values[key.size() + j] = row[j].getResult(fields.get(key.size() + j).type);
+            }
+            rows.add(Tuple.of(values, resultSchema));
+        });
+        return of(rows, resultSchema);
+    }
+
+    /**
+     * Return the index of the given column, ignoring the case.
+     *
+     * @param column Name of the column.
+     * @return The index of the column.
+     */
+    private int getColumnIndex(String column) {
+        String[] names = names();
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equalsIgnoreCase(column)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("The column '" + column + "' does not exist.");
+    }
+
+    /**
+     * Keep a random sample of the rows of this DataFrame, each row being kept with the given probability. The rows are
+     * drawn in parallel and keep their order.
+     *
+     * @param fraction Probability for a row to be kept, in ]0, 1].
+     * @return The DataFrame of the sampled rows.
+     */
+    @Override
+    public DataFrame sample(double fraction) {
+        if (!(fraction > 0 && fraction <= 1)) {
+            throw new IllegalArgumentException("The fraction should be greater than 0 and lower or equal to 1.");
+        }
+        return of(IntStream.range(0, nrows()).parallel()
+                .filter(i -> ThreadLocalRandom.current().nextDouble() < fraction)
+                .toArray());
+    }
+
+    /**
+     * Keep a random sample of the given number of rows of this DataFrame. Each row gets a random key computed from its
+     * index and from the seed, and the rows with the n smallest keys are kept by a parallel reservoir, so that the
+     * sample does not depend on the parallelism. The rows keep their order.
+     *
+     * @param n    Number of rows to keep, all the rows are kept if there are less rows.
+     * @param seed Seed of the sample.
+     * @return The DataFrame of the sampled rows.
+     */
+    @Override
+    public DataFrame sample(int n, long seed) {
+        if (n < 0) {
+            throw new IllegalArgumentException("The number of rows should be positive or zero.");
+        }
+        if (n >= nrows()) {
+            return this;
+        }
+        //Max-heap of the {key, index} of the kept rows, its head being the first row to replace
+        Comparator<long[]> comparator = Comparator.<long[]>comparingLong(entry -> entry[0])
+                .thenComparingLong(entry -> entry[1]).reversed();
+        PriorityQueue<long[]> reservoir = IntStream.range(0, nrows()).parallel().collect(
+                () -> new PriorityQueue<>(comparator),
+                (heap, i) -> offer(heap, new long[]{mix(seed + mix(i)), i}, n, comparator),
+                (left, right) -> right.forEach(entry -> offer(left, entry, n, comparator)));
+        return of(reservoir.stream().mapToInt(entry -> (int) entry[1]).sorted().toArray());
+    }
+
+    /**
+     * Add the given entry to the reservoir if it contains less than n entries or if the entry is lower than its head.
+     *
+     * @param heap       Max-heap of the reservoir.
+     * @param entry      Entry to add.
+     * @param n          Size of the reservoir.
+     * @param comparator Comparator of the heap.
+     */
+    private static void offer(PriorityQueue<long[]> heap, long[] entry, int n, Comparator<long[]> comparator) {
+        if (heap.size() < n) {
+            heap.add(entry);
+        } else if (n > 0 && comparator.compare(entry, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(entry);
+        }
+    }
+
+    /**
+     * SplitMix64 hash of the given value.
+     *
+     * @param value Value to hash.
+     * @return The hash of the value.
+     */
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Statistics of the values of a column, accumulated in parallel.
+     */
+    private static final class ColumnStatistics {
+        /** Number of null values */
+        private long nulls = 0;
+        /** Number of non null values */
+        private long count = 0;
+        /** True while all the non null values are numbers */
+        private boolean numeric = true;
+        /** Sum of the numeric values */
+        private double sum = 0;
+        /** Minimum value, only for the numbers, the texts and the dates */
+        private Comparable<Object> min;
+        /** Maximum value, only for the numbers, the texts and the dates */
+        private Comparable<Object> max;
+        /** Sketch of the distinct values */
+        private final HyperLogLog distinct = new HyperLogLog();
+
+        /**
+         * Create the statistics of the given number of columns.
+         *
+         * @param columnCount Number of columns.
+         * @return The statistics of the columns.
+         */
+        private static ColumnStatistics[] of(int columnCount) {
+            ColumnStatistics[] statistics = new ColumnStatistics[columnCount];
+            for (int j = 0; j < columnCount; j++) {
+                statistics[j] = new ColumnStatistics();
+            }
+            return statistics;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void add(Object value) {
+            if (value == null) {
+                nulls++;
+                return;
+            }
+            count++;
+            distinct.add(value);
+            numeric &= value instanceof Number;
+            if (numeric) {
+                sum += ((Number) value).doubleValue();
+            }
+            if (value instanceof Number || value instanceof CharSequence || value instanceof java.util.Date ||
+                    value instanceof java.time.temporal.Temporal) {
+                Comparable<Object> comparable = (Comparable<Object>) value;
+                if (min == null || comparable.compareTo(min) < 0) {
+                    min = comparable;
+                }
+                if (max == null || comparable.compareTo(max) > 0) {
+                    max = comparable;
+                }
+            }
+        }
+
+        private void merge(ColumnStatistics other) {
+            nulls += other.nulls;
+            count += other.count;
+            numeric &= other.numeric;
+            sum += other.sum;
+            if (other.min != null && (min == null || other.min.compareTo(min) < 0)) {
+                min = other.min;
+            }
+            if (other.max != null && (max == null || other.max.compareTo(max) > 0)) {
+                max = other.max;
+            }
+            distinct.merge(other.distinct);
+        }
+
+        /**
+         * Return the bin of the histogram between the minimum and the maximum values containing the given value.
+         *
+         * @param value Numeric value of the column.
+         * @param bins  Number of bins.
+         * @return The index of the bin.
+         */
+        private int getBin(double value, int bins) {
+            double lower = ((Number) min).doubleValue();
+            double upper = ((Number) max).doubleValue();
+            if (upper <= lower) {
+                return 0;
+            }
+            return Math.min(bins - 1, (int) ((value - lower) / (upper - lower) * bins));
+        }
+    }
+
+    /**
+     * Accumulator of the values of a group for an aggregate function.
+     */
+    private static final class Accumulator {
+        /** Aggregate function */
+        private final IAggregate.Function function;
+        /** Number of non null values */
+        private long count = 0;
+        /** Sum of the values */
+        private double sum = 0;
+        /** Exact sum of the integral values */
+        private long longSum = 0;
+        /** Smallest or greatest value */
+        private Object extremum = null;
+
+        private Accumulator(IAggregate.Function function) {
+            this.function = function;
+        }
+
+        /**
+         * Create the accumulators of the given aggregates.
+         */
+        private static Accumulator[] of(IAggregate[] aggregates) {
+            Accumulator[] accumulators = new Accumulator[aggregates.length];
+            for (int i = 0; i < aggregates.length; i++) {
+                accumulators[i] = new Accumulator(aggregates[i].getFunction());
+            }
+            return accumulators;
+        }
+
+        /**
+         * Return the type of the result of the given function on a column of the given type.
+         */
+        private static DataType getType(IAggregate.Function function, DataType type) {
+            switch (function) {
+                case SUM:
+                    return type.unboxed().isIntegral() ? DataTypes.LongObjectType : DataTypes.DoubleObjectType;
+                case AVG:
+                    return DataTypes.DoubleObjectType;
+                case MIN:
+                case MAX:
+                    return type;
+                default:
+                    return DataTypes.LongType;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void add(Object value) {
+            if (value == null) {
+                return;
+            }
+            count++;
+            switch (function) {
+                case SUM:
+                case AVG:
+                    if (!(value instanceof Number)) {
+                        throw new IllegalArgumentException("Cannot compute the " + function + " of the non numeric value '" + value + "'.");
+                    }
+                    sum += ((Number) value).doubleValue();
+                    longSum += ((Number) value).longValue();
+                    break;
+                case MIN:
+                    if (extremum == null || ((Comparable<Object>) value).compareTo(extremum) < 0) {
+                        extremum = value;
+                    }
+                    break;
+                case MAX:
+                    if (extremum == null || ((Comparable<Object>) value).compareTo(extremum) > 0) {
+                        extremum = value;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void merge(Accumulator other) {
+            count += other.count;
+            sum += other.sum;
+            longSum += other.longSum;
+            if (other.extremum != null) {
+                if (extremum == null) {
+                    extremum = other.extremum;
+                } else {
+                    int comparison = ((Comparable<Object>) other.extremum).compareTo(extremum);
+                    if (function == IAggregate.Function.MIN ? comparison < 0 : comparison > 0) {
+                        extremum = other.extremum;
+                    }
+                }
+            }
+        }
+
+        private Object getResult(DataType type) {
+            switch (function) {
+                case SUM:
+                    if (count == 0) {
+                        return null;
+                    }
+                    return type == DataTypes.LongObjectType ? (Object) longSum : (Object) sum;
+                case AVG:
+                    return count == 0 ? null : sum / count;
+                case MIN:
+                case MAX:
+                    return extremum;
+                default:
+                    return count;
+            }
+        }
+    }
+
     @Override
     public Map<String, Object> firstRow() {
         Map<String, Object> map = new HashMap<>();
@@ -83,7 +83,8 @@ public class Summary extends DataFrame implements ISummary {
             printer.appendTableLineSeparator();
             for (int i = 0; i < this.size(); i++) {
                 for (int j = 0; j < this.getColumnCount(); j++) {
-                    printer.appendTableValue(this.get(i, j), RIGHT);
+                    Object value = this.get(i, j);
+                    printer.appendTableValue(value == null ? "" : value, RIGHT);
                 }
                 printer.appendTableLineSeparator();
             }
@@ -41,13 +41,21 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.orbisgis.commons.printer.Ascii;
 import org.orbisgis.commons.printer.Html;
+import groovy.sql.GroovyRowResult;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKTReader;
 import org.orbisgis.data.api.dataset.IJdbcTable;
+import org.orbisgis.data.api.dataset.ITable;
+import org.orbisgis.data.api.datasource.IJdbcDataSource;
+import org.orbisgis.data.api.dsl.IAggregate;
 import org.orbisgis.data.H2GIS;
 import smile.base.cart.SplitRule;
 import smile.classification.RandomForest;
 import smile.data.Tuple;
 import smile.data.formula.Formula;
 import smile.data.type.DataType;
+import smile.data.type.DataTypes;
 import smile.data.type.StructField;
 import smile.data.type.StructType;
 import smile.data.vector.BaseVector;
@@ -65,8 +73,11 @@ import java.sql.Time;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -312,6 +323,101 @@ public class DataFrameTest {
         assertArrayEquals(new String[]{"COL3", "COL5", "COL6", "COL7", "COL8", "COL9"}, df08.names());
     }
 
+    /**
+     * Tests the {@link DataFrame#aggregate(java.util.Collection, IAggregate...)} method.
+     */
+    @Test
+    void testAggregate() {
+        DataFrame df = dataFrame.aggregate(Arrays.asList("col3"), IAggregate.count(), IAggregate.sum("COL1"),
+                IAggregate.min("COL2"), IAggregate.max("COL2"), IAggregate.count("COL2"), IAggregate.avg("COL8"));
+        assertArrayEquals(new String[]{"COL3", "count", "sum_COL1", "min_COL2", "max_COL2", "count_COL2", "avg_COL8"},
+                df.names());
+        assertEquals(DataTypes.LongType, df.schema().field("count").type);
+        assertEquals(DataTypes.LongObjectType, df.schema().field("sum_COL1").type);
+        assertEquals(DataTypes.DoubleObjectType, df.schema().field("avg_COL8").type);
+        assertEquals(2, df.nrows());
+        assertEquals(true, df.get(0, 0));
+        assertEquals(3L, df.get(0, 1));
+        assertEquals(6L, df.get(0, 2));
+        assertEquals("val0", df.get(0, 3));
+        assertEquals("val4", df.get(0, 4));
+        assertEquals(2L, df.get(0, 5));
+        assertEquals(2.5, (Double) df.get(0, 6), 1e-9);
+        assertEquals(false, df.get(1, 0));
+        assertEquals(2L, df.get(1, 1));
+        assertEquals(4L, df.get(1, 2));
+        assertEquals("val1", df.get(1, 3));
+        assertEquals("val3", df.get(1, 4));
+
+        df = dataFrame.aggregate(null, IAggregate.count(), IAggregate.max("COL9").as("top"));
+        assertEquals(1, df.nrows());
+        assertEquals(5L, df.get(0, 0));
+        assertEquals(4.0, df.get(0, 1));
+
+        df = dataFrame.aggregate(Arrays.asList("COL3"));
+        assertArrayEquals(new String[]{"COL3"}, df.names());
+        assertEquals(2, df.nrows());
+
+        assertThrows(IllegalArgumentException.class, () -> dataFrame.aggregate(null));
+        assertThrows(IllegalArgumentException.class, () -> dataFrame.aggregate(null, IAggregate.sum("COL2")));
+        assertThrows(IllegalArgumentException.class, () -> dataFrame.aggregate(Arrays.asList("missing")));
+    }
+
+    /**
+     * Test the {@link DataFrame#getSummary(int)} method.
+     */
+    @Test
+    void testColumnSummary() {
+        Summary summary = dataFrame.getSummary(0);
+        assertArrayEquals(new String[]{"column", "type", "nulls", "min", "max", "mean", "distinct"}, summary.names());
+        assertEquals(13, summary.nrows());
+        assertEquals("COL1", summary.get(0, 0));
+        assertEquals(0L, summary.get(0, 2));
+        assertEquals("0", summary.get(0, 3));
+        assertEquals("4", summary.get(0, 4));
+        assertEquals(2.0, (Double) summary.get(0, 5), 1e-9);
+        assertEquals(5L, summary.get(0, 6));
+        assertEquals("COL2", summary.get(1, 0));
+        assertEquals(1L, summary.get(1, 2));
+        assertEquals("val0", summary.get(1, 3));
+        assertEquals("val4", summary.get(1, 4));
+        assertNull(summary.get(1, 5));
+        assertEquals(4L, summary.get(1, 6));
+        assertEquals(2L, summary.get(2, 6));
+
+        summary = dataFrame.getSummary(2);
+        assertEquals("histogram", summary.names()[7]);
+        assertEquals("[2, 3]", summary.get(0, 7));
+        assertEquals("[2, 3]", summary.get(7, 7));
+        assertNull(summary.get(1, 7));
+        assertNotNull(summary.asType(Ascii.class));
+
+        assertThrows(IllegalArgumentException.class, () -> dataFrame.getSummary(-1));
+    }
+
+    /**
+     * Test the {@link DataFrame#sample(double)} and {@link DataFrame#sample(int, long)} methods.
+     */
+    @Test
+    void testSample() {
+        assertEquals(5, dataFrame.sample(1.0).nrows());
+        assertTrue(dataFrame.sample(0.5).nrows() <= 5);
+
+        DataFrame df = dataFrame.sample(3, 42);
+        assertEquals(3, df.nrows());
+        assertArrayEquals(dataFrame.names(), df.names());
+        DataFrame other = dataFrame.sample(3, 42);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(df.get(i, 0), other.get(i, 0));
+        }
+        assertTrue((Integer) df.get(0, 0) < (Integer) df.get(1, 0));
+        assertEquals(5, dataFrame.sample(10, 42).nrows());
+        assertEquals(0, dataFrame.sample(0, 42).nrows());
+
+        assertThrows(IllegalArgumentException.class, () -> dataFrame.sample(0));
+        assertThrows(IllegalArgumentException.class, () -> dataFrame.sample(-1, 0));
+    }
+
     /**
      * Tests the {@link DataFrame#getColumnNames()}, {@link DataFrame#getColumnNamesTypes()},
      * {@link DataFrame#getColumnType(String)}, {@link DataFrame#getColumnCount()}
@@ -418,6 +524,13 @@ public class DataFrameTest {
         assertEquals(-1, dataFrame.getRow());
 
         assertEquals(2, dataFrame.getUniqueValues("COL3").size());
+        assertEquals(1, dataFrame.getUniqueValues("COL3", 1).size());
+        assertEquals(2, dataFrame.approxDistinct("COL3"));
+        assertEquals(4, dataFrame.approxDistinct("COL2"));
+        Map<Object, Long> top = dataFrame.topK("COL3", 1);
+        assertEquals(1, top.size());
+        assertEquals(3L, top.get(true));
+        assertEquals(4, dataFrame.topK("COL2", 10).size());
         assertEquals(13, dataFrame.getFirstRow().size());
     }
 
@@ -512,6 +625,38 @@ public class DataFrameTest {
         assertNotNull(df.schema());
     }
 
+    /**
+     * Tests the {@link DataFrame#save(IJdbcDataSource, String, boolean, int, ITable.ClusterBy)} method.
+     */
+    @Test
+    void testSaveClusterBy() throws Exception {
+        H2GIS h2GIS = RANDOM_DS();
+        h2GIS.execute("DROP TABLE IF EXISTS scattered;" +
+                "CREATE TABLE scattered(id int, the_geom GEOMETRY(POINT));" +
+                "INSERT INTO scattered SELECT x, ST_MakePoint(MOD(x * 37, 100), MOD(x * 61, 100)) " +
+                "FROM SYSTEM_RANGE(1, 100);");
+        DataFrame df = DataFrame.of(h2GIS.getTable("scattered"));
+        assertEquals("DF_NONE", df.save(h2GIS, "df_none", true, 10, ITable.ClusterBy.NONE));
+        List<Object> ids = h2GIS.rows("SELECT id FROM df_none").stream().map(row -> row.get("ID"))
+                .collect(Collectors.toList());
+        assertEquals(IntStream.rangeClosed(1, 100).boxed().collect(Collectors.toList()), ids);
+
+        assertEquals("DF_CLUSTERED", df.save(h2GIS, "df_clustered", true, 10, ITable.ClusterBy.SPATIAL));
+        WKTReader reader = new WKTReader();
+        List<Geometry> geometries = new ArrayList<>();
+        for (GroovyRowResult row : h2GIS.rows("SELECT the_geom FROM df_clustered")) {
+            geometries.add(reader.read(row.get("THE_GEOM").toString()));
+        }
+        assertEquals(100, geometries.size());
+        Envelope extent = new Envelope();
+        geometries.forEach(geometry -> extent.expandToInclude(geometry.getEnvelopeInternal()));
+        for (int i = 1; i < geometries.size(); i++) {
+            assertTrue(ITable.ClusterBy.SPATIAL.getKey(extent, geometries.get(i - 1)) <=
+                    ITable.ClusterBy.SPATIAL.getKey(extent, geometries.get(i)));
+        }
+        h2GIS.execute("DROP TABLE IF EXISTS scattered, df_none, df_clustered");
+    }
+
     /**
      * Tests {@link DataFrame#reload()} method.
      */
@@ -51,6 +51,7 @@ import org.orbisgis.data.api.dataset.IJdbcSpatialTable;
 import org.orbisgis.data.api.dataset.IJdbcTable;
 import org.orbisgis.data.api.dataset.ISpatialTable;
 import org.orbisgis.data.api.dataset.IStreamResultSet;
+import org.orbisgis.data.jdbc.CachedTable;
 import org.orbisgis.data.jdbc.JdbcDataSource;
 import org.orbisgis.data.jdbc.JdbcSpatialTable;
 import org.orbisgis.data.jdbc.JdbcTable;
@@ -228,6 +229,7 @@ public class H2GIS extends JdbcDataSource {
         } else {
             query = nameOrQuery;
             location = null;
+            getSpatialIndexAdvisor().analyze(query);
         }
         try {
             Connection con = getConnection();
@@ -278,6 +280,10 @@ public class H2GIS extends JdbcDataSource {
 
     @Override
     public JdbcTable<? extends IStreamResultSet> getTable(String tableName) throws Exception {
+        CachedTable cached = getCachedTable(tableName, null);
+        if (cached != null) {
+            return cached;
+        }
         Connection connection = getConnection();
         Statement statement;
         try {
@@ -315,6 +321,10 @@ public class H2GIS extends JdbcDataSource {
         if (params == null || params.isEmpty()) {
             return getTable(query);
         }
+        CachedTable cached = getCachedTable(query, params);
+        if (cached != null) {
+            return cached;
+        }
         PreparedStatement prepStatement;
         try {
             Connection connection = getConnection();
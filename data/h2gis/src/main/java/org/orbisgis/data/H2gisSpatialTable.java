@@ -140,9 +140,20 @@ public class H2gisSpatialTable extends JdbcSpatialTable {
             }
             String query = "SELECT " + String.join(",", fieldNames) + " FROM " +
                     (getTableLocation() == null ? getBaseQuery() + " as foo " : getTableLocation().toString(getDbType()));
-            return new H2gisSpatialTable(null, query, getStatement(), getParams(), getJdbcDataSource());
+            return new H2gisSpatialTable(null, query, getStatement(query), getParams(), getJdbcDataSource());
         } catch (SQLException e) {
             throw new SQLException("Cannot reproject the table '" + getLocation() + "' in the SRID '" + srid + "'.\n", e);
         }
     }
+
+    @Override
+    public ISpatialTable lod(double tolerance) throws Exception {
+        String columns = getLodColumns(tolerance);
+        if (columns == null) {
+            //Client side fallback when the database cannot simplify the geometries
+            return (ISpatialTable) getJdbcDataSource().getSpatialTable(createLodTable(tolerance));
+        }
+        String query = "(" + getSelectQuery(columns) + ")";
+        return new H2gisSpatialTable(null, query, getStatement(query), getParams(), getJdbcDataSource());
+    }
 }
@@ -88,7 +88,8 @@ public class H2gisTable extends JdbcTable<StreamResultSet> {
 
     @Override
     public Stream<StreamResultSet> stream() throws Exception{
-        Spliterator<StreamResultSet> spliterator = new ResultSetSpliterator<StreamResultSet>(this.getRowCount(), new StreamResultSet(getResultSet()));
+        Spliterator<StreamResultSet> spliterator = new ResultSetSpliterator<StreamResultSet>(this.getRowCount(), new StreamResultSet(getResultSet()),
+                getResultSetProperties().getCancellationToken());
         return StreamSupport.stream(spliterator, true);
     }
 
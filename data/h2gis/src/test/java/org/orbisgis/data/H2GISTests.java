@@ -38,18 +38,26 @@ package org.orbisgis.data;
 
 import groovy.lang.Closure;
 import org.apache.commons.dbcp.BasicDataSource;
+import org.codehaus.groovy.runtime.GStringImpl;
 import org.h2gis.functions.factory.H2GISDBFactory;
+import org.h2gis.utilities.TableLocation;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.locationtech.jts.geom.Geometry;
 import org.orbisgis.data.api.dataset.IJdbcTable;
 import org.orbisgis.data.api.dataset.ISpatialTable;
 import org.orbisgis.data.api.dataset.ITable;
+import org.orbisgis.data.api.dsl.ICancellationToken;
+import org.orbisgis.data.jdbc.CachedTable;
+import org.orbisgis.data.jdbc.CancellationToken;
+import org.orbisgis.data.jdbc.JdbcTable;
+import org.orbisgis.data.jdbc.SlowQueryLog;
 
 import java.io.File;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -429,4 +437,256 @@ public class H2GISTests {
         assertEquals(1, sp.getRowCount());
         assertTrue(((Geometry)sp.firstRow().get("THE_GEOM")).getArea()>0);
     }
+
+    @Test
+    void testQueryCache() throws Exception {
+        H2GIS h2GIS = H2GIS.open("./target/queryCache");
+        h2GIS.execute("DROP TABLE IF EXISTS cached, other; CREATE TABLE cached (id int, the_geom geometry(point));" +
+                "INSERT INTO cached VALUES (1, 'POINT(10 10)'::GEOMETRY), (2, 'POINT(1 1)'::GEOMETRY);" +
+                "CREATE TABLE other (id int); INSERT INTO other VALUES (1);");
+        assertNull(h2GIS.getQueryCache());
+        assertFalse(h2GIS.getTable("(SELECT * FROM cached)") instanceof CachedTable);
+
+        h2GIS.enableQueryCache(2, 2, 0);
+        ITable<?, ?> table = h2GIS.getTable("(SELECT id, ST_AsText(the_geom) AS wkt FROM cached WHERE id > 0)");
+        assertTrue(table instanceof CachedTable);
+        assertEquals(2, table.getRowCount());
+        assertEquals(Arrays.asList("ID", "WKT"), new ArrayList<>(table.getColumnNames()));
+        assertEquals(1, h2GIS.getQueryCache().size());
+        //The cached rows can be replayed
+        List<Object> ids = new ArrayList<>();
+        table.eachRow(new Closure<Object>(null) {
+            @Override
+            public Object call(Object argument) {
+                try {
+                    ids.add(((ResultSet) argument).getObject("ID"));
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+                return null;
+            }
+        });
+        assertEquals(Arrays.asList(1, 2), ids);
+        table = h2GIS.getTable("(SELECT id,   ST_AsText(the_geom) AS wkt FROM cached\n WHERE id > 0)");
+        assertEquals(2, ((IJdbcTable<?>) table).stream().count());
+        assertEquals(2, ((IJdbcTable<?>) table).stream().count());
+        assertEquals("POINT (10 10)", table.firstRow().get("WKT").toString());
+        assertEquals(1, h2GIS.getQueryCache().size());
+        assertEquals(2, h2GIS.rows("SELECT id FROM cached WHERE id > 0").size());
+        assertEquals(2, h2GIS.getQueryCache().size());
+        assertEquals(2, h2GIS.rows("SELECT id FROM cached WHERE id > 0").size());
+        assertEquals(2, h2GIS.getQueryCache().size());
+        assertEquals(1, h2GIS.rows("SELECT id FROM cached WHERE id > ?", Collections.singletonList(1)).size());
+        assertTrue(h2GIS.getTable("other").filter("WHERE id = 1").getTable() instanceof CachedTable);
+        assertEquals(2, h2GIS.getQueryCache().size());
+
+        //The results with a geometry column are not cached and stay spatial
+        h2GIS.getQueryCache().clear();
+        assertFalse(h2GIS.getTable("(SELECT * FROM cached WHERE id > 0)") instanceof CachedTable);
+        ISpatialTable<?> spatial = h2GIS.getSpatialTable("(SELECT * FROM cached WHERE id > 0)");
+        assertEquals(2, spatial.getRowCount());
+        assertEquals(Collections.singletonList("THE_GEOM"), spatial.getGeometricColumns());
+        assertNotNull(h2GIS.getTable("cached").filter("WHERE id = 2").getSpatialTable().getExtent());
+        assertNotNull(h2GIS.getTable("(SELECT * FROM cached)").asType(ISpatialTable.class));
+        assertEquals(2, h2GIS.rows("SELECT * FROM cached").size());
+        assertEquals(0, h2GIS.getQueryCache().size());
+
+        //Results bigger than the row limit are not cached
+        h2GIS.getQueryCache().clear();
+        assertFalse(h2GIS.getTable("(SELECT c1.id FROM cached c1, cached c2)") instanceof CachedTable);
+        assertEquals(0, h2GIS.getQueryCache().size());
+
+        //Modifying a table drops the cached results of its queries
+        h2GIS.rows("SELECT id FROM cached");
+        h2GIS.rows("SELECT * FROM other");
+        h2GIS.execute("INSERT INTO cached VALUES (3, 'POINT(2 2)'::GEOMETRY)");
+        assertEquals(1, h2GIS.getQueryCache().size());
+        assertEquals(3, h2GIS.rows("SELECT id FROM cached").size());
+        h2GIS.invalidateCaches("other");
+        assertEquals(0, h2GIS.getQueryCache().size());
+
+        h2GIS.enableQueryCache(10, 100, 1);
+        h2GIS.rows("SELECT * FROM other");
+        Thread.sleep(10);
+        assertNull(h2GIS.getQueryCache().get("SELECT * FROM other"));
+        assertEquals(0, h2GIS.getQueryCache().size());
+
+        //The queries whose result is not cached are not executed again until one of their tables is modified
+        h2GIS.enableQueryCache(10, 1, 0);
+        h2GIS.execute("INSERT INTO other VALUES (2)");
+        assertFalse(h2GIS.getTable("(SELECT id FROM other)") instanceof CachedTable);
+        h2GIS.getConnection().createStatement().execute("DELETE FROM other WHERE id = 2");
+        assertFalse(h2GIS.getTable("(SELECT id FROM other)") instanceof CachedTable);
+        h2GIS.invalidateCaches("other");
+        assertTrue(h2GIS.getTable("(SELECT id FROM other)") instanceof CachedTable);
+
+        //The cached results are kept within the size in bytes of the cache
+        h2GIS.enableQueryCache(10, 100, 1000, 0);
+        assertTrue(h2GIS.getTable("(SELECT id FROM cached)") instanceof CachedTable);
+        long weight = h2GIS.getQueryCache().getWeight();
+        assertTrue(weight > 0 && weight <= 1000);
+        assertFalse(h2GIS.getTable("(SELECT REPEAT('a', 1000) AS text FROM cached)") instanceof CachedTable);
+        assertEquals(1, h2GIS.getQueryCache().size());
+        assertEquals(weight, h2GIS.getQueryCache().getWeight());
+        for (int i = 0; i < 20; i++) {
+            h2GIS.rows("SELECT id + " + i + " AS id FROM cached");
+        }
+        assertTrue(h2GIS.getQueryCache().getWeight() <= 1000);
+        assertTrue(h2GIS.getQueryCache().size() < 10);
+        h2GIS.getQueryCache().clear();
+        assertEquals(0, h2GIS.getQueryCache().getWeight());
+
+        h2GIS.disableQueryCache();
+        assertFalse(h2GIS.getTable("(SELECT * FROM cached)") instanceof CachedTable);
+        assertThrows(IllegalArgumentException.class, () -> h2GIS.enableQueryCache(0, 10, 0));
+        assertThrows(IllegalArgumentException.class, () -> h2GIS.enableQueryCache(10, 10, 0, 0));
+        h2GIS.execute("DROP TABLE cached, other");
+    }
+
+    @Test
+    void testSlowQueryLog() throws Exception {
+        BasicDataSource ds = new BasicDataSource();
+        ds.setDriverClassName("org.h2.Driver");
+        ds.setUrl("jdbc:h2:" + new File("./target/slowQueryLog").getAbsolutePath());
+        ds.setUsername("sa");
+        ds.setPassword("");
+        //Each statement of the data source borrows its own connection
+        ds.setMaxActive(-1);
+        H2GIS h2GIS = H2GIS.open(ds);
+        h2GIS.execute("DROP TABLE IF EXISTS slow; CREATE TABLE slow (id int, name varchar);" +
+                "INSERT INTO slow VALUES (1, 'a'), (2, 'b'), (3, 'c');");
+        SlowQueryLog log = h2GIS.getSlowQueryLog();
+        assertFalse(log.isEnabled());
+        h2GIS.rows("SELECT * FROM slow");
+        assertTrue(log.getEntries().isEmpty());
+
+        log.setEnabled(true);
+        log.setThreshold(0);
+        log.setExplain(SlowQueryLog.Explain.PLAN);
+        assertEquals(3, h2GIS.rows("SELECT * FROM slow WHERE id > ?", Collections.singletonList(0)).size());
+        SlowQueryLog.Entry entry = log.getEntries().get(0);
+        assertEquals("SELECT * FROM slow WHERE id > ?", entry.getQuery());
+        assertEquals(Collections.singletonList(0), entry.getParameters());
+        assertEquals(3, entry.getRowCount());
+        assertTrue(entry.getDuration() >= 0);
+        String plan = entry.getPlan().get(10, TimeUnit.SECONDS);
+        assertNotNull(plan);
+        assertTrue(plan.toUpperCase().contains("SLOW"));
+
+        log.clear();
+        h2GIS.execute("UPDATE slow SET name = 'd' WHERE id = 1");
+        h2GIS.firstRow("SELECT * FROM slow");
+        assertEquals(1, h2GIS.getTable("(SELECT * FROM slow WHERE id = ?)", Collections.singletonList(2))
+                .stream().count());
+        h2GIS.executeBatch(new String[]{"INSERT INTO slow VALUES (4, 'e')", "INSERT INTO slow VALUES (5, 'f')"});
+        List<SlowQueryLog.Entry> entries = log.getEntries();
+        assertEquals(4, entries.size());
+        assertEquals(1, entries.get(0).getRowCount());
+        assertEquals(1, entries.get(1).getRowCount());
+        assertEquals("(SELECT * FROM slow WHERE id = ?)", entries.get(2).getQuery());
+        assertEquals(Collections.singletonList(2), entries.get(2).getParameters());
+        assertEquals(2, entries.get(3).getRowCount());
+
+        //The GString statements are logged with their bind parameters
+        log.clear();
+        assertEquals(1, h2GIS.rows(new GStringImpl(new Object[]{2}, new String[]{"SELECT * FROM slow WHERE id = ", ""}))
+                .size());
+        assertEquals("b", h2GIS.firstRow(new GStringImpl(new Object[]{2},
+                new String[]{"SELECT name FROM slow WHERE id = ", ""})).get("NAME"));
+        entries = log.getEntries();
+        assertEquals(2, entries.size());
+        assertEquals("SELECT * FROM slow WHERE id = ?", entries.get(0).getQuery());
+        assertEquals(Collections.singletonList(2), entries.get(0).getParameters());
+        assertEquals("SELECT name FROM slow WHERE id = ?", entries.get(1).getQuery());
+        assertEquals(Collections.singletonList(2), entries.get(1).getParameters());
+
+        //H2 does not enforce the read-only transactions, so the query with side effects is not executed again
+        log.clear();
+        log.setExplain(SlowQueryLog.Explain.ANALYZE);
+        h2GIS.execute("DROP SEQUENCE IF EXISTS slow_seq; CREATE SEQUENCE slow_seq START WITH 1");
+        log.clear();
+        assertEquals(1L, ((Number) h2GIS.firstRow("SELECT NEXT VALUE FOR slow_seq AS v").get("V")).longValue());
+        assertNotNull(log.getEntries().get(0).getPlan().get(10, TimeUnit.SECONDS));
+        assertEquals(2L, ((Number) h2GIS.firstRow("SELECT NEXT VALUE FOR slow_seq AS v").get("V")).longValue());
+        log.setExplain(SlowQueryLog.Explain.NONE);
+        h2GIS.execute("DROP SEQUENCE slow_seq");
+
+        //Only the last entries are kept
+        log.setMaxEntries(2);
+        assertEquals(2, log.getEntries().size());
+        log.setThreshold(60000);
+        log.clear();
+        h2GIS.rows("SELECT * FROM slow");
+        assertTrue(log.getEntries().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> log.setThreshold(-1));
+
+        log.setEnabled(false);
+        h2GIS.execute("DROP TABLE slow");
+    }
+
+    @Test
+    void testCancellation() throws Exception {
+        H2GIS h2GIS = H2GIS.open("./target/cancellation");
+        h2GIS.execute("DROP TABLE IF EXISTS source, copy; CREATE TABLE source (id int, the_geom geometry(point));" +
+                "INSERT INTO source SELECT X, ST_MakePoint(X, X) FROM SYSTEM_RANGE(1, 350);");
+        String longQuery = "SELECT SUM(RAND() * A.X) FROM SYSTEM_RANGE(1, 100000) A, SYSTEM_RANGE(1, 100000) B";
+
+        //A cancelled token stops the statements before they are executed
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        SQLException e = assertThrows(SQLException.class, () -> h2GIS.cancellation(token).execute("SELECT 1"));
+        assertEquals(ICancellationToken.CANCELLED_STATE, e.getSQLState());
+        assertThrows(SQLException.class, () -> h2GIS.cancellation(token).getTable("source"));
+
+        //Cancel a running statement from another thread
+        CancellationToken running = new CancellationToken();
+        CompletableFuture<Boolean> query = CompletableFuture.supplyAsync(() -> {
+            try {
+                return h2GIS.cancellation(running).execute(longQuery);
+            } catch (SQLException ex) {
+                throw new CompletionException(ex);
+            }
+        });
+        Thread.sleep(300);
+        running.cancel();
+        ExecutionException ee = assertThrows(ExecutionException.class, () -> query.get(30, TimeUnit.SECONDS));
+        assertEquals(ICancellationToken.CANCELLED_STATE, ((SQLException) ee.getCause()).getSQLState());
+
+        //The deadline is applied as a query timeout
+        long start = System.currentTimeMillis();
+        assertThrows(SQLException.class, () -> h2GIS.deadline(500).execute(longQuery));
+        assertTrue(System.currentTimeMillis() - start < 30000);
+
+        //The token is propagated through the DSL and checked while iterating
+        CancellationToken iteration = new CancellationToken();
+        ITable<?, ?> table = h2GIS.cancellation(iteration).getTable("source").filter("WHERE id > 10").getTable();
+        assertSame(iteration, ((JdbcTable<?>) table).getResultSetProperties().getCancellationToken());
+        List<Object> ids = new ArrayList<>();
+        assertThrows(CancellationException.class, () -> {
+            for (Object row : table) {
+                ids.add(((ResultSet) row).getObject("ID"));
+                if (ids.size() == 150) {
+                    iteration.cancel();
+                }
+            }
+        });
+        assertEquals(200, ids.size());
+        CancellationToken child = new CancellationToken(iteration, 1000);
+        assertTrue(child.isCancelled());
+        assertTrue(child.getDeadline() <= System.currentTimeMillis() + 1000);
+
+        //Cancellable transfers
+        ITable<?, ?> source = h2GIS.cancellation(new CancellationToken()).getTable("source");
+        assertEquals("COPY", TableLocation.parse(source.save(h2GIS, "copy", true, 100)).getTable());
+        assertEquals(350, h2GIS.getTable("copy").getRowCount());
+        assertEquals("POINT (7 7)", h2GIS.firstRow("SELECT the_geom FROM copy WHERE id = 7").get("THE_GEOM").toString());
+        h2GIS.execute("DROP TABLE copy");
+        CancellationToken transfer = new CancellationToken();
+        source = h2GIS.cancellation(transfer).getTable("source");
+        transfer.cancel();
+        ITable<?, ?> cancelled = source;
+        assertThrows(SQLException.class, () -> cancelled.save(h2GIS, "copy", true, 100));
+        assertFalse(h2GIS.hasTable("copy"));
+        h2GIS.execute("DROP TABLE source");
+    }
 }
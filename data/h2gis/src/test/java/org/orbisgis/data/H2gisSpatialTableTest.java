@@ -40,17 +40,54 @@ package org.orbisgis.data;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.io.WKTReader;
+import org.orbisgis.data.api.dataset.IGeometryProfile;
 import org.orbisgis.data.api.dataset.IJdbcSpatialTable;
 import org.orbisgis.data.api.dataset.IJdbcTable;
+import org.orbisgis.data.api.dataset.IRaster;
+import org.orbisgis.data.api.dataset.ISpatialGrid;
+import org.orbisgis.data.api.dataset.ISpatialIndex;
 import org.orbisgis.data.api.dataset.ISpatialTable;
 import org.orbisgis.data.api.dataset.ITable;
+import org.orbisgis.data.api.dataset.IValidationReport;
 import org.orbisgis.data.jdbc.JdbcSpatialTable;
+import org.orbisgis.data.jdbc.SpatialIndexAdvisor;
+import org.orbisgis.data.jdbc.raster.JdbcRaster;
+import org.orbisgis.data.jdbc.raster.RasterTileCache;
+import org.orbisgis.data.jdbc.spatial.LevelOfDetail;
+import org.orbisgis.data.jdbc.spatial.Reprojection;
+import org.orbisgis.data.jdbc.spatial.SpatialGrid;
+import org.orbisgis.data.jdbc.spatial.VectorTiles;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -227,9 +264,119 @@ public class H2gisSpatialTableTest {
     @Test
     public void testGetRaster() throws Exception {
         ISpatialTable table = h2GIS.getSpatialTable(TABLE_NAME);
-        assertThrows(UnsupportedOperationException.class, table::getRaster);
-        assertThrows(UnsupportedOperationException.class, () -> table.getRaster(0));
-        assertThrows(UnsupportedOperationException.class, () -> table.getRaster("col"));
+        assertThrows(SQLException.class, table::getRaster);
+        assertThrows(SQLException.class, () -> table.getRaster(0));
+        assertThrows(SQLException.class, () -> table.getRaster("col"));
+    }
+
+    /**
+     * Test the reading of a WKB raster stored in binary and blob columns with the {@link JdbcSpatialTable#getRaster(String)}
+     * method.
+     */
+    @Test
+    public void testReadRaster() throws Exception {
+        int width = 300;
+        int height = 200;
+        ByteBuffer wkb = ByteBuffer.allocate(61 + 3 + width * height * 2).order(ByteOrder.LITTLE_ENDIAN);
+        wkb.put((byte) 1).putShort((short) 0).putShort((short) 1);
+        wkb.putDouble(1).putDouble(-1).putDouble(10).putDouble(20).putDouble(0).putDouble(0);
+        wkb.putInt(4326).putShort((short) width).putShort((short) height);
+        //16BSI band with a no data value
+        wkb.put((byte) (0x40 | 5)).putShort((short) -1);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                wkb.putShort((short) (x + y * 100));
+            }
+        }
+        h2GIS.execute("DROP TABLE IF EXISTS rasters; CREATE TABLE rasters(THE_GEOM GEOMETRY, RAST VARBINARY(200000), RAST_BLOB BLOB)");
+        try (PreparedStatement ps = h2GIS.getConnection().prepareStatement("INSERT INTO rasters VALUES ('POINT(0 0)', ?, ?)")) {
+            ps.setBytes(1, wkb.array());
+            ps.setBytes(2, wkb.array());
+            ps.execute();
+        }
+        RasterTileCache.getDefault().clear();
+        IJdbcSpatialTable<?> table = h2GIS.getSpatialTable("rasters");
+        assertTrue(table.next());
+        List<IRaster> rasters = List.of(table.getRaster("RAST"), table.getRaster("RAST_BLOB"));
+        //The rasters are still readable once the cursor has moved
+        assertFalse(table.next());
+        for (IRaster raster : rasters) {
+            assertEquals(width, raster.getMetadata().getWidth());
+            assertEquals(height, raster.getMetadata().getHeight());
+            assertEquals(1, raster.getMetadata().getBandCount());
+            assertEquals(10, raster.getMetadata().getUpperLeftX());
+            assertEquals(-1, raster.getMetadata().getScaleY());
+            assertEquals(4326, raster.getMetadata().getSrid());
+            assertEquals("16BSI", raster.getMetadata().getPixelType(0));
+            assertEquals(-1, raster.getMetadata().getNoDataValue(0));
+            assertEquals(2, raster.getTileCountX());
+            assertEquals(1, raster.getTileCountY());
+
+            assertEquals(7 + 150 * 100, raster.getValue(0, 7, 150));
+            double[] window = raster.getWindow(0, 250, 10, 20, 5);
+            for (int y = 0; y < 5; y++) {
+                for (int x = 0; x < 20; x++) {
+                    assertEquals(250 + x + (10 + y) * 100, window[y * 20 + x]);
+                }
+            }
+            ByteBuffer tile = raster.getTile(0, 1, 0);
+            assertTrue(tile.isDirect());
+            assertEquals((width - 256) * height * 2, tile.remaining());
+            assertEquals(256 + 3 * 100, tile.getShort(2 * (3 * (width - 256))));
+            assertThrows(IllegalArgumentException.class, () -> raster.getTile(0, 2, 0));
+        }
+        assertEquals(4, RasterTileCache.getDefault().getTileCount());
+        RasterTileCache.getDefault().setBudget(256 * 200 * 2);
+        assertEquals(1, RasterTileCache.getDefault().getTileCount());
+        RasterTileCache.getDefault().setBudget(RasterTileCache.DEFAULT_BUDGET);
+    }
+
+    /**
+     * Test the lazy reading tile by tile of a WKB raster larger than the tile cache with the
+     * {@link JdbcRaster#read(Connection, TableLocation, String, String, Object, int, int, RasterTileCache)} method.
+     */
+    @Test
+    public void testReadRasterByTile() throws Exception {
+        int width = 600;
+        int height = 400;
+        ByteBuffer wkb = ByteBuffer.allocate(61 + 3 + width * height * 2).order(ByteOrder.BIG_ENDIAN);
+        wkb.put((byte) 0).putShort((short) 0).putShort((short) 1);
+        wkb.putDouble(1).putDouble(-1).putDouble(10).putDouble(20).putDouble(0).putDouble(0);
+        wkb.putInt(2154).putShort((short) width).putShort((short) height);
+        //16BUI band without no data value
+        wkb.put((byte) 6).putShort((short) 0);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                wkb.putShort((short) (x + y * 100));
+            }
+        }
+        h2GIS.execute("DROP TABLE IF EXISTS big_rasters; CREATE TABLE big_rasters(ID INT PRIMARY KEY, RAST VARBINARY(1000000))");
+        try (PreparedStatement ps = h2GIS.getConnection().prepareStatement("INSERT INTO big_rasters VALUES (1, ?)")) {
+            ps.setBytes(1, wkb.array());
+            ps.execute();
+        }
+        RasterTileCache cache = new RasterTileCache(256 * 256 * 2);
+        TableLocation location = TableLocation.parse("BIG_RASTERS", DBTypes.H2GIS);
+        JdbcRaster raster = JdbcRaster.read(h2GIS.getConnection(), location, "RAST", "ID", 1, 256, 256, cache);
+        assertTrue(wkb.capacity() > cache.getBudget());
+        assertEquals(width, raster.getMetadata().getWidth());
+        assertEquals(height, raster.getMetadata().getHeight());
+        assertEquals(2154, raster.getMetadata().getSrid());
+        assertEquals("16BUI", raster.getMetadata().getPixelType(0));
+        assertNull(raster.getMetadata().getNoDataValue(0));
+        assertEquals(3, raster.getTileCountX());
+        assertEquals(2, raster.getTileCountY());
+        assertEquals(0, cache.getTileCount());
+
+        ByteBuffer tile = raster.getTile(0, 2, 1);
+        assertEquals((width - 512) * (height - 256) * 2, tile.remaining());
+        assertEquals(512 + 3 + (256 + 2) * 100, tile.getShort(2 * (2 * (width - 512) + 3)) & 0xFFFF);
+        assertEquals(1, cache.getTileCount());
+        assertEquals(300 + 10 * 100, raster.getValue(0, 300, 10));
+        assertEquals(1, cache.getTileCount());
+        assertTrue(cache.getSize() <= cache.getBudget());
+
+        assertNull(JdbcRaster.read(h2GIS.getConnection(), location, "RAST", "ID", 2));
     }
 
     /**
@@ -276,4 +423,812 @@ public class H2gisSpatialTableTest {
         table.setSrid(2121);
         assertEquals(2121, table.getSrid());
     }
+
+    /**
+     * Test the {@link JdbcSpatialTable#pipelinedStream(int, int, boolean)} method.
+     */
+    @Test
+    public void testPipelinedStream() throws Exception {
+        h2GIS.execute("DROP TABLE IF EXISTS pipeline; CREATE TABLE pipeline AS " +
+                "SELECT X AS ID, ST_SETSRID(ST_MAKEPOINT(X, X * 2), 4326) AS THE_GEOM FROM SYSTEM_RANGE(1, 2500)");
+        IJdbcSpatialTable<?> table = h2GIS.getSpatialTable("pipeline");
+
+        try (Stream<Map<String, Object>> stream = table.pipelinedStream(100, 4, true)) {
+            List<Map<String, Object>> rows = stream.collect(Collectors.toList());
+            assertEquals(2500, rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                assertEquals(i + 1L, ((Number) rows.get(i).get("ID")).longValue());
+                Geometry geom = (Geometry) rows.get(i).get("THE_GEOM");
+                assertEquals(new Coordinate(i + 1, (i + 1) * 2), geom.getCoordinate());
+                assertEquals(4326, geom.getSRID());
+            }
+        }
+
+        try (Stream<Map<String, Object>> stream = table.pipelinedStream(false)) {
+            assertEquals(2500, stream.map(row -> ((Number) row.get("ID")).longValue()).distinct().count());
+        }
+
+        //Early close of a partially consumed stream
+        try (Stream<Map<String, Object>> stream = table.pipelinedStream(10, 2, true)) {
+            assertEquals(5, stream.limit(5).count());
+        }
+
+        IJdbcSpatialTable<?> query = h2GIS.getSpatialTable("(SELECT * FROM pipeline WHERE ID < 10)");
+        try (Stream<Map<String, Object>> stream = query.pipelinedStream(true)) {
+            assertEquals(9, stream.filter(row -> row.get("THE_GEOM") instanceof Point).count());
+        }
+    }
+
+    /**
+     * Test the {@link JdbcSpatialTable#toSpatialIndex(String...)} method.
+     */
+    @Test
+    public void testToSpatialIndex() throws Exception {
+        h2GIS.execute("DROP TABLE IF EXISTS grid; CREATE TABLE grid AS SELECT X AS ID, " +
+                "ST_MAKEENVELOPE(MOD(X, 10), X / 10, MOD(X, 10) + 1, X / 10 + 1) AS THE_GEOM FROM SYSTEM_RANGE(0, 99)");
+        IJdbcSpatialTable<?> table = h2GIS.getSpatialTable("grid");
+        ISpatialIndex index = table.toSpatialIndex("ID");
+        assertEquals(100, index.size());
+        assertEquals("THE_GEOM", index.getGeometryColumn());
+        assertEquals(List.of("ID"), index.getColumns());
+
+        assertEquals(4, index.query(new Envelope(2.5, 3.5, 2.5, 3.5)).size());
+        assertEquals(0, index.query(new Envelope(20, 30, 20, 30)).size());
+
+        GeometryFactory factory = new GeometryFactory();
+        List<Map<String, Object>> rows = index.contains(factory.createPoint(new Coordinate(5.5, 7.5)));
+        assertEquals(1, rows.size());
+        assertEquals(75L, ((Number) rows.get(0).get("ID")).longValue());
+
+        rows = index.nearest(factory.createPoint(new Coordinate(-10.5, 0.5)), 3);
+        assertEquals(3, rows.size());
+        assertEquals(0L, ((Number) rows.get(0).get("ID")).longValue());
+        assertEquals(10L, ((Number) rows.get(1).get("ID")).longValue());
+
+        //The index is cached until the table is modified
+        assertSame(index, h2GIS.getSpatialTable("grid").toSpatialIndex("ID"));
+        assertNotSame(index, table.toSpatialIndex());
+        h2GIS.execute("INSERT INTO grid VALUES (100, ST_MAKEENVELOPE(20, 20, 21, 21))");
+        ISpatialIndex updated = table.toSpatialIndex("ID");
+        assertNotSame(index, updated);
+        assertEquals(101, updated.size());
+        assertEquals(1, updated.query(new Envelope(20, 30, 20, 30)).size());
+
+        ISpatialIndex queryIndex = h2GIS.getSpatialTable("(SELECT * FROM grid WHERE ID < 10)").toSpatialIndex();
+        assertEquals(10, queryIndex.size());
+        assertTrue(queryIndex.getColumns().isEmpty());
+
+        //The mixed case and reserved column names are quoted
+        h2GIS.execute("DROP TABLE IF EXISTS quoted; CREATE TABLE quoted AS SELECT X AS \"Value\", X AS \"ORDER\", " +
+                "ST_MAKEPOINT(X, X) AS \"The_Geom\" FROM SYSTEM_RANGE(1, 5)");
+        ISpatialIndex quoted = h2GIS.getSpatialTable("quoted").toSpatialIndex("value", "ORDER");
+        assertEquals(5, quoted.size());
+        assertEquals(List.of("Value", "ORDER"), quoted.getColumns());
+        assertEquals(3L, ((Number) quoted.query(new Envelope(2.5, 3.5, 2.5, 3.5)).get(0).get("Value")).longValue());
+        assertThrows(IllegalArgumentException.class, () -> h2GIS.getSpatialTable("quoted").toSpatialIndex("missing"));
+        h2GIS.execute("DROP TABLE quoted");
+    }
+
+    /**
+     * Test the {@link JdbcSpatialTable#spatialJoin(IJdbcSpatialTable, IJdbcSpatialTable.SpatialPredicate, int)}
+     * method.
+     */
+    @Test
+    public void testSpatialJoin() throws Exception {
+        h2GIS.execute("DROP TABLE IF EXISTS grid, points; CREATE TABLE grid AS SELECT X AS ID, " +
+                "ST_MAKEENVELOPE(MOD(X, 10), X / 10, MOD(X, 10) + 1, X / 10 + 1) AS THE_GEOM FROM SYSTEM_RANGE(0, 99);" +
+                "CREATE TABLE points AS SELECT X AS ID, ST_MAKEPOINT(MOD(X, 21) / 2.0, X / 21 / 2.0) AS THE_GEOM " +
+                "FROM SYSTEM_RANGE(0, 440)");
+        H2GIS other = H2GIS.open(BASE_DATABASE + "_join");
+        other.execute("DROP TABLE IF EXISTS points; CREATE TABLE points AS SELECT X AS ID, " +
+                "ST_MAKEPOINT(MOD(X, 21) / 2.0, X / 21 / 2.0) AS THE_GEOM FROM SYSTEM_RANGE(0, 440)");
+        IJdbcSpatialTable<?> grid = h2GIS.getSpatialTable("grid");
+        IJdbcSpatialTable<?> points = other.getSpatialTable("points");
+
+        long expected = ((Number) h2GIS.firstRow("SELECT COUNT(*) AS C FROM grid a, points b " +
+                "WHERE a.THE_GEOM && b.THE_GEOM AND ST_INTERSECTS(a.THE_GEOM, b.THE_GEOM)").get("C")).longValue();
+        try (Stream<Map<String, Object>> rows = grid.spatialJoin(points, IJdbcSpatialTable.SpatialPredicate.INTERSECTS, 10)) {
+            List<Map<String, Object>> list = rows.collect(Collectors.toList());
+            assertEquals(expected, list.size());
+            assertEquals(expected, list.stream().map(row -> row.get("ID") + "-" + row.get("ID_2")).distinct().count());
+            assertTrue(list.get(0).containsKey("THE_GEOM_2"));
+        }
+        expected = ((Number) h2GIS.firstRow("SELECT COUNT(*) AS C FROM grid a, points b " +
+                "WHERE a.THE_GEOM && b.THE_GEOM AND ST_CONTAINS(a.THE_GEOM, b.THE_GEOM)").get("C")).longValue();
+        try (Stream<Map<String, Object>> rows = grid.spatialJoin(points, IJdbcSpatialTable.SpatialPredicate.CONTAINS)) {
+            assertEquals(expected, rows.count());
+        }
+
+        String output = grid.spatialJoin(points, IJdbcSpatialTable.SpatialPredicate.CONTAINS, h2GIS, "grid_points", true);
+        IJdbcSpatialTable<?> saved = h2GIS.getSpatialTable(output);
+        assertEquals(expected, saved.getRowCount());
+        assertEquals(List.of("THE_GEOM", "THE_GEOM_2"), saved.getGeometricColumns());
+        other.close();
+
+        //Skewed rows split the partitions, the renamed right columns do not collide with the existing ones
+        h2GIS.execute("DROP TABLE IF EXISTS skewed; CREATE TABLE skewed AS SELECT X AS ID, X AS ID_2, " +
+                "ST_MAKEPOINT(CASE WHEN X < 400 THEN MOD(X, 20) / 100.0 ELSE MOD(X, 10) END, " +
+                "CASE WHEN X < 400 THEN X / 20 / 100.0 ELSE X / 10 - 40 END) AS THE_GEOM FROM SYSTEM_RANGE(0, 499)");
+        IJdbcSpatialTable<?> skewed = h2GIS.getSpatialTable("skewed");
+        expected = ((Number) h2GIS.firstRow("SELECT COUNT(*) AS C FROM grid a, skewed b " +
+                "WHERE a.THE_GEOM && b.THE_GEOM AND ST_INTERSECTS(a.THE_GEOM, b.THE_GEOM)").get("C")).longValue();
+        try (Stream<Map<String, Object>> rows = grid.spatialJoin(skewed, IJdbcSpatialTable.SpatialPredicate.INTERSECTS, 50)) {
+            List<Map<String, Object>> list = rows.collect(Collectors.toList());
+            assertEquals(expected, list.size());
+            assertEquals(List.of("ID", "THE_GEOM", "ID_3", "ID_2", "THE_GEOM_2"), new ArrayList<>(list.get(0).keySet()));
+            assertEquals(expected, list.stream().map(row -> row.get("ID") + "-" + row.get("ID_3")).distinct().count());
+        }
+
+        //Mixed case geometry columns are quoted in the partition filters
+        h2GIS.execute("DROP TABLE IF EXISTS \"mixedPoints\"; CREATE TABLE \"mixedPoints\" AS SELECT ID, " +
+                "THE_GEOM AS \"The_Geom\" FROM points");
+        expected = ((Number) h2GIS.firstRow("SELECT COUNT(*) AS C FROM grid a, points b " +
+                "WHERE a.THE_GEOM && b.THE_GEOM AND ST_INTERSECTS(a.THE_GEOM, b.THE_GEOM)").get("C")).longValue();
+        try (Stream<Map<String, Object>> rows = grid.spatialJoin(h2GIS.getSpatialTable("\"mixedPoints\""),
+                IJdbcSpatialTable.SpatialPredicate.INTERSECTS, 10)) {
+            assertEquals(expected, rows.count());
+        }
+
+        //Geometries with different SRIDs are not joined
+        h2GIS.execute("DROP TABLE IF EXISTS grid_4326, points_2154; " +
+                "CREATE TABLE grid_4326 AS SELECT ID, ST_SETSRID(THE_GEOM, 4326) AS THE_GEOM FROM grid;" +
+                "CREATE TABLE points_2154 AS SELECT ID, ST_SETSRID(THE_GEOM, 2154) AS THE_GEOM FROM points");
+        IJdbcSpatialTable<?> grid4326 = h2GIS.getSpatialTable("grid_4326");
+        IJdbcSpatialTable<?> points2154 = h2GIS.getSpatialTable("points_2154");
+        assertThrows(IllegalArgumentException.class,
+                () -> grid4326.spatialJoin(points2154, IJdbcSpatialTable.SpatialPredicate.INTERSECTS));
+    }
+
+    /**
+     * Test the {@link JdbcSpatialTable#reprojectedStream(int)} method.
+     */
+    @Test
+    public void testReprojectedStream() throws Exception {
+        h2GIS.execute("DROP TABLE IF EXISTS wgs84; CREATE TABLE wgs84 AS SELECT X AS ID, " +
+                "ST_SETSRID(ST_MAKEPOINT(-4 + X / 100.0, 47 + X / 200.0), 4326) AS THE_GEOM FROM SYSTEM_RANGE(1, 2500)");
+        List<Geometry> expected = h2GIS.rows("SELECT ST_TRANSFORM(THE_GEOM, 2154) AS THE_GEOM FROM wgs84 ORDER BY ID")
+                .stream().map(row -> (Geometry) row.get("THE_GEOM")).collect(Collectors.toList());
+        try (Stream<Map<String, Object>> stream = h2GIS.getSpatialTable("wgs84").reprojectedStream(2154)) {
+            List<Geometry> geometries = stream.map(row -> (Geometry) row.get("THE_GEOM")).collect(Collectors.toList());
+            assertEquals(expected.size(), geometries.size());
+            for (int i = 0; i < geometries.size(); i++) {
+                assertEquals(2154, geometries.get(i).getSRID());
+                assertEquals(0, expected.get(i).getCoordinate().distance(geometries.get(i).getCoordinate()), 1e-3);
+            }
+        }
+        assertSame(Reprojection.getCoordinateOperation(4326, 2154), Reprojection.getCoordinateOperation(4326, 2154));
+        Geometry point = new GeometryFactory().createPoint(new Coordinate(0, 0));
+        assertThrows(IllegalArgumentException.class, () -> Reprojection.reproject(point, 4326));
+    }
+
+    /**
+     * Test the {@link H2gisSpatialTable#lod(double)} and {@link JdbcSpatialTable#lodStream(double)} methods.
+     */
+    @Test
+    public void testLod() throws Exception {
+        h2GIS.execute("DROP TABLE IF EXISTS circles; CREATE TABLE circles AS SELECT X AS ID, " +
+                "ST_BUFFER(ST_MAKEPOINT(X * 100, 0), 40, 512) AS THE_GEOM FROM SYSTEM_RANGE(1, 10)");
+        IJdbcSpatialTable<?> table = h2GIS.getSpatialTable("circles");
+
+        ISpatialTable<?> lod = table.lod(5);
+        assertEquals(10, lod.getRowCount());
+        assertEquals(List.of("ID", "THE_GEOM"), new java.util.ArrayList<>(lod.getColumnNames()));
+        int points = 0;
+        while (lod.next()) {
+            Geometry geom = lod.getGeometry();
+            assertTrue(geom.isValid());
+            points += geom.getNumPoints();
+        }
+        assertTrue(points < 10 * 100);
+
+        List<Map<String, Object>> rows;
+        try (Stream<Map<String, Object>> stream = table.lodStream(5)) {
+            rows = stream.collect(Collectors.toList());
+        }
+        assertEquals(10, rows.size());
+        assertEquals(points, rows.stream().mapToInt(row -> ((Geometry) row.get("THE_GEOM")).getNumPoints()).sum());
+        //The cached rows are shared and cannot be modified
+        Map<String, Object> first = rows.get(0);
+        assertThrows(UnsupportedOperationException.class, () -> first.put("ID", 0));
+        try (Stream<Map<String, Object>> stream = table.lodStream(5)) {
+            assertSame(first.get("THE_GEOM"), stream.findFirst().get().get("THE_GEOM"));
+        }
+        //The coordinates are snapped to a grid of half the tolerance
+        ISpatialTable<?> coarse = table.lod(10);
+        while (coarse.next()) {
+            for (Coordinate coordinate : coarse.getGeometry().getCoordinates()) {
+                assertEquals(Math.rint(coordinate.x / 5) * 5, coordinate.x, 1e-6);
+                assertEquals(Math.rint(coordinate.y / 5) * 5, coordinate.y, 1e-6);
+            }
+        }
+        //Client side fallback when the database cannot simplify the geometries
+        IJdbcSpatialTable<?> noSql = new H2gisSpatialTable(TableLocation.parse("CIRCLES", DBTypes.H2GIS),
+                "SELECT * FROM CIRCLES", h2GIS.getConnection().createStatement(), null, h2GIS) {
+            @Override
+            protected String getLodColumns(double tolerance) {
+                return null;
+            }
+        };
+        ISpatialTable<?> fallback = noSql.lod(6);
+        assertEquals(10, fallback.getRowCount());
+        int fallbackPoints = 0;
+        while (fallback.next()) {
+            fallbackPoints += fallback.getGeometry().getNumPoints();
+        }
+        assertTrue(fallbackPoints < 10 * 100);
+        h2GIS.execute("DELETE FROM circles WHERE ID > 5");
+        try (Stream<Map<String, Object>> stream = table.lodStream(5)) {
+            assertEquals(5, stream.count());
+        }
+
+        Geometry circle = (Geometry) h2GIS.firstRow("SELECT THE_GEOM FROM circles WHERE ID = 1").get("THE_GEOM");
+        Geometry simplified = LevelOfDetail.simplify(circle, 5);
+        assertTrue(simplified.isValid());
+        assertTrue(simplified.getNumPoints() < circle.getNumPoints());
+        assertEquals(circle.getSRID(), simplified.getSRID());
+        assertEquals(0, circle.getArea() - simplified.getArea(), circle.getArea() / 5);
+    }
+
+    @Test
+    void testSpatialIndexAdvisor() throws Exception {
+        h2GIS.execute("DROP TABLE IF EXISTS advisor_a, advisor_b, advisor_c;" +
+                "CREATE TABLE advisor_a(id int, the_geom GEOMETRY(POINT));" +
+                "INSERT INTO advisor_a VALUES (1, 'POINT(0 0)'), (2, 'POINT(10 10)');" +
+                "CREATE TABLE advisor_b(id int, the_geom GEOMETRY(POLYGON));" +
+                "INSERT INTO advisor_b VALUES (1, 'POLYGON((-1 -1, 1 -1, 1 1, -1 1, -1 -1))');");
+        SpatialIndexAdvisor advisor = h2GIS.getSpatialIndexAdvisor();
+        assertFalse(advisor.isEnabled());
+        advisor.setEnabled(true);
+        advisor.reset();
+        advisor.setThreshold(2);
+        assertThrows(IllegalArgumentException.class, () -> advisor.setThreshold(0));
+
+        String query = "SELECT a.id FROM advisor_a AS a, advisor_b b WHERE ST_Intersects(a.the_geom, b.the_geom)";
+        assertEquals(1, h2GIS.rows(query).size());
+        assertTrue(advisor.getRecommendations().isEmpty());
+        assertEquals(1, h2GIS.getTable("(" + query + ")").getRowCount());
+        assertEquals(Arrays.asList("ADVISOR_A.THE_GEOM", "ADVISOR_B.THE_GEOM"), advisor.getRecommendations());
+        assertEquals(2, advisor.getFullScans().get("ADVISOR_A.THE_GEOM"));
+        assertFalse(h2GIS.isSpatialIndexed("advisor_a", "the_geom"));
+
+        h2GIS.getSpatialTable("advisor_b").filter("WHERE the_geom && 'POINT(0 0)'::GEOMETRY").getSpatialTable();
+        assertEquals(3, advisor.getFullScans().get("ADVISOR_B.THE_GEOM"));
+
+        h2GIS.createSpatialIndex("advisor_a", "the_geom");
+        assertEquals(Collections.singletonList("ADVISOR_B.THE_GEOM"), advisor.getRecommendations());
+        h2GIS.execute(query);
+        assertEquals(2, advisor.getFullScans().get("ADVISOR_A.THE_GEOM"));
+
+        advisor.reset();
+        advisor.setAutoCreate(true);
+        h2GIS.execute("CREATE TABLE advisor_c AS " + query);
+        assertFalse(h2GIS.isSpatialIndexed("advisor_b", "the_geom"));
+        h2GIS.execute("DROP TABLE IF EXISTS advisor_c; CREATE TABLE advisor_c AS " + query);
+        assertTrue(h2GIS.isSpatialIndexed("advisor_b", "the_geom"));
+        assertTrue(advisor.getRecommendations().isEmpty());
+
+        advisor.setEnabled(false);
+        advisor.reset();
+        h2GIS.rows("SELECT * FROM advisor_b b WHERE ST_Intersects(b.the_geom, 'POINT(0 0)')");
+        assertTrue(advisor.getFullScans().isEmpty());
+        advisor.setAutoCreate(false);
+        advisor.setThreshold(SpatialIndexAdvisor.DEFAULT_THRESHOLD);
+        h2GIS.execute("DROP TABLE IF EXISTS advisor_a, advisor_b, advisor_c");
+    }
+
+    @Test
+    void testSaveClusterBy() throws Exception {
+        h2GIS.execute("DROP TABLE IF EXISTS scattered, clustered, clustered_z;" +
+                "CREATE TABLE scattered(id int, the_geom GEOMETRY(POINT, 4326), name varchar);" +
+                "INSERT INTO scattered SELECT x, ST_SetSRID(ST_MakePoint(MOD(x * 37, 100), MOD(x * 61, 100)), 4326), " +
+                "'p' || x FROM SYSTEM_RANGE(1, 200);" +
+                "INSERT INTO scattered VALUES (0, null, 'empty')");
+        H2GIS output = H2GIS.open("./target/H2gisSpatialTableTestClustered");
+        ISpatialTable<?> table = h2GIS.getSpatialTable("scattered");
+        Envelope extent = table.getExtent().getEnvelopeInternal();
+        output.execute("DROP TABLE IF EXISTS \"CLUSTERED_clustering\";" +
+                "CREATE TABLE \"CLUSTERED_clustering\" AS SELECT 1 AS id");
+
+        String name = table.save(output, "clustered", true, 50, ITable.ClusterBy.SPATIAL);
+        assertEquals("CLUSTERED", name);
+        assertEquals(201, output.getRowCount("clustered"));
+        assertEquals(4326, output.getSrid("clustered"));
+        assertEquals(1L, output.firstRow("SELECT COUNT(*) AS c FROM \"CLUSTERED_clustering\"").get("C"));
+        assertSorted(output, "clustered", ITable.ClusterBy.SPATIAL, extent);
+
+        //Flat extent and more rows than the batch size in the same cell
+        h2GIS.execute("DROP TABLE IF EXISTS flat; CREATE TABLE flat AS SELECT x AS id, " +
+                "ST_MakePoint(0, CASE WHEN x > 30 THEN 5 ELSE x END) AS the_geom FROM SYSTEM_RANGE(1, 100)");
+        ISpatialTable<?> flat = h2GIS.getSpatialTable("flat");
+        flat.save(output, "clustered_flat", true, 10, ITable.ClusterBy.SPATIAL);
+        assertEquals(100, output.getRowCount("clustered_flat"));
+        assertSorted(output, "clustered_flat", ITable.ClusterBy.SPATIAL, flat.getExtent().getEnvelopeInternal());
+
+        assertEquals("CLUSTERED_Z", output.load(h2GIS, "scattered", "clustered_z", true, 1000,
+                ITable.ClusterBy.Z_ORDER));
+        assertEquals(201, output.getRowCount("clustered_z"));
+        assertSorted(output, "clustered_z", ITable.ClusterBy.Z_ORDER, extent);
+
+        ISpatialTable<?> query = h2GIS.getSpatialTable("(SELECT * FROM scattered WHERE id > 100)");
+        query.save(output, "clustered", true, 1000, ITable.ClusterBy.SPATIAL);
+        assertEquals(100, output.getRowCount("clustered"));
+        assertSorted(output, "clustered", ITable.ClusterBy.SPATIAL,
+                output.getSpatialTable("clustered").getExtent().getEnvelopeInternal());
+
+        h2GIS.execute("DROP TABLE IF EXISTS scattered, flat");
+        output.execute("DROP TABLE IF EXISTS clustered, clustered_z, clustered_flat, \"CLUSTERED_clustering\"");
+        output.close();
+    }
+
+    @Test
+    void testBinToGrid() throws Exception {
+        h2GIS.execute("DROP TABLE IF EXISTS binned;" +
+                "CREATE TABLE binned(id int, the_geom GEOMETRY, pop int);" +
+                "INSERT INTO binned SELECT x, ST_MakePoint(MOD(x * 37, 100) - 50.5, MOD(x * 61, 100) - 20.5), " +
+                "MOD(x, 7) FROM SYSTEM_RANGE(1, 300);" +
+                "INSERT INTO binned VALUES (301, 'POLYGON((0 0, 10 0, 10 10, 0 10, 0 0))', null), (302, null, 5);");
+        ISpatialTable<?> table = h2GIS.getSpatialTable("binned");
+
+        ISpatialGrid grid = table.binToGrid(10, "SUM(pop)", "count(pop)", "MAX(pop)");
+        assertEquals(ISpatialGrid.CellType.SQUARE, grid.getCellType());
+        assertEquals(-6, grid.getMinColumn());
+        assertEquals(-3, grid.getMinRow());
+        assertEquals(11, grid.getColumnCount());
+        assertEquals(11, grid.getRowCount());
+        assertEquals(301, Arrays.stream(grid.getCounts()).sum());
+        assertEquals(h2GIS.firstRow("SELECT COUNT(*) AS c FROM binned WHERE " +
+                "ST_X(ST_Centroid(the_geom)) BETWEEN 0 AND 9.9 AND ST_Y(ST_Centroid(the_geom)) BETWEEN 0 AND 9.9").get("C"),
+                grid.getCount(0, 0));
+        assertEquals(0, grid.getCount(100, 0));
+        assertEquals(Arrays.asList("SUM(pop)", "count(pop)", "MAX(pop)"), grid.getAggregations());
+        assertEquals(h2GIS.firstRow("SELECT SUM(pop) AS s FROM binned WHERE the_geom IS NOT NULL").get("S"),
+                (long) Arrays.stream(grid.getValues("SUM(pop)")).filter(v -> !Double.isNaN(v)).sum());
+        assertEquals(grid.getCount(0, 0) - 1, grid.getValue("count(pop)", 0, 0));
+        assertTrue(Double.isNaN(grid.getValue("MAX(pop)", 100, 0)));
+        assertEquals("POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0))", grid.getCell(0, 0).toString());
+        assertThrows(IllegalArgumentException.class, () -> grid.getValues("MIN(pop)"));
+        assertThrows(IllegalArgumentException.class, () -> table.binToGrid(10, "MEDIAN(pop)"));
+        assertThrows(IllegalArgumentException.class, () -> table.binToGrid(0));
+
+        ISpatialGrid client = ((IJdbcSpatialTable<?>) table).binToGrid(ISpatialGrid.CellType.SQUARE, 10, true,
+                "SUM(pop)", "count(pop)", "MAX(pop)");
+        assertEquals(grid.getMinColumn(), client.getMinColumn());
+        assertArrayEquals(grid.getCounts(), client.getCounts());
+        assertArrayEquals(grid.getValues("SUM(pop)"), client.getValues("SUM(pop)"));
+        assertArrayEquals(grid.getValues("count(pop)"), client.getValues("count(pop)"));
+        assertArrayEquals(grid.getValues("MAX(pop)"), client.getValues("MAX(pop)"));
+
+        ISpatialGrid hexagons = table.binToGrid(ISpatialGrid.CellType.HEXAGON, 8, "AVG(pop)");
+        assertEquals(301, Arrays.stream(hexagons.getCounts()).sum());
+        ISpatialGrid clientHexagons = ((IJdbcSpatialTable<?>) table).binToGrid(ISpatialGrid.CellType.HEXAGON, 8,
+                true, "AVG(pop)");
+        assertEquals(hexagons.getMinColumn(), clientHexagons.getMinColumn());
+        assertEquals(hexagons.getMinRow(), clientHexagons.getMinRow());
+        assertArrayEquals(hexagons.getCounts(), clientHexagons.getCounts());
+        assertArrayEquals(hexagons.getValues("AVG(pop)"), clientHexagons.getValues("AVG(pop)"), 1e-9);
+        for (Map<String, Object> row : h2GIS.rows("SELECT ST_Centroid(the_geom) AS c FROM binned WHERE id < 50")) {
+            Point point = (Point) row.get("C");
+            long key = SpatialGrid.getCellKey(ISpatialGrid.CellType.HEXAGON, 8, point.getX(), point.getY());
+            Geometry cell = hexagons.getCell((int) (key >> 32), (int) key);
+            assertTrue(cell.buffer(1e-9).contains(point));
+            assertTrue(hexagons.getCount((int) (key >> 32), (int) key) > 0);
+        }
+
+        ISpatialGrid query = h2GIS.getSpatialTable("(SELECT * FROM binned WHERE id <= 100)").binToGrid(10);
+        assertEquals(100, Arrays.stream(query.getCounts()).sum());
+        h2GIS.execute("DROP TABLE IF EXISTS binned");
+    }
+
+    @Test
+    void testVectorTiles() throws Exception {
+        h2GIS.execute("DROP TABLE IF EXISTS tiled;" +
+                "CREATE TABLE tiled(id int, the_geom GEOMETRY(GEOMETRY, 4326), name varchar);" +
+                "INSERT INTO tiled VALUES (1, 'SRID=4326;POINT(-3 47.5)', 'vannes'), " +
+                "(2, 'SRID=4326;LINESTRING(-3 47, -2 48)', 'line'), " +
+                "(3, 'SRID=4326;POLYGON((-4 47, -2 47, -2 48, -4 48, -4 47), " +
+                "(-3.5 47.2, -3.2 47.2, -3.2 47.4, -3.5 47.4, -3.5 47.2))', null)");
+        ISpatialTable<?> table = h2GIS.getSpatialTable("tiled");
+
+        Map<String, Object> world = decodeVectorTile(table.getVectorTile(0, 0, 0));
+        assertEquals("TILED", world.get("name"));
+        assertEquals(4096L, world.get("extent"));
+        assertEquals(2L, world.get("version"));
+        assertEquals(Arrays.asList(1, 2, 3), world.get("types"));
+        assertEquals(Arrays.asList("ID", "NAME"), world.get("keys"));
+        Map<String, Object> polygon = decodeVectorTile(table.getVectorTile(9, 251, 179, "name"));
+        assertEquals(Collections.singletonList("NAME"), polygon.get("keys"));
+        assertEquals(Arrays.asList(1, 2, 3), polygon.get("types"));
+        List<?> areas = (List<?>) polygon.get("areas");
+        assertEquals(2, areas.size());
+        assertTrue((Long) areas.get(0) > 0);
+        assertTrue((Long) areas.get(1) < 0);
+        assertEquals(0, table.getVectorTile(3, 0, 0).length);
+        assertThrows(IllegalArgumentException.class, () -> table.getVectorTile(1, 2, 0));
+        Map<String, Object> query = decodeVectorTile(
+                h2GIS.getSpatialTable("(SELECT * FROM tiled WHERE id = 1)").getVectorTile(0, 0, 0));
+        assertEquals("layer", query.get("name"));
+        assertEquals(Collections.singletonList(1), query.get("types"));
+
+        File directory = new File("./target/vector_tiles");
+        if (directory.exists()) {
+            try (Stream<Path> paths = Files.walk(directory.toPath())) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+        int written = table.writeVectorTiles(directory, 0, 8);
+        assertEquals(written, countFiles(directory));
+        assertTrue(VectorTiles.getTileFile(directory, 0, 0, 0).exists());
+        assertFalse(VectorTiles.getTileFile(directory, 1, 1, 1).exists());
+        Envelope extent = VectorTiles.reproject(new Envelope(-4, -2, 47, 48), 4326, VectorTiles.WEB_MERCATOR);
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            for (Path path : paths.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                Path relative = directory.toPath().relativize(path);
+                Envelope tile = VectorTiles.getBufferedTileEnvelope(Integer.parseInt(relative.getName(0).toString()),
+                        Integer.parseInt(relative.getName(1).toString()),
+                        Integer.parseInt(relative.getFileName().toString().replace(VectorTiles.EXTENSION, "")));
+                assertTrue(tile.intersects(extent));
+            }
+        }
+        assertEquals(0, table.writeVectorTiles(directory, 0, 8));
+
+        //Only the tiles of the changed area are generated again
+        Geometry point = new WKTReader().read("POINT(5 45)");
+        point.setSRID(4326);
+        h2GIS.execute("INSERT INTO tiled VALUES (4, 'SRID=4326;POINT(5 45)', 'far')");
+        assertEquals(9, table.writeVectorTiles(directory, 0, 8, point));
+        assertEquals(written + 7, countFiles(directory));
+        assertTrue(VectorTiles.getTileFile(directory, 8, 131, 92).exists());
+        assertEquals(4, ((List<?>) decodeVectorTile(Files.readAllBytes(
+                VectorTiles.getTileFile(directory, 0, 0, 0).toPath())).get("types")).size());
+        h2GIS.execute("DELETE FROM tiled WHERE id = 4");
+        assertEquals(2, table.writeVectorTiles(directory, 0, 8, point));
+        assertEquals(written, countFiles(directory));
+        assertFalse(VectorTiles.getTileFile(directory, 8, 131, 92).exists());
+        h2GIS.execute("DROP TABLE IF EXISTS tiled");
+    }
+
+    @Test
+    void testWriteGeoJson() throws Exception {
+        h2GIS.execute("DROP TABLE IF EXISTS features;" +
+                "CREATE TABLE features(id int, the_geom GEOMETRY, name varchar, val double, flag boolean);" +
+                "INSERT INTO features VALUES (1, 'POINT(1 2)', 'a \"quoted\" name', 1.5, true), " +
+                "(2, 'POLYGON((0 0, 10 0, 10 10, 0 10, 0 0), (2 2, 3 2, 3 3, 2 2))', 'multi\nline', -2, false), " +
+                "(3, 'MULTILINESTRING Z((0 0 1, 1 1 2), (2 2 3, 3 3.25 4))', null, null, null), " +
+                "(4, 'GEOMETRYCOLLECTION(POINT(0 0), MULTIPOINT((1 1), (2 2)), MULTIPOLYGON(((0 0, 1 0, 1 1, 0 0))))', " +
+                "'', 1e20, null), (5, null, 'empty', 0.1, true), (6, 'SRID=4326;POINT(-0.5 1e-7)', 'srid', 3, false)");
+        IJdbcSpatialTable<?> table = h2GIS.getSpatialTable("features");
+        ByteArrayOutputStream server = new ByteArrayOutputStream();
+        ByteArrayOutputStream client = new ByteArrayOutputStream();
+        assertEquals(6, table.writeGeoJson(server, true));
+        assertEquals(6, table.writeGeoJson(client, true, true));
+        String[] serverLines = server.toString(StandardCharsets.UTF_8).split("\n");
+        String[] clientLines = client.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(6, clientLines.length);
+        assertEquals("{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[1.0,2.0]}," +
+                "\"properties\":{\"ID\":1,\"NAME\":\"a \\\"quoted\\\" name\",\"VAL\":1.5,\"FLAG\":true}}", clientLines[0]);
+        assertEquals("{\"type\":\"Feature\",\"geometry\":{\"type\":\"GeometryCollection\",\"geometries\":[" +
+                "{\"type\":\"Point\",\"coordinates\":[0.0,0.0]}," +
+                "{\"type\":\"MultiPoint\",\"coordinates\":[[1.0,1.0],[2.0,2.0]]}," +
+                "{\"type\":\"MultiPolygon\",\"coordinates\":[[[[0.0,0.0],[1.0,0.0],[1.0,1.0],[0.0,0.0]]]]}]}," +
+                "\"properties\":{\"ID\":4,\"NAME\":\"\",\"VAL\":1.0E20,\"FLAG\":null}}", clientLines[3]);
+        assertTrue(clientLines[1].contains("\"NAME\":\"multi\\u000aline\""));
+        assertTrue(clientLines[2].contains("[[[0.0,0.0,1.0],[1.0,1.0,2.0]],[[2.0,2.0,3.0],[3.0,3.25,4.0]]]"));
+        assertTrue(clientLines[4].contains("\"geometry\":null"));
+        //H2GIS does not encode the multi geometries inside of a collection
+        for (int i : new int[]{0, 1, 2, 4, 5}) {
+            assertEquals(serverLines[i], clientLines[i]);
+        }
+
+        ByteArrayOutputStream collection = new ByteArrayOutputStream();
+        assertEquals(2, h2GIS.getSpatialTable("(SELECT * FROM features WHERE id > 4)")
+                .writeGeoJson(collection, false, true, "name"));
+        assertEquals("{\"type\":\"FeatureCollection\",\"features\":[" +
+                "{\"type\":\"Feature\",\"geometry\":null,\"properties\":{\"NAME\":\"empty\"}}," +
+                "{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[-0.5,1.0E-7]}," +
+                "\"properties\":{\"NAME\":\"srid\"}}]}", collection.toString(StandardCharsets.UTF_8));
+        h2GIS.execute("DROP TABLE IF EXISTS features");
+    }
+
+    @Test
+    void testGeometryProfiles() throws Exception {
+        h2GIS.execute("DROP TABLE IF EXISTS profiled, declared, mixed;" +
+                "CREATE TABLE declared(id int, the_geom GEOMETRY(POINTZ, 4326), geom2 GEOMETRY);" +
+                "INSERT INTO declared VALUES (1, 'SRID=4326;POINTZ(1 2 3)', 'SRID=2154;MULTILINESTRING((0 0, 1 1))');" +
+                "CREATE TABLE mixed(id int, the_geom GEOMETRY);" +
+                "INSERT INTO mixed VALUES (1, 'POINT(1 1)'), (2, 'LINESTRING Z(0 0 0, 1 1 1)'), (3, null);" +
+                "CREATE TABLE profiled(id int, the_geom GEOMETRY);" +
+                "INSERT INTO profiled SELECT x, ST_SetSRID(ST_MakePoint(x, x), 2154) FROM SYSTEM_RANGE(1, 10000);" +
+                "INSERT INTO profiled VALUES (10001, 'SRID=2154;POLYGON((0 0, 1 0, 1 1, 0 0))')");
+        Map<String, IGeometryProfile> profiles = h2GIS.getSpatialTable("declared").getGeometryProfiles();
+        IGeometryProfile profile = profiles.get("THE_GEOM");
+        assertEquals(IGeometryProfile.Confidence.DECLARED, profile.getConfidence());
+        assertEquals("POINTZ", profile.getGeometryType());
+        assertEquals(4326, profile.getSrid());
+        assertEquals(3, profile.getDimension());
+        assertEquals(0, profile.getSampleSize());
+        profile = profiles.get("GEOM2");
+        assertEquals(IGeometryProfile.Confidence.EXACT, profile.getConfidence());
+        assertEquals("MULTILINESTRING", profile.getGeometryType());
+        assertEquals(2154, profile.getSrid());
+        assertEquals(1, profile.getSampleSize());
+
+        profile = h2GIS.getSpatialTable("mixed").getGeometryProfiles().get("THE_GEOM");
+        assertEquals(IGeometryProfile.Confidence.EXACT, profile.getConfidence());
+        assertEquals("GEOMETRYZ", profile.getGeometryType());
+        assertTrue(profile.hasZ());
+        assertFalse(profile.hasM());
+        assertEquals(3, profile.getSampleSize());
+        assertEquals(1, profile.getNullCount());
+
+        //The rows are spread over the whole table, so the last polygon is read
+        profile = h2GIS.getSpatialTable("profiled").getGeometryProfiles(100).get("THE_GEOM");
+        assertEquals(IGeometryProfile.Confidence.SAMPLED, profile.getConfidence());
+        assertEquals("GEOMETRY", profile.getGeometryType());
+        assertEquals(2154, profile.getSrid());
+        assertEquals(100, profile.getSampleSize());
+        IJdbcSpatialTable<?> query = h2GIS.getSpatialTable("(SELECT * FROM profiled WHERE id > 10)");
+        profile = query.getGeometryProfiles(100).get("THE_GEOM");
+        assertEquals(IGeometryProfile.Confidence.HEAD, profile.getConfidence());
+        assertEquals("POINT", profile.getGeometryType());
+        assertEquals(100, profile.getSampleSize());
+        assertEquals(Collections.singletonMap("THE_GEOM", "POINT"), query.getGeometryTypes(100));
+        assertEquals(Collections.singletonMap("THE_GEOM", "POINT"), query.getGeometryTypes());
+        assertEquals(Collections.singletonMap("THE_GEOM", "GEOMETRY"), h2GIS.getSpatialTable("profiled").getGeometryTypes());
+        assertEquals(IGeometryProfile.Confidence.EXACT, h2GIS.getSpatialTable("(SELECT * FROM profiled WHERE id > 9990)")
+                .getGeometryProfiles(100).get("THE_GEOM").getConfidence());
+        assertThrows(IllegalArgumentException.class, () -> query.getGeometryProfiles(0));
+        h2GIS.execute("DROP TABLE IF EXISTS profiled, declared, mixed");
+    }
+
+    @Test
+    void testNearest() throws Exception {
+        h2GIS.execute("DROP TABLE IF EXISTS grid, small;" +
+                "CREATE TABLE grid(id int, the_geom GEOMETRY(POINT, 2154));" +
+                "INSERT INTO grid SELECT x, ST_SetSRID(ST_MakePoint(MOD(x, 100), x / 100), 2154) " +
+                "FROM SYSTEM_RANGE(0, 9999);" +
+                "CREATE SPATIAL INDEX ON grid(the_geom);" +
+                "CREATE TABLE small(id int, the_geom GEOMETRY);" +
+                "INSERT INTO small VALUES (1, 'POINT(0 0)'), (2, 'POINT(10 0)'), (3, null)");
+        GeometryFactory factory = new GeometryFactory();
+        IJdbcSpatialTable<?> table = h2GIS.getSpatialTable("grid");
+        List<Map<String, Object>> rows = table.nearest(factory.createPoint(new Coordinate(50.1, 50.2)), 3);
+        assertEquals(Arrays.asList(5050, 5150, 5051), rows.stream().map(row -> row.get("ID"))
+                .collect(Collectors.toList()));
+        assertTrue(rows.get(0).get("THE_GEOM") instanceof Point);
+        assertEquals(Arrays.asList("ID", "THE_GEOM"), new ArrayList<>(rows.get(0).keySet()));
+
+        List<Geometry> geometries = Arrays.asList(factory.createPoint(new Coordinate(-1000, -1000)), null,
+                factory.createPoint(new Coordinate(99.4, 0.1)), factory.createPoint(new Coordinate(500, 20.3)),
+                factory.createPoint());
+        List<List<Map<String, Object>>> nearest = table.nearestAll(geometries, 5);
+        assertEquals(5, nearest.size());
+        assertEquals(0, nearest.get(0).get(0).get("ID"));
+        assertTrue(nearest.get(1).isEmpty());
+        assertEquals(99, nearest.get(2).get(0).get("ID"));
+        assertEquals(2099, nearest.get(3).get(0).get("ID"));
+        assertTrue(nearest.get(4).isEmpty());
+        List<List<Map<String, Object>>> clientSide = table.nearestAll(geometries, 5, true);
+        for (int i = 0; i < geometries.size(); i++) {
+            assertEquals(nearest.get(i).size(), clientSide.get(i).size());
+            for (int j = 0; j < nearest.get(i).size(); j++) {
+                Geometry geometry = geometries.get(i);
+                assertEquals(((Geometry) nearest.get(i).get(j).get("THE_GEOM")).distance(geometry),
+                        ((Geometry) clientSide.get(i).get(j).get("THE_GEOM")).distance(geometry), 1e-9);
+            }
+        }
+
+        IJdbcSpatialTable<?> small = h2GIS.getSpatialTable("small");
+        rows = small.nearest(factory.createPoint(new Coordinate(8, 1)), 10);
+        assertEquals(Arrays.asList(2, 1), rows.stream().map(row -> row.get("ID")).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("ID", "THE_GEOM"), new ArrayList<>(rows.get(0).keySet()));
+        assertThrows(IllegalArgumentException.class, () -> small.nearest(factory.createPoint(), 0));
+        h2GIS.execute("DROP TABLE IF EXISTS grid, small");
+    }
+
+    @Test
+    void testCoordinates() throws Exception {
+        h2GIS.execute("DROP TABLE IF EXISTS points, lines;" +
+                "CREATE TABLE points(id int, the_geom GEOMETRY);" +
+                "INSERT INTO points SELECT x, ST_MakePoint(x, -x) FROM SYSTEM_RANGE(1, 2500);" +
+                "INSERT INTO points VALUES (2501, null), (2502, 'POINT Z(1 2 3)'), (2503, 'POINT EMPTY');" +
+                "CREATE TABLE lines(id int, the_geom GEOMETRY);" +
+                "INSERT INTO lines VALUES (1, 'LINESTRING(0 0, 1 1)')");
+        IJdbcSpatialTable<?> table = h2GIS.getSpatialTable("(SELECT * FROM points ORDER BY id)");
+        double[] coordinates = table.coordinates("the_geom");
+        assertEquals(2 * 2503, coordinates.length);
+        assertEquals(1, coordinates[0]);
+        assertEquals(-2500, coordinates[2 * 2499 + 1]);
+        assertTrue(Double.isNaN(coordinates[2 * 2500]));
+        assertEquals(2, coordinates[2 * 2501 + 1]);
+        assertTrue(Double.isNaN(coordinates[2 * 2502]));
+        assertArrayEquals(coordinates, table.coordinates(null, false, true));
+
+        coordinates = table.coordinates("THE_GEOM", true);
+        assertEquals(3 * 2503, coordinates.length);
+        assertTrue(Double.isNaN(coordinates[2]));
+        assertEquals(3, coordinates[3 * 2501 + 2]);
+        assertArrayEquals(coordinates, table.coordinates("the_geom", true, true));
+        DoubleBuffer buffer = table.coordinatesBuffer("the_geom", true);
+        assertTrue(buffer.isDirect());
+        assertEquals(coordinates.length, buffer.remaining());
+        double[] copy = new double[buffer.remaining()];
+        buffer.get(copy);
+        assertArrayEquals(coordinates, copy);
+
+        assertThrows(IllegalArgumentException.class, () -> table.coordinates("id"));
+        assertThrows(IllegalArgumentException.class, () -> h2GIS.getSpatialTable("lines").coordinates(null));
+        h2GIS.execute("DROP TABLE IF EXISTS points, lines");
+    }
+
+    @Test
+    void testValidate() throws Exception {
+        h2GIS.execute("DROP TABLE IF EXISTS invalid, typed;" +
+                "CREATE TABLE invalid(id int, the_geom GEOMETRY);" +
+                "INSERT INTO invalid VALUES (1, 'POLYGON((0 0, 1 0, 1 1, 0 1, 0 0))'), " +
+                "(2, 'POLYGON((0 0, 1 1, 1 0, 0 1, 0 0))'), (3, 'LINESTRING(1 1, 1 1)'), (4, 'POINT(1 1)'), " +
+                "(5, null);" +
+                "CREATE TABLE typed(id int, the_geom GEOMETRY(POLYGON));" +
+                "INSERT INTO typed VALUES (1, 'POLYGON((0 0, 1 1, 1 0, 0 1, 0 0))'), " +
+                "(2, 'POLYGON((0 0, 2 0, 2 2, 0 2, 0 0), (1 1, 3 1, 3 3, 1 3, 1 1))')");
+        IJdbcSpatialTable<?> table = h2GIS.getSpatialTable("invalid");
+        IValidationReport report = table.validate();
+        assertEquals("THE_GEOM", report.getColumnName());
+        assertEquals(4, report.getCheckedCount());
+        assertEquals(2, report.getInvalidCount());
+        assertEquals(0, report.getRepairedCount());
+        assertFalse(report.isValid());
+        assertEquals(Arrays.asList(2L, 3L), new ArrayList<>(report.getInvalidRows().keySet()));
+        assertTrue(report.getInvalidRows().get(2L).startsWith("Self-intersection"));
+        assertTrue(report.getInvalidRows().get(3L).startsWith("Too few distinct points"));
+
+        report = table.validate(true);
+        assertEquals(2, report.getRepairedCount());
+        assertTrue(report.isValid());
+        assertTrue(report.getFailedRows().isEmpty());
+        report = table.validate();
+        assertEquals(4, report.getCheckedCount());
+        assertEquals(0, report.getInvalidCount());
+        assertTrue(report.isValid());
+
+        //The fixed bow tie is a multipolygon which doesn't fit the column type
+        report = h2GIS.getSpatialTable("typed").validate(true, true, 1);
+        assertEquals(2, report.getInvalidCount());
+        assertEquals(1, report.getRepairedCount());
+        assertEquals(Collections.singleton(1L), report.getFailedRows().keySet());
+        assertFalse(report.isValid());
+        assertTrue(h2GIS.getSpatialTable("(SELECT * FROM typed WHERE id = 2)").validate().isValid());
+
+        IJdbcSpatialTable<?> query = h2GIS.getSpatialTable("(SELECT * FROM typed ORDER BY id)");
+        assertEquals(Collections.singleton(1L), query.validate().getInvalidRows().keySet());
+        assertThrows(IllegalArgumentException.class, () -> query.validate(true));
+
+        //Only the first invalid rows are kept in the report
+        h2GIS.execute("INSERT INTO invalid SELECT x, 'LINESTRING(1 1, 1 1)' FROM SYSTEM_RANGE(10, 1209)");
+        report = table.validate(true, true, 100);
+        assertEquals(1200, report.getInvalidCount());
+        assertEquals(IValidationReport.MAX_REPORTED_ROWS, report.getInvalidRows().size());
+        assertEquals(1200, report.getRepairedCount());
+        assertTrue(report.isValid());
+        assertTrue(table.validate().isValid());
+        h2GIS.execute("DROP TABLE IF EXISTS invalid, typed");
+    }
+
+    /**
+     * Return the number of files in a directory tree.
+     */
+    private static long countFiles(File directory) throws Exception {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            return paths.filter(Files::isRegularFile).count();
+        }
+    }
+
+    /**
+     * Decode the single layer of a Mapbox Vector Tile into its name, extent, version, keys, the types of its
+     * features and the areas of the rings of its polygons.
+     */
+    private static Map<String, Object> decodeVectorTile(byte[] tile) {
+        Map<String, Object> layer = new HashMap<>();
+        List<String> keys = new ArrayList<>();
+        List<Integer> types = new ArrayList<>();
+        List<Long> areas = new ArrayList<>();
+        layer.put("keys", keys);
+        layer.put("types", types);
+        layer.put("areas", areas);
+        ByteBuffer buffer = ByteBuffer.wrap(tile);
+        assertEquals(3 << 3 | 2, readVarint(buffer));
+        ByteBuffer content = readMessage(buffer);
+        assertFalse(buffer.hasRemaining());
+        while (content.hasRemaining()) {
+            long key = readVarint(content);
+            int field = (int) (key >>> 3);
+            if (field == 1 || field == 3) {
+                String value = StandardCharsets.UTF_8.decode(readMessage(content)).toString();
+                if (field == 1) {
+                    layer.put("name", value);
+                } else {
+                    keys.add(value);
+                }
+            } else if (field == 2) {
+                ByteBuffer feature = readMessage(content);
+                while (feature.hasRemaining()) {
+                    long featureKey = readVarint(feature);
+                    if (featureKey >>> 3 == 3) {
+                        types.add((int) readVarint(feature));
+                    } else if (featureKey >>> 3 == 4) {
+                        ByteBuffer geometry = readMessage(feature);
+                        long x = 0, y = 0;
+                        List<long[]> ring = new ArrayList<>();
+                        while (geometry.hasRemaining()) {
+                            long command = readVarint(geometry);
+                            if ((command & 7) == 7) {
+                                long area = 0;
+                                for (int i = 0; i < ring.size(); i++) {
+                                    long[] a = ring.get(i);
+                                    long[] b = ring.get((i + 1) % ring.size());
+                                    area += a[0] * b[1] - b[0] * a[1];
+                                }
+                                areas.add(area);
+                                continue;
+                            }
+                            if ((command & 7) == 1) {
+                                ring = new ArrayList<>();
+                            }
+                            for (long i = 0; i < command >>> 3; i++) {
+                                long dx = readVarint(geometry);
+                                long dy = readVarint(geometry);
+                                x += (dx >>> 1) ^ -(dx & 1);
+                                y += (dy >>> 1) ^ -(dy & 1);
+                                ring.add(new long[]{x, y});
+                            }
+                        }
+                    } else {
+                        readMessage(feature);
+                    }
+                }
+            } else if (field == 4) {
+                readMessage(content);
+            } else {
+                layer.put(field == 5 ? "extent" : "version", readVarint(content));
+            }
+        }
+        return layer;
+    }
+
+    /**
+     * Read a protobuf variable length integer.
+     */
+    private static long readVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Read a protobuf length delimited field.
+     */
+    private static ByteBuffer readMessage(ByteBuffer buffer) {
+        int length = (int) readVarint(buffer);
+        ByteBuffer message = buffer.slice();
+        message.limit(length);
+        buffer.position(buffer.position() + length);
+        return message;
+    }
+
+    /**
+     * Check that the rows of the given table are stored sorted by their key.
+     */
+    private static void assertSorted(H2GIS dataSource, String table, ITable.ClusterBy clusterBy, Envelope extent)
+            throws Exception {
+        List<Long> keys = dataSource.rows("SELECT the_geom FROM " + table).stream()
+                .map(row -> clusterBy.getKey(extent, (Geometry) row.get("THE_GEOM")))
+                .collect(Collectors.toList());
+        for (int i = 1; i < keys.size(); i++) {
+            assertTrue(keys.get(i - 1) <= keys.get(i));
+        }
+    }
 }
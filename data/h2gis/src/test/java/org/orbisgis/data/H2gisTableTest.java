@@ -39,32 +39,48 @@ package org.orbisgis.data;
 
 import groovy.lang.Closure;
 import groovy.lang.MetaClass;
+import org.codehaus.groovy.runtime.GStringImpl;
 import org.codehaus.groovy.runtime.InvokerHelper;
 import org.h2gis.functions.factory.H2GISDBFactory;
+import org.h2gis.utilities.SpatialResultSetMetaData;
 import org.h2gis.utilities.TableLocation;
 import org.h2gis.utilities.dbtypes.DBTypes;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
 import org.orbisgis.commons.printer.Ascii;
 import org.orbisgis.commons.printer.Html;
+import org.orbisgis.data.api.dataset.IColumnSummary;
+import org.orbisgis.data.api.dataset.IJdbcSpatialTable;
 import org.orbisgis.data.api.dataset.IJdbcTable;
 import org.orbisgis.data.api.dataset.ISpatialTable;
 import org.orbisgis.data.api.dataset.ITable;
+import org.orbisgis.data.api.dsl.IAggregate;
+import org.orbisgis.data.api.dsl.IBuilderResult;
+import org.orbisgis.data.api.dsl.IFilterBuilder;
+import org.orbisgis.data.api.dsl.IOrderedBuilderResult;
 import org.orbisgis.data.api.datasource.IJdbcDataSource;
 import org.orbisgis.data.jdbc.JdbcSpatialTable;
 import org.orbisgis.data.jdbc.JdbcTable;
+import org.orbisgis.data.jdbc.JdbcTableSummary;
 import org.orbisgis.data.jdbc.ResultSetIterator;
+import org.orbisgis.data.jdbc.dsl.FilterBuilder;
+import org.orbisgis.data.jdbc.dsl.QueryTemplate;
 import org.orbisgis.data.jdbc.resultset.StreamResultSet;
 import org.orbisgis.data.jdbc.resultset.StreamSpatialResultSet;
 
 import java.io.File;
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -370,8 +386,11 @@ public class H2gisTableTest {
         assertEquals(EMPTY_QUERY, getEmptyTable().getBaseQuery());
         assertEquals("(SELECT THE_GEOM, the_geom2, ID, VAL, MEANING FROM ORBISGIS_TABLE LIMIT 2)",
                 getBuiltTable().getBaseQuery().trim());
-        assertEquals("(SELECT geom as g, st_area(geom) as area FROM (SELECT the_geom AS geom FROM ORBISGIS_TABLE where id=1) as foo)",
-                getTable().columns("the_geom AS geom").filter("where id=1").getTable().columns("geom as g", "st_area(geom) as area").toString());
+        IBuilderResult chained = getTable().columns("the_geom AS geom").filter("where id=1").getTable()
+                .columns("geom as g", "st_area(geom) as area");
+        assertEquals("(SELECT geom as g, st_area(geom) as area FROM (SELECT the_geom AS geom FROM ORBISGIS_TABLE where id=?) as foo)",
+                chained.toString());
+        assertEquals(Arrays.asList(1), chained.getParams());
     }
 
     /**
@@ -517,6 +536,35 @@ public class H2gisTableTest {
         assertEquals(2, getLinkedTable().getUniqueValues(COL_THE_GEOM).size());
     }
 
+    /**
+     * Test the {@link JdbcTable#getUniqueValues(String, int)}, {@link JdbcTable#approxDistinct(String)} and
+     * {@link JdbcTable#topK(String, int)} methods.
+     */
+    @Test
+    void testDistinctSketches() throws Exception {
+        assertEquals(1, getTable().getUniqueValues(COL_MEANING, 1).size());
+        assertEquals(2, getTable().getUniqueValues(COL_MEANING, 10).size());
+        assertEquals(0, getTable().getUniqueValues(COL_MEANING, 0).size());
+        assertThrows(IllegalArgumentException.class, () -> getTable().getUniqueValues(COL_MEANING, -1));
+
+        assertEquals(2, getTable().approxDistinct(COL_MEANING));
+        assertEquals(3, getTable().approxDistinct(COL_ID));
+        assertEquals(2, getTable().approxDistinct("ID / 2"));
+        assertThrows(IllegalArgumentException.class, () -> getTable().approxDistinct(null));
+
+        Map<Object, Long> top = getTable().topK(COL_MEANING, 1);
+        assertEquals(1, top.size());
+        assertEquals(2L, top.get("3D point"));
+        top = getTable().topK(COL_MEANING, 5);
+        assertEquals(Arrays.asList("3D point", "Simple points"), new ArrayList<>(top.keySet()));
+        assertEquals(1L, top.get("Simple points"));
+        assertThrows(IllegalArgumentException.class, () -> getTable().topK(COL_MEANING, -1));
+
+        ITable<?, ?> query = dataSource.getTable("(SELECT * FROM ORBISGIS_TABLE WHERE ID > 1)");
+        assertEquals(1, query.approxDistinct(COL_MEANING));
+        assertEquals(2L, query.topK(COL_MEANING, 1).get("3D point"));
+    }
+
     /**
      * Test the {@link JdbcTable#save(String, String)} and {@link JdbcTable#save(String)} methods.
      */
@@ -785,6 +833,83 @@ public class H2gisTableTest {
         assertEquals(2, getLinkedTable().getSummary().getRowCount());
     }
 
+    /**
+     * Test that the schema methods of {@link JdbcTable} read the metadata without running the data query.
+     */
+    @Test
+    void testMetaDataWithoutDataQuery() throws Exception {
+        //The query fails with a division by zero once executed
+        JdbcTable<?> table = (JdbcTable<?>) dataSource.getTable(
+                "(SELECT ID / (ID - ID) AS RATIO, MEANING FROM ORBISGIS_TABLE)");
+        assertEquals(2, table.getColumnCount());
+        assertEquals(Arrays.asList("RATIO", "MEANING"), new ArrayList<>(table.getColumnNames()));
+        assertEquals("INTEGER", table.getColumnType("ratio"));
+        assertEquals(2, table.getColumnNamesTypes().size());
+        assertSame(table.getMetaData(), table.getMetaData());
+        assertEquals(5, getTable().getMetaData().getColumnCount());
+        SpatialResultSetMetaData spatialMetaData = ((JdbcSpatialTable) getTable()).getMetaData();
+        assertEquals(COL_THE_GEOM, spatialMetaData.getColumnName(spatialMetaData.getFirstGeometryFieldIndex()));
+    }
+
+    /**
+     * Test the column statistics of the {@link JdbcTable#getSummary(boolean, int)} and
+     * {@link JdbcTable#getSummary(boolean, int, boolean)} methods.
+     */
+    @Test
+    void testSummaryColumnStatistics() throws Exception {
+        JdbcTable<?> table = (JdbcTable<?>) getTable();
+        assertTrue(table.getSummary().getColumnSummaries().isEmpty());
+        assertTrue(table.getSummary(false, 0).getColumnSummaries().isEmpty());
+        JdbcTableSummary summary = table.getSummary(true, 0);
+        assertSame(summary, table.getSummary(true, 0));
+        assertEquals(5, summary.getColumnSummaries().size());
+        IColumnSummary id = summary.getColumnSummary("id");
+        assertEquals(0, id.getNullCount());
+        assertEquals(1, ((Number) id.getMin()).intValue());
+        assertEquals(3, ((Number) id.getMax()).intValue());
+        assertEquals(2.0, id.getMean(), 1e-9);
+        assertEquals(-1, id.getDistinctCount());
+        assertNull(id.getHistogram());
+        IColumnSummary meaning = summary.getColumnSummary(COL_MEANING);
+        assertEquals("3D point", meaning.getMin());
+        assertEquals(-1, meaning.getDistinctCount());
+        assertNull(meaning.getMean());
+        //The distinct counts are only computed on demand
+        summary = table.getSummary(true, 0, true);
+        assertNotSame(summary, table.getSummary(false, 0));
+        assertSame(summary, table.getSummary(true, 0));
+        assertEquals(3, summary.getColumnSummary(COL_ID).getDistinctCount());
+        assertEquals(2, summary.getColumnSummary(COL_MEANING).getDistinctCount());
+        IColumnSummary geom = summary.getColumnSummary(COL_THE_GEOM);
+        assertEquals(0, geom.getNullCount());
+        assertNull(geom.getMin());
+        assertEquals(-1, geom.getDistinctCount());
+        assertNull(summary.getColumnSummary("missing"));
+
+        summary = table.getSummary(true, 2);
+        assertNotSame(summary, table.getSummary(true, 0));
+        assertArrayEquals(new long[]{1, 2}, summary.getColumnSummary(COL_ID).getHistogram());
+        assertArrayEquals(new long[]{2, 1}, summary.getColumnSummary(COL_VALUE).getHistogram());
+        assertNull(summary.getColumnSummary(COL_MEANING).getHistogram());
+        String ascii = summary.asType(Ascii.class).toString();
+        assertTrue(ascii.contains("MEANING"));
+        assertTrue(ascii.contains("[1, 2]"));
+        assertNotNull(summary.asType(Html.class));
+        assertThrows(IllegalArgumentException.class, () -> table.getSummary(true, -1));
+        assertThrows(IllegalArgumentException.class, () -> table.getSummary(false, 2));
+        assertThrows(IllegalArgumentException.class, () -> table.getSummary(false, 0, true));
+
+        summary = ((JdbcTable<?>) getBuiltTable()).getSummary(true, 1, true);
+        assertEquals(2, summary.getColumnSummary(COL_ID).getDistinctCount());
+        assertArrayEquals(new long[]{2}, summary.getColumnSummary(COL_ID).getHistogram());
+
+        summary = ((JdbcTable<?>) getEmptyTable()).getSummary(true, 3);
+        assertEquals(0, summary.getColumnSummary(COL_ID).getNullCount());
+        assertNull(summary.getColumnSummary(COL_ID).getMin());
+        assertNull(summary.getColumnSummary(COL_ID).getMean());
+        assertNull(summary.getColumnSummary(COL_ID).getHistogram());
+    }
+
     @Test
     public void filterTest() throws Exception {
         assertArrayEquals(new int[]{5, 1}, getTable().filter("limit 1").getTable().getSize());
@@ -793,6 +918,241 @@ public class H2gisTableTest {
         assertArrayEquals(new int[]{5, 1}, getTable().filter("where ID=1").getTable().getSize());
     }
 
+    /**
+     * Test the binding of the literals of the filters.
+     */
+    @Test
+    void testLiteralBinding() throws Exception {
+        //The literals are bound by default
+        assertTrue(dataSource.isLiteralBinding());
+        dataSource.setLiteralBinding(false);
+        try {
+            assertEquals("(SELECT * FROM ORBISGIS_TABLE WHERE ID = 1)", getTable().filter("WHERE ID = 1").toString());
+        } finally {
+            dataSource.setLiteralBinding(true);
+        }
+        IBuilderResult result = ((IFilterBuilder) getTable().filter("WHERE ID > ?", Arrays.asList(1)))
+                .filter("AND ID < ?", Arrays.asList(3));
+        assertEquals(Arrays.asList(1, 3), result.getParams());
+        assertEquals(Arrays.asList(2), getIds(result));
+        result = getTable().filter("WHERE ID = 1");
+        assertEquals("(SELECT * FROM ORBISGIS_TABLE WHERE ID = ?)", result.toString());
+        assertEquals(Arrays.asList(1), result.getParams());
+        assertEquals(Arrays.asList(1), getIds(result));
+        assertEquals(getTable().filter("WHERE ID = 3").toString(), result.toString());
+
+        result = getTable().filter("WHERE MEANING='3D point' AND VAL >= -1.5e1 AND ID <> ? AND " +
+                "ST_X(THE_GEOM) < 5 ORDER BY ID LIMIT 2", Arrays.asList(3));
+        assertEquals("(SELECT * FROM ORBISGIS_TABLE WHERE MEANING=? AND VAL >= ? AND ID <> ? AND " +
+                "ST_X(THE_GEOM) < ? ORDER BY ID LIMIT 2)", result.toString());
+        assertEquals(Arrays.asList("3D point", new BigDecimal("-1.5e1"), 3, 5), result.getParams());
+        assertEquals(Arrays.asList(2), getIds(result));
+        assertEquals(1, result.getTable().getRowCount());
+        assertFalse(result.getTable().isEmpty());
+        assertEquals(2, result.getTable().firstRow().get(COL_ID));
+
+        //The literals which are cast, not compared or in quoted identifiers are kept
+        assertEquals("(SELECT * FROM ORBISGIS_TABLE WHERE THE_GEOM = 'POINT(0 0)'::GEOMETRY AND \"=1\" = ? AND ID IN (1, 2))",
+                getTable().filter("WHERE THE_GEOM = 'POINT(0 0)'::GEOMETRY AND \"=1\" = 'a''b' AND ID IN (1, 2)").toString());
+        assertEquals(Arrays.asList("a'b"), getTable().filter("WHERE \"=1\" = 'a''b'").getParams());
+        assertEquals("(SELECT * FROM ORBISGIS_TABLE WHERE ID=?)", getTable().filter("WHERE ID=-2").toString());
+        assertEquals(Arrays.asList(-2), getTable().filter("WHERE ID=-2").getParams());
+        assertEquals(Arrays.asList(1), getIds(getTable().filter(new GStringImpl(new Object[]{0},
+                new String[]{"WHERE ID > ", " AND ID < 2"}))));
+
+        //PostgreSQL types the string parameters, so only the numbers are bound
+        List<Object> params = new ArrayList<>();
+        assertEquals("a = 'b' AND c = ?", QueryTemplate.bindLiterals("a = 'b' AND c = 4", null, params, DBTypes.POSTGIS));
+        assertEquals(Arrays.asList(4), params);
+
+        //The helpers of the filtered tables bind or inline the bound literals
+        IJdbcSpatialTable<?> filtered = (IJdbcSpatialTable<?>) getTable().filter("WHERE ID > 1 AND MEANING = '3D point'")
+                .getSpatialTable();
+        assertEquals(Arrays.asList(1, "3D point"), filtered.getParams());
+        assertEquals(2, filtered.stream().count());
+        assertEquals(2, filtered.getRowCount());
+        assertFalse(filtered.isEmpty());
+        assertEquals(2, filtered.firstRow().get(COL_ID));
+        assertEquals(new Envelope(0, 10, 1, 11), filtered.getExtent(COL_THE_GEOM).getEnvelopeInternal());
+        assertEquals(new Envelope(0, 10, 1, 11), filtered.getExtent().getEnvelopeInternal());
+        assertArrayEquals(new double[]{0, 1, 10, 11}, filtered.coordinates(COL_THE_GEOM));
+        assertEquals(2, filtered.getSummary().getRowCount());
+        assertEquals(2, filtered.getSummary(true, 4).getRowCount());
+        assertEquals(2, dataSource.getTable(filtered.save(dataSource, "BOUND_SAVED", true)).getRowCount());
+        dataSource.execute("DROP TABLE IF EXISTS BOUND_SRID; CREATE TABLE BOUND_SRID AS SELECT ID, " +
+                "ST_SETSRID(THE_GEOM, 4326) AS THE_GEOM FROM ORBISGIS_TABLE");
+        ISpatialTable<?> reprojected = dataSource.getTable("BOUND_SRID").filter("WHERE ID > 1").getSpatialTable()
+                .reproject(2154);
+        assertEquals(2, reprojected.getRowCount());
+        IJdbcSpatialTable<?> saved = dataSource.getSpatialTable(reprojected.save(dataSource, "BOUND_SAVED", true));
+        assertEquals(2, saved.getRowCount());
+        assertTrue(saved.firstRow().get(COL_THE_GEOM) instanceof Geometry);
+        assertEquals(2154, ((Geometry) saved.firstRow().get(COL_THE_GEOM)).getSRID());
+        assertEquals(Arrays.asList(2, 3), getIds(((IJdbcTable<?>) filtered).filter("WHERE VAL > 0").orderBy("ID")));
+        assertEquals(Arrays.asList(3), getIds(((IJdbcTable<?>) filtered).filter("WHERE VAL > 1")));
+        dataSource.execute("DROP TABLE IF EXISTS BOUND_SAVED, BOUND_SRID");
+
+        assertEquals("a = 'b''c' AND d > (-2) AND e = NULL AND f = TRUE -- ?\n AND \"?\" = '?'",
+                QueryTemplate.inlineParameters("a = ? AND d > ? AND e = ? AND f = ? -- ?\n AND \"?\" = '?'",
+                        Arrays.asList("b'c", -2, null, true)));
+        assertNull(QueryTemplate.inlineParameters("a = ?", Arrays.asList(new Object())));
+    }
+
+    /**
+     * Return the identifiers of the rows of the given request.
+     */
+    private static List<Integer> getIds(IBuilderResult result) throws Exception {
+        return ((JdbcTable<StreamResultSet>) result.getTable()).stream().map(row -> row.getInt(COL_ID)).collect(Collectors.toList());
+    }
+
+    /**
+     * Test the {@link JdbcTable#orderBy(String...)}, {@link JdbcTable#limit(long)}, {@link JdbcTable#offset(long)}
+     * and {@link IOrderedBuilderResult#after(Object...)} methods.
+     */
+    @Test
+    void testOrderLimitOffset() throws Exception {
+        assertEquals("(SELECT * FROM ORBISGIS_TABLE ORDER BY ID DESC LIMIT 2 OFFSET 1)",
+                getTable().orderBy("ID desc").limit(2).offset(1).toString());
+        assertEquals("(SELECT * FROM (SELECT ID, VAL FROM ORBISGIS_TABLE WHERE ID > ?) AS foo ORDER BY VAL LIMIT 1)",
+                getTable().columns("ID", "VAL").filter("WHERE ID > 1").orderBy("VAL").limit(1).toString());
+        assertEquals("(SELECT * FROM ORBISGIS_TABLE WHERE (MEANING, ID) > (?, ?) ORDER BY MEANING, ID)",
+                getTable().orderBy("MEANING", "ID").after("3D point", 2).toString());
+        assertEquals("(SELECT * FROM ORBISGIS_TABLE WHERE ((MEANING > ?) OR (MEANING = ? AND ID < ?)) ORDER BY MEANING, ID DESC)",
+                getTable().orderBy("MEANING", "ID DESC").after("3D point", 3).toString());
+        assertEquals("OFFSET 2 ROWS FETCH FIRST 5 ROWS ONLY", FilterBuilder.getLimitClause(DBTypes.UNKNOWN, 5, 2));
+        assertEquals("", FilterBuilder.getLimitClause(DBTypes.H2GIS, -1, 0));
+
+        assertEquals(Arrays.asList(3, 2, 1), getIds(getTable().orderBy("ID DESC")));
+        assertEquals(Arrays.asList(2, 1), getIds(getTable().orderBy("ID DESC").offset(1)));
+        assertEquals(Arrays.asList(2), getIds(getTable().orderBy("ID").limit(1).offset(1)));
+        assertEquals(Arrays.asList(3), getIds(getTable().filter("WHERE ID > 1").orderBy("VAL DESC").limit(1)));
+        assertEquals(Arrays.asList(2, 3), getIds(getTable().filter("WHERE ID > ?", Arrays.asList(1)).orderBy("ID")));
+
+        //Keyset pagination over the whole table
+        List<Integer> ids = new ArrayList<>();
+        List<Integer> page = getIds(getTable().orderBy("MEANING", "ID").limit(2));
+        while (!page.isEmpty()) {
+            ids.addAll(page);
+            int last = page.get(page.size() - 1);
+            String meaning = last == 1 ? "Simple points" : "3D point";
+            page = getIds(getTable().orderBy("MEANING", "ID").after(meaning, last).limit(2));
+        }
+        assertEquals(Arrays.asList(2, 3, 1), ids);
+        assertEquals(Arrays.asList(2, 1), getIds(getTable().orderBy("MEANING", "ID DESC").after("3D point", 3)));
+        assertEquals(Arrays.asList(1), getIds(getTable().filter("WHERE ID < ?", Arrays.asList(3)).orderBy("ID DESC").after(2)));
+
+        assertThrows(IllegalArgumentException.class, () -> getTable().orderBy().after(1));
+        assertThrows(IllegalStateException.class, () -> getTable().orderBy("ID").after(1).orderBy("MEANING"));
+        assertThrows(IllegalArgumentException.class, () -> getTable().orderBy("ID").after(1, 2));
+        assertThrows(IllegalArgumentException.class, () -> getTable().limit(-1));
+    }
+
+    /**
+     * Test the {@link JdbcTable#aggregate(Collection, IAggregate...)} method.
+     */
+    @Test
+    void testAggregate() throws Exception {
+        assertEquals("(SELECT MEANING, COUNT(*) AS count, SUM(ID) AS sum_ID FROM (SELECT * FROM ORBISGIS_TABLE) AS agg " +
+                        "GROUP BY MEANING)",
+                getTable().aggregate(Arrays.asList("MEANING"), IAggregate.count(), IAggregate.sum("ID")).toString());
+        assertEquals("(SELECT AVG(CAST(VAL AS DOUBLE PRECISION)) AS mean FROM (SELECT * FROM ORBISGIS_TABLE) AS agg)",
+                getTable().aggregate(null, IAggregate.avg("VAL").as("mean")).toString());
+
+        List<List<Object>> rows = getRows(getTable().aggregate(Arrays.asList("MEANING"), IAggregate.count(),
+                IAggregate.sum("ID"), IAggregate.min("VAL"), IAggregate.max("VAL"), IAggregate.avg("VAL"))
+                .orderBy("MEANING"));
+        assertEquals(2, rows.size());
+        assertEquals("3D point", rows.get(0).get(0));
+        assertEquals(2L, ((Number) rows.get(0).get(1)).longValue());
+        assertEquals(5L, ((Number) rows.get(0).get(2)).longValue());
+        assertEquals(0.568, ((Number) rows.get(0).get(3)).doubleValue(), 1e-9);
+        assertEquals(7.18, ((Number) rows.get(0).get(4)).doubleValue(), 1e-9);
+        assertEquals(3.874, ((Number) rows.get(0).get(5)).doubleValue(), 1e-9);
+        assertEquals("Simple points", rows.get(1).get(0));
+        assertEquals(1L, ((Number) rows.get(1).get(1)).longValue());
+
+        rows = getRows(getTable().filter("WHERE ID > ?", Arrays.asList(1)).aggregate(null, IAggregate.count(),
+                IAggregate.max("ID")));
+        assertEquals(1, rows.size());
+        assertEquals(2L, ((Number) rows.get(0).get(0)).longValue());
+        assertEquals(3, ((Number) rows.get(0).get(1)).intValue());
+
+        rows = getRows(getTable().aggregate(Arrays.asList("MEANING"), IAggregate.count()).orderBy("count DESC").limit(1));
+        assertEquals(1, rows.size());
+        assertEquals("3D point", rows.get(0).get(0));
+
+        assertThrows(IllegalArgumentException.class, () -> getTable().aggregate(null));
+        assertThrows(IllegalArgumentException.class, () -> IAggregate.sum(null));
+    }
+
+    /**
+     * Test the {@link JdbcTable#sample(double)} and {@link JdbcTable#sample(int, long)} methods.
+     */
+    @Test
+    void testSample() throws Exception {
+        assertEquals("(SELECT * FROM (SELECT * FROM ORBISGIS_TABLE WHERE ID > ?) AS sample WHERE RAND() < 0.5)",
+                getTable().filter("WHERE ID > 0").sample(0.5).toString());
+        assertEquals("(SELECT * FROM ORBISGIS_TABLE WHERE _ROWID_ IN (1, 2, 3) " +
+                "ORDER BY ORA_HASH(_ROWID_, 4294967295, 7) LIMIT 2)", getTable().sample(2, 7).toString());
+        assertTrue(getTable().filter("WHERE ID > 0").sample(2, 7).toString()
+                .contains("ORDER BY ORA_HASH(CAST(ROW(\"THE_GEOM\", \"THE_GEOM2\", \"ID\", "));
+
+        assertEquals(Arrays.asList(1, 2, 3), getIds(getTable().sample(1.0).orderBy("ID")));
+        assertTrue(getIds(getTable().sample(0.5)).size() <= 3);
+
+        List<Integer> ids = getIds(getTable().sample(2, 42));
+        assertEquals(2, ids.size());
+        assertEquals(ids, getIds(getTable().sample(2, 42)));
+        assertEquals(3, getIds(getTable().sample(10, 42)).size());
+        assertEquals(0, getIds(getTable().sample(0, 42)).size());
+        assertEquals(1, getIds(getTable().filter("WHERE ID > ?", Arrays.asList(1)).sample(1, -3)).size());
+        //The sample of a query only depends on the values of its rows, not on the order in which they are read
+        ids = getIds(getTable().filter("WHERE ID > 0").sample(2, 42));
+        assertEquals(2, ids.size());
+        assertEquals(ids, getIds(getTable().filter("WHERE ID > 0 ORDER BY ID DESC").sample(2, 42)));
+
+        //A large table is only read at the sampled row identifiers, even with the gaps of the deleted rows
+        dataSource.execute("DROP TABLE IF EXISTS SAMPLE_TABLE; CREATE TABLE SAMPLE_TABLE(ID INT) AS " +
+                "SELECT X FROM SYSTEM_RANGE(1, 10000); DELETE FROM SAMPLE_TABLE WHERE MOD(ID, 3) = 0");
+        IJdbcTable<?> sampleTable = dataSource.getTable("SAMPLE_TABLE");
+        assertTrue(sampleTable.sample(100, 5).toString().contains("WHERE _ROWID_ IN ("));
+        ids = getIds(sampleTable.sample(100, 5));
+        assertEquals(100, new HashSet<>(ids).size());
+        assertEquals(ids, getIds(sampleTable.sample(100, 5)));
+        assertNotEquals(ids, getIds(sampleTable.sample(100, 6)));
+        assertEquals(6667, getIds(sampleTable.sample(8000, 5)).size());
+        assertTrue(sampleTable.sample(0.1).toString().contains("WHERE _ROWID_ BETWEEN "));
+        int size = getIds(sampleTable.sample(0.1)).size();
+        assertTrue(size > 400 && size < 950, "Unexpected sample size " + size);
+        assertEquals(6667, getIds(sampleTable.sample(1.0)).size());
+        dataSource.execute("DROP TABLE SAMPLE_TABLE");
+
+        assertThrows(IllegalArgumentException.class, () -> getTable().sample(0));
+        assertThrows(IllegalArgumentException.class, () -> getTable().sample(1.5));
+        assertThrows(IllegalArgumentException.class, () -> getTable().sample(-1, 0));
+    }
+
+    /**
+     * Return the rows of the table of the given builder result.
+     *
+     * @param result Builder result.
+     * @return The list of the rows values.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<List<Object>> getRows(IBuilderResult result) throws Exception {
+        List<List<Object>> rows = new ArrayList<>();
+        JdbcTable<StreamResultSet> table = (JdbcTable<StreamResultSet>) result.getTable();
+        int columnCount = table.getColumnCount();
+        table.stream().forEach(row -> {
+            List<Object> values = new ArrayList<>();
+            for (int i = 1; i <= columnCount; i++) {
+                values.add(row.getObject(i));
+            }
+            rows.add(values);
+        });
+        return rows;
+    }
+
     /**
      * Test the {@link IJdbcTable#iterator()} method.
      */
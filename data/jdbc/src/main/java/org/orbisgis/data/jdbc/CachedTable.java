@@ -0,0 +1,128 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc;
+
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.orbisgis.data.api.dataset.ISpatialTable;
+import org.orbisgis.data.api.dataset.ITable;
+import org.orbisgis.data.api.datasource.IJdbcDataSource;
+import org.orbisgis.data.jdbc.resultset.ResultSetSpliterator;
+import org.orbisgis.data.jdbc.resultset.StreamResultSet;
+
+import javax.sql.rowset.CachedRowSet;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Table replaying in memory the rows of a query cached by a {@link JdbcDataSource}. The rows are shared with the
+ * cache, each table only owns its cursor, so reading it never requests the database.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public class CachedTable extends JdbcTable<StreamResultSet> {
+
+    /** Cached rows of the query */
+    private final CachedRowSet rows;
+
+    /**
+     * Main constructor.
+     *
+     * @param dataBaseType   Type of the database the rows come from.
+     * @param jdbcDataSource DataSource which has cached the rows.
+     * @param query          Query the rows come from.
+     * @param params         Parameters of the query.
+     * @param rows           Cached rows of the query.
+     */
+    public CachedTable(DBTypes dataBaseType, IJdbcDataSource jdbcDataSource, String query, List<Object> params,
+                       CachedRowSet rows) {
+        super(dataBaseType, jdbcDataSource, null, null, params, query);
+        this.rows = rows;
+    }
+
+    @Override
+    protected ResultSet getResultSet() throws SQLException {
+        if (resultSet == null) {
+            resultSet = rows.createShared();
+            resultSet.beforeFirst();
+        }
+        return resultSet;
+    }
+
+    @Override
+    protected ResultSet getResultSetLimit(int limit) throws SQLException {
+        ResultSet rs = rows.createShared();
+        rs.beforeFirst();
+        return rs;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return rows.size() == 0;
+    }
+
+    @Override
+    public Object asType(Class<?> clazz) throws Exception {
+        if (ISpatialTable.class.isAssignableFrom(clazz)) {
+            return getJdbcDataSource().getSpatialTable(getBaseQuery(), getParams());
+        } else if (ITable.class.isAssignableFrom(clazz)) {
+            return new CachedTable(getDbType(), getJdbcDataSource(), getBaseQuery(), getParams(), rows);
+        }
+        return super.asType(clazz);
+    }
+
+    @Override
+    public Stream<StreamResultSet> stream() throws Exception {
+        Spliterator<StreamResultSet> spliterator = new ResultSetSpliterator<>(getRowCount(), new StreamResultSet(getResultSet()),
+                getResultSetProperties().getCancellationToken());
+        return StreamSupport.stream(spliterator, true);
+    }
+
+    @Override
+    public ResultSetIterator iterator() {
+        return new ResultSetIterator(this);
+    }
+}
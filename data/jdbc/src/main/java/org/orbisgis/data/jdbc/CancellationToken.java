@@ -0,0 +1,163 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc;
+
+import org.orbisgis.data.api.dsl.ICancellationToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+
+/**
+ * Implementation of the {@link ICancellationToken} interface. A token can have a parent : it is then cancelled with
+ * its parent, its deadline is never after the one of its parent and its {@link Statement}s are also registered to the
+ * parent, so that a deadline set on a step of a process cancels the statements of this step, while cancelling the
+ * whole process cancels the statements of all its steps.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public class CancellationToken implements ICancellationToken {
+
+    /** Number of rows read between two checks of the token by the row iterations */
+    public static final int CHECK_INTERVAL = 100;
+
+    /** Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(CancellationToken.class);
+
+    /** Parent token, may be null */
+    private final ICancellationToken parent;
+    /** Deadline in milliseconds since the epoch */
+    private final long deadline;
+    /** Running statements, weakly referenced as the tables may keep their statement open */
+    private final Set<Statement> statements = Collections.newSetFromMap(new WeakHashMap<>());
+    /** True if the token has been cancelled */
+    private volatile boolean cancelled = false;
+
+    /**
+     * Create a token without deadline.
+     */
+    public CancellationToken() {
+        this(null, -1);
+    }
+
+    /**
+     * Create a token with a deadline.
+     *
+     * @param timeout Time before the deadline in milliseconds, negative for no deadline.
+     */
+    public CancellationToken(long timeout) {
+        this(null, timeout);
+    }
+
+    /**
+     * Create a token cancelled with the given parent token.
+     *
+     * @param parent  Parent token, may be null.
+     * @param timeout Time before the deadline in milliseconds, negative to keep the deadline of the parent.
+     */
+    public CancellationToken(ICancellationToken parent, long timeout) {
+        this.parent = parent;
+        long own = timeout < 0 ? Long.MAX_VALUE : System.currentTimeMillis() + timeout;
+        this.deadline = parent == null ? own : Math.min(own, parent.getDeadline());
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+        List<Statement> running;
+        synchronized (statements) {
+            running = new ArrayList<>(statements);
+            statements.clear();
+        }
+        for (Statement statement : running) {
+            try {
+                if (!statement.isClosed()) {
+                    statement.cancel();
+                }
+            } catch (SQLException e) {
+                LOGGER.debug("Unable to cancel the statement.\n" + e.getLocalizedMessage());
+            }
+        }
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled || parent != null && parent.isCancelled();
+    }
+
+    @Override
+    public long getDeadline() {
+        return deadline;
+    }
+
+    @Override
+    public void register(Statement statement) throws SQLException {
+        check();
+        if (deadline != Long.MAX_VALUE) {
+            //The query timeout is in seconds, 0 meaning no timeout
+            long remaining = (deadline - System.currentTimeMillis() + 999) / 1000;
+            int timeout = (int) Math.max(1, Math.min(Integer.MAX_VALUE, remaining));
+            if (statement.getQueryTimeout() == 0 || statement.getQueryTimeout() > timeout) {
+                statement.setQueryTimeout(timeout);
+            }
+        }
+        synchronized (statements) {
+            statements.add(statement);
+        }
+        //The token may have been cancelled while the statement was registered
+        if (cancelled) {
+            unregister(statement);
+            check();
+        }
+        if (parent != null) {
+            parent.register(statement);
+        }
+    }
+
+    @Override
+    public void unregister(Statement statement) {
+        synchronized (statements) {
+            statements.remove(statement);
+        }
+        if (parent != null) {
+            parent.unregister(statement);
+        }
+    }
+}
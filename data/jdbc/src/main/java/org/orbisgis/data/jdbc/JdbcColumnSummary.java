@@ -0,0 +1,140 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc;
+
+import org.orbisgis.data.api.dataset.IColumnSummary;
+
+/**
+ * Implementation of the interface {@link IColumnSummary} for the JDBC module.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public class JdbcColumnSummary implements IColumnSummary {
+
+    /** Name of the column */
+    private final String name;
+    /** Name of the database type of the column */
+    private final String type;
+    /** Number of null values */
+    private final long nullCount;
+    /** Minimum value */
+    private final Object min;
+    /** Maximum value */
+    private final Object max;
+    /** Mean value */
+    private final Double mean;
+    /** Estimated number of distinct values, -1 if not computed */
+    private long distinctCount;
+    /** Counts of the bins of the histogram, null if not computed */
+    private long[] histogram;
+
+    public JdbcColumnSummary(String name, String type, long nullCount, Object min, Object max, Double mean,
+                             long distinctCount) {
+        this.name = name;
+        this.type = type;
+        this.nullCount = nullCount;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+        this.distinctCount = distinctCount;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getType() {
+        return type;
+    }
+
+    @Override
+    public long getNullCount() {
+        return nullCount;
+    }
+
+    @Override
+    public Object getMin() {
+        return min;
+    }
+
+    @Override
+    public Object getMax() {
+        return max;
+    }
+
+    @Override
+    public Double getMean() {
+        return mean;
+    }
+
+    @Override
+    public long getDistinctCount() {
+        return distinctCount;
+    }
+
+    @Override
+    public long[] getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * Set the estimated number of distinct values.
+     *
+     * @param distinctCount Estimated number of distinct values.
+     */
+    void setDistinctCount(long distinctCount) {
+        this.distinctCount = distinctCount;
+    }
+
+    /**
+     * Set the counts of the bins of the histogram.
+     *
+     * @param histogram Counts of the bins of the histogram.
+     */
+    void setHistogram(long[] histogram) {
+        this.histogram = histogram;
+    }
+
+    @Override
+    public String toString() {
+        return name + "; type : " + type + "; nulls : " + nullCount + "; min : " + min + "; max : " + max +
+                "; mean : " + mean + "; distinct : " + distinctCount;
+    }
+}
@@ -45,6 +45,7 @@ import groovy.sql.Sql;
 import groovy.text.SimpleTemplateEngine;
 import groovy.transform.stc.ClosureParams;
 import groovy.transform.stc.SimpleType;
+import org.apache.groovy.sql.extensions.SqlExtensions;
 import org.codehaus.groovy.runtime.InvokerHelper;
 import org.h2.util.ScriptReader;
 import org.h2gis.functions.io.utility.IOMethods;
@@ -53,14 +54,19 @@ import org.h2gis.utilities.dbtypes.DBTypes;
 import org.locationtech.jts.geom.*;
 import org.orbisgis.commons.printer.Ascii;
 import org.orbisgis.data.api.dataset.IJdbcTable;
+import org.orbisgis.data.api.dataset.ISpatialIndex;
 import org.orbisgis.data.api.datasource.IDataSourceLocation;
 import org.orbisgis.data.api.datasource.IJdbcDataSource;
+import org.orbisgis.data.api.dsl.ICancellationToken;
 import org.orbisgis.data.api.dsl.IResultSetBuilder;
+import org.orbisgis.data.jdbc.dsl.FilterBuilder;
 import org.orbisgis.data.jdbc.dsl.ResultSetBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
 import java.io.*;
 import java.math.BigDecimal;
 import java.net.URI;
@@ -146,6 +152,18 @@ public abstract class JdbcDataSource extends Sql implements IJdbcDataSource, IRe
      * Logger
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(JdbcDataSource.class);
+    /**
+     * Maximum number of levels of detail kept in the cache
+     */
+    private static final int LOD_CACHE_SIZE = 16;
+    /**
+     * Maximum number of in memory spatial indexes kept in the cache
+     */
+    private static final int SPATIAL_INDEX_CACHE_SIZE = 16;
+    /**
+     * Default maximum estimated size in bytes of the cached query results
+     */
+    public static final long DEFAULT_QUERY_CACHE_SIZE = 64L * 1024 * 1024;
     /**
      * MetaClass used for the implementation of the {@link GroovyObject} methods
      */
@@ -158,6 +176,43 @@ public abstract class JdbcDataSource extends Sql implements IJdbcDataSource, IRe
      * Wrapped {@link DataSource}
      */
     private final DataSource dataSource;
+    /**
+     * Cache of the in memory spatial indexes built from the tables, keeping the most recently used ones
+     */
+    private final TableCache<ISpatialIndex> spatialIndexCache = new TableCache<>(SPATIAL_INDEX_CACHE_SIZE, 0);
+    /**
+     * Cache of the simplified rows read for a level of detail, keeping the most recently used ones
+     */
+    private final TableCache<List<Map<String, Object>>> lodCache = new TableCache<>(LOD_CACHE_SIZE, 0);
+    /**
+     * All the caches to invalidate when a table is modified
+     */
+    private final List<TableCache<?>> tableCaches = Arrays.asList(spatialIndexCache, lodCache);
+    /**
+     * Cache of the rows of the queries, null if the query cache is disabled
+     */
+    private volatile TableCache<CachedRowSet> queryCache;
+    /**
+     * Queries whose result is not cached, too big or spatial, so that they are not executed twice until one of their
+     * tables is modified
+     */
+    private volatile TableCache<Boolean> uncachedQueries;
+    /**
+     * Maximum number of rows of a cached query
+     */
+    private volatile int queryCacheMaxRows;
+    /**
+     * True if the literals of the query builder filters are replaced by bind parameters
+     */
+    private volatile boolean literalBinding = true;
+    /**
+     * Advisor watching the spatial predicates of the queries to recommend or create spatial indexes
+     */
+    private final SpatialIndexAdvisor spatialIndexAdvisor = new SpatialIndexAdvisor(this);
+    /**
+     * Log of the slow statements
+     */
+    private final SlowQueryLog slowQueryLog = new SlowQueryLog(this);
 
     /**
      * Constructor to create a {@link JdbcDataSource} from a {@link Sql} object.
@@ -413,44 +468,133 @@ public abstract class JdbcDataSource extends Sql implements IJdbcDataSource, IRe
         return new ResultSetBuilder(this).maxFieldSize(size);
     }
 
+    @Override
+    public IResultSetBuilder cancellation(ICancellationToken token) {
+        return new ResultSetBuilder(this).cancellation(token);
+    }
+
+    @Override
+    public IResultSetBuilder deadline(long timeout) {
+        return new ResultSetBuilder(this).deadline(timeout);
+    }
+
     @Override
     public int[] executeBatch(String[] queries) throws SQLException {
-        return new ResultSetBuilder(this).executeBatch(queries);
+        long start = slowQueryLog.start();
+        try {
+            int[] counts = new ResultSetBuilder(this).executeBatch(queries);
+            logSlowBatch(start, queries, counts == null ? -1 : Arrays.stream(counts).asLongStream().sum());
+            return counts;
+        } finally {
+            tablesChanged((Object[]) queries);
+        }
     }
 
     @Override
     public int[] executeBatch(GString[] queries) throws SQLException {
-        return new ResultSetBuilder(this).executeBatch(queries);
+        long start = slowQueryLog.start();
+        try {
+            int[] counts = new ResultSetBuilder(this).executeBatch(queries);
+            logSlowBatch(start, queries, counts == null ? -1 : Arrays.stream(counts).asLongStream().sum());
+            return counts;
+        } finally {
+            tablesChanged((Object[]) queries);
+        }
+    }
+
+    /**
+     * Log the given batch if it is slow.
+     *
+     * @param start    Start time of the batch.
+     * @param queries  Statements of the batch.
+     * @param rowCount Number of modified rows.
+     */
+    private void logSlowBatch(long start, Object[] queries, long rowCount) {
+        if (slowQueryLog.isSlow(start)) {
+            String batch = Stream.of(queries).map(String::valueOf).collect(Collectors.joining(";\n"));
+            slowQueryLog.log(start, batch, null, rowCount);
+        }
+    }
+
+    /**
+     * Log the given statement if it is slow.
+     *
+     * @param start    Start time of the statement.
+     * @param gstring  Executed statement.
+     * @param rowCount Number of rows read or modified, -1 if unknown.
+     */
+    private void logSlowQuery(long start, GString gstring, long rowCount) {
+        if (slowQueryLog.isSlow(start)) {
+            List<Object> params = getParameters(gstring);
+            slowQueryLog.log(start, asSql(gstring, params), params, rowCount);
+        }
     }
 
     @Override
     public long[] executeLargeBatch(String[] queries) throws SQLException {
-        return new ResultSetBuilder(this).executeLargeBatch(queries);
+        try {
+            return new ResultSetBuilder(this).executeLargeBatch(queries);
+        } finally {
+            tablesChanged((Object[]) queries);
+        }
     }
 
     @Override
     public long[] executeLargeBatch(GString[] queries) throws SQLException {
-        return new ResultSetBuilder(this).executeLargeBatch(queries);
+        try {
+            return new ResultSetBuilder(this).executeLargeBatch(queries);
+        } finally {
+            tablesChanged((Object[]) queries);
+        }
     }
 
     @Override
     public long executeLargeUpdate(String sql) throws SQLException {
-        return new ResultSetBuilder(this).executeLargeUpdate(sql);
+        try {
+            return new ResultSetBuilder(this).executeLargeUpdate(sql);
+        } finally {
+            tablesChanged(sql);
+        }
     }
 
     @Override
     public long executeLargeUpdate(GString sql) throws SQLException {
-        return new ResultSetBuilder(this).executeLargeUpdate(sql);
+        try {
+            return new ResultSetBuilder(this).executeLargeUpdate(sql);
+        } finally {
+            tablesChanged(sql);
+        }
+    }
+
+    @Override
+    public int executeUpdate(String sql) throws SQLException {
+        try {
+            return super.executeUpdate(sql);
+        } finally {
+            tablesChanged(sql);
+        }
+    }
+
+    @Override
+    public int executeUpdate(GString gstring) throws SQLException {
+        try {
+            return super.executeUpdate(gstring);
+        } finally {
+            tablesChanged(gstring);
+        }
     }
 
     @Override
     public GroovyRowResult firstRow(GString gstring) throws SQLException {
+        spatialIndexAdvisor.analyze(gstring.toString());
+        long start = slowQueryLog.start();
         GroovyRowResult row;
         try {
             row = super.firstRow(gstring);
             if (!getConnection().getAutoCommit()) {
                 super.commit();
             }
+            logSlowQuery(start, gstring, row == null ? 0 : 1);
             return row;
         } catch (SQLException e) {
             LOGGER.debug("Unable to execute the request as a GString.", e.getLocalizedMessage());
@@ -466,6 +610,7 @@ public abstract class JdbcDataSource extends Sql implements IJdbcDataSource, IRe
         if (!getConnection().getAutoCommit()) {
             super.commit();
         }
+        logSlowQuery(start, gstring, row == null ? 0 : 1);
         return row;
     }
 
@@ -476,11 +621,14 @@ public abstract class JdbcDataSource extends Sql implements IJdbcDataSource, IRe
 
     @Override
     public boolean execute(String sql) throws SQLException {
+        spatialIndexAdvisor.analyze(sql);
+        long start = slowQueryLog.start();
         try {
             boolean b = super.execute(sql);
             if (!getConnection().getAutoCommit()) {
                 super.commit();
             }
+            slowQueryLog.log(start, sql, null, b ? -1 : getUpdateCount());
             return b;
         } catch (SQLException e) {
             try {
@@ -491,17 +639,471 @@ public abstract class JdbcDataSource extends Sql implements IJdbcDataSource, IRe
                 LOGGER.error("Unable to rollback.", e2.getLocalizedMessage());
             }
             throw e;
+        } finally {
+            tablesChanged(sql);
+        }
+    }
+
+    /**
+     * Drop the cached data computed from the tables modified by the given SQL statements.
+     *
+     * @param sqls SQL statements which may have modified some tables.
+     */
+    protected void tablesChanged(Object... sqls) {
+        if (sqls == null) {
+            return;
+        }
+        Set<String> tables = new HashSet<>();
+        for (Object sql : sqls) {
+            Set<String> modified = TableCache.getModifiedTables(sql == null ? null : sql.toString());
+            if (modified == null) {
+                invalidateCaches();
+                return;
+            }
+            tables.addAll(modified);
+        }
+        if (!tables.isEmpty()) {
+            getTableCaches().forEach(cache -> cache.invalidate(tables));
+            spatialIndexAdvisor.clearIndexStates(tables);
+        }
+    }
+
+    /**
+     * Drop the cached data computed from the given tables. This method should be called when the tables are
+     * modified without using this {@link JdbcDataSource}. If no table is given, all the cached data are dropped.
+     *
+     * @param tableNames Names of the modified tables.
+     */
+    public void invalidateCaches(String... tableNames) {
+        if (tableNames == null || tableNames.length == 0) {
+            getTableCaches().forEach(TableCache::clear);
+            spatialIndexAdvisor.clearIndexStates();
+        } else {
+            List<String> tables = Stream.of(tableNames).filter(Objects::nonNull)
+                    .map(name -> TableLocation.parse(name, getDataBaseType()).getTable())
+                    .collect(Collectors.toList());
+            getTableCaches().forEach(cache -> cache.invalidate(tables));
+            spatialIndexAdvisor.clearIndexStates(tables);
+        }
+    }
+
+    /**
+     * Return all the caches to invalidate when a table is modified.
+     *
+     * @return The caches computed from the tables.
+     */
+    private List<TableCache<?>> getTableCaches() {
+        TableCache<CachedRowSet> cache = queryCache;
+        TableCache<Boolean> uncached = uncachedQueries;
+        if (cache == null || uncached == null) {
+            return tableCaches;
+        }
+        List<TableCache<?>> caches = new ArrayList<>(tableCaches);
+        caches.add(cache);
+        caches.add(uncached);
+        return caches;
+    }
+
+    /**
+     * Enable the cache of the query results. The rows of the read only queries executed with
+     * {@link #getTable(String)}, {@link #getTable(String, List)}, {@link #rows(String)} or the query builders are kept
+     * in memory and replayed by the next executions of the same query with the same parameters. The results containing
+     * a geometry column are not cached, so that they are still read as spatial tables. A cached result is
+     * dropped when it is older than the time to live, when the cache is full and it is the least recently used one, or
+     * when a statement executed by this {@link JdbcDataSource} modifies one of the tables of the query. The cached
+     * results are kept within {@link #DEFAULT_QUERY_CACHE_SIZE} bytes.
+     *
+     * @param maxEntries Maximum number of cached query results.
+     * @param maxRows    Maximum number of rows of a cached query result, the bigger results are not cached.
+     * @param timeToLive Time to live of the cached results in milliseconds, 0 if they never expire.
+     */
+    public void enableQueryCache(int maxEntries, int maxRows, long timeToLive) {
+        enableQueryCache(maxEntries, maxRows, DEFAULT_QUERY_CACHE_SIZE, timeToLive);
+    }
+
+    /**
+     * Enable the cache of the query results, see {@link #enableQueryCache(int, int, long)}. The cached results are
+     * kept within an estimated size in bytes, the least recently used ones being dropped first. The queries whose
+     * result is not cached are remembered until one of their tables is modified, so that they are not executed twice.
+     *
+     * @param maxEntries Maximum number of cached query results.
+     * @param maxRows    Maximum number of rows of a cached query result, the bigger results are not cached.
+     * @param maxBytes   Maximum estimated size in bytes of the cached query results.
+     * @param timeToLive Time to live of the cached results in milliseconds, 0 if they never expire.
+     */
+    public void enableQueryCache(int maxEntries, int maxRows, long maxBytes, long timeToLive) {
+        if (maxRows <= 0) {
+            throw new IllegalArgumentException("The maximum number of rows should be greater than 0.");
+        }
+        queryCache = new TableCache<>(maxEntries, timeToLive, maxBytes, JdbcDataSource::estimateSize);
+        uncachedQueries = new TableCache<>(maxEntries, timeToLive);
+        queryCacheMaxRows = maxRows;
+    }
+
+    /**
+     * Disable the cache of the query results and drop all the cached results.
+     */
+    public void disableQueryCache() {
+        queryCache = null;
+        uncachedQueries = null;
+    }
+
+    /**
+     * Enable or disable the binding of the literals of the query builder filters. When enabled, the numeric and
+     * string literals compared to an expression in a filter are replaced by bind parameters, so that the filters only
+     * differing by their values share the same prepared statement and query plan. The binding is enabled by default.
+     *
+     * @param literalBinding True to replace the literals of the filters by bind parameters.
+     */
+    public void setLiteralBinding(boolean literalBinding) {
+        this.literalBinding = literalBinding;
+    }
+
+    /**
+     * Return true if the literals of the query builder filters are replaced by bind parameters.
+     *
+     * @return True if the literals of the filters are bound.
+     */
+    public boolean isLiteralBinding() {
+        return literalBinding;
+    }
+
+    /**
+     * Return the cache of the query results, null if it is disabled.
+     *
+     * @return The cache of the query results.
+     */
+    public TableCache<CachedRowSet> getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * Return an in memory table replaying the cached rows of the given query. On a cache miss, the query is executed
+     * and its rows are cached. Return null if the query cache is disabled, if the query may modify the database, if
+     * its result contains a geometry column or if its result is too big to be cached.
+     *
+     * @param query  Query between parenthesis or SQL SELECT statement.
+     * @param params Parameters of the query, may be null.
+     * @return The table replaying the cached rows, null if the query is not cached.
+     */
+    public CachedTable getCachedTable(String query, List<Object> params) throws SQLException {
+        CachedRowSet rows = getCachedRows(query, params);
+        return rows == null ? null : new CachedTable(getDataBaseType(), this, query, params, rows);
+    }
+
+    /**
+     * Return the cached rows of the given query. On a cache miss, the query is executed and its rows are cached.
+     * Return null if the query cache is disabled, if the query may modify the database, if its result contains a
+     * geometry column, checked before the execution when the driver describes the prepared query, or if its result is
+     * too big to be cached.
+     *
+     * @param query  Query between parenthesis or SQL SELECT statement.
+     * @param params Parameters of the query, may be null.
+     * @return The cached rows, null if the query is not cached.
+     */
+    private CachedRowSet getCachedRows(String query, List<Object> params) throws SQLException {
+        TableCache<CachedRowSet> cache = queryCache;
+        TableCache<Boolean> uncached = uncachedQueries;
+        if (cache == null || uncached == null || query == null || !isReadOnlyQuery(query)) {
+            return null;
+        }
+        String key = getQueryCacheKey(query, params);
+        CachedRowSet rows = cache.get(key);
+        if (rows != null || uncached.get(key) != null) {
+            return rows;
+        }
+        int maxRows = queryCacheMaxRows;
+        Connection con = getConnection();
+        if (con == null) {
+            throw new SQLException("Cannot get the connection to the database");
+        }
+        try (PreparedStatement ps = con.prepareStatement(query)) {
+            if (hasGeometryColumn(ps.getMetaData())) {
+                uncached.put(key, query, Boolean.TRUE);
+                return null;
+            }
+            if (params != null && !params.isEmpty()) {
+                setStatementParameters(ps, params);
+            }
+            //One more row is read to know if the result is too big
+            ps.setMaxRows(maxRows < Integer.MAX_VALUE ? maxRows + 1 : 0);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (hasGeometryColumn(rs.getMetaData())) {
+                    uncached.put(key, query, Boolean.TRUE);
+                    return null;
+                }
+                rows = RowSetProvider.newFactory().createCachedRowSet();
+                rows.populate(rs);
+            }
+            if (!con.getAutoCommit()) {
+                con.commit();
+            }
+        } catch (SQLException e) {
+            if (!con.getAutoCommit()) {
+                con.rollback();
+            }
+            throw e;
+        }
+        if (rows.size() > maxRows || !cache.put(key, query, rows)) {
+            uncached.put(key, query, Boolean.TRUE);
+            return null;
+        }
+        return rows;
+    }
+
+    /**
+     * Return an estimation of the size in bytes of cached rows.
+     *
+     * @param rows Cached rows.
+     * @return The estimated size in bytes of the rows.
+     */
+    private static long estimateSize(CachedRowSet rows) {
+        long size = 0;
+        try {
+            ResultSet rs = rows.createShared();
+            int columnCount = rs.getMetaData().getColumnCount();
+            rs.beforeFirst();
+            while (rs.next()) {
+                //Object header and array of the row
+                size += 32 + 8L * columnCount;
+                for (int i = 1; i <= columnCount; i++) {
+                    Object value = rs.getObject(i);
+                    if (value instanceof CharSequence) {
+                        size += 40 + 2L * ((CharSequence) value).length();
+                    } else if (value instanceof byte[]) {
+                        size += 16 + ((byte[]) value).length;
+                    } else if (value != null) {
+                        size += 24;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.debug("Unable to estimate the size of the cached rows", e);
+            return Long.MAX_VALUE;
+        }
+        return size;
+    }
+
+    /**
+     * Return true if the given result description contains a geometry column.
+     *
+     * @param metaData Description of a result, may be null.
+     * @return True if the result contains a geometry column, false otherwise or if it is not described.
+     */
+    private static boolean hasGeometryColumn(ResultSetMetaData metaData) throws SQLException {
+        if (metaData == null) {
+            return false;
+        }
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            String type = metaData.getColumnTypeName(i);
+            if (type != null && type.toLowerCase().startsWith("geometry")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the cached rows of the given query as {@link GroovyRowResult}, null if the query is not cached.
+     *
+     * @param query  SQL SELECT statement.
+     * @param params Parameters of the query, may be null.
+     * @return The cached rows, null if the query is not cached.
+     */
+    private List<GroovyRowResult> getCachedRowResults(String query, List<Object> params) throws SQLException {
+        CachedRowSet rows = getCachedRows(query, params);
+        if (rows == null) {
+            return null;
+        }
+        List<GroovyRowResult> results = new ArrayList<>(rows.size());
+        ResultSet rs = rows.createShared();
+        rs.beforeFirst();
+        while (rs.next()) {
+            results.add(SqlExtensions.toRowResult(rs));
+        }
+        return results;
+    }
+
+    /**
+     * Return true if the given SQL is a query which does not modify the database.
+     *
+     * @param sql SQL statement.
+     * @return True if the SQL only reads the database.
+     */
+    static boolean isReadOnlyQuery(String sql) {
+        String query = sql.replaceFirst("^[\\s(]+", "").toUpperCase(Locale.ROOT);
+        if (!query.startsWith("SELECT") && !query.startsWith("WITH")) {
+            return false;
+        }
+        Set<String> modified = TableCache.getModifiedTables(sql);
+        return modified != null && modified.isEmpty() && !query.contains(" INTO ");
+    }
+
+    /**
+     * Return the key of the query cache for the given query and parameters. The whitespaces out of the literals and
+     * the enclosing parenthesis of the query are not significant.
+     *
+     * @param query  SQL query.
+     * @param params Parameters of the query, may be null.
+     * @return The key of the query.
+     */
+    static String getQueryCacheKey(String query, List<Object> params) {
+        StringBuilder normalized = new StringBuilder();
+        char quote = 0;
+        boolean space = false;
+        for (char c : query.trim().toCharArray()) {
+            if (quote == 0 && Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space && normalized.length() > 0) {
+                normalized.append(' ');
+            }
+            space = false;
+            if (quote == 0 && (c == '\'' || c == '"')) {
+                quote = c;
+            } else if (c == quote) {
+                quote = 0;
+            }
+            normalized.append(c);
+        }
+        String key = normalized.toString();
+        while (key.startsWith("(") && getClosingParenthesis(key) == key.length() - 1) {
+            key = key.substring(1, key.length() - 1).trim();
+        }
+        StringBuilder builder = new StringBuilder(key);
+        if (params != null) {
+            for (Object param : params) {
+                builder.append('\u0000');
+                if (param == null) {
+                    builder.append("null");
+                } else if (param instanceof byte[]) {
+                    builder.append("byte[]:").append(Arrays.toString((byte[]) param));
+                } else {
+                    builder.append(param.getClass().getName()).append(':').append(param);
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Return the index of the parenthesis closing the first one of the given SQL, -1 if it is not closed.
+     *
+     * @param sql SQL starting with a parenthesis.
+     * @return The index of the closing parenthesis.
+     */
+    static int getClosingParenthesis(String sql) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
         }
+        return -1;
+    }
+
+    /**
+     * Return the cache of the in memory spatial indexes built from the tables of this {@link JdbcDataSource}.
+     *
+     * @return The cache of the in memory spatial indexes.
+     */
+    public TableCache<ISpatialIndex> getSpatialIndexCache() {
+        return spatialIndexCache;
+    }
+
+    /**
+     * Return the cache of the simplified rows read from the tables of this {@link JdbcDataSource} for a level of
+     * detail.
+     *
+     * @return The cache of the simplified rows.
+     */
+    public TableCache<List<Map<String, Object>>> getLodCache() {
+        return lodCache;
+    }
+
+    /**
+     * Return the advisor watching the spatial predicates of the queries executed by this {@link JdbcDataSource} to
+     * recommend or create the missing spatial indexes.
+     *
+     * @return The spatial index advisor.
+     */
+    public SpatialIndexAdvisor getSpatialIndexAdvisor() {
+        return spatialIndexAdvisor;
+    }
+
+    /**
+     * Return the log of the slow statements executed by this {@link JdbcDataSource}.
+     *
+     * @return The slow query log.
+     */
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
+    @Override
+    public List<GroovyRowResult> rows(String sql) throws SQLException {
+        spatialIndexAdvisor.analyze(sql);
+        List<GroovyRowResult> cached = getCachedRowResults(sql, null);
+        if (cached != null) {
+            return cached;
+        }
+        long start = slowQueryLog.start();
+        List<GroovyRowResult> rows = super.rows(sql);
+        slowQueryLog.log(start, sql, null, rows.size());
+        return rows;
+    }
+
+    @Override
+    public List<GroovyRowResult> rows(String sql, List<Object> params) throws SQLException {
+        spatialIndexAdvisor.analyze(sql);
+        List<GroovyRowResult> cached = getCachedRowResults(sql, params);
+        if (cached != null) {
+            return cached;
+        }
+        long start = slowQueryLog.start();
+        List<GroovyRowResult> rows = super.rows(sql, params);
+        slowQueryLog.log(start, sql, params, rows.size());
+        return rows;
+    }
+
+    @Override
+    public GroovyRowResult firstRow(String sql) throws SQLException {
+        spatialIndexAdvisor.analyze(sql);
+        long start = slowQueryLog.start();
+        GroovyRowResult row = super.firstRow(sql);
+        slowQueryLog.log(start, sql, null, row == null ? 0 : 1);
+        return row;
     }
 
     @Override
     public List<GroovyRowResult> rows(GString gstring) throws SQLException {
+        spatialIndexAdvisor.analyze(gstring.toString());
         List<GroovyRowResult> rows;
+        if (queryCache != null) {
+            List<Object> params = getParameters(gstring);
+            rows = getCachedRowResults(asSql(gstring, params), params);
+            if (rows != null) {
+                return rows;
+            }
+        }
+        long start = slowQueryLog.start();
         try {
             rows = super.rows(gstring);
             if (!getConnection().getAutoCommit()) {
                 super.commit();
             }
+            logSlowQuery(start, gstring, rows.size());
             return rows;
         } catch (SQLException e) {
             try {
@@ -516,6 +1118,7 @@ public abstract class JdbcDataSource extends Sql implements IJdbcDataSource, IRe
         if (!getConnection().getAutoCommit()) {
             super.commit();
         }
+        logSlowQuery(start, gstring, rows.size());
         return rows;
     }
 
@@ -523,11 +1126,14 @@ public abstract class JdbcDataSource extends Sql implements IJdbcDataSource, IRe
     public void eachRow(String sql,
                         @ClosureParams(value = SimpleType.class, options = "groovy.sql.GroovyResultSet") Closure closure)
             throws SQLException {
+        spatialIndexAdvisor.analyze(sql);
+        long start = slowQueryLog.start();
         try {
             super.eachRow(sql, closure);
             if (!getConnection().getAutoCommit()) {
                 super.commit();
             }
+            slowQueryLog.log(start, sql, null, -1);
         } catch (SQLException e) {
             LOGGER.debug("Unable to execute the request as a String.\n" + e.getLocalizedMessage());
             try {
@@ -538,6 +1144,7 @@ public abstract class JdbcDataSource extends Sql implements IJdbcDataSource, IRe
                 LOGGER.error("Unable to rollback.", e2.getLocalizedMessage());
             }
             super.eachRow(sql, closure);
+            slowQueryLog.log(start, sql, null, -1);
         }
     }
 
@@ -545,11 +1152,14 @@ public abstract class JdbcDataSource extends Sql implements IJdbcDataSource, IRe
     public void eachRow(GString gstring,
                         @ClosureParams(value = SimpleType.class, options = "java.sql.ResultSet") Closure closure)
             throws SQLException {
+        spatialIndexAdvisor.analyze(gstring.toString());
+        long start = slowQueryLog.start();
         try {
             super.eachRow(gstring, closure);
             if (!getConnection().getAutoCommit()) {
                 super.commit();
             }
+            logSlowQuery(start, gstring, -1);
         } catch (SQLException e) {
             LOGGER.debug("Unable to execute the request as a GString.\n" + e.getLocalizedMessage());
 
@@ -561,6 +1171,7 @@ public abstract class JdbcDataSource extends Sql implements IJdbcDataSource, IRe
                 LOGGER.error("Unable to rollback.", e2.getLocalizedMessage());
             }
             super.eachRow(gstring.toString(), closure);
+            logSlowQuery(start, gstring, -1);
         }
     }
 
@@ -800,6 +1411,7 @@ public abstract class JdbcDataSource extends Sql implements IJdbcDataSource, IRe
                 ioMethods = new IOMethods();
             }
             ioMethods.importFile(getConnection(), filePath, tableName, encoding, delete);
+            invalidateCaches(tableName);
             return formatedTableName;
     }
 
@@ -919,6 +1531,7 @@ public abstract class JdbcDataSource extends Sql implements IJdbcDataSource, IRe
     @Override
     public String load(IJdbcDataSource dataSource, String inputTableName, boolean deleteIfExists) throws Exception {
              IOMethods.exportToDataBase(dataSource.getConnection(), inputTableName, getConnection(), inputTableName, deleteIfExists ? -1 : 0, 1000);
+            invalidateCaches(inputTableName);
             TableLocation targetTableLocation = TableLocation.parse(inputTableName, this.getDataBaseType());
             return targetTableLocation.toString();
 
@@ -926,13 +1539,14 @@ public abstract class JdbcDataSource extends Sql implements IJdbcDataSource, IRe
 
     @Override
     public String load(IJdbcDataSource dataSource, String inputTableName) throws Exception {
-
+            invalidateCaches(inputTableName);
             return IOMethods.exportToDataBase(dataSource.getConnection(), inputTableName, getConnection(), inputTableName, 0, 1000);
 
     }
 
     @Override
     public String load(IJdbcDataSource dataSource, String inputTableName, String outputTableName, boolean deleteIfExists, int batchSize) throws Exception {
+        invalidateCaches(outputTableName);
         return IOMethods.exportToDataBase(dataSource.getConnection(), inputTableName, getConnection(), outputTableName, deleteIfExists ? -1 : 0, 1000);
     }
 
@@ -1094,6 +1708,7 @@ public abstract class JdbcDataSource extends Sql implements IJdbcDataSource, IRe
             return false;
         }
         try {
+            spatialIndexAdvisor.clearIndexStates(tableName);
             return JDBCUtilities.createSpatialIndex(getConnection(), TableLocation.parse(tableName, getDataBaseType()), columnName);
         } catch (SQLException e) {
             LOGGER.error("Unable to create a spatial index on the column '" + columnName + "' in the table '" + tableName + "'.\n" +
@@ -1114,6 +1729,7 @@ public abstract class JdbcDataSource extends Sql implements IJdbcDataSource, IRe
             if (geomColumn == null || geomColumn.isEmpty()) {
                 return false;
             }
+            spatialIndexAdvisor.clearIndexStates(tableName);
             return JDBCUtilities.createSpatialIndex(getConnection(), table, geomColumn);
         } catch (SQLException e) {
             LOGGER.error("Unable to create a spatial index on the table '" + tableName + "'.\n" +
@@ -1211,6 +1827,7 @@ public abstract class JdbcDataSource extends Sql implements IJdbcDataSource, IRe
     @Override
     public void dropIndex(String tableName, String columnName) throws Exception{
         if (columnName != null || tableName != null) {
+            spatialIndexAdvisor.clearIndexStates(tableName);
             JDBCUtilities.dropIndex(getConnection(), TableLocation.parse(tableName, getDataBaseType()), columnName);
         }
     }
@@ -1247,6 +1864,7 @@ public abstract class JdbcDataSource extends Sql implements IJdbcDataSource, IRe
     }
     @Override
     public boolean setSrid(String tableName, String columnName, int srid) throws Exception{
+       invalidateCaches(tableName);
        return GeometryTableUtilities.alterSRID(getConnection(), TableLocation.parse(tableName, getDataBaseType()), columnName, srid);
    }
 
@@ -1272,6 +1890,7 @@ public abstract class JdbcDataSource extends Sql implements IJdbcDataSource, IRe
             if (geomColumn == null || geomColumn.isEmpty()) {
                 throw new IllegalArgumentException("Unable to get the srid");
             }
+            invalidateCaches(tableName);
             return GeometryTableUtilities.alterSRID(getConnection(), tableName, geomColumn, srid);
     }
 
@@ -1299,7 +1918,9 @@ public abstract class JdbcDataSource extends Sql implements IJdbcDataSource, IRe
             System.out.println("Unable to get the connection to the database");
         }
         try (Statement statement = con.createStatement()) {
-            ResultSet rs = statement.executeQuery("SELECT * FROM " + tableName + " as foo");
+            //Only the printed rows and the one telling that there are more rows are fetched
+            ResultSet rs = statement.executeQuery("SELECT * FROM " + tableName + " as foo " +
+                    FilterBuilder.getLimitClause(getDataBaseType(), 1002, 0));
             StringBuilder builder = new StringBuilder();
             Ascii printer = new Ascii(builder);
             List<String> columnNames = JDBCUtilities.getColumnNames(rs.getMetaData());
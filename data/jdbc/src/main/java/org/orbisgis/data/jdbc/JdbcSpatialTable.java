@@ -38,20 +38,48 @@ package org.orbisgis.data.jdbc;
 
 import org.h2gis.utilities.*;
 import org.h2gis.utilities.dbtypes.DBTypes;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKBReader;
+import org.orbisgis.data.api.dataset.IGeometryProfile;
 import org.orbisgis.data.api.dataset.IJdbcSpatialTable;
 import org.orbisgis.data.api.dataset.IRaster;
+import org.orbisgis.data.api.dataset.ISpatialGrid;
+import org.orbisgis.data.api.dataset.ISpatialIndex;
+import org.orbisgis.data.api.dataset.IValidationReport;
 import org.orbisgis.data.api.datasource.IJdbcDataSource;
+import org.orbisgis.data.jdbc.raster.JdbcRaster;
+import org.orbisgis.data.jdbc.resultset.CoordinateReader;
+import org.orbisgis.data.jdbc.resultset.GeoJsonWriter;
+import org.orbisgis.data.jdbc.resultset.GeometryDecodingPipeline;
 import org.orbisgis.data.jdbc.resultset.ResultSetSpliterator;
 import org.orbisgis.data.jdbc.resultset.StreamSpatialResultSet;
+import org.orbisgis.data.jdbc.spatial.GeometryProfile;
+import org.orbisgis.data.jdbc.spatial.GeometryValidation;
+import org.orbisgis.data.jdbc.spatial.LevelOfDetail;
+import org.orbisgis.data.jdbc.spatial.NearestNeighbours;
+import org.orbisgis.data.jdbc.spatial.Reprojection;
+import org.orbisgis.data.jdbc.spatial.SpatialClustering;
+import org.orbisgis.data.jdbc.spatial.SpatialGrid;
+import org.orbisgis.data.jdbc.spatial.SpatialIndex;
+import org.orbisgis.data.jdbc.spatial.SpatialJoin;
+import org.orbisgis.data.jdbc.spatial.TableReader;
+import org.orbisgis.data.jdbc.spatial.VectorTileEncoder;
+import org.orbisgis.data.jdbc.spatial.VectorTiles;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.DoubleBuffer;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -115,17 +143,29 @@ public abstract class JdbcSpatialTable extends JdbcTable<StreamSpatialResultSet>
 
     @Override
     public IRaster getRaster(int columnIndex) throws Exception {
-        throw new UnsupportedOperationException();
+        ResultSet rs = getResultSet();
+        if (rs != null) {
+            return JdbcRaster.read(rs.getObject(columnIndex));
+        }
+        throw new SQLException("Cannot find any raster on column index " + columnIndex);
     }
 
     @Override
     public IRaster getRaster(String columnLabel) throws Exception {
-        throw new UnsupportedOperationException();
+        ResultSet rs = getResultSet();
+        if (rs != null) {
+            return JdbcRaster.read(rs.getObject(columnLabel));
+        }
+        throw new SQLException("Cannot find any raster on column name " + columnLabel);
     }
 
     @Override
     public IRaster getRaster() throws Exception {
-        throw new UnsupportedOperationException();
+        List<String> rasterColumns = getRasterColumns();
+        if (rasterColumns.isEmpty()) {
+            throw new SQLException("Cannot find any raster column");
+        }
+        return getRaster(rasterColumns.get(0));
     }
 
     @Override
@@ -138,19 +178,28 @@ public abstract class JdbcSpatialTable extends JdbcTable<StreamSpatialResultSet>
         return list;
     }
 
+    /**
+     * Return the columns having the database raster type. Only PostGIS provides such a type : on H2GIS, the WKB
+     * rasters are stored in binary columns which are not detected, but can be read with {@link #getRaster(String)}.
+     *
+     * @return The list of the table raster columns.
+     */
     @Override
     public List<String> getRasterColumns() throws Exception {
-        return new ArrayList<>();
+        List<String> list = new ArrayList<>();
+        getColumnNamesTypes().forEach((name, type) -> {
+            if ("raster".equalsIgnoreCase(type)) {
+                list.add(name);
+            }
+        });
+        return list;
     }
 
     @Override
     public List<String> getGeometricColumns() throws Exception {
         if (getTableLocation() == null) {
             try {
-                ResultSet rs = getResultSet();
-                if (rs != null) {
-                    return GeometryTableUtilities.getGeometryColumnNames(rs.getMetaData());
-                }
+                return GeometryTableUtilities.getGeometryColumnNames(getTableMetaData());
             } catch (SQLException e) {
                 LOGGER.error("Unable to get the geometric columns on ResultSet.", e);
                 return null;
@@ -166,7 +215,6 @@ public abstract class JdbcSpatialTable extends JdbcTable<StreamSpatialResultSet>
                 return null;
             }
         }
-        return null;
     }
 
     @Override
@@ -176,7 +224,7 @@ public abstract class JdbcSpatialTable extends JdbcTable<StreamSpatialResultSet>
             if (con == null) {
                 throw new SQLException("Cannot get the connection to the database");
             }
-            return GeometryTableUtilities.getEnvelope(con, getBaseQuery(), geometryColumns, filter);
+            return GeometryTableUtilities.getEnvelope(con, getInlinedQuery(), geometryColumns, filter);
 
         } else {
             Connection con = getJdbcDataSource().getConnection();
@@ -195,7 +243,7 @@ public abstract class JdbcSpatialTable extends JdbcTable<StreamSpatialResultSet>
                 throw new SQLException("Cannot get the connection to the database");
             }
             try {
-                return GeometryTableUtilities.getEnvelope(con, getBaseQuery(), geometryColumns);
+                return GeometryTableUtilities.getEnvelope(con, getInlinedQuery(), geometryColumns);
             } catch (SQLException e) {
                 return null;
             }
@@ -229,7 +277,8 @@ public abstract class JdbcSpatialTable extends JdbcTable<StreamSpatialResultSet>
             if(geomMeta==null){
                 return null;
             }
-            return GeometryTableUtilities.getEnvelope(rs0, geomMeta.first());
+            //The extent is computed by the database instead of iterating the cursor of the table
+            return getExtent(TableLocation.quoteIdentifier(geomMeta.first(), getDbType()));
         } else {
             Connection con = getJdbcDataSource().getConnection();
             if (con == null) {
@@ -271,41 +320,169 @@ public abstract class JdbcSpatialTable extends JdbcTable<StreamSpatialResultSet>
 
     }
 
+    /**
+     * Return the geometry type of each geometry column, read from the column declaration or inferred from the
+     * geometry headers of a sample of the rows when the column type is not declared, see
+     * {@link #getGeometryProfiles()}, so the table is never fully read.
+     *
+     * @return The field names as key and geometry types as value, null if the types cannot be read.
+     */
     @Override
     public Map<String, String> getGeometryTypes() throws Exception {
-        if (getTableLocation() == null) {
-            Map<String, String> map = new HashMap<>();
-            ResultSet rs = getResultSet();
-            if (rs == null) {
-                throw new SQLException("Cannot read the data");
+        Connection con = getJdbcDataSource().getConnection();
+        if (con == null) {
+            throw new SQLException("Cannot get the connection to the database");
+        }
+        Map<String, String> map = new LinkedHashMap<>();
+        try {
+            Map<String, GeometryMetaData> declared = getTableLocation() == null ? Collections.emptyMap() :
+                    GeometryTableUtilities.getMetaData(con, getTableLocation());
+            boolean undeclared = false;
+            for (String column : getGeometricColumns()) {
+                GeometryMetaData metaData = declared.get(column);
+                if (metaData == null || metaData.getGeometryTypeCode() == 0) {
+                    undeclared = true;
+                    map.put(column, null);
+                } else {
+                    map.put(column, metaData.getGeometryType());
+                }
+            }
+            if (undeclared) {
+                getGeometryProfiles().forEach((column, profile) -> {
+                    if (map.get(column) == null) {
+                        map.put(column, profile.getGeometryType());
+                    }
+                });
             }
+            return map;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public Map<String, IGeometryProfile> getGeometryProfiles(int sampleSize) throws Exception {
+        if (sampleSize <= 0) {
+            throw new IllegalArgumentException("The sample size should be strictly positive.");
+        }
+        Connection con = getJdbcDataSource().getConnection();
+        if (con == null) {
+            throw new SQLException("Cannot get the connection to the database");
+        }
+        Map<String, IGeometryProfile> profiles = new LinkedHashMap<>();
+        List<String> sampled = new ArrayList<>();
+        Map<String, GeometryMetaData> declared = Collections.emptyMap();
+        if (getTableLocation() != null) {
             try {
-                GeometryTableUtilities.getMetaData(getResultSet())
-                        .forEach((key, value) -> map.put(key, value.getGeometryType()));
-                return map;
-            }catch (SQLException e){
-                return null;
+                declared = GeometryTableUtilities.getMetaData(con, getTableLocation());
+            } catch (SQLException e) {
+                LOGGER.debug("Unable to read the geometry columns declaration of " + getTableLocation(), e);
             }
-        } else {
-            Map<String, String> map = new HashMap<>();
-            Connection con = getJdbcDataSource().getConnection();
-            if (con == null) {
-                throw new SQLException("Cannot get the connection to the database");
+        }
+        for (String column : getGeometricColumns()) {
+            GeometryMetaData metaData = declared.get(column);
+            if (GeometryProfile.isConstrained(metaData)) {
+                profiles.put(column, GeometryProfile.declared(column, metaData));
+            } else {
+                profiles.put(column, null);
+                sampled.add(column);
             }
-            try {
-                GeometryTableUtilities.getMetaData(con, getTableLocation())
-                        .forEach((s, meta) -> map.put(s, meta.getGeometryType()));
-                return map;
-            }catch (SQLException e){
-                return null;
+        }
+        if (sampled.isEmpty()) {
+            return profiles;
+        }
+        String columns = sampled.stream().map(column -> TableLocation.quoteIdentifier(column, getDbType()))
+                .collect(Collectors.joining(", "));
+        String query = getSampleQuery(con, columns, sampleSize);
+        boolean head = query == null;
+        boolean exact = head;
+        if (head) {
+            //Reading one more row than the sample tells if all the rows have been read
+            query = getSelectQuery(columns) + " LIMIT " + (sampleSize + 1);
+        }
+        List<GeometryProfile> accumulators = sampled.stream().map(GeometryProfile::new).collect(Collectors.toList());
+        boolean hexEncoded = getDbType() == DBTypes.POSTGIS || getDbType() == DBTypes.POSTGRESQL;
+        try (Statement statement = getStatement(query);
+             ResultSet rs = statement instanceof PreparedStatement ? ((PreparedStatement) statement).executeQuery() :
+                     statement.executeQuery(query)) {
+            int count = 0;
+            while (rs.next()) {
+                if (++count > sampleSize) {
+                    exact = false;
+                    break;
+                }
+                for (int i = 0; i < accumulators.size(); i++) {
+                    if (hexEncoded) {
+                        String hex = rs.getString(i + 1);
+                        accumulators.get(i).add(hex == null ? null : WKBReader.hexToBytes(hex));
+                    } else {
+                        accumulators.get(i).add(rs.getBytes(i + 1));
+                    }
+                }
             }
         }
+        for (GeometryProfile profile : accumulators) {
+            profile.setConfidence(exact ? IGeometryProfile.Confidence.EXACT :
+                    head ? IGeometryProfile.Confidence.HEAD : IGeometryProfile.Confidence.SAMPLED);
+            profiles.put(profile.getColumnName(), profile);
+        }
+        return profiles;
+    }
+
+    /**
+     * Return the query reading a sample of the rows of the table : a {@code TABLESAMPLE} on PostGIS and rows spread
+     * over the row identifiers on H2. Return null if the table is a query, if the database cannot sample the rows
+     * or if the table has fewer rows than the sample, the first rows having then to be read.
+     *
+     * @param con        Connection to the database.
+     * @param columns    Quoted columns to read.
+     * @param sampleSize Maximum number of rows to read.
+     * @return The query reading a sample of the rows, null if the first rows should be read.
+     */
+    private String getSampleQuery(Connection con, String columns, int sampleSize) {
+        if (getTableLocation() == null) {
+            return null;
+        }
+        String table = getTableLocation().toString(getDbType());
+        try (Statement statement = con.createStatement()) {
+            if (getDbType() == DBTypes.POSTGIS || getDbType() == DBTypes.POSTGRESQL) {
+                //The row count estimated by the statistics does not need any scan
+                try (ResultSet rs = statement.executeQuery("SELECT reltuples::bigint FROM pg_class WHERE oid = '" +
+                        table.replace("'", "''") + "'::regclass")) {
+                    double estimate = rs.next() ? rs.getDouble(1) : -1;
+                    if (estimate <= sampleSize) {
+                        return null;
+                    }
+                    //Twice the expected percentage as the block sampling returns a varying number of rows
+                    double percentage = Math.min(100, 200.0 * sampleSize / estimate);
+                    return "SELECT " + columns + " FROM " + table + " TABLESAMPLE SYSTEM (" + percentage + ") LIMIT " +
+                            sampleSize;
+                }
+            } else if (getDbType() == DBTypes.H2 || getDbType() == DBTypes.H2GIS) {
+                try (ResultSet rs = statement.executeQuery("SELECT MIN(_ROWID_), MAX(_ROWID_), COUNT(*) FROM " +
+                        table)) {
+                    if (!rs.next() || rs.getLong(3) <= sampleSize) {
+                        return null;
+                    }
+                    long min = rs.getLong(1);
+                    double step = (double) (rs.getLong(2) - min) / (sampleSize - 1);
+                    StringJoiner rowIds = new StringJoiner(", ");
+                    for (int i = 0; i < sampleSize; i++) {
+                        rowIds.add(Long.toString(min + Math.round(i * step)));
+                    }
+                    return "SELECT " + columns + " FROM " + table + " WHERE _ROWID_ IN (" + rowIds + ")";
+                }
+            }
+        } catch (SQLException e) {
+            //Some tables, like the linked ones, cannot be sampled
+            LOGGER.debug("Unable to sample the table " + table, e);
+        }
+        return null;
     }
 
     @Override
     public SpatialResultSetMetaData getMetaData() throws SQLException {
-        ResultSet rs = getResultSet();
-        return rs.getMetaData().unwrap(SpatialResultSetMetaData.class);
+        return getTableMetaData();
     }
 
     @Override
@@ -315,7 +492,643 @@ public abstract class JdbcSpatialTable extends JdbcTable<StreamSpatialResultSet>
 
     @Override
     public Stream<StreamSpatialResultSet> stream() throws Exception {
-        Spliterator<StreamSpatialResultSet> spliterator = new ResultSetSpliterator<>(this.getRowCount(), new StreamSpatialResultSet((SpatialResultSet) getResultSet()));
+        Spliterator<StreamSpatialResultSet> spliterator = new ResultSetSpliterator<>(this.getRowCount(), new StreamSpatialResultSet((SpatialResultSet) getResultSet()),
+                getResultSetProperties().getCancellationToken());
         return StreamSupport.stream(spliterator, true);
     }
+
+    @Override
+    public Stream<Map<String, Object>> pipelinedStream(int batchSize, int decoderCount, boolean ordered) throws Exception {
+        return pipelinedStream(getBaseQuery(), batchSize, decoderCount, ordered);
+    }
+
+    /**
+     * Return a {@link Stream} of the rows of the given query reading the table, the geometries being decoded by a
+     * {@link GeometryDecodingPipeline}.
+     *
+     * @param query        Query reading the table, using the same parameters as the table base query.
+     * @param batchSize    Number of rows decoded by a task.
+     * @param decoderCount Number of decoding threads.
+     * @param ordered      True to keep the order of the rows, false otherwise.
+     * @return A {@link Stream} of the rows.
+     */
+    protected Stream<Map<String, Object>> pipelinedStream(String query, int batchSize, int decoderCount, boolean ordered) throws Exception {
+        return pipelinedStream(query, getParams(), batchSize, decoderCount, ordered);
+    }
+
+    /**
+     * Return a {@link Stream} of the rows of the given query, the geometries being decoded by a
+     * {@link GeometryDecodingPipeline}.
+     *
+     * @param query        Query reading the table.
+     * @param params       Parameters of the query.
+     * @param batchSize    Number of rows decoded by a task.
+     * @param decoderCount Number of decoding threads.
+     * @param ordered      True to keep the order of the rows, false otherwise.
+     * @return A {@link Stream} of the rows.
+     */
+    protected Stream<Map<String, Object>> pipelinedStream(String query, List<Object> params, int batchSize,
+                                                          int decoderCount, boolean ordered) throws Exception {
+        Connection con = getJdbcDataSource().getConnection();
+        if (con == null) {
+            throw new SQLException("Cannot get the connection to the database");
+        }
+        //The pipeline uses its own forward only cursor to not move the one of the table
+        boolean autoCommit = startStreaming(con);
+        Statement st = null;
+        GeometryDecodingPipeline pipeline;
+        try {
+            ResultSet rs;
+            if (params == null || params.isEmpty()) {
+                st = con.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                st.setFetchSize(batchSize);
+                rs = st.executeQuery(query);
+            } else {
+                PreparedStatement ps = con.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                st = ps;
+                setParameters(ps, params);
+                ps.setFetchSize(batchSize);
+                rs = ps.executeQuery();
+            }
+            boolean hexEncoded = getDbType() == DBTypes.POSTGIS || getDbType() == DBTypes.POSTGRESQL;
+            pipeline = new GeometryDecodingPipeline(rs, st, hexEncoded, batchSize, decoderCount, ordered, () -> {
+                try {
+                    endStreaming(con, autoCommit);
+                } catch (SQLException e) {
+                    LOGGER.error("Unable to restore the auto-commit after the stream.", e);
+                }
+            });
+        } catch (Exception e) {
+            if (st != null) {
+                st.close();
+            }
+            endStreaming(con, autoCommit);
+            throw e;
+        }
+        int characteristics = ordered ? Spliterator.ORDERED | Spliterator.NONNULL : Spliterator.NONNULL;
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pipeline, characteristics), false)
+                .onClose(pipeline::close);
+    }
+
+    @Override
+    public Stream<Map<String, Object>> reprojectedStream(int srid) throws Exception {
+        return Reprojection.reproject(pipelinedStream(true), srid);
+    }
+
+    /**
+     * Return the SQL used as source of the data cached for this table : its location or its query.
+     *
+     * @return The SQL used as source of the cached data.
+     */
+    protected String getCacheSource() {
+        return getTableLocation() != null ? getTableLocation().toString() : getBaseQuery();
+    }
+
+    /**
+     * Return the list of the columns of the table to select for a level of detail, the geometry columns being
+     * simplified by the database, or null if the database cannot simplify the geometries.
+     *
+     * @param tolerance Simplification tolerance.
+     * @return The columns to select, null if the database cannot simplify the geometries.
+     */
+    protected String getLodColumns(double tolerance) throws Exception {
+        List<String> columns = new ArrayList<>();
+        for (Map.Entry<String, String> entry : getColumnNamesTypes().entrySet()) {
+            String name = TableLocation.quoteIdentifier(entry.getKey(), getDbType());
+            if (entry.getValue().toLowerCase().startsWith("geometry")) {
+                String expression = LevelOfDetail.getSqlExpression(getDbType(), name, tolerance);
+                if (expression == null) {
+                    return null;
+                }
+                columns.add(expression + " AS " + name);
+            } else {
+                columns.add(name);
+            }
+        }
+        return String.join(", ", columns);
+    }
+
+    @Override
+    public Stream<Map<String, Object>> lodStream(double tolerance) throws Exception {
+        TableCache<List<Map<String, Object>>> cache = getJdbcDataSource() instanceof JdbcDataSource ?
+                ((JdbcDataSource) getJdbcDataSource()).getLodCache() : null;
+        String key = tolerance + " " + getBaseQuery() + " " + getParams();
+        List<Map<String, Object>> rows = cache == null ? null : cache.get(key);
+        if (rows == null) {
+            String columns = getLodColumns(tolerance);
+            if (columns != null) {
+                try (Stream<Map<String, Object>> stream = pipelinedStream(getSelectQuery(columns),
+                        GeometryDecodingPipeline.DEFAULT_BATCH_SIZE, Runtime.getRuntime().availableProcessors(), true)) {
+                    rows = stream.map(Collections::unmodifiableMap).collect(Collectors.toList());
+                }
+            } else {
+                //Client side fallback when the database cannot simplify the geometries
+                try (Stream<Map<String, Object>> stream = pipelinedStream(true)) {
+                    rows = stream.collect(Collectors.toList());
+                }
+                rows = rows.parallelStream().map(row -> {
+                    row.replaceAll((name, value) -> value instanceof Geometry ?
+                            LevelOfDetail.simplify((Geometry) value, tolerance) : value);
+                    return Collections.unmodifiableMap(row);
+                }).collect(Collectors.toList());
+            }
+            rows = Collections.unmodifiableList(rows);
+            if (cache != null) {
+                cache.put(key, getCacheSource(), rows);
+            }
+        }
+        //The cached rows are shared, not copied, as they cannot be modified
+        return rows.stream();
+    }
+
+    /**
+     * Store the rows of the table simplified in memory for the given level of detail into a temporary table of the
+     * connection. It is used as level of detail view when the database cannot simplify the geometries.
+     *
+     * @param tolerance Simplification tolerance.
+     * @return The name of the temporary table.
+     */
+    protected String createLodTable(double tolerance) throws Exception {
+        Connection con = getJdbcDataSource().getConnection();
+        if (con == null) {
+            throw new SQLException("Cannot get the connection to the database");
+        }
+        boolean postgres = getDbType() == DBTypes.POSTGIS || getDbType() == DBTypes.POSTGRESQL;
+        String tableName = TableLocation.quoteIdentifier(
+                "LOD_" + UUID.randomUUID().toString().replace("-", "_").toUpperCase(), getDbType());
+        String create = (postgres ? "CREATE TEMPORARY TABLE " : "CREATE LOCAL TEMPORARY TABLE ") + tableName +
+                " AS " + getSelectQuery("*") + " WHERE 1=0";
+        try (Statement statement = getStatement(create)) {
+            if (statement instanceof PreparedStatement) {
+                ((PreparedStatement) statement).execute();
+            } else {
+                statement.execute(create);
+            }
+        }
+        List<String> names = new ArrayList<>(getColumnNames());
+        String insert = "INSERT INTO " + tableName + " VALUES (" +
+                names.stream().map(name -> "?").collect(Collectors.joining(", ")) + ")";
+        try (PreparedStatement ps = con.prepareStatement(insert);
+             Stream<Map<String, Object>> rows = lodStream(tolerance)) {
+            int count = 0;
+            for (Iterator<Map<String, Object>> it = rows.iterator(); it.hasNext(); ) {
+                Map<String, Object> row = it.next();
+                for (int i = 0; i < names.size(); i++) {
+                    ps.setObject(i + 1, row.get(names.get(i)));
+                }
+                ps.addBatch();
+                if (++count % GeometryDecodingPipeline.DEFAULT_BATCH_SIZE == 0) {
+                    ps.executeBatch();
+                }
+            }
+            if (count % GeometryDecodingPipeline.DEFAULT_BATCH_SIZE != 0) {
+                ps.executeBatch();
+            }
+        }
+        return tableName;
+    }
+
+    @Override
+    public ISpatialIndex toSpatialIndex(String... columns) throws Exception {
+        List<String> geometricColumns = getGeometricColumns();
+        if (geometricColumns == null || geometricColumns.isEmpty()) {
+            throw new SQLException("Cannot find any geometry column");
+        }
+        String geometryColumn = geometricColumns.get(0);
+        List<String> attributes = new ArrayList<>();
+        if (columns != null && columns.length > 0) {
+            Collection<String> columnNames = getColumnNames();
+            for (String column : columns) {
+                attributes.add(columnNames.stream().filter(column::equalsIgnoreCase).findFirst()
+                        .orElseThrow(() -> new IllegalArgumentException("Unknown column " + column)));
+            }
+        }
+        String query = getSelectQuery(Stream.concat(Stream.of(geometryColumn), attributes.stream())
+                .map(name -> TableLocation.quoteIdentifier(name, getDbType()))
+                .collect(Collectors.joining(", ")));
+        TableCache<ISpatialIndex> cache = getJdbcDataSource() instanceof JdbcDataSource ?
+                ((JdbcDataSource) getJdbcDataSource()).getSpatialIndexCache() : null;
+        String key = query + " " + getParams();
+        if (cache != null) {
+            ISpatialIndex index = cache.get(key);
+            if (index != null) {
+                return index;
+            }
+        }
+        ISpatialIndex index;
+        try (Stream<Map<String, Object>> rows = pipelinedStream(query, GeometryDecodingPipeline.DEFAULT_BATCH_SIZE,
+                Runtime.getRuntime().availableProcessors(), false)) {
+            index = new SpatialIndex(geometryColumn, attributes, rows);
+        }
+        if (cache != null) {
+            cache.put(key, getCacheSource(), index);
+        }
+        return index;
+    }
+
+    @Override
+    public List<Map<String, Object>> nearest(Geometry geometry, int k) throws Exception {
+        return nearestAll(Collections.singletonList(geometry), k, false).get(0);
+    }
+
+    @Override
+    public List<List<Map<String, Object>>> nearestAll(Collection<Geometry> geometries, int k) throws Exception {
+        return nearestAll(geometries, k, false);
+    }
+
+    @Override
+    public List<List<Map<String, Object>>> nearestAll(Collection<Geometry> geometries, int k, boolean clientSide)
+            throws Exception {
+        if (geometries == null) {
+            throw new IllegalArgumentException("The geometries should not be null.");
+        }
+        return NearestNeighbours.nearest(this, getReader(), new ArrayList<>(geometries), k, clientSide);
+    }
+
+    @Override
+    public double[] coordinates(String column) throws Exception {
+        return coordinates(column, false, false);
+    }
+
+    @Override
+    public double[] coordinates(String column, boolean withZ) throws Exception {
+        return coordinates(column, withZ, false);
+    }
+
+    @Override
+    public double[] coordinates(String column, boolean withZ, boolean clientSide) throws Exception {
+        return CoordinateReader.toArray(readCoordinates(column, withZ, clientSide));
+    }
+
+    @Override
+    public DoubleBuffer coordinatesBuffer(String column, boolean withZ) throws Exception {
+        return coordinatesBuffer(column, withZ, false);
+    }
+
+    @Override
+    public DoubleBuffer coordinatesBuffer(String column, boolean withZ, boolean clientSide) throws Exception {
+        return CoordinateReader.toBuffer(readCoordinates(column, withZ, clientSide));
+    }
+
+    @Override
+    public IValidationReport validate() throws Exception {
+        return validate(false, false, GeometryDecodingPipeline.DEFAULT_BATCH_SIZE);
+    }
+
+    @Override
+    public IValidationReport validate(boolean repair) throws Exception {
+        return validate(repair, false, GeometryDecodingPipeline.DEFAULT_BATCH_SIZE);
+    }
+
+    @Override
+    public IValidationReport validate(boolean repair, boolean clientSide, int batchSize) throws Exception {
+        List<String> geometricColumns = getGeometricColumns();
+        if (geometricColumns == null || geometricColumns.isEmpty()) {
+            throw new SQLException("Cannot find any geometry column");
+        }
+        return GeometryValidation.validate(this, getReader(), geometricColumns.get(0), repair,
+                clientSide || !GeometryValidation.isSupported(getDbType()), batchSize);
+    }
+
+    @Override
+    public Stream<Map<String, Object>> spatialJoin(IJdbcSpatialTable<?> right, SpatialPredicate predicate)
+            throws Exception {
+        return spatialJoin(right, predicate, SpatialJoin.DEFAULT_PARTITION_SIZE);
+    }
+
+    @Override
+    public Stream<Map<String, Object>> spatialJoin(IJdbcSpatialTable<?> right, SpatialPredicate predicate,
+                                                   int partitionSize) throws Exception {
+        JdbcSpatialTable other = asJdbcSpatialTable(right);
+        return new SpatialJoin(this, getReader(), other, other.getReader(), predicate, partitionSize).stream();
+    }
+
+    @Override
+    public String spatialJoin(IJdbcSpatialTable<?> right, SpatialPredicate predicate, IJdbcDataSource dataSource,
+                              String outputTableName, boolean deleteTable) throws Exception {
+        JdbcSpatialTable other = asJdbcSpatialTable(right);
+        return new SpatialJoin(this, getReader(), other, other.getReader(), predicate,
+                SpatialJoin.DEFAULT_PARTITION_SIZE).save(dataSource, outputTableName, deleteTable);
+    }
+
+    @Override
+    public String save(IJdbcDataSource dataSource, String outputTableName, boolean deleteTable, int batchSize,
+                       ClusterBy clusterBy) throws Exception {
+        if (clusterBy == null || clusterBy == ClusterBy.NONE) {
+            return save(dataSource, outputTableName, deleteTable, batchSize);
+        }
+        if (dataSource == null) {
+            throw new SQLException("Cannot get the connection to the database");
+        }
+        return SpatialClustering.save(this, getReader(), dataSource, outputTableName, deleteTable, batchSize, clusterBy);
+    }
+
+    @Override
+    public ISpatialGrid binToGrid(double cellSize, String... aggregations) throws Exception {
+        return binToGrid(ISpatialGrid.CellType.SQUARE, cellSize, false, aggregations);
+    }
+
+    @Override
+    public ISpatialGrid binToGrid(ISpatialGrid.CellType cellType, double cellSize, String... aggregations) throws Exception {
+        return binToGrid(cellType, cellSize, false, aggregations);
+    }
+
+    @Override
+    public ISpatialGrid binToGrid(ISpatialGrid.CellType cellType, double cellSize, boolean clientSide,
+                                  String... aggregations) throws Exception {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("The cell size should be strictly positive.");
+        }
+        List<String[]> parsed = SpatialGrid.parseAggregations(aggregations);
+        List<String> names = aggregations == null ? Collections.emptyList() : Arrays.asList(aggregations);
+        String geometryColumn = getGeometricColumns().get(0);
+        if (clientSide || !SpatialGrid.isSupported(getDbType())) {
+            List<String> columns = SpatialGrid.getColumns(parsed, getColumnNames());
+            try (Stream<Map<String, Object>> rows = pipelinedStream(false)) {
+                return SpatialGrid.bin(rows, geometryColumn, cellType, cellSize, names, columns);
+            }
+        }
+        String source = getSelectQuery("*");
+        String query = SpatialGrid.getSqlQuery(source, TableLocation.quoteIdentifier(geometryColumn, getDbType()),
+                cellType, cellSize, parsed);
+        try (Statement statement = getStatement(query);
+             ResultSet rs = statement instanceof PreparedStatement ? ((PreparedStatement) statement).executeQuery() :
+                     statement.executeQuery(query)) {
+            return SpatialGrid.read(rs, cellType, cellSize, names);
+        }
+    }
+
+    @Override
+    public byte[] getVectorTile(int zoom, int x, int y, String... columns) throws Exception {
+        VectorTiles.checkTile(zoom, x, y);
+        String geometryColumn = getGeometricColumns().get(0);
+        Callable<byte[]> tile = loadVectorTile(zoom, x, y, geometryColumn, getTileSrid(geometryColumn, null),
+                getAttributeColumns(columns));
+        return tile == null ? new byte[0] : tile.call();
+    }
+
+    @Override
+    public int writeVectorTiles(File directory, int minZoom, int maxZoom, String... columns) throws Exception {
+        return writeVectorTiles(directory, minZoom, maxZoom, null, columns);
+    }
+
+    @Override
+    public int writeVectorTiles(File directory, int minZoom, int maxZoom, Geometry changedArea, String... columns)
+            throws Exception {
+        if (directory == null) {
+            throw new IllegalArgumentException("The tile directory should not be null.");
+        }
+        String geometryColumn = getGeometricColumns().get(0);
+        Geometry extent = getExtent(geometryColumn);
+        if (extent != null && extent.isEmpty()) {
+            extent = null;
+        }
+        Integer srid = getTileSrid(geometryColumn, extent);
+        Envelope changed = null;
+        if (changedArea != null && !changedArea.isEmpty()) {
+            int changedSrid = changedArea.getSRID() > 0 ? changedArea.getSRID() : srid == null ? 0 : srid;
+            if (changedSrid <= 0) {
+                throw new IllegalArgumentException("The SRID of the changed area should be set.");
+            }
+            changed = VectorTiles.reproject(changedArea.getEnvelopeInternal(), changedSrid, VectorTiles.WEB_MERCATOR);
+        }
+        Envelope tileExtent = extent == null ? null :
+                VectorTiles.reproject(extent.getEnvelopeInternal(), srid, VectorTiles.WEB_MERCATOR);
+        String attributes = getAttributeColumns(columns);
+        return VectorTiles.write(directory, minZoom, maxZoom, tileExtent, changed,
+                (zoom, x, y) -> loadVectorTile(zoom, x, y, geometryColumn, srid, attributes));
+    }
+
+    @Override
+    public long writeGeoJson(OutputStream outputStream, boolean lineDelimited, boolean clientSide, String... columns)
+            throws Exception {
+        String column = TableLocation.quoteIdentifier(getGeometricColumns().get(0), getDbType());
+        String attributes = getAttributeColumns(columns);
+        boolean serverSide = !clientSide && (getDbType() == DBTypes.H2GIS || getDbType() == DBTypes.POSTGIS);
+        String query = getSelectQuery((serverSide ? "ST_AsGeoJSON(" + column + ")" : column) +
+                (attributes.isEmpty() ? "" : ", " + attributes));
+        GeoJsonWriter.GeometryEncoding encoding = serverSide ? GeoJsonWriter.GeometryEncoding.GEOJSON :
+                getDbType() == DBTypes.POSTGIS || getDbType() == DBTypes.POSTGRESQL ?
+                        GeoJsonWriter.GeometryEncoding.HEX_WKB : GeoJsonWriter.GeometryEncoding.WKB;
+        Connection con = getJdbcDataSource().getConnection();
+        boolean autoCommit = startStreaming(con);
+        try (Statement statement = getStatement(query)) {
+            statement.setFetchSize(GeometryDecodingPipeline.DEFAULT_BATCH_SIZE);
+            try (ResultSet rs = statement instanceof PreparedStatement ?
+                    ((PreparedStatement) statement).executeQuery() : statement.executeQuery(query)) {
+                return new GeoJsonWriter(outputStream, lineDelimited).write(rs, 1, encoding);
+            }
+        } finally {
+            endStreaming(con, autoCommit);
+        }
+    }
+
+    /**
+     * Read the coordinates of the points of the given column into chunks of packed coordinates.
+     *
+     * @param column     Name of the point column, null for the first geometry column.
+     * @param withZ      True to read x, y and z, false to read x and y.
+     * @param clientSide True to parse the WKB points in memory, false to let the database extract the coordinates.
+     * @return The chunks of packed coordinates.
+     */
+    private List<double[]> readCoordinates(String column, boolean withZ, boolean clientSide) throws Exception {
+        List<String> geometricColumns = getGeometricColumns();
+        if (geometricColumns == null || geometricColumns.isEmpty()) {
+            throw new SQLException("Cannot find any geometry column");
+        }
+        String geometryColumn = column == null ? geometricColumns.get(0) : geometricColumns.stream()
+                .filter(column::equalsIgnoreCase).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("The column '" + column + "' is not a geometry column."));
+        String name = TableLocation.quoteIdentifier(geometryColumn, getDbType());
+        int dimension = withZ ? 3 : 2;
+        CoordinateReader.Encoding encoding;
+        String query;
+        //The embedded databases don't transfer the WKB values, which are parsed faster in memory
+        if (!clientSide && getDbType() == DBTypes.POSTGIS) {
+            encoding = CoordinateReader.Encoding.VALUES;
+            query = getSelectQuery("ST_X(" + name + "), ST_Y(" + name + ")" + (withZ ? ", ST_Z(" + name + ")" : ""));
+        } else {
+            encoding = getDbType() == DBTypes.POSTGIS || getDbType() == DBTypes.POSTGRESQL ?
+                    CoordinateReader.Encoding.HEX_WKB : CoordinateReader.Encoding.WKB;
+            query = getSelectQuery(name);
+        }
+        Connection con = getJdbcDataSource().getConnection();
+        boolean autoCommit = startStreaming(con);
+        try (Statement statement = getStatement(query)) {
+            statement.setFetchSize(GeometryDecodingPipeline.DEFAULT_BATCH_SIZE);
+            try (ResultSet rs = statement instanceof PreparedStatement ?
+                    ((PreparedStatement) statement).executeQuery() : statement.executeQuery(query)) {
+                return CoordinateReader.read(rs, dimension, encoding, GeometryDecodingPipeline.DEFAULT_BATCH_SIZE);
+            }
+        } finally {
+            endStreaming(con, autoCommit);
+        }
+    }
+
+    /**
+     * Return the SRID of the geometries of the table, read from the extent for the query tables.
+     *
+     * @param geometryColumn Geometry column of the tiles.
+     * @param extent         Extent of the geometry column if it has already been computed.
+     * @return The SRID of the geometries, null if the table does not contain any geometry.
+     */
+    private Integer getTileSrid(String geometryColumn, Geometry extent) throws Exception {
+        int srid;
+        if (getTableLocation() != null) {
+            srid = getSrid();
+        } else if (extent != null) {
+            srid = extent.getSRID();
+        } else {
+            String column = TableLocation.quoteIdentifier(geometryColumn, getDbType());
+            String query = getSelectQuery("ST_SRID(" + column + ")") + " WHERE " + column + " IS NOT NULL LIMIT 1";
+            try (Statement statement = getStatement(query);
+                 ResultSet rs = statement instanceof PreparedStatement ?
+                         ((PreparedStatement) statement).executeQuery() : statement.executeQuery(query)) {
+                if (!rs.next()) {
+                    return null;
+                }
+                srid = rs.getInt(1);
+            }
+        }
+        if (srid <= 0) {
+            throw new IllegalArgumentException("The SRID of the geometries should be set to generate vector tiles.");
+        }
+        return srid;
+    }
+
+    /**
+     * Return the quoted attribute columns of the features : the given ones or all the non geometric columns.
+     *
+     * @param columns Columns kept as feature attributes.
+     * @return The quoted attribute columns separated by a comma, an empty string if there is no attribute.
+     */
+    private String getAttributeColumns(String... columns) throws Exception {
+        List<String> names;
+        Collection<String> columnNames = getColumnNames();
+        if (columns != null && columns.length > 0) {
+            names = Arrays.stream(columns).map(column -> columnNames.stream().filter(column::equalsIgnoreCase)
+                    .findFirst().orElseThrow(() -> new IllegalArgumentException("Unknown column " + column)))
+                    .collect(Collectors.toList());
+        } else {
+            Set<String> geometric = getGeometricColumns().stream().map(String::toUpperCase).collect(Collectors.toSet());
+            names = columnNames.stream().filter(name -> !geometric.contains(name.toUpperCase()))
+                    .collect(Collectors.toList());
+        }
+        return names.stream().map(name -> TableLocation.quoteIdentifier(name, getDbType()))
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Load a Mapbox Vector Tile, encoded by the database with {@code ST_AsMVT} on PostGIS and in memory otherwise.
+     * The features are read by this method while the in memory encoding is done by the returned {@link Callable}, so
+     * that the tiles can be encoded in parallel without sharing the connection.
+     *
+     * @param zoom           Zoom level of the tile.
+     * @param x              Column of the tile.
+     * @param y              Row of the tile.
+     * @param geometryColumn Geometry column of the tiles.
+     * @param srid           SRID of the geometry column, null if the table does not contain any geometry.
+     * @param columns        Quoted attribute columns.
+     * @return The encoding of the tile, null if the area of the tile does not contain any feature.
+     */
+    private Callable<byte[]> loadVectorTile(int zoom, int x, int y, String geometryColumn, Integer srid, String columns)
+            throws Exception {
+        if (srid == null) {
+            return null;
+        }
+        Envelope tile = VectorTiles.getTileEnvelope(zoom, x, y);
+        Envelope filter = VectorTiles.reproject(VectorTiles.getBufferedTileEnvelope(zoom, x, y),
+                VectorTiles.WEB_MERCATOR, srid);
+        String column = TableLocation.quoteIdentifier(geometryColumn, getDbType());
+        String where = " WHERE " + column + " && ST_MakeEnvelope(" + filter.getMinX() + ", " + filter.getMinY() +
+                ", " + filter.getMaxX() + ", " + filter.getMaxY() + ", " + srid + ")";
+        String attributes = columns.isEmpty() ? "" : ", " + columns;
+        String layer = getTableLocation() != null ? getTableLocation().getTable() : "layer";
+        if (getDbType() == DBTypes.POSTGIS) {
+            String geometry = srid == VectorTiles.WEB_MERCATOR ? column :
+                    "ST_Transform(" + column + ", " + VectorTiles.WEB_MERCATOR + ")";
+            String query = "SELECT ST_AsMVT(orbisdata_tile, '" + layer.replace("'", "''") + "', " +
+                    VectorTileEncoder.DEFAULT_EXTENT + ", 'orbisdata_mvt_geom'), COUNT(*) FROM (" +
+                    getSelectQuery("ST_AsMVTGeom(" + geometry + ", ST_MakeEnvelope(" + tile.getMinX() + ", " +
+                            tile.getMinY() + ", " + tile.getMaxX() + ", " + tile.getMaxY() + ", " +
+                            VectorTiles.WEB_MERCATOR + "), " + VectorTileEncoder.DEFAULT_EXTENT + ", " +
+                            VectorTileEncoder.DEFAULT_BUFFER + ", true) AS orbisdata_mvt_geom" + attributes) +
+                    where + ") AS orbisdata_tile";
+            try (Statement statement = getStatement(query);
+                 ResultSet rs = statement instanceof PreparedStatement ?
+                         ((PreparedStatement) statement).executeQuery() : statement.executeQuery(query)) {
+                if (!rs.next() || rs.getLong(2) == 0) {
+                    return null;
+                }
+                byte[] bytes = rs.getBytes(1);
+                return () -> bytes == null ? new byte[0] : bytes;
+            }
+        }
+        //Client side encoding
+        List<Map<String, Object>> features;
+        try (Stream<Map<String, Object>> rows = pipelinedStream(getSelectQuery(column + attributes) + where,
+                GeometryDecodingPipeline.DEFAULT_BATCH_SIZE, Runtime.getRuntime().availableProcessors(), false)) {
+            features = rows.collect(Collectors.toList());
+        }
+        if (features.isEmpty()) {
+            return null;
+        }
+        return () -> {
+            VectorTileEncoder encoder = new VectorTileEncoder(layer, tile);
+            for (Map<String, Object> feature : features) {
+                Object value = feature.remove(geometryColumn);
+                if (value instanceof Geometry) {
+                    Geometry geometry = (Geometry) value;
+                    if (geometry.getSRID() <= 0) {
+                        geometry.setSRID(srid);
+                    }
+                    encoder.addFeature(Reprojection.reproject(geometry, VectorTiles.WEB_MERCATOR), feature);
+                }
+            }
+            return encoder.encode();
+        };
+    }
+
+    /**
+     * Return the given table as a {@link JdbcSpatialTable}.
+     *
+     * @param table Table to cast.
+     * @return The table as a {@link JdbcSpatialTable}.
+     */
+    private static JdbcSpatialTable asJdbcSpatialTable(IJdbcSpatialTable<?> table) {
+        if (!(table instanceof JdbcSpatialTable)) {
+            throw new IllegalArgumentException("The table should be a JdbcSpatialTable");
+        }
+        return (JdbcSpatialTable) table;
+    }
+
+    /**
+     * Return the {@link TableReader} given to the spatial operations to read this table.
+     *
+     * @return A {@link TableReader} of this table.
+     */
+    private TableReader getReader() {
+        return new TableReader() {
+            @Override
+            public String getSelectQuery(String columns) {
+                return JdbcSpatialTable.this.getSelectQuery(columns);
+            }
+
+            @Override
+            public long count(String filter) throws Exception {
+                String query = JdbcSpatialTable.this.getSelectQuery("COUNT(*)") + filter;
+                try (Statement statement = getStatement(query);
+                     ResultSet rs = statement instanceof PreparedStatement ?
+                             ((PreparedStatement) statement).executeQuery() : statement.executeQuery(query)) {
+                    return rs.next() ? rs.getLong(1) : 0;
+                }
+            }
+
+            @Override
+            public Stream<Map<String, Object>> read(String query, List<Object> params, int batchSize,
+                                                    int decoderCount, boolean ordered) throws Exception {
+                return pipelinedStream(query, params, batchSize, decoderCount, ordered);
+            }
+        };
+    }
 }
@@ -44,13 +44,19 @@ import org.h2gis.utilities.dbtypes.DBTypes;
 import org.orbisgis.commons.printer.Ascii;
 import org.orbisgis.commons.printer.Html;
 import org.orbisgis.commons.printer.ICustomPrinter;
+import org.orbisgis.commons.sketch.HyperLogLog;
+import org.orbisgis.commons.sketch.SpaceSaving;
 import org.orbisgis.data.api.dataset.*;
 import org.orbisgis.data.api.datasource.IJdbcDataSource;
+import org.orbisgis.data.api.dsl.IAggregate;
 import org.orbisgis.data.api.dsl.IBuilderResult;
+import org.orbisgis.data.api.dsl.ICancellationToken;
 import org.orbisgis.data.api.dsl.IFilterBuilder;
+import org.orbisgis.data.api.dsl.IOrderedBuilderResult;
 import org.orbisgis.data.api.dsl.IQueryBuilder;
 import org.orbisgis.data.api.dsl.IResultSetProperties;
 import org.orbisgis.data.jdbc.dsl.QueryBuilder;
+import org.orbisgis.data.jdbc.dsl.QueryTemplate;
 import org.orbisgis.data.jdbc.dsl.ResultSetProperties;
 import org.orbisgis.data.jdbc.resultset.DefaultResultSet;
 import org.slf4j.Logger;
@@ -59,6 +65,7 @@ import org.slf4j.LoggerFactory;
 import java.sql.*;
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import static org.orbisgis.commons.printer.ICustomPrinter.CellPosition.*;
@@ -80,6 +87,10 @@ public abstract class JdbcTable<T extends ResultSet> extends DefaultResultSet im
      * Default width of the columns in ascii print
      */
     private static final int ASCII_COLUMN_WIDTH = 20;
+    /**
+     * Default fetch size of the column scans, to stream the values instead of loading the whole result
+     */
+    private static final int SCAN_FETCH_SIZE = 1000;
     /**
      * MetaClass use for groovy methods/properties binding
      */
@@ -112,10 +123,22 @@ public abstract class JdbcTable<T extends ResultSet> extends DefaultResultSet im
      * Cached resultSet
      */
     protected ResultSet resultSet;
+    /**
+     * Cached summary with the column statistics, computed on demand and cleared on reload
+     */
+    private volatile JdbcTableSummary summary;
+    /**
+     * Cached metadata of the columns, read on demand without running the data query and cleared on reload
+     */
+    private volatile TableMetaData metaData;
     /**
      * {@link ResultSet} properties.
      */
     private IResultSetProperties rsp;
+    /**
+     * Number of calls to {@link #next()}, used to check the cancellation token between batches of rows
+     */
+    private long iteratedRows = 0;
 
     /**
      * Main constructor.
@@ -152,22 +175,40 @@ public abstract class JdbcTable<T extends ResultSet> extends DefaultResultSet im
     @Override
     public boolean reload() throws SQLException {
         resultSet = null;
+        summary = null;
+        metaData = null;
         return getResultSet() != null;
     }
 
     @Override
     protected ResultSet getResultSet() throws SQLException {
         if (resultSet == null) {
+            SlowQueryLog slowQueryLog = jdbcDataSource instanceof JdbcDataSource ?
+                    ((JdbcDataSource) jdbcDataSource).getSlowQueryLog() : null;
+            long start = slowQueryLog == null ? -1 : slowQueryLog.start();
             Statement st = getStatement();
             if (st instanceof PreparedStatement) {
                 resultSet = ((PreparedStatement) st).executeQuery();
             } else {
                 resultSet = getStatement().executeQuery(getBaseQuery());
             }
+            if (slowQueryLog != null) {
+                slowQueryLog.log(start, getBaseQuery(), tableLocation == null ? params : null, -1);
+            }
         }
         return resultSet;
     }
 
+    @Override
+    public boolean next() throws SQLException {
+        //The token is checked between batches of rows to keep the iteration cheap
+        ICancellationToken token = rsp.getCancellationToken();
+        if (token != null && iteratedRows++ % CancellationToken.CHECK_INTERVAL == 0) {
+            token.check();
+        }
+        return super.next();
+    }
+
     /**
      * Return the {@link ResultSet} with a limit.
      *
@@ -180,15 +221,90 @@ public abstract class JdbcTable<T extends ResultSet> extends DefaultResultSet im
             resultSet = getResultSet();
         } else {
             Connection con = jdbcDataSource.getConnection();
-            resultSet = con.createStatement().executeQuery("SELECT * FROM (" + getBaseQuery() + ") AS FOO LIMIT " + limit);
+            resultSet = executeQuery(con, "SELECT * FROM (" + getBaseQuery() + ") AS FOO LIMIT " + limit);
         }
         return resultSet;
     }
 
+    /**
+     * Execute a query wrapping the base query of this table, binding the parameters of the base query.
+     *
+     * @param con   Connection to use.
+     * @param query Query wrapping the base query.
+     * @return The {@link ResultSet} of the query.
+     */
+    private ResultSet executeQuery(Connection con, String query) throws SQLException {
+        if (tableLocation == null && params != null && !params.isEmpty()) {
+            PreparedStatement ps = con.prepareStatement(query);
+            setParameters(ps, params);
+            return ps.executeQuery();
+        }
+        return con.createStatement().executeQuery(query);
+    }
+
     @Override
     public ResultSetMetaData getMetaData() throws SQLException{
-        ResultSet rs = getResultSet();
-       return rs.getMetaData();
+        return getTableMetaData();
+    }
+
+    /**
+     * Return the metadata of the columns of the table. They are read once per table by preparing the data query
+     * without running it, or if the driver cannot describe a prepared query, by running it with a zero limit.
+     *
+     * @return The metadata of the columns of the table.
+     */
+    protected TableMetaData getTableMetaData() throws SQLException {
+        TableMetaData cached = metaData;
+        if (cached == null) {
+            Connection con = jdbcDataSource.getConnection();
+            if (con == null) {
+                throw new SQLException("Cannot get the connection to the database");
+            }
+            String query = getSelectQuery("*");
+            try (PreparedStatement ps = prepareStatement(con, query)) {
+                ResultSetMetaData described = ps.getMetaData();
+                if (described != null) {
+                    cached = new TableMetaData(described, jdbcDataSource, dataBaseType);
+                }
+            }
+            if (cached == null) {
+                try (PreparedStatement ps = prepareStatement(con, query + " LIMIT 0");
+                     ResultSet rs = ps.executeQuery()) {
+                    cached = new TableMetaData(rs.getMetaData(), jdbcDataSource, dataBaseType);
+                }
+            }
+            metaData = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * Prepare a query wrapping the base query of this table, binding the parameters of the base query.
+     *
+     * @param con   Connection to use.
+     * @param query Query wrapping the base query.
+     * @return The {@link PreparedStatement} of the query.
+     */
+    private PreparedStatement prepareStatement(Connection con, String query) throws SQLException {
+        PreparedStatement ps = con.prepareStatement(query);
+        if (tableLocation == null) {
+            setParameters(ps, params);
+        }
+        return ps;
+    }
+
+    /**
+     * Bind the given parameters to the given {@link PreparedStatement}.
+     *
+     * @param ps     {@link PreparedStatement} to bind.
+     * @param params Parameters to bind, in order. Can be null.
+     */
+    protected static void setParameters(PreparedStatement ps, List<Object> params) throws SQLException {
+        if (params != null) {
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+        }
     }
 
     /**
@@ -262,12 +378,10 @@ public abstract class JdbcTable<T extends ResultSet> extends DefaultResultSet im
 
     @Override
     public Collection<String> getColumnNames() throws Exception {
-        Connection con = jdbcDataSource.getConnection();
         if (tableLocation == null) {
             try {
-                ResultSet rs = getResultSetLimit(0);
                 return JDBCUtilities
-                        .getColumnNames(rs.getMetaData())
+                        .getColumnNames(getTableMetaData())
                         .stream()
                         .map(this::formatColumnName)
                         .collect(Collectors.toCollection(ArrayList::new));
@@ -276,7 +390,7 @@ public abstract class JdbcTable<T extends ResultSet> extends DefaultResultSet im
             }
         } else {
             try {
-                return JDBCUtilities.getColumnNames(con, tableLocation);
+                return JDBCUtilities.getColumnNames(getTableMetaData());
             } catch (SQLException e) {
                 throw new SQLException("Unable to get the column names of the table " + tableLocation + ".", e);
             }
@@ -287,8 +401,7 @@ public abstract class JdbcTable<T extends ResultSet> extends DefaultResultSet im
     public Map<String, String> getColumnNamesTypes() throws Exception {
         Map<String, String> map = new LinkedHashMap<>();
         try {
-            ResultSet rs = getResultSetLimit(0);
-            ResultSetMetaData metaData = rs.getMetaData();
+            ResultSetMetaData metaData = getTableMetaData();
             for (int i = 1; i <= metaData.getColumnCount(); i++) {
                 map.put(metaData.getColumnName(i), metaData.getColumnTypeName(i));
             }
@@ -301,8 +414,7 @@ public abstract class JdbcTable<T extends ResultSet> extends DefaultResultSet im
     @Override
     public String getColumnType(String columnName) throws SQLException {
         try {
-            ResultSet rs = getResultSetLimit(0);
-            ResultSetMetaData metaData = rs.getMetaData();
+            ResultSetMetaData metaData = getTableMetaData();
             for (int i = 1; i <= metaData.getColumnCount(); i++) {
                 if (columnName.equalsIgnoreCase(metaData.getColumnName(i))) {
                     //Take into account the geometry type
@@ -361,9 +473,7 @@ public abstract class JdbcTable<T extends ResultSet> extends DefaultResultSet im
 
     @Override
     public int getColumnCount() throws SQLException {
-        ResultSet rs = getResultSet();
-        ResultSetMetaData metaData = rs.getMetaData();
-        return metaData.getColumnCount();
+        return getTableMetaData().getColumnCount();
     }
 
     @Override
@@ -380,7 +490,7 @@ public abstract class JdbcTable<T extends ResultSet> extends DefaultResultSet im
             query = "SELECT count(*) FROM " + tableLocation.toString(getDbType());
         }
         try {
-            ResultSet rowCountRs = con.createStatement().executeQuery(query);
+            ResultSet rowCountRs = executeQuery(con, query);
             rowCountRs.next();
             int c = rowCountRs.getInt(1);
             if (!con.getAutoCommit()) {
@@ -425,6 +535,184 @@ public abstract class JdbcTable<T extends ResultSet> extends DefaultResultSet im
         return null;
     }
 
+    @Override
+    public Collection<String> getUniqueValues(String column, int max) throws Exception {
+        if (max < 0) {
+            throw new IllegalArgumentException("The maximum number of values should be positive or zero.");
+        }
+        Set<String> values = new LinkedHashSet<>();
+        if (max > 0) {
+            scanColumn(column, value -> {
+                values.add(value == null ? null : value.toString());
+                return values.size() < max;
+            });
+        }
+        return values;
+    }
+
+    @Override
+    public long approxDistinct(String column) throws Exception {
+        HyperLogLog sketch = new HyperLogLog();
+        scanColumn(column, value -> {
+            sketch.add(value);
+            return true;
+        });
+        return sketch.estimate();
+    }
+
+    @Override
+    public Map<Object, Long> topK(String column, int k) throws Exception {
+        if (k < 0) {
+            throw new IllegalArgumentException("The number of values should be positive or zero.");
+        }
+        SpaceSaving<Object> sketch = SpaceSaving.forTopK(k);
+        scanColumn(column, value -> {
+            sketch.add(value);
+            return true;
+        });
+        return sketch.top(k);
+    }
+
+    /**
+     * Read the values of the given column in one forward pass on a dedicated statement, until the consumer returns
+     * false. The statement is registered to the cancellation token of the table, if any. The fetch size is only
+     * honoured by the PostgreSQL driver inside a transaction, so the auto-commit is disabled during the scan.
+     *
+     * @param column   Column or SQL expression to read.
+     * @param consumer Consumer of the values, returning false to stop the reading.
+     */
+    private void scanColumn(String column, Predicate<Object> consumer) throws Exception {
+        if (column == null || column.isEmpty()) {
+            throw new IllegalArgumentException("The column should not be null or empty.");
+        }
+        scan(column, values -> consumer.test(values[0]));
+    }
+
+    /**
+     * Read the values of the given columns in one forward pass on a dedicated statement, like
+     * {@link #scanColumn(String, Predicate)}, until the consumer returns false.
+     *
+     * @param columns  Columns or SQL expressions to read, separated by commas.
+     * @param consumer Consumer of the values of each row, returning false to stop the reading.
+     */
+    void scan(String columns, Predicate<Object[]> consumer) throws Exception {
+        String query = getSelectQuery(columns);
+        ICancellationToken token = getResultSetProperties().getCancellationToken();
+        Connection con = getJdbcDataSource().getConnection();
+        boolean autoCommit = startStreaming(con);
+        try (Statement statement = getStatement(query)) {
+            statement.setFetchSize(getResultSetProperties().getFetchSize() > 0 ?
+                    getResultSetProperties().getFetchSize() : SCAN_FETCH_SIZE);
+            if (token != null) {
+                token.register(statement);
+            }
+            try (ResultSet rs = statement instanceof PreparedStatement ?
+                    ((PreparedStatement) statement).executeQuery() : statement.executeQuery(query)) {
+                int columnCount = rs.getMetaData().getColumnCount();
+                long count = 0;
+                while (rs.next()) {
+                    if (token != null && count++ % CancellationToken.CHECK_INTERVAL == 0) {
+                        token.check();
+                    }
+                    Object[] values = new Object[columnCount];
+                    for (int i = 0; i < columnCount; i++) {
+                        values[i] = rs.getObject(i + 1);
+                    }
+                    if (!consumer.test(values)) {
+                        break;
+                    }
+                }
+            } finally {
+                if (token != null) {
+                    token.unregister(statement);
+                }
+            }
+        } finally {
+            endStreaming(con, autoCommit);
+        }
+    }
+
+    /**
+     * Disable the auto-commit of the given connection before streaming a cursor : the PostgreSQL driver ignores the
+     * fetch size outside of a transaction and loads the whole result before returning the first row.
+     *
+     * @param con Connection executing the streamed query, may be null.
+     * @return True if the auto-commit has been disabled, to give to {@link #endStreaming(Connection, boolean)}.
+     */
+    protected static boolean startStreaming(Connection con) throws SQLException {
+        if (con != null && con.getAutoCommit()) {
+            con.setAutoCommit(false);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Close the transaction opened by {@link #startStreaming(Connection)} and restore the auto-commit. The transaction
+     * is committed, so that the statements executed on the connection while streaming, like the inserts of a copy, are
+     * kept as they would have been with the auto-commit.
+     *
+     * @param con        Connection executing the streamed query.
+     * @param autoCommit Value returned by {@link #startStreaming(Connection)}.
+     */
+    protected static void endStreaming(Connection con, boolean autoCommit) throws SQLException {
+        if (autoCommit) {
+            con.commit();
+            con.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Return the query selecting the given columns from the table.
+     *
+     * @param columns Columns to select.
+     * @return The query selecting the given columns from the table.
+     */
+    protected String getSelectQuery(String columns) {
+        if (getTableLocation() != null) {
+            return "SELECT " + columns + " FROM " + getTableLocation().toString(getDbType());
+        }
+        String baseQuery = getBaseQuery();
+        if (!baseQuery.startsWith("(") || !baseQuery.endsWith(")")) {
+            baseQuery = "(" + baseQuery + ")";
+        }
+        return "SELECT " + columns + " FROM " + baseQuery + " AS foo";
+    }
+
+    /**
+     * Return the query of the table with the literals of its parameters, for the helpers running the query through an
+     * API which cannot bind parameters.
+     *
+     * @return The query of the table with the literals of its parameters.
+     */
+    protected String getInlinedQuery() throws SQLException {
+        String query = QueryTemplate.inlineParameters(getBaseQuery(), getParams());
+        if (query == null) {
+            throw new SQLException("The parameters of the query '" + getBaseQuery() + "' cannot be written as literals");
+        }
+        return query;
+    }
+
+    /**
+     * Return a new {@link Statement} to execute the given query with the parameters of the table.
+     *
+     * @param query Query using the same parameters as the table base query.
+     * @return A {@link Statement} ready to execute the query.
+     */
+    protected Statement getStatement(String query) throws SQLException {
+        Connection con = getJdbcDataSource().getConnection();
+        if (con == null) {
+            throw new SQLException("Cannot get the connection to the database");
+        }
+        List<Object> params = getParams();
+        if (params == null || params.isEmpty()) {
+            return con.createStatement();
+        }
+        PreparedStatement ps = con.prepareStatement(query);
+        setParameters(ps, params);
+        return ps;
+    }
+
     @Override
 
     public Map<String, Object> firstRow() throws Exception {
@@ -451,7 +739,7 @@ public abstract class JdbcTable<T extends ResultSet> extends DefaultResultSet im
 
     @Override
     public String save(String filePath, boolean deleteFile) throws Exception {
-        String toSave = getTableLocation() == null ? "(" + getBaseQuery() + ")" : getTableLocation().toString(getDbType());
+        String toSave = getTableLocation() == null ? "(" + getInlinedQuery() + ")" : getTableLocation().toString(getDbType());
         try {
             if (ioMethods == null) {
                 ioMethods = new IOMethods();
@@ -465,7 +753,7 @@ public abstract class JdbcTable<T extends ResultSet> extends DefaultResultSet im
 
     @Override
     public String save(String filePath, String encoding) throws Exception {
-        String toSave = getTableLocation() == null ? "(" + getBaseQuery() + ")" : getTableLocation().toString(getDbType());
+        String toSave = getTableLocation() == null ? "(" + getInlinedQuery() + ")" : getTableLocation().toString(getDbType());
         try {
             if (ioMethods == null) {
                 ioMethods = new IOMethods();
@@ -497,7 +785,11 @@ public abstract class JdbcTable<T extends ResultSet> extends DefaultResultSet im
         if (dataSource == null) {
             throw new SQLException("Cannot get the connection to the database");
         }
-        String inputTableName = getTableLocation() == null ? "(" + getBaseQuery() + ")" : getTableLocation().toString(getDbType());
+        if (rsp.getCancellationToken() != null) {
+            return TableTransfer.save(this, dataSource, outputTableName, deleteTable, batchSize,
+                    rsp.getCancellationToken());
+        }
+        String inputTableName = getTableLocation() == null ? "(" + getInlinedQuery() + ")" : getTableLocation().toString(getDbType());
         try {
             return IOMethods.exportToDataBase(getJdbcDataSource().getConnection(), inputTableName, dataSource.getConnection(), outputTableName, deleteTable ? -1 : 0, batchSize);
         } catch (SQLException e) {
@@ -511,7 +803,12 @@ public abstract class JdbcTable<T extends ResultSet> extends DefaultResultSet im
             throw new SQLException("Cannot get the connection to the database");
         }
         String inputTableName = getTableLocation() == null ? "(" + getBaseQuery() + ")" : getTableLocation().toString(getDbType());
-        return IOMethods.exportToDataBase(getJdbcDataSource().getConnection(), inputTableName, dataSource.getConnection(), inputTableName, deleteTable ? -1 : 0, batchSize);
+        if (rsp.getCancellationToken() != null) {
+            return TableTransfer.save(this, dataSource, inputTableName, deleteTable, batchSize,
+                    rsp.getCancellationToken());
+        }
+        String input = getTableLocation() == null ? "(" + getInlinedQuery() + ")" : inputTableName;
+        return IOMethods.exportToDataBase(getJdbcDataSource().getConnection(), input, dataSource.getConnection(), inputTableName, deleteTable ? -1 : 0, batchSize);
         }
 
 
@@ -527,35 +824,80 @@ public abstract class JdbcTable<T extends ResultSet> extends DefaultResultSet im
         return "SELECT " + String.join(", ", columns) + " FROM " + getTableLocation().getTable().toUpperCase();
     }
 
+    /**
+     * Return a {@link QueryBuilder} reading this table, binding the parameters of its query.
+     *
+     * @return A {@link QueryBuilder} reading this table.
+     */
+    private IQueryBuilder getQueryBuilder() {
+        if (getTableLocation() != null) {
+            return new QueryBuilder(getJdbcDataSource(), getTableLocation().toString(getDbType()),
+                    getResultSetProperties());
+        }
+        return new QueryBuilder(getJdbcDataSource(), getBaseQuery(), getParams(), getResultSetProperties());
+    }
+
     @Override
 
     public IBuilderResult filter(String filter) {
-        String loc = getTableLocation() != null ? getTableLocation().toString(getDbType()) : getBaseQuery();
-        IQueryBuilder builder = new QueryBuilder(getJdbcDataSource(), loc, getResultSetProperties());
+        IQueryBuilder builder = getQueryBuilder();
         return builder.filter(filter);
     }
 
     @Override
 
     public IBuilderResult filter(GString filter) {
-        String loc = getTableLocation() != null ? getTableLocation().toString(getDbType()) : getBaseQuery();
-        IQueryBuilder builder = new QueryBuilder(getJdbcDataSource(), loc, getResultSetProperties());
+        IQueryBuilder builder = getQueryBuilder();
         return builder.filter(filter);
     }
 
     @Override
 
     public IBuilderResult filter(String filter, List<Object> params) {
-        String loc = getTableLocation() != null ? getTableLocation().toString(getDbType()) : getBaseQuery();
-        IQueryBuilder builder = new QueryBuilder(getJdbcDataSource(), loc, getResultSetProperties());
+        IQueryBuilder builder = getQueryBuilder();
         return builder.filter(filter, params);
     }
 
+    @Override
+    public IOrderedBuilderResult orderBy(String... columns) {
+        IQueryBuilder builder = getQueryBuilder();
+        return builder.orderBy(columns);
+    }
+
+    @Override
+    public IBuilderResult limit(long limit) {
+        IQueryBuilder builder = getQueryBuilder();
+        return builder.limit(limit);
+    }
+
+    @Override
+    public IBuilderResult offset(long offset) {
+        IQueryBuilder builder = getQueryBuilder();
+        return builder.offset(offset);
+    }
+
+    @Override
+    public IBuilderResult aggregate(Collection<String> groupBy, IAggregate... aggregates) {
+        IQueryBuilder builder = getQueryBuilder();
+        return builder.aggregate(groupBy, aggregates);
+    }
+
+    @Override
+    public IBuilderResult sample(double fraction) {
+        IQueryBuilder builder = getQueryBuilder();
+        return builder.sample(fraction);
+    }
+
+    @Override
+    public IBuilderResult sample(int n, long seed) {
+        IQueryBuilder builder = getQueryBuilder();
+        return builder.sample(n, seed);
+    }
+
     @Override
 
     public IFilterBuilder columns(String... columns) {
-        String loc = getTableLocation() != null ? getTableLocation().toString(getDbType()) : getBaseQuery();
-        IQueryBuilder builder = new QueryBuilder(getJdbcDataSource(), loc, getResultSetProperties());
+        IQueryBuilder builder = getQueryBuilder();
         return builder.columns(columns);
     }
 
@@ -662,11 +1004,40 @@ public abstract class JdbcTable<T extends ResultSet> extends DefaultResultSet im
     }
 
     @Override
-
     public JdbcTableSummary getSummary() throws Exception{
         return new JdbcTableSummary(getTableLocation(), getColumnCount(), getRowCount());
     }
 
+    @Override
+    public JdbcTableSummary getSummary(boolean columnStatistics, int histogramBins) throws Exception {
+        return getSummary(columnStatistics, histogramBins, false);
+    }
+
+    @Override
+    public JdbcTableSummary getSummary(boolean columnStatistics, int histogramBins, boolean distinctCounts)
+            throws Exception {
+        if (histogramBins < 0) {
+            throw new IllegalArgumentException("The number of bins should be positive or zero.");
+        }
+        if (!columnStatistics) {
+            if (histogramBins > 0) {
+                throw new IllegalArgumentException("The histograms need the column statistics.");
+            }
+            if (distinctCounts) {
+                throw new IllegalArgumentException("The distinct counts need the column statistics.");
+            }
+            return getSummary();
+        }
+        JdbcTableSummary cached = summary;
+        //A summary with the distinct counts also answers a request without them
+        if (cached == null || cached.getHistogramBins() != histogramBins ||
+                (distinctCounts && !cached.hasDistinctCounts())) {
+            cached = JdbcTableSummary.compute(this, histogramBins, distinctCounts);
+            summary = cached;
+        }
+        return cached;
+    }
+
     public List<Object> getParams() {
         return params;
     }
@@ -728,7 +1099,7 @@ public abstract class JdbcTable<T extends ResultSet> extends DefaultResultSet im
             query = "SELECT 1 FROM " + tableLocation.toString(getDbType()) + " LIMIT 1";
         }
         try {
-            ResultSet rowQuery = con.createStatement().executeQuery(query);
+            ResultSet rowQuery = executeQuery(con, query);
             return !rowQuery.next();
         } catch (SQLException e) {
             try {
@@ -37,9 +37,33 @@
 package org.orbisgis.data.jdbc;
 
 import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.orbisgis.commons.printer.Ascii;
+import org.orbisgis.commons.printer.Html;
+import org.orbisgis.commons.printer.ICustomPrinter;
+import org.orbisgis.data.api.dataset.IColumnSummary;
 import org.orbisgis.data.api.dataset.IJdbcTable;
 import org.orbisgis.data.api.dataset.IJdbcTableSummary;
 import org.orbisgis.data.api.dataset.ISummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.orbisgis.commons.printer.ICustomPrinter.CellPosition.CENTER;
+import static org.orbisgis.commons.printer.ICustomPrinter.CellPosition.LEFT;
+import static org.orbisgis.commons.printer.ICustomPrinter.CellPosition.RIGHT;
 
 /**
  * Implementation of the interface {@link ISummary} for the JDBC module.
@@ -48,6 +72,13 @@ import org.orbisgis.data.api.dataset.ISummary;
  */
 public class JdbcTableSummary implements IJdbcTableSummary {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(JdbcTableSummary.class);
+
+    /**
+     * Width of the columns in ascii print
+     */
+    private static final int ASCII_COLUMN_WIDTH = 20;
+
     /**
      * Count of column of the summarized {@link JdbcTable}
      */
@@ -60,11 +91,300 @@ public class JdbcTableSummary implements IJdbcTableSummary {
      * {@link TableLocation} of the summarized {@link JdbcTable}
      */
     private final TableLocation tableLocation;
+    /**
+     * Statistics of the columns of the summarized {@link JdbcTable}
+     */
+    private final List<IColumnSummary> columnSummaries;
+    /**
+     * Number of bins of the histograms, 0 if they are not computed
+     */
+    private final int histogramBins;
+    /**
+     * True if the distinct values of the columns are counted
+     */
+    private final boolean distinctCounts;
 
     public JdbcTableSummary(TableLocation tableLocation, int columnCount, int rowCount) {
+        this(tableLocation, columnCount, rowCount, Collections.emptyList(), 0, false);
+    }
+
+    public JdbcTableSummary(TableLocation tableLocation, int columnCount, int rowCount,
+                            List<IColumnSummary> columnSummaries, int histogramBins, boolean distinctCounts) {
         this.tableLocation = tableLocation;
         this.columnCount = columnCount;
         this.rowCount = rowCount;
+        this.columnSummaries = Collections.unmodifiableList(new ArrayList<>(columnSummaries));
+        this.histogramBins = histogramBins;
+        this.distinctCounts = distinctCounts;
+    }
+
+    /**
+     * Compute the summary of the given table. The column types are read from the cached metadata of the table, then the
+     * statistics of all the columns are computed with a single aggregate query and the histograms of all the numeric
+     * columns with a second one. The optional distinct counts are computed by the database, without sending the
+     * values to the client.
+     *
+     * @param table          Table to summarize.
+     * @param histogramBins  Number of bins of the histograms, 0 for no histogram.
+     * @param distinctCounts True to count the distinct values of the columns.
+     * @return The summary of the table.
+     */
+    static JdbcTableSummary compute(JdbcTable<?> table, int histogramBins, boolean distinctCounts) throws Exception {
+        DBTypes dbType = table.getDbType();
+        List<String> names = new ArrayList<>();
+        List<String> typeNames = new ArrayList<>();
+        List<Integer> types = new ArrayList<>();
+        ResultSetMetaData metaData = table.getTableMetaData();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            names.add(metaData.getColumnLabel(i));
+            typeNames.add(metaData.getColumnTypeName(i));
+            types.add(metaData.getColumnType(i));
+        }
+
+        List<String> expressions = new ArrayList<>();
+        expressions.add("COUNT(*)");
+        for (int i = 0; i < names.size(); i++) {
+            String column = TableLocation.quoteIdentifier(names.get(i), dbType);
+            int type = types.get(i);
+            expressions.add("COUNT(" + column + ")");
+            if (isComparable(type)) {
+                expressions.add("MIN(" + column + ")");
+                expressions.add("MAX(" + column + ")");
+            }
+            if (isNumeric(type)) {
+                expressions.add("AVG(CAST(" + column + " AS DOUBLE PRECISION))");
+            }
+        }
+        String query = table.getSelectQuery(String.join(", ", expressions));
+        long rowCount;
+        List<JdbcColumnSummary> columns = new ArrayList<>();
+        try (Statement statement = table.getStatement(query); ResultSet rs = executeQuery(statement, query)) {
+            rs.next();
+            rowCount = rs.getLong(1);
+            int index = 2;
+            for (int i = 0; i < names.size(); i++) {
+                int type = types.get(i);
+                long nullCount = rowCount - rs.getLong(index++);
+                Object min = null;
+                Object max = null;
+                Double mean = null;
+                if (isComparable(type)) {
+                    min = rs.getObject(index++);
+                    max = rs.getObject(index++);
+                }
+                if (isNumeric(type)) {
+                    double value = rs.getDouble(index++);
+                    mean = rs.wasNull() ? null : value;
+                }
+                columns.add(new JdbcColumnSummary(names.get(i), typeNames.get(i), nullCount, min, max, mean,
+                        distinctCounts && isDistinctCounted(type) ? 0 : -1));
+            }
+        }
+        if (distinctCounts && rowCount > 0) {
+            countDistinctValues(table, columns, types, rowCount);
+        }
+        if (histogramBins > 0) {
+            computeHistograms(table, columns, types, rowCount, histogramBins);
+        }
+        return new JdbcTableSummary(table.getTableLocation(), names.size(), (int) rowCount, new ArrayList<>(columns),
+                histogramBins, distinctCounts);
+    }
+
+    /**
+     * Compute the histograms of the numeric columns with a single query counting the values of each bin.
+     *
+     * @param table         Summarized table.
+     * @param columns       Statistics of the columns, to complete with the histograms.
+     * @param types         SQL types of the columns.
+     * @param rowCount      Row count of the table.
+     * @param histogramBins Number of bins of the histograms.
+     */
+    private static void computeHistograms(JdbcTable<?> table, List<JdbcColumnSummary> columns, List<Integer> types,
+                                          long rowCount, int histogramBins) throws Exception {
+        List<String> expressions = new ArrayList<>();
+        List<JdbcColumnSummary> computed = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            JdbcColumnSummary summary = columns.get(i);
+            if (!isNumeric(types.get(i)) || summary.getMin() == null) {
+                continue;
+            }
+            double min = ((Number) summary.getMin()).doubleValue();
+            double max = ((Number) summary.getMax()).doubleValue();
+            long[] histogram = new long[histogramBins];
+            summary.setHistogram(histogram);
+            if (min == max || !Double.isFinite(min) || !Double.isFinite(max)) {
+                histogram[0] = rowCount - summary.getNullCount();
+                continue;
+            }
+            String value = "CAST(" + TableLocation.quoteIdentifier(summary.getName(), table.getDbType()) +
+                    " AS DOUBLE PRECISION)";
+            double width = (max - min) / histogramBins;
+            for (int bin = 0; bin < histogramBins; bin++) {
+                String condition = value + " >= " + (min + bin * width);
+                //The last bin contains the maximum value
+                if (bin < histogramBins - 1) {
+                    condition += " AND " + value + " < " + (min + (bin + 1) * width);
+                }
+                expressions.add("COUNT(CASE WHEN " + condition + " THEN 1 END)");
+            }
+            computed.add(summary);
+        }
+        if (expressions.isEmpty()) {
+            return;
+        }
+        String query = table.getSelectQuery(String.join(", ", expressions));
+        try (Statement statement = table.getStatement(query); ResultSet rs = executeQuery(statement, query)) {
+            rs.next();
+            int index = 1;
+            for (JdbcColumnSummary summary : computed) {
+                long[] histogram = summary.getHistogram();
+                for (int bin = 0; bin < histogramBins; bin++) {
+                    histogram[bin] = rs.getLong(index++);
+                }
+            }
+        }
+    }
+
+    /**
+     * Count the distinct values of the columns. On PostGIS, the distinct counts of a table are read from the planner
+     * statistics of its columns when they exist, the other ones are computed with a single COUNT(DISTINCT) query.
+     *
+     * @param table    Summarized table.
+     * @param columns  Statistics of the columns, to complete with the distinct counts.
+     * @param types    SQL types of the columns.
+     * @param rowCount Row count of the table.
+     */
+    private static void countDistinctValues(JdbcTable<?> table, List<JdbcColumnSummary> columns, List<Integer> types,
+                                            long rowCount) throws Exception {
+        Map<String, Double> statistics = getDistinctStatistics(table);
+        List<String> expressions = new ArrayList<>();
+        List<JdbcColumnSummary> counted = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            JdbcColumnSummary summary = columns.get(i);
+            if (!isDistinctCounted(types.get(i))) {
+                continue;
+            }
+            Double distinct = statistics.get(summary.getName());
+            if (distinct != null && distinct != 0) {
+                //A negative value is the opposite of the ratio of distinct values to the row count
+                summary.setDistinctCount(distinct > 0 ? distinct.longValue() : Math.round(-distinct * rowCount));
+            } else {
+                expressions.add("COUNT(DISTINCT " + TableLocation.quoteIdentifier(summary.getName(),
+                        table.getDbType()) + ")");
+                counted.add(summary);
+            }
+        }
+        if (expressions.isEmpty()) {
+            return;
+        }
+        String query = table.getSelectQuery(String.join(", ", expressions));
+        try (Statement statement = table.getStatement(query); ResultSet rs = executeQuery(statement, query)) {
+            rs.next();
+            for (int i = 0; i < counted.size(); i++) {
+                counted.get(i).setDistinctCount(rs.getLong(i + 1));
+            }
+        }
+    }
+
+    /**
+     * Return the distinct counts of the columns estimated by the planner statistics of a PostGIS table, as stored
+     * in pg_stats.n_distinct.
+     *
+     * @param table Summarized table.
+     * @return The distinct counts by column name, empty if the table is a query, if the database is not PostGIS or if
+     * the table has not been analyzed.
+     */
+    private static Map<String, Double> getDistinctStatistics(JdbcTable<?> table) {
+        Map<String, Double> statistics = new HashMap<>();
+        DBTypes dbType = table.getDbType();
+        if (table.getTableLocation() == null || (dbType != DBTypes.POSTGIS && dbType != DBTypes.POSTGRESQL)) {
+            return statistics;
+        }
+        String query = "SELECT s.attname, s.n_distinct FROM pg_stats s " +
+                "JOIN pg_namespace n ON n.nspname = s.schemaname " +
+                "JOIN pg_class c ON c.relnamespace = n.oid AND c.relname = s.tablename " +
+                "WHERE c.oid = ?::regclass AND NOT s.inherited";
+        try (PreparedStatement ps = table.getJdbcDataSource().getConnection().prepareStatement(query)) {
+            ps.setString(1, table.getTableLocation().toString(dbType));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    statistics.put(rs.getString(1), rs.getDouble(2));
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Unable to read the statistics of the table " + table.getTableLocation() + ".", e);
+        }
+        return statistics;
+    }
+
+    /**
+     * Execute the given query with the given statement, prepared with it or not.
+     *
+     * @param statement Statement executing the query.
+     * @param query     Query to execute.
+     * @return The result of the query.
+     */
+    private static ResultSet executeQuery(Statement statement, String query) throws Exception {
+        return statement instanceof PreparedStatement ?
+                ((PreparedStatement) statement).executeQuery() : statement.executeQuery(query);
+    }
+
+    /**
+     * Return true if the values of the given SQL type are numbers.
+     *
+     * @param type SQL type from {@link Types}.
+     * @return True if the type is numeric.
+     */
+    private static boolean isNumeric(int type) {
+        switch (type) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Return true if the distinct values of the given SQL type are counted.
+     *
+     * @param type SQL type from {@link Types}.
+     * @return True if the distinct values are counted.
+     */
+    private static boolean isDistinctCounted(int type) {
+        return isComparable(type) || type == Types.BOOLEAN || type == Types.BIT;
+    }
+
+    /**
+     * Return true if the values of the given SQL type can be compared by all the databases, so that their minimum
+     * and maximum values can be computed.
+     *
+     * @param type SQL type from {@link Types}.
+     * @return True if the type is comparable.
+     */
+    private static boolean isComparable(int type) {
+        switch (type) {
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.DATE:
+            case Types.TIME:
+            case Types.TIMESTAMP:
+            case Types.TIME_WITH_TIMEZONE:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return true;
+            default:
+                return isNumeric(type);
+        }
     }
 
     /**
@@ -94,6 +414,35 @@ public class JdbcTableSummary implements IJdbcTableSummary {
         return columnCount;
     }
 
+    @Override
+    public List<IColumnSummary> getColumnSummaries() {
+        return columnSummaries;
+    }
+
+    @Override
+    public IColumnSummary getColumnSummary(String column) {
+        return columnSummaries.stream().filter(summary -> summary.getName().equalsIgnoreCase(column))
+                .findFirst().orElse(null);
+    }
+
+    /**
+     * Returns the number of bins of the histograms, 0 if they are not computed.
+     *
+     * @return The number of bins of the histograms.
+     */
+    public int getHistogramBins() {
+        return histogramBins;
+    }
+
+    /**
+     * Return true if the distinct values of the columns are counted.
+     *
+     * @return True if the distinct values are counted.
+     */
+    public boolean hasDistinctCounts() {
+        return distinctCounts;
+    }
+
     @Override
     public String toString() {
         return (tableLocation == null ? IJdbcTable.QUERY_LOCATION : tableLocation.toString()) + "; row count : " +
@@ -102,6 +451,39 @@ public class JdbcTableSummary implements IJdbcTableSummary {
 
     @Override
     public Object asType(Class<?> clazz) {
+        if (Ascii.class.equals(clazz) || Html.class.equals(clazz)) {
+            ICustomPrinter printer = Ascii.class.equals(clazz) ? new Ascii() : new Html();
+            List<String> titles = new ArrayList<>(Arrays.asList("column", "type", "nulls", "min", "max", "mean",
+                    "distinct"));
+            if (histogramBins > 0) {
+                titles.add("histogram");
+            }
+            printer.startTable(ASCII_COLUMN_WIDTH, titles.size());
+            printer.appendTableTitle(this.toString());
+            printer.appendTableLineSeparator();
+            for (String title : titles) {
+                printer.appendTableHeaderValue(title, CENTER);
+            }
+            printer.appendTableLineSeparator();
+            for (IColumnSummary summary : columnSummaries) {
+                printer.appendTableValue(summary.getName(), LEFT);
+                printer.appendTableValue(summary.getType(), LEFT);
+                printer.appendTableValue(summary.getNullCount(), RIGHT);
+                printer.appendTableValue(Objects.toString(summary.getMin(), ""), RIGHT);
+                printer.appendTableValue(Objects.toString(summary.getMax(), ""), RIGHT);
+                printer.appendTableValue(Objects.toString(summary.getMean(), ""), RIGHT);
+                printer.appendTableValue(summary.getDistinctCount() < 0 ? "" : summary.getDistinctCount(), RIGHT);
+                if (histogramBins > 0) {
+                    printer.appendTableValue(summary.getHistogram() == null ? "" :
+                            Arrays.toString(summary.getHistogram()), LEFT);
+                }
+            }
+            printer.appendTableLineSeparator();
+            printer.endTable();
+            return printer;
+        } else if (String.class.equals(clazz)) {
+            return toString();
+        }
         return null;
     }
 }
@@ -36,12 +36,14 @@
  */
 package org.orbisgis.data.jdbc;
 
+import org.orbisgis.data.api.dsl.ICancellationToken;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Iterator;
+import java.util.concurrent.CancellationException;
 
 /**
  * Iterator dedicated to the iteration on a {@link T}.
@@ -81,6 +83,9 @@ public class ResultSetIterator<T extends ResultSet> implements Iterator<T> {
             nextDone = true;
             return resultSet != null && resultSet.next();
         } catch (SQLException e) {
+            if (ICancellationToken.CANCELLED_STATE.equals(e.getSQLState())) {
+                throw new CancellationException(e.getMessage());
+            }
             LOGGER.error("Unable to get next row.\n", e);
             nextDone = false;
             return false;
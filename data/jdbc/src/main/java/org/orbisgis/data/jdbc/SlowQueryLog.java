@@ -0,0 +1,452 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc;
+
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Log of the slow statements executed by a {@link JdbcDataSource}. Each statement lasting more than the threshold is
+ * logged with its duration, its number of rows and its bind parameters, and the last ones are kept in memory. The
+ * execution plan of the slow statements can also be captured : the EXPLAIN is then executed in background on a side
+ * connection of the {@link DataSource}, so that the caller is not delayed.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public class SlowQueryLog {
+
+    /** Default duration in milliseconds from which a statement is slow */
+    public static final long DEFAULT_THRESHOLD = 1000;
+    /** Default number of slow statements kept in memory */
+    public static final int DEFAULT_MAX_ENTRIES = 100;
+
+    /**
+     * Capture of the execution plan of the slow statements.
+     */
+    public enum Explain {
+        /** The plan is not captured */
+        NONE,
+        /** The plan is captured with EXPLAIN */
+        PLAN,
+        /**
+         * The plan of the queries is captured with EXPLAIN ANALYZE, which executes them again. It is only used on the
+         * databases enforcing the read-only transactions, so that a query with side effects (like a call to nextval)
+         * is never executed twice : the other statements fall back on EXPLAIN.
+         */
+        ANALYZE
+    }
+
+    /** Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    /** {@link JdbcDataSource} executing the logged statements */
+    private final JdbcDataSource dataSource;
+    /** Last slow statements, the oldest first */
+    private final Deque<Entry> entries = new ArrayDeque<>();
+    /** True if the statements are timed */
+    private volatile boolean enabled = false;
+    /** Duration in milliseconds from which a statement is slow */
+    private volatile long threshold = DEFAULT_THRESHOLD;
+    /** Number of slow statements kept in memory */
+    private volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+    /** Capture of the execution plans */
+    private volatile Explain explain = Explain.NONE;
+    /** Executor capturing the execution plans, created on the first capture */
+    private ThreadPoolExecutor explainer;
+
+    /**
+     * Create a log of the slow statements of the given {@link JdbcDataSource}.
+     *
+     * @param dataSource {@link JdbcDataSource} executing the logged statements.
+     */
+    public SlowQueryLog(JdbcDataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Enable or disable the timing of the statements.
+     *
+     * @param enabled True to log the slow statements, false otherwise.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Return true if the slow statements are logged.
+     *
+     * @return True if the slow statements are logged, false otherwise.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Set the duration from which a statement is slow.
+     *
+     * @param threshold Duration in milliseconds, positive or zero.
+     */
+    public void setThreshold(long threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("The threshold should be positive or zero.");
+        }
+        this.threshold = threshold;
+    }
+
+    /**
+     * Return the duration from which a statement is slow.
+     *
+     * @return The duration in milliseconds.
+     */
+    public long getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Set the number of slow statements kept in memory.
+     *
+     * @param maxEntries Number of slow statements, strictly positive.
+     */
+    public void setMaxEntries(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("The maximum number of entries should be strictly positive.");
+        }
+        this.maxEntries = maxEntries;
+        synchronized (entries) {
+            while (entries.size() > maxEntries) {
+                entries.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * Return the number of slow statements kept in memory.
+     *
+     * @return The number of slow statements.
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Set how the execution plan of the slow statements is captured. The plans can only be captured if the
+     * {@link JdbcDataSource} wraps a {@link DataSource} providing the side connections.
+     *
+     * @param explain Capture of the execution plans.
+     */
+    public void setExplain(Explain explain) {
+        this.explain = explain == null ? Explain.NONE : explain;
+    }
+
+    /**
+     * Return how the execution plan of the slow statements is captured.
+     *
+     * @return The capture of the execution plans.
+     */
+    public Explain getExplain() {
+        return explain;
+    }
+
+    /**
+     * Return the last slow statements, the oldest first.
+     *
+     * @return The last slow statements.
+     */
+    public List<Entry> getEntries() {
+        synchronized (entries) {
+            return new ArrayList<>(entries);
+        }
+    }
+
+    /**
+     * Remove the slow statements kept in memory.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Return the start time of a statement to give to {@link #log(long, String, List, long)}, -1 if the log is
+     * disabled.
+     *
+     * @return The start time in nanoseconds.
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : -1;
+    }
+
+    /**
+     * Return true if the statement started at the given time is slow.
+     *
+     * @param start Start time returned by {@link #start()}.
+     * @return True if the statement is slow.
+     */
+    public boolean isSlow(long start) {
+        return start >= 0 && (System.nanoTime() - start) / 1_000_000 >= threshold;
+    }
+
+    /**
+     * Log the statement started at the given time if it is slow.
+     *
+     * @param start    Start time returned by {@link #start()}.
+     * @param query    Executed statement.
+     * @param params   Bind parameters of the statement, may be null.
+     * @param rowCount Number of rows read or modified, -1 if unknown.
+     */
+    public void log(long start, String query, List<Object> params, long rowCount) {
+        if (start < 0 || query == null) {
+            return;
+        }
+        long duration = (System.nanoTime() - start) / 1_000_000;
+        if (duration < threshold) {
+            return;
+        }
+        Entry entry = new Entry(query, params, duration, rowCount);
+        LOGGER.warn("Slow query ({} ms, {} rows) : {}{}", duration, rowCount < 0 ? "?" : rowCount, query,
+                entry.params.isEmpty() ? "" : " with parameters " + entry.params);
+        synchronized (entries) {
+            entries.addLast(entry);
+            while (entries.size() > maxEntries) {
+                entries.removeFirst();
+            }
+        }
+        Explain mode = explain;
+        DataSource ds = dataSource.getDataSource();
+        if (mode == Explain.NONE || ds == null) {
+            entry.plan.complete(null);
+            return;
+        }
+        getExplainer().execute(() -> {
+            try {
+                String plan = explain(ds, entry, mode);
+                if (plan != null) {
+                    LOGGER.warn("Plan of the slow query {} :\n{}", query, plan);
+                }
+                entry.plan.complete(plan);
+            } catch (Exception e) {
+                LOGGER.debug("Unable to explain the slow query " + query + ".\n" + e.getLocalizedMessage());
+                entry.plan.complete(null);
+            }
+        });
+    }
+
+    /**
+     * Return the executor capturing the execution plans. Its single thread stops when it is idle.
+     *
+     * @return The executor capturing the execution plans.
+     */
+    private synchronized ThreadPoolExecutor getExplainer() {
+        if (explainer == null) {
+            explainer = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "slow-query-explainer");
+                t.setDaemon(true);
+                return t;
+            });
+            explainer.allowCoreThreadTimeOut(true);
+        }
+        return explainer;
+    }
+
+    /**
+     * Execute the EXPLAIN of the given slow statement on a side connection.
+     *
+     * @param ds    {@link DataSource} providing the side connection.
+     * @param entry Slow statement.
+     * @param mode  Capture of the execution plan.
+     * @return The execution plan, null if the statement cannot be explained.
+     */
+    private String explain(DataSource ds, Entry entry, Explain mode) throws SQLException {
+        String query = entry.query.trim();
+        while (query.startsWith("(") && JdbcDataSource.getClosingParenthesis(query) == query.length() - 1) {
+            query = query.substring(1, query.length() - 1).trim();
+        }
+        try (Connection con = ds.getConnection()) {
+            if (mode == Explain.ANALYZE && isReadOnlyEnforced() && JdbcDataSource.isReadOnlyQuery(query)) {
+                //EXPLAIN ANALYZE executes the statement, so it is run in a read-only transaction which is rolled back
+                boolean autoCommit = con.getAutoCommit();
+                boolean readOnly = con.isReadOnly();
+                try {
+                    con.setAutoCommit(false);
+                    con.setReadOnly(true);
+                    return explain(con, "EXPLAIN ANALYZE " + query, entry.params);
+                } catch (SQLException e) {
+                    LOGGER.debug("Unable to analyze the slow query " + query + ".\n" + e.getLocalizedMessage());
+                } finally {
+                    con.rollback();
+                    con.setReadOnly(readOnly);
+                    con.setAutoCommit(autoCommit);
+                }
+            }
+            return explain(con, "EXPLAIN " + query, entry.params);
+        }
+    }
+
+    /**
+     * Execute the given EXPLAIN statement and return the lines of the plan.
+     *
+     * @param con     Side connection.
+     * @param explain EXPLAIN statement.
+     * @param params  Bind parameters of the explained statement.
+     * @return The execution plan.
+     */
+    private static String explain(Connection con, String explain, List<Object> params) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(explain)) {
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+            StringJoiner plan = new StringJoiner("\n");
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    plan.add(rs.getString(1));
+                }
+            }
+            return plan.toString();
+        }
+    }
+
+    /**
+     * Return true if the database rejects the modifications in a read-only transaction. H2 only takes the read-only
+     * flag of the connection as a hint.
+     *
+     * @return True if the read-only transactions are enforced.
+     */
+    private boolean isReadOnlyEnforced() {
+        DBTypes type = dataSource.getDataBaseType();
+        return type == DBTypes.POSTGRESQL || type == DBTypes.POSTGIS;
+    }
+
+    /**
+     * Slow statement of the log.
+     */
+    public static final class Entry {
+        /** Executed statement */
+        private final String query;
+        /** Bind parameters of the statement */
+        private final List<Object> params;
+        /** Duration in milliseconds */
+        private final long duration;
+        /** Number of rows read or modified, -1 if unknown */
+        private final long rowCount;
+        /** Time of the log in milliseconds since the epoch */
+        private final long timestamp = System.currentTimeMillis();
+        /** Execution plan of the statement */
+        private final CompletableFuture<String> plan = new CompletableFuture<>();
+
+        private Entry(String query, List<Object> params, long duration, long rowCount) {
+            this.query = query;
+            this.params = params == null ? Collections.emptyList() :
+                    Collections.unmodifiableList(new ArrayList<>(params));
+            this.duration = duration;
+            this.rowCount = rowCount;
+        }
+
+        /**
+         * Return the executed statement.
+         *
+         * @return The executed statement.
+         */
+        public String getQuery() {
+            return query;
+        }
+
+        /**
+         * Return the bind parameters of the statement.
+         *
+         * @return The bind parameters.
+         */
+        public List<Object> getParameters() {
+            return params;
+        }
+
+        /**
+         * Return the duration of the statement.
+         *
+         * @return The duration in milliseconds.
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        /**
+         * Return the number of rows read or modified by the statement.
+         *
+         * @return The number of rows, -1 if unknown.
+         */
+        public long getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * Return the time at which the statement has been logged.
+         *
+         * @return The time in milliseconds since the epoch.
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * Return the execution plan of the statement, completed with null if it is not captured.
+         *
+         * @return The future execution plan.
+         */
+        public CompletableFuture<String> getPlan() {
+            return plan;
+        }
+
+        @Override
+        public String toString() {
+            return query + (params.isEmpty() ? "" : " " + params) + " : " + duration + " ms, " +
+                    (rowCount < 0 ? "?" : rowCount) + " rows";
+        }
+    }
+}
@@ -0,0 +1,518 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc;
+
+import org.h2gis.utilities.TableLocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Advisor watching the spatial predicates of the queries executed by a {@link JdbcDataSource}. Each time a spatial
+ * predicate is applied on a geometry column which is not spatially indexed, a full scan of this column is counted.
+ * Once the number of full scans of a column reaches the threshold, the advisor recommends the creation of a spatial
+ * index on it, or creates it if the automatic creation is enabled. The advisor is disabled until
+ * {@link #setEnabled(boolean)} is called.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public class SpatialIndexAdvisor {
+
+    /** Default number of full scans from which a spatial index is recommended */
+    public static final int DEFAULT_THRESHOLD = 5;
+
+    /** Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpatialIndexAdvisor.class);
+    /** Identifier, quoted or not, optionally qualified */
+    private static final String IDENTIFIER = "(?:\"[^\"]+\"|[\\w$]+)(?:\\s*\\.\\s*(?:\"[^\"]+\"|[\\w$]+))*";
+    /** Pattern of the spatial predicates which can use a spatial index, with their arguments */
+    private static final Pattern SPATIAL_FUNCTION = Pattern.compile(
+            "\\bST_(?:Intersects|Contains|Within|Covers|CoveredBy|Touches|Crosses|Overlaps|Equals|DWithin|" +
+                    "EnvelopesIntersect)\\s*\\(((?:[^()]|\\((?:[^()]|\\([^()]*\\))*\\))*)\\)",
+            Pattern.CASE_INSENSITIVE);
+    /** Pattern of the bounding box intersection operator with its column operands */
+    private static final Pattern BBOX_OPERATOR = Pattern.compile(
+            "(?<![\\w$\".)'])(" + IDENTIFIER + ")\\s*&&|&&\\s*(" + IDENTIFIER + ")(?![\\w$\".(])");
+    /** Pattern of the tables of a FROM clause, up to the next clause */
+    private static final Pattern FROM_CLAUSE = Pattern.compile(
+            "\\bFROM\\s+(.+?)(?=\\bWHERE\\b|\\bGROUP\\b|\\bORDER\\b|\\bLIMIT\\b|\\bHAVING\\b|\\bUNION\\b|" +
+                    "\\b(?:LEFT|RIGHT|INNER|OUTER|FULL|CROSS|NATURAL)\\b|\\bJOIN\\b|\\)|;|$)",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    /** Pattern of a joined table */
+    private static final Pattern JOIN_CLAUSE = Pattern.compile("\\bJOIN\\s+(" + IDENTIFIER + ")(?:\\s+(?:AS\\s+)?([\\w$]+))?",
+            Pattern.CASE_INSENSITIVE);
+    /** Pattern of a table of the FROM clause with its alias */
+    private static final Pattern TABLE = Pattern.compile("^\\s*(" + IDENTIFIER + ")(?:\\s+(?:AS\\s+)?([\\w$]+))?\\s*$",
+            Pattern.CASE_INSENSITIVE);
+    /** Pattern of the statements creating an index, with the indexed table */
+    private static final Pattern CREATE_INDEX = Pattern.compile("\\bCREATE\\s+(?:\\w+\\s+)*INDEX\\b.*?\\bON\\s+" +
+            "(?:ONLY\\s+)?(" + IDENTIFIER + ")", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    /** Pattern of the statements dropping an index, which do not name the indexed table */
+    private static final Pattern DROP_INDEX = Pattern.compile("\\bDROP\\s+INDEX\\b", Pattern.CASE_INSENSITIVE);
+    /** Words which can follow a table name without being its alias */
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList("ON", "USING", "WHERE", "GROUP", "ORDER",
+            "LIMIT", "HAVING", "UNION", "LEFT", "RIGHT", "INNER", "OUTER", "FULL", "CROSS", "NATURAL", "JOIN"));
+
+    /** {@link JdbcDataSource} executing the watched queries */
+    private final JdbcDataSource dataSource;
+    /** Number of full scans per table and geometry column */
+    private final Map<Column, AtomicInteger> fullScans = new ConcurrentHashMap<>();
+    /** Known index state per table and column : true if spatially indexed, false if not */
+    private final Map<Column, Boolean> indexed = new ConcurrentHashMap<>();
+    /** Known geometry columns per table */
+    private final Map<String, List<String>> geometryColumns = new ConcurrentHashMap<>();
+    /** Columns for which an index has already been recommended */
+    private final Set<Column> recommended = ConcurrentHashMap.newKeySet();
+    /** True if the advisor watches the queries */
+    private volatile boolean enabled = false;
+    /** True if the recommended indexes are created */
+    private volatile boolean autoCreate = false;
+    /** Number of full scans from which a spatial index is recommended */
+    private volatile int threshold = DEFAULT_THRESHOLD;
+
+    /**
+     * Create an advisor watching the queries of the given {@link JdbcDataSource}.
+     *
+     * @param dataSource {@link JdbcDataSource} executing the watched queries.
+     */
+    public SpatialIndexAdvisor(JdbcDataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Enable or disable the watching of the queries.
+     *
+     * @param enabled True to watch the queries, false otherwise.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Return true if the queries are watched.
+     *
+     * @return True if the queries are watched, false otherwise.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enable or disable the creation of the recommended spatial indexes.
+     *
+     * @param autoCreate True to create the recommended spatial indexes, false to only recommend them.
+     */
+    public void setAutoCreate(boolean autoCreate) {
+        this.autoCreate = autoCreate;
+    }
+
+    /**
+     * Return true if the recommended spatial indexes are created.
+     *
+     * @return True if the recommended spatial indexes are created, false otherwise.
+     */
+    public boolean isAutoCreate() {
+        return autoCreate;
+    }
+
+    /**
+     * Set the number of full scans of a geometry column from which a spatial index is recommended.
+     *
+     * @param threshold Number of full scans, strictly positive.
+     */
+    public void setThreshold(int threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("The threshold should be strictly positive.");
+        }
+        this.threshold = threshold;
+    }
+
+    /**
+     * Return the number of full scans of a geometry column from which a spatial index is recommended.
+     *
+     * @return The number of full scans.
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Return the number of full scans counted for each table and geometry column, formatted as
+     * {@code table.column}.
+     *
+     * @return The number of full scans per column.
+     */
+    public Map<String, Integer> getFullScans() {
+        Map<String, Integer> map = new TreeMap<>();
+        fullScans.forEach((column, count) -> map.put(column.toString(), count.get()));
+        return map;
+    }
+
+    /**
+     * Return the columns, formatted as {@code table.column}, which are still not spatially indexed and for which a
+     * spatial index is recommended.
+     *
+     * @return The recommended spatial indexes.
+     */
+    public List<String> getRecommendations() {
+        List<String> list = new ArrayList<>();
+        recommended.stream().filter(column -> !isIndexed(column))
+                .forEach(column -> list.add(column.toString()));
+        Collections.sort(list);
+        return list;
+    }
+
+    /**
+     * Reset the counted full scans and the recommendations.
+     */
+    public void reset() {
+        fullScans.clear();
+        recommended.clear();
+        clearIndexStates();
+    }
+
+    /**
+     * Forget the known index states and geometry columns of the given tables, or of all the tables if none is
+     * given, so that they are read again from the database.
+     *
+     * @param tableNames Names of the tables, without schema.
+     */
+    public void clearIndexStates(String... tableNames) {
+        clearIndexStates(tableNames == null ? Collections.emptyList() : Arrays.asList(tableNames));
+    }
+
+    /**
+     * Forget the known index states and geometry columns of the given tables, or of all the tables if the collection
+     * is empty.
+     *
+     * @param tableNames Names of the tables, without schema.
+     */
+    void clearIndexStates(Collection<String> tableNames) {
+        if (tableNames.isEmpty()) {
+            indexed.clear();
+            geometryColumns.clear();
+        } else {
+            Set<String> tables = new HashSet<>();
+            tableNames.stream().filter(Objects::nonNull).forEach(name -> tables.add(getName(name)));
+            indexed.keySet().removeIf(column -> tables.contains(getName(column.table)));
+            geometryColumns.keySet().removeIf(name -> tables.contains(getName(name)));
+        }
+    }
+
+    /**
+     * Forget the known index states changed by the given SQL : the states of the tables on which an index is created
+     * and, as a dropped index does not name its table, the states of all the indexed columns.
+     *
+     * @param sql SQL query or statement.
+     */
+    private void clearChangedIndexStates(String sql) {
+        Matcher matcher = CREATE_INDEX.matcher(sql);
+        List<String> tables = new ArrayList<>();
+        while (matcher.find()) {
+            tables.add(matcher.group(1));
+        }
+        if (!tables.isEmpty()) {
+            clearIndexStates(tables);
+        }
+        if (DROP_INDEX.matcher(sql).find()) {
+            indexed.values().removeIf(Boolean::booleanValue);
+        }
+    }
+
+    /**
+     * Return the upper case name, without schema and quotes, of the given table.
+     *
+     * @param table Name of the table, optionally qualified.
+     * @return The name of the table.
+     */
+    private static String getName(String table) {
+        String[] parts = table.split("\\s*\\.\\s*");
+        return parts[parts.length - 1].replace("\"", "").toUpperCase();
+    }
+
+    /**
+     * Analyze the spatial predicates of the given SQL and count the full scans of the geometry columns which are not
+     * spatially indexed. This method never fails : the errors are only logged.
+     *
+     * @param sql SQL query or statement.
+     */
+    public void analyze(String sql) {
+        if (!enabled || sql == null) {
+            return;
+        }
+        try {
+            clearChangedIndexStates(sql);
+            List<String[]> references = getSpatialReferences(sql);
+            if (references.isEmpty()) {
+                return;
+            }
+            Map<String, String> tables = getTables(sql);
+            if (tables.isEmpty()) {
+                return;
+            }
+            Set<Column> columns = new LinkedHashSet<>();
+            for (String[] reference : references) {
+                Column column = resolve(reference, tables);
+                if (column != null) {
+                    columns.add(column);
+                }
+            }
+            for (Column column : columns) {
+                if (!isIndexed(column)) {
+                    int count = fullScans.computeIfAbsent(column, c -> new AtomicInteger()).incrementAndGet();
+                    if (count >= threshold) {
+                        advise(column, count);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Unable to analyze the spatial predicates of the query.\n" + e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Recommend or create the spatial index of the given column.
+     *
+     * @param column Column scanned too many times.
+     * @param count  Number of full scans.
+     */
+    private void advise(Column column, int count) {
+        if (autoCreate && !recommended.contains(column) && dataSource.createSpatialIndex(column.table, column.column)) {
+            indexed.put(column, true);
+            LOGGER.info("Spatial index created on the column '" + column.column + "' of the table '" +
+                    column.table + "' after " + count + " full scans.");
+        } else if (recommended.add(column)) {
+            LOGGER.warn("The column '" + column.column + "' of the table '" + column.table + "' has been fully " +
+                    "scanned " + count + " times by spatial predicates, a spatial index is recommended.");
+        }
+    }
+
+    /**
+     * Return true if the given column is spatially indexed, using the known index states.
+     *
+     * @param column Column to check.
+     * @return True if the column is spatially indexed, false otherwise.
+     */
+    private boolean isIndexed(Column column) {
+        Boolean state = indexed.get(column);
+        if (state == null) {
+            try {
+                state = dataSource.isSpatialIndexed(column.table, column.column);
+            } catch (Exception e) {
+                LOGGER.debug("Unable to check the spatial index of the column '" + column.column + "'.\n" +
+                        e.getLocalizedMessage());
+                state = true;
+            }
+            indexed.put(column, state);
+        }
+        return state;
+    }
+
+    /**
+     * Find the table and the geometry column matching the given column reference.
+     *
+     * @param reference Qualifier, null if there is none, and name of the referenced column.
+     * @param tables    Tables of the query by alias.
+     * @return The referenced geometry column, null if it is not a geometry column of a table.
+     */
+    private Column resolve(String[] reference, Map<String, String> tables) {
+        Collection<String> candidates;
+        if (reference[0] != null) {
+            String table = tables.get(reference[0].toUpperCase());
+            if (table == null) {
+                return null;
+            }
+            candidates = Collections.singleton(table);
+        } else {
+            candidates = new LinkedHashSet<>(tables.values());
+        }
+        for (String table : candidates) {
+            List<String> columns = geometryColumns.computeIfAbsent(table, name -> {
+                List<String> list = dataSource.getGeometryColumns(name);
+                return list == null ? Collections.emptyList() : list;
+            });
+            for (String column : columns) {
+                if (column.equalsIgnoreCase(reference[1])) {
+                    return new Column(table, column);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the column references, as qualifier and column name, used in the spatial predicates of the given SQL.
+     *
+     * @param sql SQL query or statement.
+     * @return The referenced columns.
+     */
+    private static List<String[]> getSpatialReferences(String sql) {
+        List<String[]> references = new ArrayList<>();
+        Matcher matcher = SPATIAL_FUNCTION.matcher(sql);
+        while (matcher.find()) {
+            for (String argument : splitArguments(matcher.group(1))) {
+                addReference(argument, references);
+            }
+        }
+        matcher = BBOX_OPERATOR.matcher(sql);
+        while (matcher.find()) {
+            addReference(matcher.group(1) != null ? matcher.group(1) : matcher.group(2), references);
+        }
+        return references;
+    }
+
+    /**
+     * Split the arguments of a function call on the top level commas.
+     *
+     * @param arguments Arguments of the function call.
+     * @return The arguments.
+     */
+    private static List<String> splitArguments(String arguments) {
+        List<String> list = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < arguments.length(); i++) {
+            char c = arguments.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                list.add(arguments.substring(start, i));
+                start = i + 1;
+            }
+        }
+        list.add(arguments.substring(start));
+        return list;
+    }
+
+    /**
+     * Add the column reference of the given expression if it is a plain, optionally qualified, column name.
+     *
+     * @param expression Expression to check.
+     * @param references List of the column references.
+     */
+    private static void addReference(String expression, List<String[]> references) {
+        String trimmed = expression.trim();
+        if (!trimmed.matches(IDENTIFIER)) {
+            return;
+        }
+        String[] parts = trimmed.split("\\s*\\.\\s*");
+        String column = parts[parts.length - 1].replace("\"", "");
+        String qualifier = parts.length > 1 ? parts[parts.length - 2].replace("\"", "") : null;
+        references.add(new String[]{qualifier, column});
+    }
+
+    /**
+     * Return the tables of the FROM and JOIN clauses of the given SQL by their upper case alias and name.
+     *
+     * @param sql SQL query or statement.
+     * @return The table names by alias.
+     */
+    private Map<String, String> getTables(String sql) {
+        Map<String, String> tables = new LinkedHashMap<>();
+        Matcher matcher = FROM_CLAUSE.matcher(sql);
+        while (matcher.find()) {
+            for (String item : matcher.group(1).split(",")) {
+                Matcher table = TABLE.matcher(item);
+                if (table.find()) {
+                    addTable(table.group(1), table.group(2), tables);
+                }
+            }
+        }
+        matcher = JOIN_CLAUSE.matcher(sql);
+        while (matcher.find()) {
+            addTable(matcher.group(1), matcher.group(2), tables);
+        }
+        return tables;
+    }
+
+    /**
+     * Register a table, with its normalized location, by its alias and name.
+     *
+     * @param name   Name of the table, optionally qualified.
+     * @param alias  Alias of the table, null if there is none.
+     * @param tables The table names by alias.
+     */
+    private void addTable(String name, String alias, Map<String, String> tables) {
+        String table = TableLocation.parse(name.replaceAll("\\s*\\.\\s*", "."), dataSource.getDataBaseType()).toString();
+        tables.put(getName(table), table);
+        if (alias != null && !KEYWORDS.contains(alias.toUpperCase())) {
+            tables.put(alias.toUpperCase(), table);
+        }
+    }
+
+    /**
+     * Geometry column of a table.
+     */
+    private static final class Column {
+        /** Name of the table, optionally qualified */
+        private final String table;
+        /** Name of the column */
+        private final String column;
+
+        private Column(String table, String column) {
+            this.table = table;
+            this.column = column;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Column)) {
+                return false;
+            }
+            Column other = (Column) o;
+            return table.equalsIgnoreCase(other.table) && column.equalsIgnoreCase(other.column);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(table.toUpperCase(), column.toUpperCase());
+        }
+
+        @Override
+        public String toString() {
+            return table + "." + column;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cache of values computed from the tables of a {@link JdbcDataSource}. Each value is stored with the SQL it was
+ * computed from, so that it can be dropped as soon as one of the tables referenced by this SQL is modified.
+ *
+ * @param <V> Type of the cached values.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public class TableCache<V> {
+
+    /** Pattern used to find the tables modified by a SQL statement. Only the keywords starting a statement, or a
+     * sub-statement, are matched so that clauses like 'ON DELETE CASCADE' or 'FOR UPDATE' are ignored */
+    private static final Pattern MODIFIED_TABLES = Pattern.compile(
+            "(?:^|[;()])\\s*(?:INSERT\\s+INTO|UPDATE|DELETE\\s+FROM|DELETE|TRUNCATE(?:\\s+TABLE)?|MERGE\\s+INTO|COPY|" +
+                    "DROP\\s+(?:VIEW|TABLE)(?:\\s+IF\\s+EXISTS)?|ALTER\\s+TABLE(?:\\s+IF\\s+EXISTS)?|" +
+                    "CREATE\\s+(?:OR\\s+REPLACE\\s+)?(?:\\w+\\s+)*?(?:VIEW|TABLE)(?:\\s+IF\\s+NOT\\s+EXISTS)?)\\s+" +
+                    "((?:\"[^\"]+\"|[\\w$]+)(?:\\s*\\.\\s*(?:\"[^\"]+\"|[\\w$]+))*" +
+                    "(?:\\s*,\\s*(?:\"[^\"]+\"|[\\w$]+)(?:\\s*\\.\\s*(?:\"[^\"]+\"|[\\w$]+))*)*)",
+            Pattern.CASE_INSENSITIVE);
+    /** Pattern of the statements which may modify any table */
+    private static final Pattern MODIFIES_ALL = Pattern.compile("\\bDROP\\s+(?:ALL\\s+OBJECTS|SCHEMA)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    /** Cached values with the SQL they were computed from */
+    private final Map<String, Entry<V>> entries;
+    /** Time to live of the cached values in milliseconds, 0 if they never expire */
+    private final long timeToLive;
+    /** Maximum estimated size in bytes of the cached values */
+    private final long maxWeight;
+    /** Estimation of the size in bytes of a value, null if the values are not weighed */
+    private final ToLongFunction<V> weigher;
+    /** Estimated size in bytes of the cached values */
+    private long weight = 0;
+
+    /**
+     * Create a cache without limit of size nor expiration.
+     */
+    public TableCache() {
+        this.entries = new ConcurrentHashMap<>();
+        this.timeToLive = 0;
+        this.maxWeight = Long.MAX_VALUE;
+        this.weigher = null;
+    }
+
+    /**
+     * Create a cache keeping at most the given number of values. When full, the least recently used value is
+     * dropped. The values are also dropped once they are older than the given time to live.
+     *
+     * @param maxSize    Maximum number of cached values.
+     * @param timeToLive Time to live of the cached values in milliseconds, 0 if they never expire.
+     */
+    public TableCache(int maxSize, long timeToLive) {
+        this(maxSize, timeToLive, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Create a cache keeping at most the given number of values and the given estimated size in bytes. When full,
+     * the least recently used values are dropped. A value bigger than the whole budget is not cached. The values are
+     * also dropped once they are older than the given time to live.
+     *
+     * @param maxSize    Maximum number of cached values.
+     * @param timeToLive Time to live of the cached values in milliseconds, 0 if they never expire.
+     * @param maxWeight  Maximum estimated size in bytes of the cached values.
+     * @param weigher    Estimation of the size in bytes of a value, null if the values are not weighed.
+     */
+    public TableCache(int maxSize, long timeToLive, long maxWeight, ToLongFunction<V> weigher) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("The maximum size of the cache should be greater than 0.");
+        }
+        if (timeToLive < 0) {
+            throw new IllegalArgumentException("The time to live of the cached values should be positive.");
+        }
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("The maximum size in bytes of the cache should be greater than 0.");
+        }
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<String, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+                if (size() > maxSize) {
+                    weight -= eldest.getValue().weight;
+                    return true;
+                }
+                return false;
+            }
+        });
+        this.timeToLive = timeToLive;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Return the cached value for the given key, null if there is none.
+     *
+     * @param key Key of the value.
+     * @return The cached value, null if there is none.
+     */
+    public V get(String key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (timeToLive > 0 && System.currentTimeMillis() - entry.time > timeToLive) {
+            synchronized (entries) {
+                if (entries.remove(key, entry)) {
+                    weight -= entry.weight;
+                }
+            }
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Store a value in the cache, dropping the least recently used values if the cache exceeds its size in bytes.
+     *
+     * @param key    Key of the value.
+     * @param source SQL (query or table name) the value has been computed from.
+     * @param value  Value to cache.
+     * @return True if the value is cached, false if it is bigger than the maximum size in bytes of the cache.
+     */
+    public boolean put(String key, String source, V value) {
+        long valueWeight = weigher == null ? 0 : weigher.applyAsLong(value);
+        Entry<V> entry = new Entry<>(source, value, System.currentTimeMillis(), valueWeight);
+        synchronized (entries) {
+            Entry<V> previous = valueWeight > maxWeight ? entries.remove(key) : entries.put(key, entry);
+            if (previous != null) {
+                weight -= previous.weight;
+            }
+            if (valueWeight > maxWeight) {
+                return false;
+            }
+            weight += valueWeight;
+            Iterator<Entry<V>> it = entries.values().iterator();
+            while (weight > maxWeight && it.hasNext()) {
+                Entry<V> eldest = it.next();
+                if (eldest != entry) {
+                    weight -= eldest.weight;
+                    it.remove();
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the number of cached values.
+     *
+     * @return The number of cached values.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Return the estimated size in bytes of the cached values, 0 if the values are not weighed.
+     *
+     * @return The estimated size in bytes of the cached values.
+     */
+    public long getWeight() {
+        synchronized (entries) {
+            return weight;
+        }
+    }
+
+    /**
+     * Remove all the cached values.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    /**
+     * Remove the cached values computed from one of the given tables.
+     *
+     * @param tableNames Names of the modified tables.
+     */
+    public void invalidate(Collection<String> tableNames) {
+        if (tableNames.isEmpty() || entries.isEmpty()) {
+            return;
+        }
+        List<Pattern> patterns = new ArrayList<>();
+        for (String tableName : tableNames) {
+            patterns.add(Pattern.compile("(?<![\\w$])\"?" + Pattern.quote(tableName) + "\"?(?![\\w$])",
+                    Pattern.CASE_INSENSITIVE));
+        }
+        synchronized (entries) {
+            Iterator<Entry<V>> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry<V> entry = it.next();
+                if (patterns.stream().anyMatch(p -> p.matcher(entry.source).find())) {
+                    weight -= entry.weight;
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the names, without schema and quotes, of the tables modified by the given SQL statement. Return null
+     * if the statement may modify any table.
+     *
+     * @param sql SQL statement.
+     * @return The names of the modified tables, null if any table may be modified.
+     */
+    public static Set<String> getModifiedTables(String sql) {
+        Set<String> tables = new HashSet<>();
+        if (sql == null) {
+            return tables;
+        }
+        if (MODIFIES_ALL.matcher(sql).find()) {
+            return null;
+        }
+        Matcher matcher = MODIFIED_TABLES.matcher(sql);
+        while (matcher.find()) {
+            for (String name : matcher.group(1).split(",")) {
+                String[] parts = name.trim().split("\\s*\\.\\s*");
+                tables.add(parts[parts.length - 1].replace("\"", ""));
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Cached value with the SQL it was computed from.
+     *
+     * @param <V> Type of the cached value.
+     */
+    private static final class Entry<V> {
+        /** SQL the value was computed from */
+        private final String source;
+        /** Cached value */
+        private final V value;
+        /** Time when the value has been cached */
+        private final long time;
+        /** Estimated size in bytes of the value */
+        private final long weight;
+
+        private Entry(String source, V value, long time, long weight) {
+            this.source = source;
+            this.value = value;
+            this.time = time;
+            this.weight = weight;
+        }
+    }
+}
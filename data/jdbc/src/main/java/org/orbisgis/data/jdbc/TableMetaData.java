@@ -0,0 +1,306 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc;
+
+import org.h2gis.utilities.GeometryMetaData;
+import org.h2gis.utilities.GeometryTableUtilities;
+import org.h2gis.utilities.SpatialResultSetMetaData;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.orbisgis.data.api.datasource.IJdbcDataSource;
+
+import java.sql.Connection;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Copy of the {@link ResultSetMetaData} of a table, which stays readable once the statement which described the table
+ * is closed. It is read once per table by {@link JdbcTable} so that the schema calls do not run the data query.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+class TableMetaData implements SpatialResultSetMetaData {
+
+    /** DataSource used to read the geometry types which are not in the type names */
+    private final IJdbcDataSource dataSource;
+    /** Type of the database */
+    private final DBTypes dbType;
+    //Properties of the columns, the column i being at the index i - 1
+    private final String[] names;
+    private final String[] labels;
+    private final int[] types;
+    private final String[] typeNames;
+    private final String[] classNames;
+    private final int[] precisions;
+    private final int[] scales;
+    private final int[] displaySizes;
+    private final int[] nullables;
+    private final boolean[] signed;
+    private final boolean[] autoIncrements;
+    private final boolean[] caseSensitives;
+    private final boolean[] searchables;
+    private final boolean[] currencies;
+    private final boolean[] readOnlys;
+    private final boolean[] writables;
+    private final boolean[] definitelyWritables;
+    private final String[] catalogs;
+    private final String[] schemas;
+    private final String[] tables;
+    /** Index of the first geometry column, 0 if not searched yet */
+    private int firstGeometryFieldIndex = 0;
+
+    /**
+     * Copy the given metadata.
+     *
+     * @param metaData   Metadata to copy, readable during the call.
+     * @param dataSource DataSource of the table.
+     * @param dbType     Type of the database.
+     */
+    TableMetaData(ResultSetMetaData metaData, IJdbcDataSource dataSource, DBTypes dbType) throws SQLException {
+        this.dataSource = dataSource;
+        this.dbType = dbType;
+        int count = metaData.getColumnCount();
+        names = new String[count];
+        labels = new String[count];
+        types = new int[count];
+        typeNames = new String[count];
+        classNames = new String[count];
+        precisions = new int[count];
+        scales = new int[count];
+        displaySizes = new int[count];
+        nullables = new int[count];
+        signed = new boolean[count];
+        autoIncrements = new boolean[count];
+        caseSensitives = new boolean[count];
+        searchables = new boolean[count];
+        currencies = new boolean[count];
+        readOnlys = new boolean[count];
+        writables = new boolean[count];
+        definitelyWritables = new boolean[count];
+        catalogs = new String[count];
+        schemas = new String[count];
+        tables = new String[count];
+        for (int i = 0; i < count; i++) {
+            int column = i + 1;
+            names[i] = metaData.getColumnName(column);
+            labels[i] = metaData.getColumnLabel(column);
+            types[i] = metaData.getColumnType(column);
+            typeNames[i] = metaData.getColumnTypeName(column);
+            classNames[i] = metaData.getColumnClassName(column);
+            precisions[i] = metaData.getPrecision(column);
+            scales[i] = metaData.getScale(column);
+            displaySizes[i] = metaData.getColumnDisplaySize(column);
+            nullables[i] = metaData.isNullable(column);
+            signed[i] = metaData.isSigned(column);
+            autoIncrements[i] = metaData.isAutoIncrement(column);
+            caseSensitives[i] = metaData.isCaseSensitive(column);
+            searchables[i] = metaData.isSearchable(column);
+            currencies[i] = metaData.isCurrency(column);
+            readOnlys[i] = metaData.isReadOnly(column);
+            writables[i] = metaData.isWritable(column);
+            definitelyWritables[i] = metaData.isDefinitelyWritable(column);
+            catalogs[i] = metaData.getCatalogName(column);
+            schemas[i] = metaData.getSchemaName(column);
+            tables[i] = metaData.getTableName(column);
+        }
+    }
+
+    /**
+     * Return the index in the arrays of the given column.
+     *
+     * @param column Index of the column, starting at 1.
+     * @return The index in the arrays.
+     */
+    private int index(int column) throws SQLException {
+        if (column < 1 || column > names.length) {
+            throw new SQLException("Invalid column index " + column + ".");
+        }
+        return column - 1;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return names.length;
+    }
+
+    @Override
+    public boolean isAutoIncrement(int column) throws SQLException {
+        return autoIncrements[index(column)];
+    }
+
+    @Override
+    public boolean isCaseSensitive(int column) throws SQLException {
+        return caseSensitives[index(column)];
+    }
+
+    @Override
+    public boolean isSearchable(int column) throws SQLException {
+        return searchables[index(column)];
+    }
+
+    @Override
+    public boolean isCurrency(int column) throws SQLException {
+        return currencies[index(column)];
+    }
+
+    @Override
+    public int isNullable(int column) throws SQLException {
+        return nullables[index(column)];
+    }
+
+    @Override
+    public boolean isSigned(int column) throws SQLException {
+        return signed[index(column)];
+    }
+
+    @Override
+    public int getColumnDisplaySize(int column) throws SQLException {
+        return displaySizes[index(column)];
+    }
+
+    @Override
+    public String getColumnLabel(int column) throws SQLException {
+        return labels[index(column)];
+    }
+
+    @Override
+    public String getColumnName(int column) throws SQLException {
+        return names[index(column)];
+    }
+
+    @Override
+    public String getSchemaName(int column) throws SQLException {
+        return schemas[index(column)];
+    }
+
+    @Override
+    public int getPrecision(int column) throws SQLException {
+        return precisions[index(column)];
+    }
+
+    @Override
+    public int getScale(int column) throws SQLException {
+        return scales[index(column)];
+    }
+
+    @Override
+    public String getTableName(int column) throws SQLException {
+        return tables[index(column)];
+    }
+
+    @Override
+    public String getCatalogName(int column) throws SQLException {
+        return catalogs[index(column)];
+    }
+
+    @Override
+    public int getColumnType(int column) throws SQLException {
+        return types[index(column)];
+    }
+
+    @Override
+    public String getColumnTypeName(int column) throws SQLException {
+        return typeNames[index(column)];
+    }
+
+    @Override
+    public boolean isReadOnly(int column) throws SQLException {
+        return readOnlys[index(column)];
+    }
+
+    @Override
+    public boolean isWritable(int column) throws SQLException {
+        return writables[index(column)];
+    }
+
+    @Override
+    public boolean isDefinitelyWritable(int column) throws SQLException {
+        return definitelyWritables[index(column)];
+    }
+
+    @Override
+    public String getColumnClassName(int column) throws SQLException {
+        return classNames[index(column)];
+    }
+
+    @Override
+    public int getFirstGeometryFieldIndex() {
+        if (firstGeometryFieldIndex == 0) {
+            for (int i = 0; i < typeNames.length; i++) {
+                if (typeNames[i] != null && typeNames[i].toLowerCase().startsWith("geometry")) {
+                    firstGeometryFieldIndex = i + 1;
+                    break;
+                }
+            }
+        }
+        return firstGeometryFieldIndex;
+    }
+
+    @Override
+    public int getGeometryType() throws SQLException {
+        return getGeometryType(getFirstGeometryFieldIndex());
+    }
+
+    @Override
+    public int getGeometryType(int column) throws SQLException {
+        int i = index(column);
+        //H2 puts the geometry type and the SRID in the type name
+        if (dbType == DBTypes.H2 || dbType == DBTypes.H2GIS) {
+            return GeometryMetaData.getMetaDataFromTablePattern(typeNames[i]).getGeometryTypeCode();
+        }
+        Connection con = dataSource.getConnection();
+        if (con == null) {
+            throw new SQLException("Cannot get the connection to the database");
+        }
+        return GeometryTableUtilities.getMetaData(con, new TableLocation(catalogs[i], schemas[i], tables[i]),
+                names[i]).getGeometryTypeCode();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Cannot unwrap the metadata into " + iface.getName() + ".");
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
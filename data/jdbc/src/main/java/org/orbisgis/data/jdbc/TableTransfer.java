@@ -0,0 +1,210 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc;
+
+import org.h2gis.functions.io.utility.IOMethods;
+import org.h2gis.utilities.JDBCUtilities;
+import org.h2gis.utilities.SpatialResultSet;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKBWriter;
+import org.orbisgis.data.api.datasource.IJdbcDataSource;
+import org.orbisgis.data.api.dsl.ICancellationToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.List;
+
+/**
+ * Utility class copying the rows of a table into a database by batches, checking a {@link ICancellationToken}
+ * between the batches. The running statements of the copy are registered to the token, so that cancelling it stops
+ * the transfer at once. A cancelled or failed transfer drops the partially written output table.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public final class TableTransfer {
+
+    /** Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(TableTransfer.class);
+    /** Default number of rows inserted by batch */
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private TableTransfer() {
+    }
+
+    /**
+     * Save the given table into a database.
+     *
+     * @param table           Table to save.
+     * @param dataSource      Connection to the output database.
+     * @param outputTableName Name of the output table.
+     * @param deleteTable     True to delete the output table if it exists.
+     * @param batchSize       Number of rows inserted by batch.
+     * @param token           Token checked between the batches.
+     * @return The name of the saved table, formatted according the output datasource.
+     */
+    public static String save(JdbcTable<?> table, IJdbcDataSource dataSource, String outputTableName,
+                              boolean deleteTable, int batchSize, ICancellationToken token) throws SQLException {
+        Connection con = dataSource.getConnection();
+        Connection inputCon = table.getJdbcDataSource().getConnection();
+        if (con == null || inputCon == null) {
+            throw new SQLException("Cannot get the connection to the database");
+        }
+        token.check();
+        int size = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+        String select = table.getTableLocation() != null ?
+                "SELECT * FROM " + table.getTableLocation().toString(table.getDbType()) :
+                "SELECT * FROM (" + table.getBaseQuery() + ") AS foo";
+        String tableName = IOMethods.exportToDataBase(inputCon, "(" + select + " WHERE 1=0)", con,
+                outputTableName, deleteTable ? -1 : 0, size);
+        if (tableName == null) {
+            throw new SQLException("Unable to create the table '" + outputTableName + "'.");
+        }
+        DBTypes dbType = dataSource.getDataBaseType();
+        List<String> outputColumns = JDBCUtilities.getColumnNames(con, TableLocation.parse(tableName, dbType));
+        try (PreparedStatement read = inputCon.prepareStatement(select)) {
+            List<Object> params = table.getTableLocation() == null ? table.getParams() : null;
+            if (params != null) {
+                for (int i = 0; i < params.size(); i++) {
+                    read.setObject(i + 1, params.get(i));
+                }
+            }
+            read.setFetchSize(size);
+            token.register(read);
+            try (ResultSet rs = read.executeQuery()) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                int columnCount = metaData.getColumnCount();
+                if (columnCount != outputColumns.size()) {
+                    throw new SQLException("Unable to map the columns of the table '" + tableName + "'.");
+                }
+                boolean[] geometries = new boolean[columnCount];
+                StringBuilder columns = new StringBuilder();
+                StringBuilder values = new StringBuilder();
+                for (int i = 0; i < columnCount; i++) {
+                    geometries[i] = metaData.getColumnTypeName(i + 1).toLowerCase().startsWith("geometry");
+                    columns.append(i > 0 ? ", " : "").append(TableLocation.quoteIdentifier(outputColumns.get(i), dbType));
+                    values.append(i > 0 ? ", " : "").append(geometries[i] ? "ST_GeomFromWKB(?, ?)" : "?");
+                }
+                String insert = "INSERT INTO " + tableName + " (" + columns + ") VALUES (" + values + ")";
+                try (PreparedStatement ps = con.prepareStatement(insert)) {
+                    token.register(ps);
+                    try {
+                        copy(rs, ps, geometries, size, token);
+                    } finally {
+                        token.unregister(ps);
+                    }
+                }
+            } finally {
+                token.unregister(read);
+            }
+            if (!con.getAutoCommit()) {
+                con.commit();
+            }
+        } catch (SQLException e) {
+            if (!con.getAutoCommit()) {
+                con.rollback();
+            }
+            try (Statement statement = con.createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS " + tableName);
+            } catch (SQLException e2) {
+                LOGGER.error("Unable to drop the partially saved table '" + tableName + "'.", e2);
+            }
+            throw e;
+        }
+        if (dataSource instanceof JdbcDataSource) {
+            ((JdbcDataSource) dataSource).invalidateCaches(outputTableName);
+        }
+        return tableName;
+    }
+
+    /**
+     * Copy the rows of the given {@link ResultSet} with the given insert statement.
+     *
+     * @param rs         {@link ResultSet} to copy.
+     * @param ps         Insert statement.
+     * @param geometries For each column, true if it is a geometry column.
+     * @param size       Number of rows inserted by batch.
+     * @param token      Token checked between the batches.
+     */
+    private static void copy(ResultSet rs, PreparedStatement ps, boolean[] geometries, int size,
+                             ICancellationToken token) throws SQLException {
+        WKBWriter writer = new WKBWriter(3);
+        int count = 0;
+        while (rs.next()) {
+            int index = 1;
+            for (int i = 0; i < geometries.length; i++) {
+                if (geometries[i]) {
+                    Geometry geometry = getGeometry(rs, i + 1);
+                    ps.setObject(index++, geometry == null ? null : writer.write(geometry));
+                    ps.setInt(index++, geometry == null ? 0 : geometry.getSRID());
+                } else {
+                    ps.setObject(index++, rs.getObject(i + 1));
+                }
+            }
+            ps.addBatch();
+            if (++count % size == 0) {
+                ps.executeBatch();
+                token.check();
+            }
+        }
+        if (count % size != 0) {
+            ps.executeBatch();
+        }
+        token.check();
+    }
+
+    /**
+     * Return the geometry of the given column of the current row.
+     *
+     * @param rs     {@link ResultSet} to read.
+     * @param column Index of the column.
+     * @return The geometry of the column, may be null.
+     */
+    private static Geometry getGeometry(ResultSet rs, int column) throws SQLException {
+        if (rs.isWrapperFor(SpatialResultSet.class)) {
+            return rs.unwrap(SpatialResultSet.class).getGeometry(column);
+        }
+        Object value = rs.getObject(column);
+        if (value == null || value instanceof Geometry) {
+            return (Geometry) value;
+        }
+        throw new SQLException("Unable to read the geometry of the column " + column + ".");
+    }
+}
@@ -37,15 +37,35 @@
 package org.orbisgis.data.jdbc.dsl;
 
 import groovy.lang.GString;
+import org.h2gis.utilities.dbtypes.DBTypes;
 import org.orbisgis.data.api.dataset.ISpatialTable;
 import org.orbisgis.data.api.dataset.ITable;
 import org.orbisgis.data.api.datasource.IJdbcDataSource;
+import org.orbisgis.data.api.dsl.IAggregate;
 import org.orbisgis.data.api.dsl.IBuilderResult;
 import org.orbisgis.data.api.dsl.IFilterBuilder;
+import org.orbisgis.data.api.dsl.IOrderedBuilderResult;
 import org.orbisgis.data.api.dsl.IResultSetProperties;
+import org.orbisgis.data.jdbc.JdbcDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.StringJoiner;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * Implementation of {@link IFilterBuilder}.
@@ -53,12 +73,33 @@ import java.util.List;
  * @author Erwan Bocher (CNRS)
  * @author Sylvain PALOMINOS (UBS Lab-STICC / Chaire GEOTERA 2020)
  */
-public class FilterBuilder extends BuilderResult implements IFilterBuilder {
+public class FilterBuilder extends BuilderResult implements IFilterBuilder, IOrderedBuilderResult {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FilterBuilder.class);
+    /** Number of blocks of row identifiers read to sample a fraction of a H2 table */
+    private static final int SAMPLE_BLOCKS = 64;
+    /** Maximum number of row identifiers drawn to sample rows of a H2 table, a larger sample reads the whole table */
+    private static final int MAX_SAMPLE_ROW_IDS = 10000;
+    /** Query reading a whole table, which can be sampled with TABLESAMPLE */
+    private static final Pattern PLAIN_TABLE =
+            Pattern.compile("SELECT \\* FROM (\"[^\"]+\"|\\w+)(\\.(\"[^\"]+\"|\\w+))*");
 
     private final StringBuilder query;
     private final List<Object> params;
     private final IJdbcDataSource dataSource;
     private final IResultSetProperties rsp;
+    /** True if a filter has been added to the query */
+    private boolean filtered = false;
+    /** Sort expressions, without their direction */
+    private final List<String> orderColumns = new ArrayList<>();
+    /** Directions of the sort expressions, true for descending */
+    private final List<Boolean> descending = new ArrayList<>();
+    /** Maximum number of rows, negative for no limit */
+    private long limit = -1;
+    /** Number of skipped rows */
+    private long offset = 0;
+    /** Values of the sort expressions of the last row of the previous page, null for no keyset */
+    private List<Object> lastKey = null;
 
     public FilterBuilder(IJdbcDataSource dataSource, String query, List<Object> params, IResultSetProperties properties) {
         this.dataSource = dataSource;
@@ -83,22 +124,94 @@ public class FilterBuilder extends BuilderResult implements IFilterBuilder {
     @Override
     public IBuilderResult filter(String filter) {
         if(filter != null) {
-            query.append(" ").append(filter);
+            appendFilter(filter, null);
         }
         return this;
     }
 
     @Override
     public IBuilderResult filter(GString filter) {
-        params.addAll(dataSource.getParameters(filter));
-        query.append(" ").append(dataSource.asSql(filter, params));
+        List<Object> values = dataSource.getParameters(filter);
+        appendFilter(dataSource.asSql(filter, values), values);
         return this;
     }
 
     @Override
     public IBuilderResult filter(String filter, List<Object> params) {
-        this.params.addAll(params);
-        this.query.append(" ").append(filter);
+        appendFilter(filter, params);
+        return this;
+    }
+
+    /**
+     * Append a filter to the query. If the data source binds the literals, the literals of the filter are replaced by
+     * bind parameters.
+     *
+     * @param filter Filter to append.
+     * @param values Values of the '?' placeholders of the filter, may be null.
+     */
+    private void appendFilter(String filter, List<Object> values) {
+        if (dataSource instanceof JdbcDataSource && ((JdbcDataSource) dataSource).isLiteralBinding()) {
+            filter = QueryTemplate.bindLiterals(filter, values, params, dataSource.getDataBaseType());
+        } else if (values != null) {
+            params.addAll(values);
+        }
+        query.append(" ").append(filter);
+        filtered = true;
+    }
+
+    @Override
+    public IOrderedBuilderResult orderBy(String... columns) {
+        if (lastKey != null) {
+            throw new IllegalStateException("The sort cannot be changed once the last key of the keyset pagination " +
+                    "is set.");
+        }
+        orderColumns.clear();
+        descending.clear();
+        if (columns != null) {
+            for (String column : columns) {
+                if (column == null || column.trim().isEmpty()) {
+                    continue;
+                }
+                String expression = column.trim();
+                String upper = expression.toUpperCase(Locale.ROOT);
+                boolean desc = upper.endsWith(" DESC");
+                if (desc || upper.endsWith(" ASC")) {
+                    expression = expression.substring(0, expression.length() - (desc ? 5 : 4)).trim();
+                }
+                orderColumns.add(expression);
+                descending.add(desc);
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public IBuilderResult limit(long limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("The limit should be positive.");
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    @Override
+    public IBuilderResult offset(long offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("The offset should be positive.");
+        }
+        this.offset = offset;
+        return this;
+    }
+
+    @Override
+    public IBuilderResult after(Object... lastKey) {
+        if (orderColumns.isEmpty()) {
+            throw new IllegalArgumentException("The keyset pagination needs a sort, call orderBy first.");
+        }
+        if (lastKey == null || lastKey.length != orderColumns.size()) {
+            throw new IllegalArgumentException("The last key should contain one value per sort column.");
+        }
+        this.lastKey = Arrays.asList(lastKey);
         return this;
     }
 
@@ -107,9 +220,359 @@ public class FilterBuilder extends BuilderResult implements IFilterBuilder {
         return dataSource;
     }
 
+    @Override
+    public IBuilderResult aggregate(Collection<String> groupBy, IAggregate... aggregates) {
+        List<String> groups = groupBy == null ? Collections.emptyList() : groupBy.stream()
+                .filter(column -> column != null && !column.trim().isEmpty())
+                .collect(Collectors.toList());
+        if (groups.isEmpty() && (aggregates == null || aggregates.length == 0)) {
+            throw new IllegalArgumentException("At least one group column or one aggregate should be given.");
+        }
+        StringJoiner select = new StringJoiner(", ");
+        groups.forEach(select::add);
+        if (aggregates != null) {
+            for (IAggregate aggregate : aggregates) {
+                select.add(getAggregateSql(aggregate) + " AS " + aggregate.getAlias());
+            }
+        }
+        StringBuilder sql = new StringBuilder("SELECT ").append(select).append(" FROM (").append(getQuery())
+                .append(") AS agg");
+        if (!groups.isEmpty()) {
+            sql.append(" GROUP BY ").append(String.join(", ", groups));
+        }
+        FilterBuilder builder = new FilterBuilder(dataSource, sql.toString(), getParams(), rsp);
+        //The following clauses should apply on the aggregated rows
+        builder.filtered = true;
+        return builder;
+    }
+
+    @Override
+    public IBuilderResult sample(double fraction) {
+        if (!(fraction > 0 && fraction <= 1)) {
+            throw new IllegalArgumentException("The fraction should be greater than 0 and lower or equal to 1.");
+        }
+        DBTypes dbType = dataSource.getDataBaseType();
+        boolean postgres = dbType == DBTypes.POSTGIS || dbType == DBTypes.POSTGRESQL;
+        String source = getQuery();
+        boolean plain = PLAIN_TABLE.matcher(source).matches();
+        String sql = null;
+        if (postgres && plain) {
+            //Only the sampled blocks of the table are read
+            sql = source + " TABLESAMPLE SYSTEM (" + fraction * 100 + ")";
+        } else if ((dbType == DBTypes.H2 || dbType == DBTypes.H2GIS) && plain) {
+            sql = getRowIdRangeSample(source, fraction);
+        }
+        if (sql == null) {
+            sql = "SELECT * FROM (" + source + ") AS sample WHERE " + (postgres ? "random()" : "RAND()") + " < " +
+                    fraction;
+        }
+        FilterBuilder builder = new FilterBuilder(dataSource, sql, getParams(), rsp);
+        builder.filtered = true;
+        return builder;
+    }
+
+    @Override
+    public IBuilderResult sample(int n, long seed) {
+        if (n < 0) {
+            throw new IllegalArgumentException("The number of rows should be positive or zero.");
+        }
+        DBTypes dbType = dataSource.getDataBaseType();
+        String source = getQuery();
+        boolean plain = PLAIN_TABLE.matcher(source).matches();
+        String sql = null;
+        if ((dbType == DBTypes.H2 || dbType == DBTypes.H2GIS) && plain) {
+            sql = getRowIdSample(source, n, seed);
+        } else if ((dbType == DBTypes.POSTGIS || dbType == DBTypes.POSTGRESQL) && plain) {
+            sql = getBernoulliSample(source, n, seed);
+        }
+        if (sql == null) {
+            //The rows are sorted by a seeded hash of a stable key, the database only keeps the n first ones with a
+            //top-n sort instead of sorting all the rows
+            String key;
+            if (dbType == DBTypes.H2 || dbType == DBTypes.H2GIS) {
+                //A query has no _ROWID_, so the values of the row are hashed
+                key = "ORA_HASH(CAST(ROW(" + getColumns(source) + ") AS VARCHAR), 4294967295, " +
+                        Math.floorMod(seed, 4294967296L) + ")";
+            } else if (dbType == DBTypes.POSTGIS || dbType == DBTypes.POSTGRESQL) {
+                key = "md5(sample::text || ':' || " + seed + ")";
+            } else {
+                key = "MOD(ROW_NUMBER() OVER () * 2654435761 + " + Math.floorMod(seed, 4294967311L) + ", 4294967311)";
+            }
+            sql = "SELECT * FROM (" + source + ") AS sample ORDER BY " + key + " ";
+        }
+        FilterBuilder builder = new FilterBuilder(dataSource, sql + getLimitClause(dbType, n, 0), getParams(), rsp);
+        builder.filtered = true;
+        return builder;
+    }
+
+    /**
+     * Return a query keeping about the given fraction of the rows of a H2 table. The range of the row identifiers is
+     * split into {@link #SAMPLE_BLOCKS} parts and a block of consecutive row identifiers is randomly taken in each
+     * part, so that only the sampled rows are read, like with TABLESAMPLE SYSTEM.
+     *
+     * @param source   Query reading the whole table.
+     * @param fraction Fraction of the rows to keep.
+     * @return The sampling query, null if the row identifiers cannot be read.
+     */
+    private String getRowIdRangeSample(String source, double fraction) {
+        long[] rowIds = getRowIdRange(source);
+        if (rowIds == null) {
+            return null;
+        }
+        if (fraction == 1 || rowIds[2] == 0) {
+            return source;
+        }
+        long width = rowIds[1] - rowIds[0] + 1;
+        long parts = Math.min(SAMPLE_BLOCKS, width);
+        Random random = new Random();
+        StringJoiner sql = new StringJoiner(" UNION ALL ", "SELECT * FROM (", ") AS sample");
+        sql.setEmptyValue(source + " WHERE FALSE");
+        for (long i = 0; i < parts; i++) {
+            long partStart = rowIds[0] + i * width / parts;
+            long partLength = rowIds[0] + (i + 1) * width / parts - partStart;
+            //The length of the block is randomly rounded, so that the expected sample size is not biased
+            double length = partLength * fraction;
+            long blockLength = (long) length + (random.nextDouble() < length - (long) length ? 1 : 0);
+            if (blockLength > 0) {
+                long start = partStart + (long) (random.nextDouble() * (partLength - blockLength + 1));
+                sql.add(source + " WHERE _ROWID_ BETWEEN " + start + " AND " + (start + blockLength - 1));
+            }
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Return a query keeping n rows of a H2 table depending on the seed. Row identifiers are randomly drawn in the
+     * range of the row identifiers, with enough margin for the deleted rows, and the matching rows are sorted by a
+     * seeded hash, so that only the drawn rows are read and sorted.
+     *
+     * @param source Query reading the whole table.
+     * @param n      Number of rows to keep.
+     * @param seed   Seed of the sample.
+     * @return The sampling query without the limit clause, null if the row identifiers cannot be read or if too
+     * many row identifiers would be drawn.
+     */
+    private String getRowIdSample(String source, int n, long seed) {
+        long[] rowIds = getRowIdRange(source);
+        if (rowIds == null) {
+            return null;
+        }
+        String order = " ORDER BY ORA_HASH(_ROWID_, 4294967295, " + Math.floorMod(seed, 4294967296L) + ") ";
+        if (rowIds[2] <= n) {
+            return source + order;
+        }
+        long width = rowIds[1] - rowIds[0] + 1;
+        long drawn = Math.min(width, (long) Math.ceil((2.0 * n + 20) * width / rowIds[2]));
+        if (drawn > MAX_SAMPLE_ROW_IDS) {
+            return null;
+        }
+        //One row identifier is drawn in each of the parts of the range
+        Random random = new Random(seed);
+        double partWidth = (double) width / drawn;
+        StringJoiner ids = new StringJoiner(", ", " WHERE _ROWID_ IN (", ")");
+        for (long i = 0; i < drawn; i++) {
+            ids.add(Long.toString(rowIds[0] + (long) ((i + random.nextDouble()) * partWidth)));
+        }
+        //The drawn row identifiers may miss deleted rows, so the sample is checked before being used
+        try (Statement statement = ((JdbcDataSource) dataSource).getConnection().createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM (" + source + ids + ") AS sample")) {
+            if (!rs.next() || rs.getLong(1) < n) {
+                return null;
+            }
+        } catch (SQLException e) {
+            LOGGER.debug("Unable to count the sampled rows of the query " + source + ".", e);
+            return null;
+        }
+        return source + ids + order;
+    }
+
+    /**
+     * Return a query keeping n rows of a PostgreSQL table depending on the seed. The table is sampled with
+     * TABLESAMPLE BERNOULLI with a percentage computed from the estimated row count of the table, and the sampled rows
+     * are sorted by a seeded hash of their physical location.
+     *
+     * @param source Query reading the whole table.
+     * @param n      Number of rows to keep.
+     * @param seed   Seed of the sample.
+     * @return The sampling query without the limit clause, null if the estimated row count cannot be read.
+     */
+    private String getBernoulliSample(String source, int n, long seed) {
+        String table = source.substring("SELECT * FROM ".length());
+        double estimate;
+        try (PreparedStatement ps = ((JdbcDataSource) dataSource).getConnection()
+                .prepareStatement("SELECT reltuples::bigint FROM pg_class WHERE oid = ?::regclass")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                estimate = rs.getDouble(1);
+            }
+        } catch (SQLException e) {
+            LOGGER.debug("Unable to read the estimated row count of the table " + table + ".", e);
+            return null;
+        }
+        //Never analyzed tables have no estimate, the margin avoids getting less than n rows
+        double percentage = estimate <= n ? 100 : Math.min(100, 100 * (2.0 * n + 20) / estimate);
+        return source + " TABLESAMPLE BERNOULLI (" + percentage + ") REPEATABLE (" + seed + ") " +
+                "ORDER BY md5(ctid::text || ':' || " + seed + ") ";
+    }
+
+    /**
+     * Return the minimum and maximum row identifiers and the row count of a H2 table.
+     *
+     * @param source Query reading the whole table.
+     * @return The minimum and maximum row identifiers and the row count, null if they cannot be read.
+     */
+    private long[] getRowIdRange(String source) {
+        String table = source.substring("SELECT * FROM ".length());
+        try (Statement statement = ((JdbcDataSource) dataSource).getConnection().createStatement();
+             ResultSet rs = statement.executeQuery("SELECT MIN(_ROWID_), MAX(_ROWID_), COUNT(*) FROM " + table)) {
+            if (!rs.next()) {
+                return null;
+            }
+            return new long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3)};
+        } catch (SQLException e) {
+            LOGGER.debug("Unable to read the row identifiers of the table " + table + ".", e);
+            return null;
+        }
+    }
+
+    /**
+     * Return the quoted names of the columns of the given query, separated by commas.
+     *
+     * @param query SQL query.
+     * @return The columns of the query.
+     */
+    private String getColumns(String query) {
+        try (PreparedStatement ps = ((JdbcDataSource) dataSource).getConnection()
+                .prepareStatement("SELECT * FROM (" + query + ") AS sample")) {
+            ResultSetMetaData metaData = ps.getMetaData();
+            StringJoiner columns = new StringJoiner(", ");
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                columns.add("\"" + metaData.getColumnLabel(i).replace("\"", "\"\"") + "\"");
+            }
+            return columns.toString();
+        } catch (SQLException e) {
+            throw new IllegalArgumentException("Unable to read the columns of the query " + query + ".", e);
+        }
+    }
+
+    /**
+     * Return the SQL expression of the given aggregate.
+     *
+     * @param aggregate Aggregate to convert.
+     * @return The SQL expression computing the aggregate.
+     */
+    private static String getAggregateSql(IAggregate aggregate) {
+        String column = aggregate.getColumn() == null ? "*" : aggregate.getColumn();
+        switch (aggregate.getFunction()) {
+            case SUM:
+                return "SUM(" + column + ")";
+            case MIN:
+                return "MIN(" + column + ")";
+            case MAX:
+                return "MAX(" + column + ")";
+            case AVG:
+                //Cast to avoid the integer division of some databases
+                return "AVG(CAST(" + column + " AS DOUBLE PRECISION))";
+            default:
+                return "COUNT(" + column + ")";
+        }
+    }
+
     @Override
     protected String getQuery() {
-        return query.toString();
+        if (orderColumns.isEmpty() && limit < 0 && offset == 0) {
+            return query.toString();
+        }
+        //The raw filter may already contain clauses, so the query is wrapped to sort and cut its result
+        StringBuilder sql = new StringBuilder();
+        if (filtered) {
+            sql.append("SELECT * FROM (").append(query).append(") AS foo");
+        } else {
+            sql.append(query);
+        }
+        if (lastKey != null) {
+            sql.append(" WHERE ").append(getKeysetCondition());
+        }
+        if (!orderColumns.isEmpty()) {
+            sql.append(" ORDER BY ");
+            for (int i = 0; i < orderColumns.size(); i++) {
+                sql.append(i > 0 ? ", " : "").append(orderColumns.get(i)).append(descending.get(i) ? " DESC" : "");
+            }
+        }
+        String clause = getLimitClause(dataSource.getDataBaseType(), limit, offset);
+        if (!clause.isEmpty()) {
+            sql.append(" ").append(clause);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Return the condition keeping the rows after the last key. If all the sort expressions have the same direction,
+     * a row value comparison is used so that the database can seek in an index, otherwise the comparison is expanded
+     * column by column.
+     *
+     * @return The condition keeping the rows after the last key.
+     */
+    private String getKeysetCondition() {
+        int count = orderColumns.size();
+        if (descending.stream().distinct().count() == 1) {
+            String operator = descending.get(0) ? " < " : " > ";
+            if (count == 1) {
+                return orderColumns.get(0) + operator + "?";
+            }
+            return "(" + String.join(", ", orderColumns) + ")" + operator +
+                    "(" + String.join(", ", Collections.nCopies(count, "?")) + ")";
+        }
+        List<String> terms = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder term = new StringBuilder("(");
+            for (int j = 0; j < i; j++) {
+                term.append(orderColumns.get(j)).append(" = ? AND ");
+            }
+            term.append(orderColumns.get(i)).append(descending.get(i) ? " < ?" : " > ?").append(")");
+            terms.add(term.toString());
+        }
+        return "(" + String.join(" OR ", terms) + ")";
+    }
+
+    /**
+     * Return the parameters of the keyset condition, in the order of its placeholders.
+     *
+     * @return The parameters of the keyset condition.
+     */
+    private List<Object> getKeysetParams() {
+        if (lastKey == null) {
+            return Collections.emptyList();
+        }
+        if (descending.stream().distinct().count() == 1) {
+            return lastKey;
+        }
+        List<Object> keyParams = new ArrayList<>();
+        for (int i = 0; i < lastKey.size(); i++) {
+            keyParams.addAll(lastKey.subList(0, i + 1));
+        }
+        return keyParams;
+    }
+
+    /**
+     * Return the clause limiting the number of rows of a query in the SQL dialect of the given database.
+     *
+     * @param dbType Type of the database.
+     * @param limit  Maximum number of rows, negative for no limit.
+     * @param offset Number of skipped rows.
+     * @return The clause limiting the rows, empty if there is no limit nor offset.
+     */
+    public static String getLimitClause(DBTypes dbType, long limit, long offset) {
+        if (dbType == DBTypes.H2 || dbType == DBTypes.H2GIS || dbType == DBTypes.POSTGRESQL ||
+                dbType == DBTypes.POSTGIS) {
+            return ((limit >= 0 ? "LIMIT " + limit : "") + (offset > 0 ? " OFFSET " + offset : "")).trim();
+        }
+        //SQL:2008 standard syntax
+        return ((offset > 0 ? "OFFSET " + offset + " ROWS" : "") +
+                (limit >= 0 ? " FETCH FIRST " + limit + " ROWS ONLY" : "")).trim();
     }
 
     @Override
@@ -119,7 +582,12 @@ public class FilterBuilder extends BuilderResult implements IFilterBuilder {
 
     @Override
     public List<Object> getParams() {
-        return params;
+        if (lastKey == null) {
+            return params;
+        }
+        List<Object> allParams = new ArrayList<>(params);
+        allParams.addAll(getKeysetParams());
+        return allParams;
     }
 
     @Override
@@ -41,12 +41,16 @@ import org.h2gis.utilities.TableLocation;
 import org.orbisgis.data.api.dataset.ISpatialTable;
 import org.orbisgis.data.api.dataset.ITable;
 import org.orbisgis.data.api.datasource.IJdbcDataSource;
+import org.orbisgis.data.api.dsl.IAggregate;
 import org.orbisgis.data.api.dsl.IBuilderResult;
 import org.orbisgis.data.api.dsl.IFilterBuilder;
+import org.orbisgis.data.api.dsl.IOrderedBuilderResult;
 import org.orbisgis.data.api.dsl.IQueryBuilder;
 import org.orbisgis.data.api.dsl.IResultSetProperties;
 
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -61,9 +65,17 @@ public class QueryBuilder extends BuilderResult implements IQueryBuilder {
     private final String location;
     private final IJdbcDataSource dataSource;
     private final IResultSetProperties rsp;
+    /** Parameters of the query read */
+    private final List<Object> params;
 
     public QueryBuilder(IJdbcDataSource dataSource, String nameOrQuery, IResultSetProperties properties) {
+        this(dataSource, nameOrQuery, null, properties);
+    }
+
+    public QueryBuilder(IJdbcDataSource dataSource, String nameOrQuery, List<Object> params,
+                        IResultSetProperties properties) {
         this.dataSource = dataSource;
+        this.params = params == null ? Collections.emptyList() : params;
         if(nameOrQuery.startsWith("(") && nameOrQuery.endsWith(")")) {
             location = nameOrQuery + " as foo";
         }
@@ -75,7 +87,7 @@ public class QueryBuilder extends BuilderResult implements IQueryBuilder {
 
     @Override
     public IBuilderResult filter(String filter) {
-        IFilterBuilder filterBuilder = new FilterBuilder(dataSource, getQuery(), getResultSetProperties());
+        IFilterBuilder filterBuilder = new FilterBuilder(dataSource, getQuery(), this.params, getResultSetProperties());
         if(filter != null) {
             return filterBuilder.filter(filter);
         }
@@ -86,7 +98,7 @@ public class QueryBuilder extends BuilderResult implements IQueryBuilder {
 
     @Override
     public IBuilderResult filter(GString filter) {
-        IFilterBuilder filterBuilder = new FilterBuilder(dataSource, getQuery(), getResultSetProperties());
+        IFilterBuilder filterBuilder = new FilterBuilder(dataSource, getQuery(), this.params, getResultSetProperties());
         if(filter != null) {
             return filterBuilder.filter(filter);
         }
@@ -97,7 +109,7 @@ public class QueryBuilder extends BuilderResult implements IQueryBuilder {
 
     @Override
     public IBuilderResult filter(String filter, List<Object> params) {
-        IFilterBuilder filterBuilder = new FilterBuilder(dataSource, getQuery(), getResultSetProperties());
+        IFilterBuilder filterBuilder = new FilterBuilder(dataSource, getQuery(), this.params, getResultSetProperties());
         if(filter != null) {
             return filterBuilder.filter(filter, params);
         }
@@ -106,6 +118,36 @@ public class QueryBuilder extends BuilderResult implements IQueryBuilder {
         }
     }
 
+    @Override
+    public IOrderedBuilderResult orderBy(String... columns) {
+        return new FilterBuilder(dataSource, getQuery(), this.params, getResultSetProperties()).orderBy(columns);
+    }
+
+    @Override
+    public IBuilderResult limit(long limit) {
+        return new FilterBuilder(dataSource, getQuery(), this.params, getResultSetProperties()).limit(limit);
+    }
+
+    @Override
+    public IBuilderResult offset(long offset) {
+        return new FilterBuilder(dataSource, getQuery(), this.params, getResultSetProperties()).offset(offset);
+    }
+
+    @Override
+    public IBuilderResult aggregate(Collection<String> groupBy, IAggregate... aggregates) {
+        return new FilterBuilder(dataSource, getQuery(), this.params, getResultSetProperties()).aggregate(groupBy, aggregates);
+    }
+
+    @Override
+    public IBuilderResult sample(double fraction) {
+        return new FilterBuilder(dataSource, getQuery(), this.params, getResultSetProperties()).sample(fraction);
+    }
+
+    @Override
+    public IBuilderResult sample(int n, long seed) {
+        return new FilterBuilder(dataSource, getQuery(), this.params, getResultSetProperties()).sample(n, seed);
+    }
+
     @Override
     public IFilterBuilder columns(String... columns) {
         if(columns == null || columns.length == 0 || Arrays.stream(columns).allMatch(s -> s == null || s.isEmpty())) {
@@ -114,7 +156,7 @@ public class QueryBuilder extends BuilderResult implements IQueryBuilder {
         else {
             this.columns = String.join(", ", columns);
         }
-        return new FilterBuilder(dataSource, getQuery(), getResultSetProperties());
+        return new FilterBuilder(dataSource, getQuery(), this.params, getResultSetProperties());
     }
 
     @Override
@@ -134,7 +176,7 @@ public class QueryBuilder extends BuilderResult implements IQueryBuilder {
 
     @Override
     public List<Object> getParams() {
-        return null;
+        return params.isEmpty() ? null : params;
     }
 
     public IResultSetProperties getResultSetProperties(){
@@ -0,0 +1,332 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc.dsl;
+
+import org.h2gis.utilities.dbtypes.DBTypes;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compilation of the SQL fragments of the query builders into prepared statement templates. The literals compared
+ * to an expression are replaced by bind parameters, so that the queries only differing by their values have the same
+ * SQL text and share the statement and the query plan cached by the database and by the driver.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public class QueryTemplate {
+
+    /** Characters of the SQL operators */
+    private static final String OPERATOR_CHARS = "<>=!~+-*/%@#&|^?";
+    /** Comparison operators whose right operand can be bound */
+    private static final List<String> COMPARISONS = Arrays.asList("=", "<>", "!=", "<", ">", "<=", ">=");
+
+    private QueryTemplate() {
+    }
+
+    /**
+     * Replace by bind parameters the numeric and string literals found at the right of a comparison operator. The
+     * literals followed by a cast ('::') are kept. The string literals are only bound on H2 and H2GIS, as PostgreSQL
+     * types the string parameters as varchar, which can not be compared to the other types as a literal can.
+     *
+     * @param sql         SQL fragment, which may already contain '?' placeholders.
+     * @param params      Values of the placeholders of the SQL fragment, may be null.
+     * @param boundParams List receiving, in the order of the placeholders, the given values and the bound literals.
+     * @param dbType      Type of the database executing the SQL.
+     * @return The SQL fragment with its literals replaced by '?' placeholders.
+     */
+    public static String bindLiterals(String sql, List<Object> params, List<Object> boundParams, DBTypes dbType) {
+        boolean bindStrings = dbType == DBTypes.H2 || dbType == DBTypes.H2GIS;
+        StringBuilder template = new StringBuilder(sql.length());
+        int paramIndex = 0;
+        boolean afterComparison = false;
+        int i = 0;
+        int length = sql.length();
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                template.append(c);
+                i++;
+            } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                int end = sql.indexOf('\n', i);
+                end = end < 0 ? length : end;
+                template.append(sql, i, end);
+                i = end;
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                end = end < 0 ? length : end + 2;
+                template.append(sql, i, end);
+                i = end;
+            } else if (c == '"') {
+                int end = sql.indexOf('"', i + 1);
+                end = end < 0 ? length : end + 1;
+                template.append(sql, i, end);
+                i = end;
+                afterComparison = false;
+            } else if (c == '\'') {
+                int end = getStringEnd(sql, i);
+                if (afterComparison && bindStrings && !isCast(sql, end)) {
+                    boundParams.add(sql.substring(i + 1, end - 1).replace("''", "'"));
+                    template.append('?');
+                } else {
+                    template.append(sql, i, end);
+                }
+                i = end;
+                afterComparison = false;
+            } else if (c == '?' && params != null && paramIndex < params.size()) {
+                boundParams.add(params.get(paramIndex++));
+                template.append(c);
+                i++;
+                afterComparison = false;
+            } else if (Character.isDigit(c) || c == '.' && i + 1 < length && Character.isDigit(sql.charAt(i + 1))) {
+                int end = getNumberEnd(sql, i);
+                Object value = afterComparison && !isCast(sql, end) ? parseNumber(sql.substring(i, end)) : null;
+                if (value != null) {
+                    boundParams.add(value);
+                    template.append('?');
+                } else {
+                    template.append(sql, i, end);
+                }
+                i = end;
+                afterComparison = false;
+            } else if (OPERATOR_CHARS.indexOf(c) >= 0 && c != '?') {
+                int end = i;
+                while (end < length && OPERATOR_CHARS.indexOf(sql.charAt(end)) >= 0 && sql.charAt(end) != '?') {
+                    end++;
+                }
+                String operator = sql.substring(i, end);
+                //A minus sign glued to the operator belongs to the literal
+                if (operator.length() > 1 && operator.endsWith("-") && end < length &&
+                        Character.isDigit(sql.charAt(end)) && COMPARISONS.contains(operator.substring(0, operator.length() - 1))) {
+                    end--;
+                    operator = operator.substring(0, operator.length() - 1);
+                }
+                template.append(operator);
+                i = end;
+                afterComparison = COMPARISONS.contains(operator);
+                //A negative number at the right of the comparison
+                if (afterComparison) {
+                    int next = skipWhitespaces(sql, i);
+                    if (next + 1 < length && sql.charAt(next) == '-' && Character.isDigit(sql.charAt(next + 1))) {
+                        int numberEnd = getNumberEnd(sql, next + 1);
+                        Object value = isCast(sql, numberEnd) ? null : parseNumber(sql.substring(next, numberEnd));
+                        if (value != null) {
+                            template.append(sql, i, next).append('?');
+                            boundParams.add(value);
+                            i = numberEnd;
+                            afterComparison = false;
+                        }
+                    }
+                }
+            } else {
+                int end = i + 1;
+                if (Character.isLetter(c) || c == '_' || c == '$') {
+                    while (end < length && (Character.isLetterOrDigit(sql.charAt(end)) || sql.charAt(end) == '_' ||
+                            sql.charAt(end) == '$')) {
+                        end++;
+                    }
+                }
+                template.append(sql, i, end);
+                i = end;
+                afterComparison = false;
+            }
+        }
+        if (params != null) {
+            boundParams.addAll(params.subList(paramIndex, params.size()));
+        }
+        return template.toString();
+    }
+
+    /**
+     * Replace the '?' placeholders of a SQL query by the literals of their values, for the helpers running the query
+     * through an API which cannot bind parameters. Only the numbers, the strings, the booleans and the null values
+     * can be written as literals.
+     *
+     * @param sql    SQL query, which may contain '?' placeholders.
+     * @param params Values of the placeholders of the query, may be null.
+     * @return The SQL query with the literals of its values, null if a value cannot be written as a literal.
+     */
+    public static String inlineParameters(String sql, List<Object> params) {
+        if (params == null || params.isEmpty()) {
+            return sql;
+        }
+        StringBuilder query = new StringBuilder(sql.length());
+        int paramIndex = 0;
+        int i = 0;
+        int length = sql.length();
+        while (i < length) {
+            char c = sql.charAt(i);
+            int end = i + 1;
+            if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                end = sql.indexOf('\n', i);
+                end = end < 0 ? length : end;
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                end = sql.indexOf("*/", i + 2);
+                end = end < 0 ? length : end + 2;
+            } else if (c == '"') {
+                end = sql.indexOf('"', i + 1);
+                end = end < 0 ? length : end + 1;
+            } else if (c == '\'') {
+                end = getStringEnd(sql, i);
+            } else if (c == '?' && paramIndex < params.size()) {
+                String literal = toLiteral(params.get(paramIndex++));
+                if (literal == null) {
+                    return null;
+                }
+                query.append(literal);
+                i = end;
+                continue;
+            }
+            query.append(sql, i, end);
+            i = end;
+        }
+        return query.toString();
+    }
+
+    /**
+     * Return the SQL literal of a value, null if the value cannot be written as a literal.
+     */
+    private static String toLiteral(Object value) {
+        if (value == null) {
+            return "NULL";
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? "TRUE" : "FALSE";
+        } else if (value instanceof CharSequence) {
+            return "'" + value.toString().replace("'", "''") + "'";
+        } else if (value instanceof Number) {
+            if (value instanceof Double && !Double.isFinite((Double) value) ||
+                    value instanceof Float && !Float.isFinite((Float) value)) {
+                return null;
+            }
+            String literal = value.toString();
+            //The negative numbers are isolated so that a minus sign before them does not start a comment
+            return literal.startsWith("-") ? "(" + literal + ")" : literal;
+        }
+        return null;
+    }
+
+    /**
+     * Return the index following the string literal starting at the given index.
+     */
+    private static int getStringEnd(String sql, int start) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == '\'') {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == '\'') {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return sql.length();
+    }
+
+    /**
+     * Return the index following the unsigned number starting at the given index.
+     */
+    private static int getNumberEnd(String sql, int start) {
+        int i = start;
+        int length = sql.length();
+        while (i < length && Character.isDigit(sql.charAt(i))) {
+            i++;
+        }
+        if (i < length && sql.charAt(i) == '.') {
+            i++;
+            while (i < length && Character.isDigit(sql.charAt(i))) {
+                i++;
+            }
+        }
+        if (i + 1 < length && (sql.charAt(i) == 'e' || sql.charAt(i) == 'E')) {
+            int j = i + 1;
+            if (sql.charAt(j) == '+' || sql.charAt(j) == '-') {
+                j++;
+            }
+            if (j < length && Character.isDigit(sql.charAt(j))) {
+                i = j;
+                while (i < length && Character.isDigit(sql.charAt(i))) {
+                    i++;
+                }
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Return the index of the first non whitespace character from the given index.
+     */
+    private static int skipWhitespaces(String sql, int start) {
+        int i = start;
+        while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Return true if the literal ending at the given index is followed by a cast or glued to an identifier.
+     */
+    private static boolean isCast(String sql, int end) {
+        if (end < sql.length() && (Character.isLetterOrDigit(sql.charAt(end)) || sql.charAt(end) == '_' ||
+                sql.charAt(end) == '.')) {
+            return true;
+        }
+        int next = skipWhitespaces(sql, end);
+        return sql.startsWith("::", next);
+    }
+
+    /**
+     * Parse a numeric literal as an Integer, a Long or a BigDecimal, null if it is not a valid number.
+     */
+    private static Object parseNumber(String literal) {
+        try {
+            if (literal.indexOf('.') < 0 && literal.indexOf('e') < 0 && literal.indexOf('E') < 0) {
+                long value = Long.parseLong(literal);
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    return (int) value;
+                }
+                return value;
+            }
+            return new BigDecimal(literal);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
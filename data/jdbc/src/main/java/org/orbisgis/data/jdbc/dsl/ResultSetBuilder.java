@@ -42,8 +42,11 @@ import org.orbisgis.data.api.dataset.IJdbcTable;
 import org.orbisgis.data.api.dataset.ISpatialTable;
 import org.orbisgis.data.api.dataset.ITable;
 import org.orbisgis.data.api.datasource.IJdbcDataSource;
+import org.orbisgis.data.api.dsl.ICancellationToken;
 import org.orbisgis.data.api.dsl.IResultSetBuilder;
 import org.orbisgis.data.api.dsl.IResultSetProperties;
+import org.orbisgis.data.jdbc.CancellationToken;
+import org.orbisgis.data.jdbc.JdbcDataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -163,6 +166,18 @@ public class ResultSetBuilder implements IResultSetBuilder {
         return this;
     }
 
+    @Override
+    public IResultSetBuilder cancellation(ICancellationToken token) {
+        rsp.setCancellationToken(token);
+        return this;
+    }
+
+    @Override
+    public IResultSetBuilder deadline(long timeout) {
+        rsp.setCancellationToken(new CancellationToken(rsp.getCancellationToken(), timeout));
+        return this;
+    }
+
     @Override
     public IResultSetBuilder maxRow(int maxRow) {
         rsp.setMaxRows(maxRow);
@@ -225,6 +240,9 @@ public class ResultSetBuilder implements IResultSetBuilder {
         if(rsp.getMaxFieldSize() > -1) {
             st.setMaxFieldSize(rsp.getMaxFieldSize());
         }
+        if(rsp.getCancellationToken() != null) {
+            rsp.getCancellationToken().register(st);
+        }
         return st;
     }
 
@@ -273,77 +291,151 @@ public class ResultSetBuilder implements IResultSetBuilder {
         if(rsp.getMaxFieldSize() > -1) {
             st.setMaxFieldSize(rsp.getMaxFieldSize());
         }
+        if(rsp.getCancellationToken() != null) {
+            rsp.getCancellationToken().register(st);
+        }
         return st;
     }
 
+    /**
+     * Unregister the given executed {@link Statement} from the cancellation token.
+     *
+     * @param st Executed {@link Statement}.
+     */
+    private void done(Statement st) {
+        if(rsp.getCancellationToken() != null) {
+            rsp.getCancellationToken().unregister(st);
+        }
+    }
+
     @Override
     public boolean execute(String sql) throws SQLException {
-        return getStatement().execute(sql);
+        Statement st = getStatement();
+        try {
+            return st.execute(sql);
+        } finally {
+            done(st);
+        }
     }
 
     @Override
     public boolean execute(GString sql) throws SQLException {
-        return getStatement().execute(sql.toString());
+        return execute(sql.toString());
     }
 
     @Override
     public int[] executeBatch(String[] queries) throws SQLException {
         Statement st = getStatement();
-        for (String query : queries) {
-            st.addBatch(query);
+        try {
+            for (String query : queries) {
+                st.addBatch(query);
+            }
+            return st.executeBatch();
+        } finally {
+            done(st);
         }
-        return st.executeBatch();
     }
 
     @Override
     public int[] executeBatch(GString[] queries) throws SQLException {
         Statement st = getStatement();
-        for (GString query : queries) {
-            st.addBatch(query.toString());
+        try {
+            for (GString query : queries) {
+                st.addBatch(query.toString());
+            }
+            return st.executeBatch();
+        } finally {
+            done(st);
         }
-        return st.executeBatch();
     }
 
     @Override
     public long[] executeLargeBatch(String[] queries) throws SQLException {
         Statement st = getStatement();
-        for (String query : queries) {
-            st.addBatch(query);
+        try {
+            for (String query : queries) {
+                st.addBatch(query);
+            }
+            return st.executeLargeBatch();
+        } finally {
+            done(st);
         }
-        return st.executeLargeBatch();
     }
 
     @Override
     public long[] executeLargeBatch(GString[] queries) throws SQLException {
         Statement st = getStatement();
-        for (GString query : queries) {
-            st.addBatch(query.toString());
+        try {
+            for (GString query : queries) {
+                st.addBatch(query.toString());
+            }
+            return st.executeLargeBatch();
+        } finally {
+            done(st);
         }
-        return st.executeLargeBatch();
     }
 
     @Override
     public int executeUpdate(String sql) throws SQLException {
-        return getStatement().executeUpdate(sql);
+        Statement st = getStatement();
+        try {
+            return st.executeUpdate(sql);
+        } finally {
+            done(st);
+        }
     }
 
     @Override
     public int executeUpdate(GString sql) throws SQLException {
-        return getStatement().executeUpdate(sql.toString());
+        return executeUpdate(sql.toString());
     }
 
     @Override
     public long executeLargeUpdate(String sql) throws SQLException {
-        return getStatement().executeLargeUpdate(sql);
+        Statement st = getStatement();
+        try {
+            return st.executeLargeUpdate(sql);
+        } finally {
+            done(st);
+        }
     }
 
     @Override
     public long executeLargeUpdate(GString sql) throws SQLException {
-        return getStatement().executeLargeUpdate(sql.toString());
+        return executeLargeUpdate(sql.toString());
+    }
+
+    /**
+     * Throw an exception if the cancellation token is cancelled, so that the tables are not read without it.
+     */
+    private void checkCancellation() throws SQLException {
+        if (rsp.getCancellationToken() != null) {
+            rsp.getCancellationToken().check();
+        }
+    }
+
+    /**
+     * Return the table replaying the cached rows of the given query, null if the query is not cached. The queries are
+     * only cached with the default row limit, as the cached rows do not depend on the statement properties.
+     *
+     * @param query  Query to get from the cache.
+     * @param params Parameters of the query.
+     * @return The table replaying the cached rows, null if the query is not cached.
+     */
+    private IJdbcTable<?> getCachedTable(String query, List<Object> params) throws SQLException {
+        checkCancellation();
+        if (!(dataSource instanceof JdbcDataSource) || rsp.getMaxRows() > -1) {
+            return null;
+        }
+        return ((JdbcDataSource) dataSource).getCachedTable(query, params);
     }
 
     @Override
     public IJdbcTable<?> getTable(String nameOrQuery) throws Exception {
+        IJdbcTable<?> cached = getCachedTable(nameOrQuery, null);
+        if (cached != null) {
+            return cached;
+        }
         try {
             IJdbcTable<?> table = dataSource.getTable(nameOrQuery, getStatement());
             table.setResultSetProperties(rsp);
@@ -356,6 +448,7 @@ public class ResultSetBuilder implements IResultSetBuilder {
 
     @Override
     public IJdbcSpatialTable<?> getSpatialTable(String nameOrQuery) throws Exception{
+        checkCancellation();
         try {
             IJdbcSpatialTable<?> table = dataSource.getSpatialTable(nameOrQuery, getStatement());
             table.setResultSetProperties(rsp);
@@ -392,6 +485,10 @@ public class ResultSetBuilder implements IResultSetBuilder {
 
     @Override
     public ITable<?,?> getTable(String query, List<Object> params) throws Exception{
+        IJdbcTable<?> cached = getCachedTable(query, params);
+        if (cached != null) {
+            return cached;
+        }
         try {
             IJdbcTable<?> table = dataSource.getTable(query, params, getStatement(query, params));
             table.setResultSetProperties(rsp);
@@ -404,6 +501,7 @@ public class ResultSetBuilder implements IResultSetBuilder {
 
     @Override
     public ISpatialTable<?> getSpatialTable(String query, List<Object> params) throws Exception{
+        checkCancellation();
         try {
             IJdbcSpatialTable<?> table = dataSource.getSpatialTable(query, params, getStatement(query, params));
             table.setResultSetProperties(rsp);
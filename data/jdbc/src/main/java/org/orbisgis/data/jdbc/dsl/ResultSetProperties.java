@@ -36,6 +36,7 @@
  */
 package org.orbisgis.data.jdbc.dsl;
 
+import org.orbisgis.data.api.dsl.ICancellationToken;
 import org.orbisgis.data.api.dsl.IResultSetBuilder;
 import org.orbisgis.data.api.dsl.IResultSetProperties;
 import org.slf4j.Logger;
@@ -74,6 +75,8 @@ public class ResultSetProperties implements IResultSetProperties {
     private boolean poolable = false;
     /** {@link java.sql.Statement} maximum field size. */
     private int maxFieldSize = -1;
+    /** Token cancelling the {@link java.sql.Statement} and the iteration. */
+    private ICancellationToken cancellationToken = null;
 
     @Override
     public void setType(int type) {
@@ -233,6 +236,16 @@ public class ResultSetProperties implements IResultSetProperties {
         return maxFieldSize;
     }
 
+    @Override
+    public void setCancellationToken(ICancellationToken token) {
+        this.cancellationToken = token;
+    }
+
+    @Override
+    public ICancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
     @Override
     public IResultSetProperties copy() {
         ResultSetProperties rsp = new ResultSetProperties();
@@ -246,6 +259,7 @@ public class ResultSetProperties implements IResultSetProperties {
         rsp.cursorName = this.cursorName;
         rsp.poolable = this.poolable;
         rsp.maxFieldSize = this.maxFieldSize;
+        rsp.cancellationToken = this.cancellationToken;
         return rsp;
     }
 }
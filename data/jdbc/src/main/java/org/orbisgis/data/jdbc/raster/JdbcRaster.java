@@ -0,0 +1,528 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc.raster;
+
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.orbisgis.data.api.dataset.IRaster;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.Blob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Implementation of {@link IRaster} reading a raster encoded with the PostGIS WKB raster format, as stored in a
+ * PostGIS raster column or in a binary column.
+ *
+ * Only the header and the band headers are read on creation. The pixels of a tile are read from the encoded raster
+ * when the tile is requested, then decoded into a direct {@link ByteBuffer} kept in a {@link RasterTileCache}, so
+ * the whole raster is never copied in memory :
+ * <ul>
+ *     <li>a byte array or a hexadecimal string returned by the driver is read in place,</li>
+ *     <li>a {@link Blob} is read tile by tile with {@link Blob#getBytes(long, int)}. As many drivers invalidate a
+ *     {@link Blob} once the cursor has moved to another row or once the transaction has ended, the tiles should then
+ *     be read while the row is current,</li>
+ *     <li>a raster read with {@link #read(Connection, TableLocation, String, String, Object)} is never transferred as
+ *     a whole : each tile is fetched with a query on the row identified by a key, which avoids the hexadecimal
+ *     string of the PostGIS driver. The connection should stay open while the raster is read.</li>
+ * </ul>
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public class JdbcRaster implements IRaster {
+
+    /** Default width and height of the tiles */
+    public static final int DEFAULT_TILE_SIZE = 256;
+    /** Size in bytes of the WKB raster header */
+    private static final int HEADER_SIZE = 61;
+    /** Generator of the raster identifiers used as cache keys */
+    private static final AtomicLong IDS = new AtomicLong();
+
+    /** Identifier of the raster in the tile cache */
+    private final long id = IDS.incrementAndGet();
+    /** Encoded raster */
+    private final RasterSource source;
+    /** Byte order of the encoded raster */
+    private final ByteOrder order;
+    /** Metadata of the raster */
+    private final RasterMetadata metadata;
+    /** Offset of the pixels of each band */
+    private final long[] bandOffsets;
+    /** Width of the tiles */
+    private final int tileWidth;
+    /** Height of the tiles */
+    private final int tileHeight;
+    /** Cache of the decoded tiles */
+    private final RasterTileCache cache;
+
+    /**
+     * Read a raster value using tiles of {@link #DEFAULT_TILE_SIZE} pixels and the default {@link RasterTileCache}.
+     *
+     * @param value Raster value read from the database : a byte array, a {@link Blob} or a hexadecimal string.
+     * @return The {@link JdbcRaster}, null if the value is null.
+     */
+    public static JdbcRaster read(Object value) throws SQLException {
+        return read(value, DEFAULT_TILE_SIZE, DEFAULT_TILE_SIZE, RasterTileCache.getDefault());
+    }
+
+    /**
+     * Read a raster value.
+     *
+     * @param value      Raster value read from the database : a byte array, a {@link Blob} or a hexadecimal string.
+     * @param tileWidth  Width of the tiles.
+     * @param tileHeight Height of the tiles.
+     * @param cache      Cache of the decoded tiles.
+     * @return The {@link JdbcRaster}, null if the value is null.
+     */
+    public static JdbcRaster read(Object value, int tileWidth, int tileHeight, RasterTileCache cache) throws SQLException {
+        if (value == null) {
+            return null;
+        }
+        RasterSource source;
+        if (value instanceof byte[]) {
+            source = new BytesSource((byte[]) value);
+        } else if (value instanceof Blob) {
+            source = new BlobSource((Blob) value);
+        } else {
+            //PostGIS raster values are returned as hexadecimal strings
+            source = new HexSource(value.toString());
+        }
+        return new JdbcRaster(source, tileWidth, tileHeight, cache);
+    }
+
+    /**
+     * Read lazily the raster stored in a row of a table using tiles of {@link #DEFAULT_TILE_SIZE} pixels and the
+     * default {@link RasterTileCache}.
+     *
+     * @param connection Connection to the database, kept open while the raster is read.
+     * @param table      Location of the table.
+     * @param column     Name of the raster column.
+     * @param keyColumn  Name of the column identifying the row.
+     * @param key        Value of the key of the row.
+     * @return The {@link JdbcRaster}, null if the row doesn't exist or if its raster is null.
+     */
+    public static JdbcRaster read(Connection connection, TableLocation table, String column, String keyColumn,
+                                  Object key) throws SQLException {
+        return read(connection, table, column, keyColumn, key, DEFAULT_TILE_SIZE, DEFAULT_TILE_SIZE,
+                RasterTileCache.getDefault());
+    }
+
+    /**
+     * Read lazily the raster stored in a row of a table. The header and each tile are read with a query on the row,
+     * so the raster is never transferred as a whole.
+     *
+     * @param connection Connection to the database, kept open while the raster is read.
+     * @param table      Location of the table.
+     * @param column     Name of the raster column.
+     * @param keyColumn  Name of the column identifying the row.
+     * @param key        Value of the key of the row.
+     * @param tileWidth  Width of the tiles.
+     * @param tileHeight Height of the tiles.
+     * @param cache      Cache of the decoded tiles.
+     * @return The {@link JdbcRaster}, null if the row doesn't exist or if its raster is null.
+     */
+    public static JdbcRaster read(Connection connection, TableLocation table, String column, String keyColumn,
+                                  Object key, int tileWidth, int tileHeight, RasterTileCache cache)
+            throws SQLException {
+        if (connection == null || table == null || column == null || keyColumn == null) {
+            throw new IllegalArgumentException("The connection, the table and the columns should not be null");
+        }
+        DBTypes dbType = table.getDbTypes() == null ? DBTypes.H2GIS : table.getDbTypes();
+        QuerySource source = new QuerySource(connection, table, dbType, column, keyColumn, key);
+        if (source.length() < 0) {
+            return null;
+        }
+        return new JdbcRaster(source, tileWidth, tileHeight, cache);
+    }
+
+    private JdbcRaster(RasterSource source, int tileWidth, int tileHeight, RasterTileCache cache) throws SQLException {
+        long length = source.length();
+        if (length < HEADER_SIZE) {
+            throw new SQLException("Unsupported raster format");
+        }
+        this.source = source;
+        this.tileWidth = Math.max(1, tileWidth);
+        this.tileHeight = Math.max(1, tileHeight);
+        this.cache = cache;
+        ByteBuffer header = ByteBuffer.wrap(source.read(0, HEADER_SIZE));
+        this.order = header.get() == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        header.order(order);
+        if (header.getShort() != 0) {
+            throw new SQLException("Unsupported raster format version");
+        }
+        int bandCount = header.getShort() & 0xFFFF;
+        double scaleX = header.getDouble();
+        double scaleY = header.getDouble();
+        double upperLeftX = header.getDouble();
+        double upperLeftY = header.getDouble();
+        double skewX = header.getDouble();
+        double skewY = header.getDouble();
+        int srid = header.getInt();
+        int width = header.getShort() & 0xFFFF;
+        int height = header.getShort() & 0xFFFF;
+        int[] pixelTypes = new int[bandCount];
+        Double[] noDataValues = new Double[bandCount];
+        this.bandOffsets = new long[bandCount];
+        long offset = HEADER_SIZE;
+        for (int band = 0; band < bandCount; band++) {
+            if (offset + 1 > length) {
+                throw new SQLException("Truncated raster data");
+            }
+            int flags = source.read(offset, 1)[0];
+            if ((flags & 0x80) != 0) {
+                throw new SQLException("Out of database raster bands are not supported");
+            }
+            int type = flags & 0x0F;
+            if (type >= RasterMetadata.PIXEL_TYPES.length || RasterMetadata.PIXEL_TYPES[type] == null) {
+                throw new SQLException("Unsupported raster pixel type " + type);
+            }
+            int pixelSize = RasterMetadata.PIXEL_SIZES[type];
+            if (offset + 1 + pixelSize > length) {
+                throw new SQLException("Truncated raster data");
+            }
+            pixelTypes[band] = type;
+            if ((flags & 0x40) != 0) {
+                ByteBuffer noData = ByteBuffer.wrap(source.read(offset + 1, pixelSize)).order(order);
+                noDataValues[band] = decode(noData, 0, type);
+            }
+            bandOffsets[band] = offset + 1 + pixelSize;
+            offset = bandOffsets[band] + (long) width * height * pixelSize;
+        }
+        if (offset > length) {
+            throw new SQLException("Truncated raster data");
+        }
+        this.metadata = new RasterMetadata(width, height, upperLeftX, upperLeftY, scaleX, scaleY, skewX, skewY, srid,
+                pixelTypes, noDataValues);
+    }
+
+    @Override
+    public RasterMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public int getTileWidth() {
+        return tileWidth;
+    }
+
+    @Override
+    public int getTileHeight() {
+        return tileHeight;
+    }
+
+    @Override
+    public int getTileCountX() {
+        return (metadata.getWidth() + tileWidth - 1) / tileWidth;
+    }
+
+    @Override
+    public int getTileCountY() {
+        return (metadata.getHeight() + tileHeight - 1) / tileHeight;
+    }
+
+    @Override
+    public ByteBuffer getTile(int band, int tileX, int tileY) throws Exception {
+        if (band < 0 || band >= metadata.getBandCount() || tileX < 0 || tileX >= getTileCountX() ||
+                tileY < 0 || tileY >= getTileCountY()) {
+            throw new IllegalArgumentException("The tile (" + band + ", " + tileX + ", " + tileY +
+                    ") is outside of the raster");
+        }
+        ByteBuffer tile = cache.get(id, band, tileX, tileY, () -> loadTile(band, tileX, tileY));
+        return tile.asReadOnlyBuffer().order(order);
+    }
+
+    @Override
+    public double getValue(int band, int x, int y) throws Exception {
+        return getWindow(band, x, y, 1, 1)[0];
+    }
+
+    @Override
+    public double[] getWindow(int band, int x, int y, int width, int height) throws Exception {
+        if (x < 0 || y < 0 || width < 0 || height < 0 || x + width > metadata.getWidth() ||
+                y + height > metadata.getHeight()) {
+            throw new IllegalArgumentException("The window is outside of the raster");
+        }
+        double[] values = new double[width * height];
+        int type = metadata.getPixelTypeCode(band);
+        int pixelSize = metadata.getPixelSize(band);
+        for (int tileY = y / tileHeight; tileY <= (y + height - 1) / tileHeight; tileY++) {
+            for (int tileX = x / tileWidth; tileX <= (x + width - 1) / tileWidth; tileX++) {
+                ByteBuffer tile = getTile(band, tileX, tileY);
+                int tileMinX = tileX * tileWidth;
+                int tileMinY = tileY * tileHeight;
+                int currentTileWidth = Math.min(tileWidth, metadata.getWidth() - tileMinX);
+                int minX = Math.max(x, tileMinX);
+                int maxX = Math.min(x + width, tileMinX + currentTileWidth);
+                int minY = Math.max(y, tileMinY);
+                int maxY = Math.min(y + height, tileMinY + tileHeight);
+                for (int row = minY; row < maxY; row++) {
+                    for (int col = minX; col < maxX; col++) {
+                        int index = ((row - tileMinY) * currentTileWidth + col - tileMinX) * pixelSize;
+                        values[(row - y) * width + col - x] = decode(tile, index, type);
+                    }
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Read the rows of a tile in a single read of the encoded raster, then decode them into a direct
+     * {@link ByteBuffer}.
+     */
+    private ByteBuffer loadTile(int band, int tileX, int tileY) throws SQLException {
+        int minX = tileX * tileWidth;
+        int minY = tileY * tileHeight;
+        int width = Math.min(tileWidth, metadata.getWidth() - minX);
+        int height = Math.min(tileHeight, metadata.getHeight() - minY);
+        int pixelSize = metadata.getPixelSize(band);
+        int rowLength = width * pixelSize;
+        int rowStride = metadata.getWidth() * pixelSize;
+        long start = bandOffsets[band] + ((long) minY * metadata.getWidth() + minX) * pixelSize;
+        byte[] rows = source.read(start, (height - 1) * rowStride + rowLength);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(height * rowLength).order(order);
+        for (int row = 0; row < height; row++) {
+            buffer.put(rows, row * rowStride, rowLength);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Decode a pixel value.
+     */
+    private static double decode(ByteBuffer buffer, int index, int type) {
+        switch (type) {
+            case 3:
+                return buffer.get(index);
+            case 5:
+                return buffer.getShort(index);
+            case 6:
+                return buffer.getShort(index) & 0xFFFF;
+            case 7:
+                return buffer.getInt(index);
+            case 8:
+                return buffer.getInt(index) & 0xFFFFFFFFL;
+            case 10:
+                return buffer.getFloat(index);
+            case 11:
+                return buffer.getDouble(index);
+            default:
+                return buffer.get(index) & 0xFF;
+        }
+    }
+
+    /**
+     * Encoded raster read by byte ranges.
+     */
+    private interface RasterSource {
+
+        /**
+         * Return the length of the encoded raster in bytes.
+         *
+         * @return The length of the encoded raster in bytes, -1 if there is no raster.
+         */
+        long length() throws SQLException;
+
+        /**
+         * Read a range of the encoded raster.
+         *
+         * @param position Position of the first byte, starting at 0.
+         * @param length   Number of bytes to read.
+         * @return The bytes read.
+         */
+        byte[] read(long position, int length) throws SQLException;
+    }
+
+    /**
+     * Encoded raster returned by the driver as a byte array.
+     */
+    private static final class BytesSource implements RasterSource {
+        private final byte[] bytes;
+
+        private BytesSource(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public long length() {
+            return bytes.length;
+        }
+
+        @Override
+        public byte[] read(long position, int length) {
+            byte[] range = new byte[length];
+            System.arraycopy(bytes, (int) position, range, 0, length);
+            return range;
+        }
+    }
+
+    /**
+     * Encoded raster returned by the driver as an hexadecimal string, decoded range by range.
+     */
+    private static final class HexSource implements RasterSource {
+        private final String hex;
+
+        private HexSource(String hex) throws SQLException {
+            if (hex.length() % 2 != 0) {
+                throw new SQLException("Unsupported raster format");
+            }
+            this.hex = hex;
+        }
+
+        @Override
+        public long length() {
+            return hex.length() / 2;
+        }
+
+        @Override
+        public byte[] read(long position, int length) throws SQLException {
+            byte[] bytes = new byte[length];
+            int start = (int) (2 * position);
+            for (int i = 0; i < length; i++) {
+                int high = Character.digit(hex.charAt(start + 2 * i), 16);
+                int low = Character.digit(hex.charAt(start + 2 * i + 1), 16);
+                if (high < 0 || low < 0) {
+                    throw new SQLException("Unsupported raster format");
+                }
+                bytes[i] = (byte) ((high << 4) | low);
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Encoded raster returned by the driver as a {@link Blob}, valid as long as the driver keeps it.
+     */
+    private static final class BlobSource implements RasterSource {
+        private final Blob blob;
+        private final long length;
+
+        private BlobSource(Blob blob) throws SQLException {
+            this.blob = blob;
+            this.length = blob.length();
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public byte[] read(long position, int length) throws SQLException {
+            return blob.getBytes(position + 1, length);
+        }
+    }
+
+    /**
+     * Encoded raster stored in a row of a table, read with a query for each range.
+     */
+    private static final class QuerySource implements RasterSource {
+        private final Connection connection;
+        private final String lengthQuery;
+        private final String rangeQuery;
+        private final Object key;
+        private Long length;
+
+        private QuerySource(Connection connection, TableLocation table, DBTypes dbType, String column,
+                            String keyColumn, Object key) {
+            this.connection = connection;
+            this.key = key;
+            String quoted = TableLocation.quoteIdentifier(column, dbType);
+            //PostGIS raster columns are encoded server side, binary columns are read as they are
+            String bytes = dbType == DBTypes.POSTGIS || dbType == DBTypes.POSTGRESQL ?
+                    "ST_AsBinary(" + quoted + ")" : quoted;
+            String where = " FROM " + table.toString(dbType) + " WHERE " +
+                    TableLocation.quoteIdentifier(keyColumn, dbType) + " = ?";
+            this.lengthQuery = "SELECT OCTET_LENGTH(" + bytes + ")" + where;
+            this.rangeQuery = "SELECT SUBSTRING(" + bytes + " FROM ? FOR ?)" + where;
+        }
+
+        @Override
+        public long length() throws SQLException {
+            if (length == null) {
+                try (PreparedStatement ps = connection.prepareStatement(lengthQuery)) {
+                    ps.setObject(1, key);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) {
+                            long value = rs.getLong(1);
+                            length = rs.wasNull() ? -1 : value;
+                        } else {
+                            length = -1L;
+                        }
+                    }
+                }
+            }
+            return length;
+        }
+
+        @Override
+        public byte[] read(long position, int length) throws SQLException {
+            if (position + 1 > Integer.MAX_VALUE) {
+                throw new SQLException("The raster is too large to be read");
+            }
+            try (PreparedStatement ps = connection.prepareStatement(rangeQuery)) {
+                ps.setInt(1, (int) position + 1);
+                ps.setInt(2, length);
+                ps.setObject(3, key);
+                try (ResultSet rs = ps.executeQuery()) {
+                    byte[] bytes = rs.next() ? rs.getBytes(1) : null;
+                    if (bytes == null || bytes.length != length) {
+                        throw new SQLException("Truncated raster data");
+                    }
+                    return bytes;
+                }
+            }
+        }
+    }
+
+    @Override
+    public Object asType(Class<?> clazz) {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "raster; " + metadata;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc.raster;
+
+import org.orbisgis.data.api.dataset.IRasterMetadata;
+
+/**
+ * Implementation of {@link IRasterMetadata} read from the header of a WKB raster.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public class RasterMetadata implements IRasterMetadata {
+
+    /** Names of the pixel types, indexed by their WKB code */
+    static final String[] PIXEL_TYPES = {"1BB", "2BUI", "4BUI", "8BSI", "8BUI", "16BSI", "16BUI", "32BSI", "32BUI",
+            null, "32BF", "64BF"};
+    /** Sizes in bytes of the pixel types, indexed by their WKB code */
+    static final int[] PIXEL_SIZES = {1, 1, 1, 1, 1, 2, 2, 4, 4, 0, 4, 8};
+
+    /** Width in pixels */
+    private final int width;
+    /** Height in pixels */
+    private final int height;
+    /** X coordinate of the upper left corner */
+    private final double upperLeftX;
+    /** Y coordinate of the upper left corner */
+    private final double upperLeftY;
+    /** Width of a pixel */
+    private final double scaleX;
+    /** Height of a pixel */
+    private final double scaleY;
+    /** Rotation about the X axis */
+    private final double skewX;
+    /** Rotation about the Y axis */
+    private final double skewY;
+    /** SRID of the raster */
+    private final int srid;
+    /** WKB pixel type code of each band */
+    private final int[] pixelTypes;
+    /** No data value of each band, null if none */
+    private final Double[] noDataValues;
+
+    public RasterMetadata(int width, int height, double upperLeftX, double upperLeftY, double scaleX, double scaleY,
+                          double skewX, double skewY, int srid, int[] pixelTypes, Double[] noDataValues) {
+        this.width = width;
+        this.height = height;
+        this.upperLeftX = upperLeftX;
+        this.upperLeftY = upperLeftY;
+        this.scaleX = scaleX;
+        this.scaleY = scaleY;
+        this.skewX = skewX;
+        this.skewY = skewY;
+        this.srid = srid;
+        this.pixelTypes = pixelTypes;
+        this.noDataValues = noDataValues;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getBandCount() {
+        return pixelTypes.length;
+    }
+
+    @Override
+    public double getUpperLeftX() {
+        return upperLeftX;
+    }
+
+    @Override
+    public double getUpperLeftY() {
+        return upperLeftY;
+    }
+
+    @Override
+    public double getScaleX() {
+        return scaleX;
+    }
+
+    @Override
+    public double getScaleY() {
+        return scaleY;
+    }
+
+    @Override
+    public double getSkewX() {
+        return skewX;
+    }
+
+    @Override
+    public double getSkewY() {
+        return skewY;
+    }
+
+    @Override
+    public int getSrid() {
+        return srid;
+    }
+
+    @Override
+    public String getPixelType(int band) {
+        return PIXEL_TYPES[pixelTypes[band]];
+    }
+
+    @Override
+    public Double getNoDataValue(int band) {
+        return noDataValues[band];
+    }
+
+    /**
+     * Returns the WKB code of the pixel type of a band.
+     *
+     * @param band Index of the band, starting from 0.
+     * @return The WKB code of the pixel type.
+     */
+    int getPixelTypeCode(int band) {
+        return pixelTypes[band];
+    }
+
+    /**
+     * Returns the size in bytes of a pixel of a band.
+     *
+     * @param band Index of the band, starting from 0.
+     * @return The size in bytes of a pixel.
+     */
+    public int getPixelSize(int band) {
+        return PIXEL_SIZES[pixelTypes[band]];
+    }
+
+    @Override
+    public String toString() {
+        return "width : " + width + "; height : " + height + "; band count : " + pixelTypes.length +
+                "; upper left : (" + upperLeftX + " " + upperLeftY + "); scale : (" + scaleX + " " + scaleY +
+                "); srid : " + srid;
+    }
+
+    @Override
+    public Object asType(Class<?> clazz) {
+        return null;
+    }
+}
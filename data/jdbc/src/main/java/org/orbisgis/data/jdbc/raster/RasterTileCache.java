@@ -0,0 +1,202 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc.raster;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+
+/**
+ * Least recently used cache of decoded raster tiles, bounded by a memory budget. The tiles are stored in direct
+ * {@link ByteBuffer}s so that they stay out of the Java heap.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public class RasterTileCache {
+
+    /** Default memory budget, in bytes */
+    public static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+    /** Cache shared by default by all the rasters */
+    private static final RasterTileCache DEFAULT = new RasterTileCache(DEFAULT_BUDGET);
+
+    /** Cached tiles in access order */
+    private final LinkedHashMap<TileKey, ByteBuffer> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    /** Memory budget in bytes */
+    private long budget;
+    /** Memory used by the cached tiles in bytes */
+    private long size = 0;
+
+    /**
+     * Main constructor.
+     *
+     * @param budget Memory budget in bytes.
+     */
+    public RasterTileCache(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Return the cache shared by default by all the rasters.
+     *
+     * @return The default {@link RasterTileCache}.
+     */
+    public static RasterTileCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Return the cached tile, loading it if it isn't in the cache.
+     *
+     * @param rasterId Identifier of the raster.
+     * @param band     Index of the band.
+     * @param tileX    Index of the tile along the X axis.
+     * @param tileY    Index of the tile along the Y axis.
+     * @param loader   Loader of the tile.
+     * @return The tile.
+     */
+    public ByteBuffer get(long rasterId, int band, int tileX, int tileY, Callable<ByteBuffer> loader) throws Exception {
+        TileKey key = new TileKey(rasterId, band, tileX, tileY);
+        synchronized (this) {
+            ByteBuffer tile = tiles.get(key);
+            if (tile != null) {
+                return tile;
+            }
+        }
+        //The tile is loaded outside of the lock so that other tiles can be read meanwhile
+        ByteBuffer tile = loader.call();
+        synchronized (this) {
+            ByteBuffer previous = tiles.put(key, tile);
+            if (previous != null) {
+                size -= previous.capacity();
+            }
+            size += tile.capacity();
+            evict();
+        }
+        return tile;
+    }
+
+    /**
+     * Return the memory budget in bytes.
+     *
+     * @return The memory budget in bytes.
+     */
+    public synchronized long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Set the memory budget, evicting the least recently used tiles if needed.
+     *
+     * @param budget The memory budget in bytes.
+     */
+    public synchronized void setBudget(long budget) {
+        this.budget = budget;
+        evict();
+    }
+
+    /**
+     * Return the memory used by the cached tiles in bytes.
+     *
+     * @return The memory used by the cached tiles in bytes.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Return the number of cached tiles.
+     *
+     * @return The number of cached tiles.
+     */
+    public synchronized int getTileCount() {
+        return tiles.size();
+    }
+
+    /**
+     * Remove all the cached tiles.
+     */
+    public synchronized void clear() {
+        tiles.clear();
+        size = 0;
+    }
+
+    /**
+     * Remove the least recently used tiles until the memory used fits the budget.
+     */
+    private void evict() {
+        Iterator<Map.Entry<TileKey, ByteBuffer>> it = tiles.entrySet().iterator();
+        while (size > budget && it.hasNext()) {
+            size -= it.next().getValue().capacity();
+            it.remove();
+        }
+    }
+
+    /**
+     * Identifier of a tile of a band of a raster.
+     */
+    private static final class TileKey {
+        private final long rasterId;
+        private final int band;
+        private final int tileX;
+        private final int tileY;
+
+        private TileKey(long rasterId, int band, int tileX, int tileY) {
+            this.rasterId = rasterId;
+            this.band = band;
+            this.tileX = tileX;
+            this.tileY = tileY;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TileKey)) {
+                return false;
+            }
+            TileKey key = (TileKey) o;
+            return rasterId == key.rasterId && band == key.band && tileX == key.tileX && tileY == key.tileY;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rasterId, band, tileX, tileY);
+        }
+    }
+}
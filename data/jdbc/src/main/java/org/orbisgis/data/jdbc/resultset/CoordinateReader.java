@@ -0,0 +1,255 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc.resultset;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Reader of the coordinates of the points of a {@link ResultSet} into packed arrays of doubles : x, y and optionally
+ * z of each row one after the other. The null and empty points are read as NaN coordinates so that the coordinates
+ * of a row are always at the same position.
+ *
+ * The coordinates are either read as numbers computed by the database or parsed from the WKB values, without
+ * creating any geometry. The WKB values are parsed in parallel by chunks while the next rows are read.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public final class CoordinateReader {
+
+    /**
+     * Encoding of the coordinates in the {@link ResultSet}.
+     */
+    public enum Encoding {
+        /** One numeric column per ordinate, for example computed by {@code ST_X} and {@code ST_Y} */
+        VALUES,
+        /** Binary WKB or EWKB column */
+        WKB,
+        /** Hexadecimal WKB or EWKB column, as returned by PostGIS */
+        HEX_WKB
+    }
+
+    /** Size of the longest point header : byte order, type and SRID */
+    private static final int HEADER_SIZE = 9;
+
+    private CoordinateReader() {
+    }
+
+    /**
+     * Read the coordinates of all the rows of the given {@link ResultSet} into chunks of packed coordinates.
+     *
+     * @param resultSet {@link ResultSet} to read, positioned before its first row.
+     * @param dimension Number of ordinates read for each point, 2 for x and y, 3 to add z.
+     * @param encoding  {@link Encoding} of the coordinates.
+     * @param chunkSize Number of rows of a chunk.
+     * @return The chunks of packed coordinates, in the order of the rows.
+     */
+    public static List<double[]> read(ResultSet resultSet, int dimension, Encoding encoding, int chunkSize)
+            throws SQLException {
+        int size = chunkSize > 0 ? chunkSize : GeometryDecodingPipeline.DEFAULT_BATCH_SIZE;
+        if (encoding == Encoding.VALUES) {
+            List<double[]> chunks = new ArrayList<>();
+            double[] chunk = new double[size * dimension];
+            int length = 0;
+            while (resultSet.next()) {
+                for (int i = 1; i <= dimension; i++) {
+                    double value = resultSet.getDouble(i);
+                    chunk[length++] = resultSet.wasNull() ? Double.NaN : value;
+                }
+                if (length == chunk.length) {
+                    chunks.add(chunk);
+                    chunk = new double[size * dimension];
+                    length = 0;
+                }
+            }
+            if (length > 0) {
+                chunks.add(Arrays.copyOf(chunk, length));
+            }
+            return chunks;
+        }
+        List<CompletableFuture<double[]>> futures = new ArrayList<>();
+        List<Object> values = new ArrayList<>(size);
+        while (resultSet.next()) {
+            values.add(encoding == Encoding.WKB ? resultSet.getBytes(1) : resultSet.getString(1));
+            if (values.size() == size) {
+                List<Object> chunk = values;
+                futures.add(CompletableFuture.supplyAsync(() -> parse(chunk, dimension)));
+                values = new ArrayList<>(size);
+            }
+        }
+        if (!values.isEmpty()) {
+            List<Object> chunk = values;
+            futures.add(CompletableFuture.supplyAsync(() -> parse(chunk, dimension)));
+        }
+        List<double[]> chunks = new ArrayList<>(futures.size());
+        try {
+            for (CompletableFuture<double[]> future : futures) {
+                chunks.add(future.join());
+            }
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        return chunks;
+    }
+
+    /**
+     * Copy the given chunks into one array.
+     *
+     * @param chunks Chunks of packed coordinates.
+     * @return The packed coordinates.
+     */
+    public static double[] toArray(List<double[]> chunks) {
+        double[] array = new double[chunks.stream().mapToInt(chunk -> chunk.length).sum()];
+        int offset = 0;
+        for (double[] chunk : chunks) {
+            System.arraycopy(chunk, 0, array, offset, chunk.length);
+            offset += chunk.length;
+        }
+        return array;
+    }
+
+    /**
+     * Copy the given chunks into a direct {@link DoubleBuffer} in the native byte order.
+     *
+     * @param chunks Chunks of packed coordinates.
+     * @return The packed coordinates, the buffer being ready to be read.
+     */
+    public static DoubleBuffer toBuffer(List<double[]> chunks) {
+        int length = chunks.stream().mapToInt(chunk -> chunk.length).sum();
+        DoubleBuffer buffer = ByteBuffer.allocateDirect(length * Double.BYTES).order(ByteOrder.nativeOrder())
+                .asDoubleBuffer();
+        for (double[] chunk : chunks) {
+            buffer.put(chunk);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Parse a chunk of WKB or hexadecimal WKB points.
+     *
+     * @param values    WKB values as byte arrays or hexadecimal strings.
+     * @param dimension Number of ordinates read for each point.
+     * @return The packed coordinates of the points.
+     */
+    private static double[] parse(List<Object> values, int dimension) {
+        double[] coordinates = new double[values.size() * dimension];
+        byte[] buffer = new byte[HEADER_SIZE + 3 * Double.BYTES];
+        for (int i = 0; i < values.size(); i++) {
+            Object value = values.get(i);
+            byte[] wkb;
+            int length;
+            if (value instanceof String) {
+                String hex = (String) value;
+                length = Math.min(buffer.length, hex.length() / 2);
+                for (int j = 0; j < length; j++) {
+                    buffer[j] = (byte) (Character.digit(hex.charAt(2 * j), 16) << 4 |
+                            Character.digit(hex.charAt(2 * j + 1), 16));
+                }
+                wkb = buffer;
+            } else {
+                wkb = (byte[]) value;
+                length = wkb == null ? 0 : wkb.length;
+            }
+            parse(wkb, length, coordinates, i * dimension, dimension);
+        }
+        return coordinates;
+    }
+
+    /**
+     * Parse the coordinates of a WKB point.
+     *
+     * @param wkb         WKB point, null for a null point.
+     * @param length      Number of available bytes of the WKB.
+     * @param coordinates Array where the coordinates are written.
+     * @param offset      Position of the point in the array.
+     * @param dimension   Number of ordinates read for the point.
+     */
+    private static void parse(byte[] wkb, int length, double[] coordinates, int offset, int dimension) {
+        Arrays.fill(coordinates, offset, offset + dimension, Double.NaN);
+        if (wkb == null || length < 5) {
+            return;
+        }
+        boolean littleEndian = wkb[0] == 1;
+        long header = readInt(wkb, 1, littleEndian) & 0xFFFFFFFFL;
+        boolean hasZ = (header & 0x80000000L) != 0;
+        int position = (header & 0x20000000L) != 0 ? 9 : 5;
+        int code = (int) (header & 0x0FFFFFFFL);
+        hasZ |= code / 1000 == 1 || code / 1000 == 3;
+        if (code % 1000 != 1) {
+            throw new IllegalArgumentException("Unsupported WKB geometry type " + code + ", only points are supported.");
+        }
+        int count = Math.min(dimension, hasZ ? 3 : 2);
+        for (int i = 0; i < count && position + Double.BYTES <= length; i++) {
+            coordinates[offset + i] = Double.longBitsToDouble(readLong(wkb, position, littleEndian));
+            position += Double.BYTES;
+        }
+    }
+
+    /**
+     * Read a 32 bits integer of the WKB at the given offset.
+     */
+    private static int readInt(byte[] wkb, int offset, boolean littleEndian) {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int shift = littleEndian ? 8 * i : 8 * (3 - i);
+            value |= (wkb[offset + i] & 0xFF) << shift;
+        }
+        return value;
+    }
+
+    /**
+     * Read a 64 bits integer of the WKB at the given offset.
+     */
+    private static long readLong(byte[] wkb, int offset, boolean littleEndian) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            int shift = littleEndian ? 8 * i : 8 * (7 - i);
+            value |= (wkb[offset + i] & 0xFFL) << shift;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,486 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc.resultset;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Streaming writer of the rows of a spatial {@link ResultSet} as a GeoJSON FeatureCollection or as newline delimited
+ * GeoJSON features.
+ *
+ * The values are pulled straight from the cursor : the geometries are either already encoded into GeoJSON by the
+ * database, or transcoded from their WKB representation without building any JTS object. The text is written
+ * through a reusable char buffer, so that no intermediate row is kept in memory.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public class GeoJsonWriter {
+
+    /**
+     * Encodings of the geometry column read from the {@link ResultSet}.
+     */
+    public enum GeometryEncoding {
+        /** GeoJSON geometry text, as returned by {@code ST_AsGeoJSON} */
+        GEOJSON,
+        /** WKB or EWKB bytes */
+        WKB,
+        /** Hexadecimal WKB or EWKB string */
+        HEX_WKB
+    }
+
+    /** Size of the char buffer */
+    private static final int BUFFER_SIZE = 8192;
+    /** GeoJSON geometry types by WKB type code */
+    private static final String[] TYPES = {null, "Point", "LineString", "Polygon", "MultiPoint", "MultiLineString",
+            "MultiPolygon", "GeometryCollection"};
+    /** Hexadecimal digits */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** Writer encoding the chars into the output stream */
+    private final Writer writer;
+    /** True to write newline delimited features, false to write a FeatureCollection */
+    private final boolean lineDelimited;
+    /** Reusable char buffer */
+    private final char[] buffer = new char[BUFFER_SIZE];
+    /** Number of chars in the buffer */
+    private int length = 0;
+    /** WKB of the current geometry */
+    private byte[] wkb;
+    /** Read position in the WKB */
+    private int position;
+    /** True if the current WKB is little endian */
+    private boolean littleEndian;
+
+    /**
+     * Main constructor.
+     *
+     * @param out           {@link OutputStream} where the UTF-8 text is written. It is flushed but not closed.
+     * @param lineDelimited True to write one feature per line, false to write a FeatureCollection.
+     */
+    public GeoJsonWriter(OutputStream out, boolean lineDelimited) {
+        this.writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        this.lineDelimited = lineDelimited;
+    }
+
+    /**
+     * Write all the remaining rows of the {@link ResultSet} as features. All the columns except the geometry one are
+     * written as properties.
+     *
+     * @param resultSet      {@link ResultSet} to write.
+     * @param geometryColumn Index of the geometry column, starting at 1.
+     * @param encoding       {@link GeometryEncoding} of the geometry column.
+     * @return The number of written features.
+     */
+    public long write(ResultSet resultSet, int geometryColumn, GeometryEncoding encoding) throws SQLException,
+            IOException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        char[][] names = new char[columnCount + 1][];
+        int[] types = new int[columnCount + 1];
+        for (int i = 1; i <= columnCount; i++) {
+            if (i != geometryColumn) {
+                names[i] = metaData.getColumnLabel(i).toCharArray();
+                types[i] = metaData.getColumnType(i);
+            }
+        }
+        if (!lineDelimited) {
+            write("{\"type\":\"FeatureCollection\",\"features\":[");
+        }
+        long count = 0;
+        while (resultSet.next()) {
+            if (count > 0 && !lineDelimited) {
+                write(',');
+            }
+            write("{\"type\":\"Feature\",\"geometry\":");
+            writeGeometry(resultSet, geometryColumn, encoding);
+            write(",\"properties\":{");
+            boolean first = true;
+            for (int i = 1; i <= columnCount; i++) {
+                if (i == geometryColumn) {
+                    continue;
+                }
+                if (!first) {
+                    write(',');
+                }
+                first = false;
+                writeString(names[i]);
+                write(':');
+                writeValue(resultSet, i, types[i]);
+            }
+            write("}}");
+            if (lineDelimited) {
+                write('\n');
+            }
+            count++;
+        }
+        if (!lineDelimited) {
+            write("]}");
+        }
+        writer.write(buffer, 0, length);
+        length = 0;
+        writer.flush();
+        return count;
+    }
+
+    /**
+     * Write the geometry of the current row.
+     */
+    private void writeGeometry(ResultSet resultSet, int column, GeometryEncoding encoding) throws SQLException,
+            IOException {
+        if (encoding == GeometryEncoding.GEOJSON) {
+            String geoJson = resultSet.getString(column);
+            write(geoJson == null ? "null" : geoJson);
+            return;
+        }
+        if (encoding == GeometryEncoding.HEX_WKB) {
+            String hex = resultSet.getString(column);
+            wkb = hex == null ? null : hexToBytes(hex);
+        } else {
+            wkb = resultSet.getBytes(column);
+        }
+        if (wkb == null) {
+            write("null");
+        } else {
+            position = 0;
+            transcode();
+        }
+    }
+
+    /**
+     * Write a property value of the current row.
+     */
+    private void writeValue(ResultSet resultSet, int column, int type) throws SQLException, IOException {
+        switch (type) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                String number = resultSet.getString(column);
+                //JSON does not have any representation of NaN and infinity
+                if (number == null || number.contains("N") || number.contains("n")) {
+                    write("null");
+                } else {
+                    write(number);
+                }
+                break;
+            case Types.BIT:
+            case Types.BOOLEAN:
+                boolean value = resultSet.getBoolean(column);
+                write(resultSet.wasNull() ? "null" : value ? "true" : "false");
+                break;
+            default:
+                String string = resultSet.getString(column);
+                if (string == null) {
+                    write("null");
+                } else {
+                    writeString(string);
+                }
+        }
+    }
+
+    /**
+     * Transcode the WKB geometry starting at the current position into a GeoJSON geometry. Both the ISO and the
+     * extended (PostGIS) WKB dimension flags are supported, the M values are dropped.
+     */
+    private void transcode() throws IOException {
+        littleEndian = wkb[position++] == 1;
+        long header = readInt() & 0xFFFFFFFFL;
+        boolean hasZ = (header & 0x80000000L) != 0;
+        boolean hasM = (header & 0x40000000L) != 0;
+        if ((header & 0x20000000L) != 0) {
+            //Skip the SRID
+            position += 4;
+        }
+        int code = (int) (header & 0x0FFFFFFFL);
+        hasZ |= code / 1000 == 1 || code / 1000 == 3;
+        hasM |= code / 1000 == 2 || code / 1000 == 3;
+        int type = code % 1000;
+        if (type < 1 || type >= TYPES.length) {
+            throw new IOException("Unsupported WKB geometry type " + code);
+        }
+        int dimension = 2 + (hasZ ? 1 : 0) + (hasM ? 1 : 0);
+        write("{\"type\":\"");
+        write(TYPES[type]);
+        write(type == 7 ? "\",\"geometries\":[" : "\",\"coordinates\":");
+        switch (type) {
+            case 1:
+                writePoint(dimension, hasZ);
+                break;
+            case 2:
+                writePoints(readInt(), dimension, hasZ);
+                break;
+            case 3:
+                writeRings(dimension, hasZ);
+                break;
+            default:
+                int count = readInt();
+                if (type != 7) {
+                    write('[');
+                }
+                for (int i = 0; i < count; i++) {
+                    if (i > 0) {
+                        write(',');
+                    }
+                    if (type == 7) {
+                        transcode();
+                    } else {
+                        //The parts of the multi geometries have their own header
+                        littleEndian = wkb[position++] == 1;
+                        if ((readInt() & 0x20000000) != 0) {
+                            position += 4;
+                        }
+                        if (type == 4) {
+                            writePoint(dimension, hasZ);
+                        } else if (type == 5) {
+                            writePoints(readInt(), dimension, hasZ);
+                        } else {
+                            writeRings(dimension, hasZ);
+                        }
+                    }
+                }
+                write(']');
+        }
+        write('}');
+    }
+
+    /**
+     * Write the rings of a polygon.
+     */
+    private void writeRings(int dimension, boolean hasZ) throws IOException {
+        int count = readInt();
+        write('[');
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                write(',');
+            }
+            writePoints(readInt(), dimension, hasZ);
+        }
+        write(']');
+    }
+
+    /**
+     * Write an array of points.
+     */
+    private void writePoints(int count, int dimension, boolean hasZ) throws IOException {
+        write('[');
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                write(',');
+            }
+            writeCoordinate(dimension, hasZ);
+        }
+        write(']');
+    }
+
+    /**
+     * Write the coordinates of a point, an empty array for an empty point.
+     */
+    private void writePoint(int dimension, boolean hasZ) throws IOException {
+        if (Double.isNaN(Double.longBitsToDouble(readLong(position)))) {
+            position += 8 * dimension;
+            write("[]");
+        } else {
+            writeCoordinate(dimension, hasZ);
+        }
+    }
+
+    /**
+     * Write a coordinate, dropping its M value.
+     */
+    private void writeCoordinate(int dimension, boolean hasZ) throws IOException {
+        write('[');
+        writeNumber(Double.longBitsToDouble(readLong(position)));
+        write(',');
+        writeNumber(Double.longBitsToDouble(readLong(position + 8)));
+        if (hasZ) {
+            double z = Double.longBitsToDouble(readLong(position + 16));
+            if (!Double.isNaN(z)) {
+                write(',');
+                writeNumber(z);
+            }
+        }
+        position += 8 * dimension;
+        write(']');
+    }
+
+    /**
+     * Write a number as {@link Double#toString(double)} does, the small integral values being written digit by digit
+     * into the buffer.
+     */
+    private void writeNumber(double value) throws IOException {
+        if (value == Math.rint(value) && Math.abs(value) < 1e7) {
+            if (length + 12 > BUFFER_SIZE) {
+                flushBuffer();
+            }
+            int integer = (int) value;
+            if (integer < 0 || integer == 0 && 1 / value < 0) {
+                buffer[length++] = '-';
+                integer = -integer;
+            }
+            int start = length;
+            do {
+                buffer[length++] = (char) ('0' + integer % 10);
+                integer /= 10;
+            } while (integer > 0);
+            for (int i = start, j = length - 1; i < j; i++, j--) {
+                char c = buffer[i];
+                buffer[i] = buffer[j];
+                buffer[j] = c;
+            }
+            buffer[length++] = '.';
+            buffer[length++] = '0';
+        } else if (Double.isFinite(value)) {
+            write(Double.toString(value));
+        } else {
+            write("null");
+        }
+    }
+
+    /**
+     * Write a JSON string.
+     */
+    private void writeString(String value) throws IOException {
+        writeString(value.toCharArray());
+    }
+
+    /**
+     * Write a JSON string, escaping the quotes, the backslashes and the control chars.
+     */
+    private void writeString(char[] value) throws IOException {
+        write('"');
+        for (char c : value) {
+            if (c == '"' || c == '\\') {
+                write('\\');
+                write(c);
+            } else if (c < 0x20) {
+                write("\\u00");
+                write(HEX[c >> 4]);
+                write(HEX[c & 0xF]);
+            } else {
+                write(c);
+            }
+        }
+        write('"');
+    }
+
+    /**
+     * Write a char into the buffer.
+     */
+    private void write(char c) throws IOException {
+        if (length == BUFFER_SIZE) {
+            flushBuffer();
+        }
+        buffer[length++] = c;
+    }
+
+    /**
+     * Write a string into the buffer.
+     */
+    private void write(String value) throws IOException {
+        int offset = 0;
+        while (offset < value.length()) {
+            if (length == BUFFER_SIZE) {
+                flushBuffer();
+            }
+            int count = Math.min(value.length() - offset, BUFFER_SIZE - length);
+            value.getChars(offset, offset + count, buffer, length);
+            length += count;
+            offset += count;
+        }
+    }
+
+    /**
+     * Write the buffer content to the writer.
+     */
+    private void flushBuffer() throws IOException {
+        writer.write(buffer, 0, length);
+        length = 0;
+    }
+
+    /**
+     * Read a 32 bits integer of the WKB and move the position after it.
+     */
+    private int readInt() {
+        int value;
+        if (littleEndian) {
+            value = (wkb[position] & 0xFF) | (wkb[position + 1] & 0xFF) << 8 | (wkb[position + 2] & 0xFF) << 16 |
+                    (wkb[position + 3] & 0xFF) << 24;
+        } else {
+            value = (wkb[position] & 0xFF) << 24 | (wkb[position + 1] & 0xFF) << 16 |
+                    (wkb[position + 2] & 0xFF) << 8 | (wkb[position + 3] & 0xFF);
+        }
+        position += 4;
+        return value;
+    }
+
+    /**
+     * Read a 64 bits integer of the WKB at the given offset.
+     */
+    private long readLong(int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            int shift = littleEndian ? 8 * i : 8 * (7 - i);
+            value |= (wkb[offset + i] & 0xFFL) << shift;
+        }
+        return value;
+    }
+
+    /**
+     * Convert an hexadecimal string into bytes.
+     */
+    private static byte[] hexToBytes(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (Character.digit(hex.charAt(2 * i), 16) << 4 | Character.digit(hex.charAt(2 * i + 1), 16));
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc.resultset;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.orbisgis.commons.utilities.CheckUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read pipeline dedicated to the spatial {@link ResultSet}.
+ *
+ * A single reader thread pulls the raw rows from the cursor (the geometries are kept as WKB bytes or hexadecimal WKB
+ * strings) and groups them into batches. Each batch is then decoded into JTS {@link Geometry} by a pool of decoder
+ * threads. The decoded rows are delivered either in the cursor order or as soon as their batch is decoded.
+ *
+ * The number of batches in flight is bounded, so a slow consumer stops the reader instead of filling the memory.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public class GeometryDecodingPipeline implements Iterator<Map<String, Object>>, AutoCloseable {
+
+    /**
+     * Logger used for exception logging.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(GeometryDecodingPipeline.class);
+
+    /**
+     * Default number of rows per batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * Counter used to name the pipeline threads.
+     */
+    private static final AtomicInteger PIPELINE_COUNT = new AtomicInteger();
+
+    /**
+     * Marker of the end of the rows.
+     */
+    private static final Future<List<Map<String, Object>>> END = CompletableFuture.completedFuture(null);
+
+    /**
+     * Read {@link ResultSet}.
+     */
+    private final ResultSet resultSet;
+    /**
+     * {@link Statement} which has created the {@link ResultSet}, closed with the pipeline.
+     */
+    private final Statement statement;
+    /**
+     * Action executed once the cursor is closed, null for none.
+     */
+    private final Runnable closeAction;
+    /**
+     * Labels of the columns.
+     */
+    private final String[] columns;
+    /**
+     * True for each geometric column.
+     */
+    private final boolean[] geometric;
+    /**
+     * True if the geometries are read as hexadecimal WKB strings, false if they are read as WKB bytes.
+     */
+    private final boolean hexEncoded;
+    /**
+     * Number of rows per batch.
+     */
+    private final int batchSize;
+    /**
+     * {@link GeometryFactory} used by the decoders.
+     */
+    private final GeometryFactory factory = new GeometryFactory();
+    /**
+     * Decoder threads.
+     */
+    private final ExecutorService decoders;
+    /**
+     * Batches ready to be consumed, in delivery order.
+     */
+    private final BlockingQueue<Future<List<Map<String, Object>>>> ready = new LinkedBlockingQueue<>();
+    /**
+     * Permits limiting the count of batches in flight.
+     */
+    private final Semaphore inFlight;
+    /**
+     * Maximum count of batches in flight.
+     */
+    private final int maxInFlight;
+    /**
+     * Reader thread.
+     */
+    private final Thread reader;
+    /**
+     * Rows of the current batch.
+     */
+    private Iterator<Map<String, Object>> current = Collections.emptyIterator();
+    /**
+     * True once all the rows has been consumed or once the pipeline has been closed.
+     */
+    private volatile boolean finished = false;
+
+    /**
+     * Main constructor.
+     *
+     * @param resultSet    {@link ResultSet} to read. It is read by the reader thread only.
+     * @param statement    {@link Statement} which has created the {@link ResultSet}, closed with the pipeline. Can be
+     *                     null.
+     * @param hexEncoded   True if the geometries should be read as hexadecimal WKB strings (PostGIS), false if they
+     *                     should be read as WKB bytes (H2GIS).
+     * @param batchSize    Number of rows per batch.
+     * @param decoderCount Number of decoder threads.
+     * @param ordered      True to deliver the rows in the cursor order, false to deliver them as soon as they are
+     *                     decoded.
+     * @throws SQLException Exception thrown when the {@link ResultSet} metadata cannot be read.
+     */
+    public GeometryDecodingPipeline(ResultSet resultSet, Statement statement, boolean hexEncoded, int batchSize,
+                                    int decoderCount, boolean ordered) throws SQLException {
+        this(resultSet, statement, hexEncoded, batchSize, decoderCount, ordered, null);
+    }
+
+    /**
+     * Constructor executing the given action once the cursor is closed, like restoring the auto-commit of the
+     * connection.
+     *
+     * @param resultSet    {@link ResultSet} to read. It is read by the reader thread only.
+     * @param statement    {@link Statement} which has created the {@link ResultSet}, closed with the pipeline. Can be
+     *                     null.
+     * @param hexEncoded   True if the geometries should be read as hexadecimal WKB strings (PostGIS), false if they
+     *                     should be read as WKB bytes (H2GIS).
+     * @param batchSize    Number of rows per batch.
+     * @param decoderCount Number of decoder threads.
+     * @param ordered      True to deliver the rows in the cursor order, false to deliver them as soon as they are
+     *                     decoded.
+     * @param closeAction  Action executed once the cursor is closed. Can be null.
+     * @throws SQLException Exception thrown when the {@link ResultSet} metadata cannot be read.
+     */
+    public GeometryDecodingPipeline(ResultSet resultSet, Statement statement, boolean hexEncoded, int batchSize,
+                                    int decoderCount, boolean ordered, Runnable closeAction) throws SQLException {
+        CheckUtils.checkNotNull(resultSet, "The given ResultSet should not be null.");
+        this.resultSet = resultSet;
+        this.statement = statement;
+        this.closeAction = closeAction;
+        this.hexEncoded = hexEncoded;
+        this.batchSize = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+        int threads = decoderCount > 0 ? decoderCount : Runtime.getRuntime().availableProcessors();
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        this.columns = new String[columnCount];
+        this.geometric = new boolean[columnCount];
+        for (int i = 1; i <= columnCount; i++) {
+            columns[i - 1] = metaData.getColumnLabel(i);
+            geometric[i - 1] = metaData.getColumnTypeName(i).toLowerCase().startsWith("geometry");
+        }
+        int id = PIPELINE_COUNT.incrementAndGet();
+        AtomicInteger decoderId = new AtomicInteger();
+        this.decoders = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "geometry-decoder-" + id + "-" + decoderId.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.maxInFlight = threads * 2;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.reader = new Thread(() -> read(ordered), "geometry-reader-" + id);
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    /**
+     * Read the cursor and submit the batches to the decoders. Executed by the reader thread.
+     *
+     * @param ordered True if the batches are delivered in the cursor order.
+     */
+    private void read(boolean ordered) {
+        try {
+            List<Object[]> batch = new ArrayList<>(batchSize);
+            while (!finished && resultSet.next()) {
+                Object[] row = new Object[columns.length];
+                for (int i = 0; i < columns.length; i++) {
+                    if (!geometric[i]) {
+                        row[i] = resultSet.getObject(i + 1);
+                    } else if (hexEncoded) {
+                        row[i] = resultSet.getString(i + 1);
+                    } else {
+                        row[i] = resultSet.getBytes(i + 1);
+                    }
+                }
+                batch.add(row);
+                if (batch.size() >= batchSize) {
+                    submit(batch, ordered);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!finished && !batch.isEmpty()) {
+                submit(batch, ordered);
+            }
+            //Wait for all the batches to be consumed before ending, so the unordered end marker is the last one
+            if (!finished) {
+                inFlight.acquire(maxInFlight);
+            }
+            ready.add(END);
+        } catch (InterruptedException e) {
+            ready.add(END);
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            //Whatever happens, the consumer should receive a terminal marker to not wait forever
+            ready.add(CompletableFuture.failedFuture(e));
+        }
+    }
+
+    /**
+     * Submit a batch of raw rows to the decoders.
+     *
+     * @param batch   Raw rows to decode.
+     * @param ordered True if the batches are delivered in the cursor order.
+     */
+    private void submit(List<Object[]> batch, boolean ordered) throws InterruptedException {
+        inFlight.acquire();
+        if (finished) {
+            inFlight.release();
+            return;
+        }
+        if (ordered) {
+            ready.put(decoders.submit(() -> decode(batch)));
+        } else {
+            decoders.execute(new FutureTask<>(() -> decode(batch)) {
+                @Override
+                protected void done() {
+                    ready.add(this);
+                }
+            });
+        }
+    }
+
+    /**
+     * Decode a batch of raw rows. Executed by a decoder thread.
+     *
+     * @param batch Raw rows to decode.
+     * @return The decoded rows.
+     */
+    private List<Map<String, Object>> decode(List<Object[]> batch) throws ParseException {
+        WKBReader wkbReader = new WKBReader(factory);
+        List<Map<String, Object>> rows = new ArrayList<>(batch.size());
+        for (Object[] raw : batch) {
+            Map<String, Object> row = new LinkedHashMap<>(columns.length * 2);
+            for (int i = 0; i < columns.length; i++) {
+                Object value = raw[i];
+                if (geometric[i] && value != null) {
+                    if (value instanceof byte[]) {
+                        value = wkbReader.read((byte[]) value);
+                    } else if (value instanceof String) {
+                        value = wkbReader.read(WKBReader.hexToBytes((String) value));
+                    }
+                }
+                row.put(columns[i], value);
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (finished) {
+            return false;
+        }
+        while (!current.hasNext()) {
+            Future<List<Map<String, Object>>> future;
+            try {
+                future = ready.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                return false;
+            }
+            if (future == END) {
+                close();
+                return false;
+            }
+            try {
+                current = future.get().iterator();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                return false;
+            } catch (ExecutionException e) {
+                close();
+                throw new RuntimeException("Unable to read the geometries.\n" + e.getCause().getLocalizedMessage(),
+                        e.getCause());
+            } finally {
+                inFlight.release();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Map<String, Object> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Override
+    public void close() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        //Release the reader if it waits for a permit, then wait for it to leave the cursor before closing it
+        inFlight.release(maxInFlight);
+        if (Thread.currentThread() != reader) {
+            boolean interrupted = false;
+            while (reader.isAlive()) {
+                try {
+                    reader.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        decoders.shutdownNow();
+        try {
+            resultSet.close();
+            if (statement != null) {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Unable to close the pipeline cursor.", e);
+        }
+        if (closeAction != null) {
+            closeAction.run();
+        }
+    }
+}
@@ -37,9 +37,13 @@
 package org.orbisgis.data.jdbc.resultset;
 
 import org.orbisgis.data.api.dataset.IStreamResultSet;
+import org.orbisgis.data.api.dsl.ICancellationToken;
+import org.orbisgis.data.jdbc.CancellationToken;
 
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.Spliterator;
+import java.util.concurrent.CancellationException;
 import java.util.function.Consumer;
 
 /**
@@ -52,10 +56,26 @@ public class ResultSetSpliterator<T extends IStreamResultSet> implements Spliter
 
     private final long size;
     private final T rs;
+    /** Token checked between batches of rows, may be null */
+    private final ICancellationToken token;
+    /** Number of advances */
+    private long advances = 0;
 
     public ResultSetSpliterator(long size, T rs){
+        this(size, rs, null);
+    }
+
+    /**
+     * Create a {@link Spliterator} stopping when the given token is cancelled.
+     *
+     * @param size  Number of rows.
+     * @param rs    {@link ResultSet} to iterate.
+     * @param token Cancellation token, may be null.
+     */
+    public ResultSetSpliterator(long size, T rs, ICancellationToken token){
         this.size = size;
         this.rs = rs;
+        this.token = token;
         this.rs.first();
     }
 
@@ -64,6 +84,13 @@ public class ResultSetSpliterator<T extends IStreamResultSet> implements Spliter
         if(size == 0){
             return false;
         }
+        if(token != null && advances++ % CancellationToken.CHECK_INTERVAL == 0) {
+            try {
+                token.check();
+            } catch (SQLException e) {
+                throw new CancellationException(e.getMessage());
+            }
+        }
         consumer.accept(rs);
         return rs.next();
     }
@@ -0,0 +1,190 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc.spatial;
+
+import org.h2gis.utilities.GeometryMetaData;
+import org.orbisgis.data.api.dataset.IGeometryProfile;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Implementation of {@link IGeometryProfile} accumulating the headers of the WKB values of a geometry column. Only
+ * the headers are parsed, the geometries are never decoded.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public class GeometryProfile implements IGeometryProfile {
+
+    /** Name of the geometry column */
+    private final String columnName;
+    /** Geometry types of the values, without their Z and M suffixes */
+    private final Set<String> types = new LinkedHashSet<>();
+    /** SRID of the values */
+    private final Set<Integer> srids = new LinkedHashSet<>();
+    /** True if a value has Z coordinates */
+    private boolean hasZ = false;
+    /** True if a value has M coordinates */
+    private boolean hasM = false;
+    /** Number of read values */
+    private long sampleSize = 0;
+    /** Number of read null values */
+    private long nullCount = 0;
+    /** Confidence of the profile */
+    private Confidence confidence = Confidence.SAMPLED;
+
+    /**
+     * Create an empty profile, to be filled with the values of the column.
+     *
+     * @param columnName Name of the geometry column.
+     */
+    public GeometryProfile(String columnName) {
+        this.columnName = columnName;
+    }
+
+    /**
+     * Create the profile of a column from its declaration.
+     *
+     * @param columnName Name of the geometry column.
+     * @param metaData   {@link GeometryMetaData} of the column declaration.
+     * @return The declared profile.
+     */
+    public static GeometryProfile declared(String columnName, GeometryMetaData metaData) {
+        GeometryProfile profile = new GeometryProfile(columnName);
+        profile.add(metaData);
+        profile.sampleSize = 0;
+        profile.confidence = Confidence.DECLARED;
+        return profile;
+    }
+
+    /**
+     * Return true if the declaration of a column constrains both its geometry type and its SRID.
+     *
+     * @param metaData {@link GeometryMetaData} of the column declaration.
+     * @return True if the column declaration is enough to profile it.
+     */
+    public static boolean isConstrained(GeometryMetaData metaData) {
+        return metaData != null && metaData.getSRID() != 0 && metaData.getGeometryTypeCode() != 0;
+    }
+
+    /**
+     * Add a value of the column.
+     *
+     * @param wkb WKB or EWKB value, null for a null value.
+     */
+    public void add(byte[] wkb) {
+        if (wkb == null) {
+            sampleSize++;
+            nullCount++;
+        } else {
+            add(GeometryMetaData.getMetaData(wkb));
+        }
+    }
+
+    /**
+     * Add the metadata of a value of the column.
+     */
+    private void add(GeometryMetaData metaData) {
+        sampleSize++;
+        types.add(metaData.getSfs_geometryType() != null ? metaData.getSfs_geometryType() :
+                metaData.getGeometryType().replaceAll("Z?M?$", ""));
+        srids.add(metaData.getSRID());
+        hasZ |= metaData.hasZ();
+        hasM |= metaData.hasM();
+    }
+
+    /**
+     * Set the confidence of the profile.
+     *
+     * @param confidence {@link Confidence} of the profile.
+     */
+    public void setConfidence(Confidence confidence) {
+        this.confidence = confidence;
+    }
+
+    @Override
+    public String getColumnName() {
+        return columnName;
+    }
+
+    @Override
+    public String getGeometryType() {
+        String type = types.size() == 1 ? types.iterator().next() : "GEOMETRY";
+        return type + (hasZ ? "Z" : "") + (hasM ? "M" : "");
+    }
+
+    @Override
+    public int getSrid() {
+        return srids.size() == 1 ? srids.iterator().next() : 0;
+    }
+
+    @Override
+    public int getDimension() {
+        return 2 + (hasZ ? 1 : 0) + (hasM ? 1 : 0);
+    }
+
+    @Override
+    public boolean hasZ() {
+        return hasZ;
+    }
+
+    @Override
+    public boolean hasM() {
+        return hasM;
+    }
+
+    @Override
+    public long getSampleSize() {
+        return sampleSize;
+    }
+
+    @Override
+    public long getNullCount() {
+        return nullCount;
+    }
+
+    @Override
+    public Confidence getConfidence() {
+        return confidence;
+    }
+
+    @Override
+    public String toString() {
+        return columnName + ":" + getGeometryType() + ":" + getSrid() + " (" + confidence + ")";
+    }
+}
@@ -0,0 +1,407 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc.spatial;
+
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.util.GeometryFixer;
+import org.locationtech.jts.io.WKBWriter;
+import org.locationtech.jts.operation.valid.IsValidOp;
+import org.locationtech.jts.operation.valid.TopologyValidationError;
+import org.orbisgis.data.jdbc.JdbcDataSource;
+import org.orbisgis.data.jdbc.JdbcSpatialTable;
+import org.orbisgis.data.jdbc.resultset.GeometryDecodingPipeline;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Utility class checking the validity of the geometries of a table by batches, and repairing the invalid ones
+ * either in memory with the JTS {@link GeometryFixer} or by the database with {@code ST_MakeValid}.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public final class GeometryValidation {
+
+    private GeometryValidation() {
+    }
+
+    /**
+     * Return true if the given database can repair the geometries with {@code ST_MakeValid}.
+     *
+     * @param dbType Type of the database.
+     * @return True if the database can repair the geometries, false otherwise.
+     */
+    public static boolean isSupported(DBTypes dbType) {
+        return dbType == DBTypes.H2GIS || dbType == DBTypes.POSTGIS;
+    }
+
+    /**
+     * Return the validation error of the given {@link Geometry}, or null if it is valid. The points are checked on
+     * their envelope and the line strings on their coordinates and their envelope, which is enough to find all their
+     * errors, while the other geometries are checked with {@link IsValidOp}.
+     *
+     * @param geometry {@link Geometry} to check.
+     * @return The validation error, null if the {@link Geometry} is valid.
+     */
+    public static String getValidationError(Geometry geometry) {
+        if (geometry == null || geometry.isEmpty()) {
+            return null;
+        }
+        if (geometry instanceof Point) {
+            Envelope envelope = geometry.getEnvelopeInternal();
+            if (Double.isFinite(envelope.getMinX()) && Double.isFinite(envelope.getMinY())) {
+                return null;
+            }
+            return new TopologyValidationError(TopologyValidationError.INVALID_COORDINATE,
+                    ((Point) geometry).getCoordinate()).toString();
+        }
+        if (geometry instanceof LineString && !(geometry instanceof LinearRing)) {
+            CoordinateSequence sequence = ((LineString) geometry).getCoordinateSequence();
+            for (int i = 0; i < sequence.size(); i++) {
+                if (!Double.isFinite(sequence.getX(i)) || !Double.isFinite(sequence.getY(i))) {
+                    return new TopologyValidationError(TopologyValidationError.INVALID_COORDINATE,
+                            sequence.getCoordinate(i)).toString();
+                }
+            }
+            //With finite coordinates, a line string has two distinct points if its envelope is not a point
+            Envelope envelope = geometry.getEnvelopeInternal();
+            if (envelope.getWidth() > 0 || envelope.getHeight() > 0) {
+                return null;
+            }
+            return new TopologyValidationError(TopologyValidationError.TOO_FEW_POINTS,
+                    sequence.getCoordinate(0)).toString();
+        }
+        TopologyValidationError error = new IsValidOp(geometry).getValidationError();
+        return error == null ? null : error.toString();
+    }
+
+    /**
+     * Repair in memory the given {@link Geometry} with the JTS {@link GeometryFixer}, keeping its SRID.
+     *
+     * @param geometry {@link Geometry} to repair.
+     * @return The repaired {@link Geometry}.
+     */
+    public static Geometry fix(Geometry geometry) {
+        Geometry fixed = GeometryFixer.fix(geometry);
+        fixed.setSRID(geometry.getSRID());
+        return fixed;
+    }
+
+    /**
+     * Check the validity of the geometries of the given column of a table and optionally repair the invalid ones.
+     *
+     * The rows are read through a {@link GeometryDecodingPipeline} with their row identifier, and checked in
+     * parallel by batches. The invalid geometries are repaired once the reading is done, so that the connection is
+     * not used by the updates while the cursor is open. When requested, the invalid geometries of a batch are read
+     * again if they are repaired in memory, then written in one transaction, or under a savepoint if the connection
+     * is already in a transaction which is left to the caller. If the batch fails, its rows are written again one by
+     * one, so that only the rows which cannot be written are reported as failed.
+     *
+     * @param table          Table to check.
+     * @param reader         {@link TableReader} of the table.
+     * @param geometryColumn Name of the geometry column.
+     * @param repair         True to repair the invalid geometries, false to only check them.
+     * @param clientSide     True to repair the geometries in memory, false to let the database repair them.
+     * @param batchSize      Number of rows checked and repaired by batch.
+     * @return The {@link ValidationReport} of the geometries.
+     */
+    public static ValidationReport validate(JdbcSpatialTable table, TableReader reader, String geometryColumn,
+                                            boolean repair, boolean clientSide, int batchSize) throws Exception {
+        TableLocation location = table.getTableLocation();
+        if (repair && location == null) {
+            throw new IllegalArgumentException("Only the geometries of a table can be repaired.");
+        }
+        Connection con = table.getJdbcDataSource().getConnection();
+        if (con == null) {
+            throw new SQLException("Cannot get the connection to the database");
+        }
+        DBTypes dbType = table.getDbType();
+        boolean postgres = dbType == DBTypes.POSTGIS || dbType == DBTypes.POSTGRESQL;
+        int size = batchSize > 0 ? batchSize : GeometryDecodingPipeline.DEFAULT_BATCH_SIZE;
+        String column = TableLocation.quoteIdentifier(geometryColumn, dbType);
+        String rowId = postgres ? "ctid" : "_ROWID_";
+        //The query tables don't have a row identifier, their rows are identified by their position
+        String query = location == null ? reader.getSelectQuery(column) :
+                reader.getSelectQuery((postgres ? "ctid::text" : rowId) + ", " + column) +
+                        " WHERE " + column + " IS NOT NULL";
+        ValidationReport report = new ValidationReport(geometryColumn);
+        List<Object> invalidIds = new ArrayList<>();
+        try (Stream<Map<String, Object>> rows = reader.read(query, table.getParams(), size,
+                Runtime.getRuntime().availableProcessors(), location == null)) {
+            List<Object> ids = new ArrayList<>(size);
+            List<Geometry> geometries = new ArrayList<>(size);
+            long position = 0;
+            for (Iterator<Map<String, Object>> it = rows.iterator(); it.hasNext(); ) {
+                Iterator<Object> values = it.next().values().iterator();
+                Object id = location == null ? ++position : values.next();
+                Geometry geometry = (Geometry) values.next();
+                if (geometry != null) {
+                    ids.add(id);
+                    geometries.add(geometry);
+                }
+                if (geometries.size() == size) {
+                    check(ids, geometries, report, repair ? invalidIds : null);
+                    ids.clear();
+                    geometries.clear();
+                }
+            }
+            if (!geometries.isEmpty()) {
+                check(ids, geometries, report, repair ? invalidIds : null);
+            }
+        }
+        if (!repair || invalidIds.isEmpty()) {
+            return report;
+        }
+        String update = "UPDATE " + location + " SET " + column + " = " +
+                (clientSide ? "ST_GeomFromWKB(?, ?)" : "ST_MakeValid(" + column + ")") +
+                " WHERE " + rowId + " = ?" + (postgres ? "::tid" : "");
+        boolean autoCommit = con.getAutoCommit();
+        try (PreparedStatement ps = con.prepareStatement(update)) {
+            if (autoCommit) {
+                con.setAutoCommit(false);
+            }
+            for (int start = 0; start < invalidIds.size(); start += size) {
+                List<Object> ids = invalidIds.subList(start, Math.min(start + size, invalidIds.size()));
+                if (clientSide) {
+                    repair(reader, rowId, postgres, column, ids, con, ps, autoCommit, report);
+                } else {
+                    write(con, ps, ids, Collections.nCopies(ids.size(), null), false,
+                            autoCommit, report);
+                }
+            }
+        } finally {
+            if (autoCommit) {
+                con.setAutoCommit(true);
+            }
+        }
+        if (report.getRepairedCount() > 0 && table.getJdbcDataSource() instanceof JdbcDataSource) {
+            ((JdbcDataSource) table.getJdbcDataSource()).invalidateCaches(location.toString());
+        }
+        return report;
+    }
+
+    /**
+     * Check in parallel a batch of geometries.
+     *
+     * @param ids        Identifiers of the rows.
+     * @param geometries Geometries of the rows.
+     * @param report     {@link ValidationReport} to fill.
+     * @param invalidIds List of the identifiers of the invalid rows to fill, null if they are not repaired.
+     */
+    private static void check(List<Object> ids, List<Geometry> geometries, ValidationReport report,
+                              List<Object> invalidIds) {
+        int count = geometries.size();
+        String[] errors = new String[count];
+        IntStream.range(0, count).parallel().forEach(i -> errors[i] = getValidationError(geometries.get(i)));
+        report.addChecked(count);
+        for (int i = 0; i < count; i++) {
+            if (errors[i] != null) {
+                report.addInvalid(ids.get(i), errors[i]);
+                if (invalidIds != null) {
+                    invalidIds.add(ids.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Read again a batch of invalid geometries, repair them in parallel in memory and write them.
+     *
+     * @param reader   {@link TableReader} of the table.
+     * @param rowId    Row identifier column.
+     * @param postgres True if the database is PostgreSQL.
+     * @param column   Quoted geometry column.
+     * @param ids      Identifiers of the invalid rows.
+     * @param con      Connection to the database.
+     * @param ps       Statement updating a geometry.
+     * @param commit   True to commit the repaired geometries, false to leave the transaction to the caller.
+     * @param report   {@link ValidationReport} to fill.
+     */
+    private static void repair(TableReader reader, String rowId, boolean postgres,
+                               String column, List<Object> ids, Connection con, PreparedStatement ps,
+                               boolean commit, ValidationReport report) throws Exception {
+        String query = reader.getSelectQuery((postgres ? "ctid::text" : rowId) + ", " + column) + " WHERE " +
+                rowId + " IN (" + String.join(", ", Collections.nCopies(ids.size(), postgres ? "?::tid" : "?")) +
+                ")";
+        Map<Object, Geometry> geometries = new HashMap<>();
+        try (Stream<Map<String, Object>> rows = reader.read(query, ids, ids.size(), 1, false)) {
+            rows.forEach(row -> {
+                Iterator<Object> values = row.values().iterator();
+                geometries.put(values.next(), (Geometry) values.next());
+            });
+        }
+        Geometry[] fixed = new Geometry[ids.size()];
+        String[] failures = new String[ids.size()];
+        IntStream.range(0, ids.size()).parallel().forEach(i -> {
+            Geometry geometry = geometries.get(ids.get(i));
+            if (geometry == null) {
+                failures[i] = "The row cannot be found.";
+                return;
+            }
+            try {
+                fixed[i] = fix(geometry);
+            } catch (RuntimeException e) {
+                failures[i] = e.getMessage();
+            }
+        });
+        List<Object> repairedIds = new ArrayList<>();
+        List<Geometry> repaired = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (failures[i] != null) {
+                report.addFailed(ids.get(i), failures[i]);
+            } else {
+                repairedIds.add(ids.get(i));
+                repaired.add(fixed[i]);
+            }
+        }
+        if (!repairedIds.isEmpty()) {
+            write(con, ps, repairedIds, repaired, true, commit, report);
+        }
+    }
+
+    /**
+     * Write a batch of repaired geometries at once, or one by one if the batch fails.
+     *
+     * @param con        Connection to the database.
+     * @param ps         Statement updating a geometry.
+     * @param ids        Identifiers of the rows.
+     * @param geometries Repaired geometries, unused if the database repairs them.
+     * @param clientSide True if the geometries have been repaired in memory.
+     * @param commit     True to commit the repaired geometries, false to leave the transaction to the caller.
+     * @param report     {@link ValidationReport} to fill.
+     */
+    private static void write(Connection con, PreparedStatement ps, List<Object> ids, List<Geometry> geometries,
+                              boolean clientSide, boolean commit, ValidationReport report) throws SQLException {
+        WKBWriter writer = new WKBWriter(3);
+        Savepoint savepoint = commit ? null : con.setSavepoint();
+        try {
+            for (int i = 0; i < ids.size(); i++) {
+                bind(ps, writer, ids.get(i), geometries.get(i), clientSide);
+                ps.addBatch();
+            }
+            int[] counts = ps.executeBatch();
+            end(con, savepoint, true);
+            for (int i = 0; i < ids.size(); i++) {
+                if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                    report.addRepaired();
+                } else {
+                    report.addFailed(ids.get(i), "The row cannot be found.");
+                }
+            }
+        } catch (SQLException e) {
+            end(con, savepoint, false);
+            ps.clearBatch();
+            //Write the rows one by one to find the ones which cannot be repaired
+            for (int i = 0; i < ids.size(); i++) {
+                savepoint = commit ? null : con.setSavepoint();
+                try {
+                    bind(ps, writer, ids.get(i), geometries.get(i), clientSide);
+                    int updated = ps.executeUpdate();
+                    end(con, savepoint, true);
+                    if (updated > 0) {
+                        report.addRepaired();
+                    } else {
+                        report.addFailed(ids.get(i), "The row cannot be found.");
+                    }
+                } catch (SQLException ex) {
+                    end(con, savepoint, false);
+                    report.addFailed(ids.get(i), ex.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * End the writing of repaired geometries, either by committing or rolling back the transaction, or by releasing
+     * or rolling back to the given savepoint.
+     *
+     * @param con       Connection to the database.
+     * @param savepoint {@link Savepoint} set before the writing, null if the transaction is committed.
+     * @param success   True if the geometries have been written, false otherwise.
+     */
+    private static void end(Connection con, Savepoint savepoint, boolean success) throws SQLException {
+        if (savepoint == null) {
+            if (success) {
+                con.commit();
+            } else {
+                con.rollback();
+            }
+        } else if (success) {
+            con.releaseSavepoint(savepoint);
+        } else {
+            con.rollback(savepoint);
+        }
+    }
+
+    /**
+     * Set the parameters of the statement updating a geometry.
+     *
+     * @param ps         Statement updating a geometry.
+     * @param writer     {@link WKBWriter} encoding the repaired geometry.
+     * @param id         Identifier of the row.
+     * @param geometry   Repaired geometry, unused if the database repairs it.
+     * @param clientSide True if the geometry has been repaired in memory.
+     */
+    private static void bind(PreparedStatement ps, WKBWriter writer, Object id, Geometry geometry,
+                             boolean clientSide) throws SQLException {
+        int index = 1;
+        if (clientSide) {
+            ps.setBytes(index++, writer.write(geometry));
+            ps.setInt(index++, geometry.getSRID());
+        }
+        ps.setObject(index, id);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc.spatial;
+
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.precision.GeometryPrecisionReducer;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
+
+/**
+ * Simplification of the geometries for a level of detail, given as a tolerance in the units of the coordinate
+ * reference system (e.g. the size of a pixel for a rendering).
+ *
+ * A geometry is simplified preserving its topology with the tolerance, then its coordinates are snapped to a grid
+ * of half the tolerance. The simplification is done by the database when it provides the spatial functions,
+ * otherwise by JTS.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public final class LevelOfDetail {
+
+    private LevelOfDetail() {
+    }
+
+    /**
+     * Return the size of the grid the coordinates are snapped on for the given tolerance.
+     *
+     * @param tolerance Simplification tolerance.
+     * @return The size of the grid.
+     */
+    public static double getGridSize(double tolerance) {
+        return tolerance / 2;
+    }
+
+    /**
+     * Return the SQL expression simplifying the given geometry column, or null if the database doesn't provide the
+     * needed functions.
+     *
+     * @param dbType    Type of the database.
+     * @param column    Geometry column or expression.
+     * @param tolerance Simplification tolerance.
+     * @return The SQL expression simplifying the geometries, null if not supported by the database.
+     */
+    public static String getSqlExpression(DBTypes dbType, String column, double tolerance) {
+        if (tolerance <= 0) {
+            return column;
+        }
+        String simplify = "ST_SimplifyPreserveTopology(" + column + ", " + tolerance + ")";
+        if (dbType == DBTypes.POSTGIS) {
+            return "ST_SnapToGrid(" + simplify + ", " + getGridSize(tolerance) + ")";
+        } else if (dbType == DBTypes.H2GIS) {
+            //H2GIS reduces the precision to a number of decimals, so the geometry is scaled to a unit grid, rounded
+            //then scaled back
+            double grid = getGridSize(tolerance);
+            double scale = 1 / grid;
+            return "ST_Scale(ST_PrecisionReducer(ST_Scale(" + simplify + ", " + scale + ", " + scale + "), 0), " +
+                    grid + ", " + grid + ")";
+        }
+        return null;
+    }
+
+    /**
+     * Simplify in memory the given {@link Geometry}.
+     *
+     * @param geometry  {@link Geometry} to simplify.
+     * @param tolerance Simplification tolerance.
+     * @return The simplified {@link Geometry}.
+     */
+    public static Geometry simplify(Geometry geometry, double tolerance) {
+        if (geometry == null || geometry.isEmpty() || tolerance <= 0) {
+            return geometry;
+        }
+        Geometry simplified = TopologyPreservingSimplifier.simplify(geometry, tolerance);
+        try {
+            simplified = GeometryPrecisionReducer.reduce(simplified, new PrecisionModel(1 / getGridSize(tolerance)));
+        } catch (IllegalArgumentException e) {
+            //Keep the simplified geometry if it cannot be snapped
+        }
+        simplified.setSRID(geometry.getSRID());
+        return simplified;
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc.spatial;
+
+import org.h2gis.utilities.JDBCUtilities;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKBWriter;
+import org.orbisgis.data.api.dataset.ISpatialIndex;
+import org.orbisgis.data.jdbc.JdbcSpatialTable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Utility class searching the k nearest rows of a table around a list of geometries, sorted by distance.
+ *
+ * The search is pushed down to the database when it can use a spatial index : PostGIS orders the rows with the
+ * {@code <->} KNN operator, one query searching the neighbours of a batch of geometries, while H2GIS searches, by
+ * batches of geometries too, the rows intersecting a window growing around each geometry. Otherwise the rows are searched in the in memory
+ * {@link ISpatialIndex} of the table.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public final class NearestNeighbours {
+
+    /** Number of geometries searched by a query */
+    public static final int BATCH_SIZE = 1000;
+    /** Alias of the index of the searched geometry in the PostGIS queries */
+    private static final String INDEX_COLUMN = "__knn_index";
+    /** Alias of the distance to the searched geometry in the PostGIS queries */
+    private static final String DISTANCE_COLUMN = "__knn_distance";
+    /** Alias of the rank of a row around the searched geometry in the H2GIS queries */
+    private static final String RANK_COLUMN = "__knn_rank";
+
+    private NearestNeighbours() {
+    }
+
+    /**
+     * Return the k nearest rows of the given table around each given {@link Geometry}, sorted by distance to the
+     * first geometry column.
+     *
+     * @param table      Table to search.
+     * @param reader     {@link TableReader} of the table.
+     * @param geometries Geometries to search around, with the SRID of the table or 0.
+     * @param k          Maximum number of rows returned for a geometry.
+     * @param clientSide True to search the rows in memory, false to let the database search them when possible.
+     * @return For each geometry, in the same order, its k nearest rows sorted by distance. The list is empty for a
+     * null or empty geometry.
+     */
+    public static List<List<Map<String, Object>>> nearest(JdbcSpatialTable table, TableReader reader,
+                                                          List<Geometry> geometries, int k, boolean clientSide) throws Exception {
+        if (k <= 0) {
+            throw new IllegalArgumentException("The number of neighbours should be strictly positive.");
+        }
+        List<List<Map<String, Object>>> result = new ArrayList<>(geometries.size());
+        for (int i = 0; i < geometries.size(); i++) {
+            result.add(new ArrayList<>());
+        }
+        if (geometries.stream().allMatch(NearestNeighbours::isEmpty)) {
+            return result;
+        }
+        String geometryColumn = table.getGeometricColumns().get(0);
+        DBTypes dbType = table.getDbType();
+        TableLocation location = table.getTableLocation();
+        Connection con = table.getJdbcDataSource().getConnection();
+        if (con == null) {
+            throw new SQLException("Cannot get the connection to the database");
+        }
+        int srid = location == null ? 0 : table.getSrid();
+        if (!clientSide && dbType == DBTypes.POSTGIS) {
+            searchKnn(table, reader, geometryColumn, geometries, srid, k, result);
+        } else if (!clientSide && dbType == DBTypes.H2GIS && location != null &&
+                JDBCUtilities.isSpatialIndexed(con, location, geometryColumn)) {
+            searchWindow(table, con, geometryColumn, geometries, srid, k, result);
+        } else {
+            searchIndex(table, geometryColumn, geometries, k, result);
+        }
+        return result;
+    }
+
+    /**
+     * Search the neighbours with the PostGIS {@code <->} KNN operator. The geometries are sent by batches as an array
+     * of hexadecimal EWKB, each of them being searched by a lateral sub query.
+     */
+    private static void searchKnn(JdbcSpatialTable table, TableReader reader, String geometryColumn,
+                                  List<Geometry> geometries, int srid, int k, List<List<Map<String, Object>>> result) throws Exception {
+        String column = TableLocation.quoteIdentifier(geometryColumn, DBTypes.POSTGIS);
+        String distance = column + " <-> q.__knn_geometry";
+        String query = "SELECT q." + INDEX_COLUMN + ", t.* FROM (SELECT ST_GeomFromEWKB(decode(h, 'hex')) AS " +
+                "__knn_geometry, i AS " + INDEX_COLUMN + " FROM unnest(CAST(? AS text[])) WITH ORDINALITY AS h(h, i)) " +
+                "AS q CROSS JOIN LATERAL (" + reader.getSelectQuery("*, " + distance + " AS " + DISTANCE_COLUMN) +
+                " ORDER BY " + distance + " LIMIT " + k + ") AS t ORDER BY q." + INDEX_COLUMN + ", t." + DISTANCE_COLUMN;
+        Connection con = table.getJdbcDataSource().getConnection();
+        for (int start = 0; start < geometries.size(); start += BATCH_SIZE) {
+            int end = Math.min(geometries.size(), start + BATCH_SIZE);
+            List<Integer> indexes = new ArrayList<>();
+            List<String> hexes = new ArrayList<>();
+            for (int i = start; i < end; i++) {
+                Geometry geometry = geometries.get(i);
+                if (!isEmpty(geometry)) {
+                    indexes.add(i);
+                    hexes.add(WKBWriter.toHex(toWkb(geometry, srid, true)));
+                }
+            }
+            if (hexes.isEmpty()) {
+                continue;
+            }
+            List<Object> params = new ArrayList<>();
+            params.add(con.createArrayOf("text", hexes.toArray()));
+            if (table.getParams() != null) {
+                params.addAll(table.getParams());
+            }
+            try (Stream<Map<String, Object>> rows = reader.read(query, params, BATCH_SIZE,
+                    Runtime.getRuntime().availableProcessors(), true)) {
+                rows.forEach(row -> {
+                    int index = ((Number) row.remove(INDEX_COLUMN)).intValue() - 1;
+                    row.remove(DISTANCE_COLUMN);
+                    result.get(indexes.get(index)).add(row);
+                });
+            }
+        }
+    }
+
+    /**
+     * Search the neighbours of the geometries with the H2GIS spatial index : the rows intersecting a window around
+     * each geometry and not farther than its margin are read, the margin being doubled until k rows are found or the
+     * window covers the whole table. The geometries are sent by batches as a table of values joined to the searched
+     * table, the k nearest rows of each geometry being ranked by a window function, so that each round of a batch
+     * runs one query.
+     */
+    private static void searchWindow(JdbcSpatialTable table, Connection con, String geometryColumn,
+                                     List<Geometry> geometries, int srid, int k,
+                                     List<List<Map<String, Object>>> result) throws Exception {
+        Geometry extentGeometry = table.getExtent(geometryColumn);
+        if (extentGeometry == null || extentGeometry.isEmpty()) {
+            return;
+        }
+        Envelope extent = extentGeometry.getEnvelopeInternal();
+        //Initial margin expected to contain k rows if they are uniformly spread over the extent
+        long count = Math.max(1, table.getRowCount());
+        double initialMargin = extent.getArea() > 0 ? Math.sqrt(extent.getArea() * k / (Math.PI * count)) :
+                Math.max(extent.getWidth(), extent.getHeight()) * k / count;
+        if (!(initialMargin > 0)) {
+            initialMargin = 1;
+        }
+        String column = "t." + TableLocation.quoteIdentifier(geometryColumn, DBTypes.H2GIS);
+        String distance = "ST_Distance(" + column + ", q.__knn_geometry)";
+        String index = INDEX_COLUMN.toUpperCase();
+        String rank = RANK_COLUMN.toUpperCase();
+        for (int start = 0; start < geometries.size(); start += BATCH_SIZE) {
+            int end = Math.min(geometries.size(), start + BATCH_SIZE);
+            List<Integer> pending = new ArrayList<>();
+            double[] margins = new double[geometries.size()];
+            for (int i = start; i < end; i++) {
+                if (!isEmpty(geometries.get(i))) {
+                    pending.add(i);
+                    margins[i] = initialMargin;
+                }
+            }
+            while (!pending.isEmpty()) {
+                String values = String.join(", ", Collections.nCopies(pending.size(), "(CAST(? AS INTEGER), " +
+                        "ST_GeomFromWKB(?, ?), ST_GeomFromWKB(?, ?), CAST(? AS DOUBLE PRECISION))"));
+                String query = "SELECT * FROM (SELECT q." + index + ", t.*, ROW_NUMBER() OVER (PARTITION BY q." +
+                        index + " ORDER BY " + distance + ") AS " + rank + " FROM (VALUES " + values + ") AS q(" +
+                        index + ", __knn_geometry, __knn_window, __knn_margin) INNER JOIN " +
+                        table.getTableLocation() + " AS t ON " + column + " && q.__knn_window AND " + distance +
+                        " <= q.__knn_margin) AS r WHERE " + rank + " <= " + k + " ORDER BY " + index + ", " + rank;
+                //Margin beyond which the window of a geometry contains all the rows of the table
+                Map<Integer, Double> maxMargins = new HashMap<>();
+                Map<Integer, List<Map<String, Object>>> found = new HashMap<>();
+                try (PreparedStatement ps = con.prepareStatement(query)) {
+                    int parameter = 1;
+                    for (int i : pending) {
+                        Geometry geometry = geometries.get(i);
+                        int geometrySrid = geometry.getSRID() != 0 ? geometry.getSRID() : srid;
+                        Envelope envelope = geometry.getEnvelopeInternal();
+                        double dx = Math.max(extent.getMaxX() - envelope.getMinX(),
+                                envelope.getMaxX() - extent.getMinX());
+                        double dy = Math.max(extent.getMaxY() - envelope.getMinY(),
+                                envelope.getMaxY() - extent.getMinY());
+                        double maxMargin = Math.hypot(Math.max(0, dx), Math.max(0, dy));
+                        maxMargins.put(i, maxMargin);
+                        double margin = Math.min(margins[i], maxMargin);
+                        Envelope window = new Envelope(envelope);
+                        window.expandBy(margin);
+                        ps.setInt(parameter++, i);
+                        ps.setBytes(parameter++, toWkb(geometry, srid, false));
+                        ps.setInt(parameter++, geometrySrid);
+                        ps.setBytes(parameter++, new WKBWriter().write(geometry.getFactory().toGeometry(window)));
+                        ps.setInt(parameter++, geometrySrid);
+                        ps.setDouble(parameter++, margin);
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        for (Map<String, Object> row : readRows(rs)) {
+                            int i = ((Number) row.remove(index)).intValue();
+                            row.remove(rank);
+                            found.computeIfAbsent(i, key -> new ArrayList<>()).add(row);
+                        }
+                    }
+                }
+                List<Integer> next = new ArrayList<>();
+                for (int i : pending) {
+                    List<Map<String, Object>> rows = found.getOrDefault(i, new ArrayList<>());
+                    if (rows.size() == k || margins[i] >= maxMargins.get(i)) {
+                        result.set(i, rows);
+                    } else {
+                        margins[i] *= 2;
+                        next.add(i);
+                    }
+                }
+                pending = next;
+            }
+        }
+    }
+
+    /**
+     * Search the neighbours in the in memory {@link ISpatialIndex} of the table, the geometries being searched in
+     * parallel.
+     */
+    private static void searchIndex(JdbcSpatialTable table, String geometryColumn, List<Geometry> geometries, int k,
+                                    List<List<Map<String, Object>>> result) throws Exception {
+        List<String> columns = new ArrayList<>(table.getColumnNames());
+        String[] attributes = columns.stream().filter(name -> !name.equals(geometryColumn)).toArray(String[]::new);
+        ISpatialIndex index = table.toSpatialIndex(attributes);
+        IntStream.range(0, geometries.size()).parallel()
+                .filter(i -> !isEmpty(geometries.get(i)))
+                .forEach(i -> result.set(i, index.nearest(geometries.get(i), k).stream()
+                        .map(row -> {
+                            //The indexed rows are copied in the order of the table columns
+                            Map<String, Object> copy = new LinkedHashMap<>();
+                            columns.forEach(name -> copy.put(name, row.get(name)));
+                            return copy;
+                        })
+                        .collect(Collectors.toList())));
+    }
+
+    /**
+     * Read all the rows of a {@link ResultSet}.
+     */
+    private static List<Map<String, Object>> readRows(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        List<Map<String, Object>> rows = new ArrayList<>();
+        while (rs.next()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                row.put(metaData.getColumnLabel(i), rs.getObject(i));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Return true if the given geometry is null or empty, no row being near of it.
+     */
+    private static boolean isEmpty(Geometry geometry) {
+        return geometry == null || geometry.isEmpty();
+    }
+
+    /**
+     * Encode a geometry into 2D WKB, with the given SRID if it doesn't have any.
+     */
+    private static byte[] toWkb(Geometry geometry, int srid, boolean includeSrid) {
+        Geometry encoded = geometry;
+        if (includeSrid && geometry.getSRID() == 0 && srid != 0) {
+            encoded = geometry.copy();
+            encoded.setSRID(srid);
+        }
+        return new WKBWriter(2, includeSrid).write(encoded);
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc.spatial;
+
+import org.cts.CRSFactory;
+import org.cts.crs.CoordinateReferenceSystem;
+import org.cts.crs.GeodeticCRS;
+import org.cts.op.CoordinateOperation;
+import org.cts.op.CoordinateOperationFactory;
+import org.cts.registry.EPSGRegistry;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Geometry;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * In memory reprojection of JTS geometries using the CTS library, without any call to the database.
+ *
+ * The coordinate operations are built once per couple of source and target SRID and shared by all the threads.
+ * The geometries are reprojected in place : their coordinate sequences are updated and their SRID is set to the
+ * target one.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public final class Reprojection {
+
+    /** Default number of rows reprojected in parallel by {@link #reproject(Stream, int)} */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    /** Factory used to build the coordinate reference systems from the EPSG codes */
+    private static final CRSFactory CRS_FACTORY = new CRSFactory();
+    /** Cache of the coordinate operations, the key being the source and the target SRID */
+    private static final Map<Long, CoordinateOperation> OPERATIONS = new ConcurrentHashMap<>();
+
+    static {
+        CRS_FACTORY.getRegistryManager().addRegistry(new EPSGRegistry());
+    }
+
+    private Reprojection() {
+    }
+
+    /**
+     * Return the most precise {@link CoordinateOperation} transforming coordinates from the source SRID to the
+     * target one. The operation is built once and then read from a cache.
+     *
+     * @param sourceSrid EPSG code of the source coordinate reference system.
+     * @param targetSrid EPSG code of the target coordinate reference system.
+     * @return The {@link CoordinateOperation} from the source to the target SRID.
+     */
+    public static CoordinateOperation getCoordinateOperation(int sourceSrid, int targetSrid) {
+        long key = ((long) sourceSrid << 32) | (targetSrid & 0xFFFFFFFFL);
+        CoordinateOperation operation = OPERATIONS.get(key);
+        if (operation == null) {
+            operation = OPERATIONS.computeIfAbsent(key, k -> createCoordinateOperation(sourceSrid, targetSrid));
+        }
+        return operation;
+    }
+
+    /**
+     * Build the most precise {@link CoordinateOperation} between two SRID.
+     */
+    private static CoordinateOperation createCoordinateOperation(int sourceSrid, int targetSrid) {
+        if (sourceSrid <= 0 || targetSrid <= 0) {
+            throw new IllegalArgumentException("Cannot reproject from the SRID " + sourceSrid + " to the SRID " +
+                    targetSrid);
+        }
+        try {
+            CoordinateReferenceSystem source;
+            CoordinateReferenceSystem target;
+            //The CRS factory and its registry are not thread safe
+            synchronized (CRS_FACTORY) {
+                source = CRS_FACTORY.getCRS("EPSG:" + sourceSrid);
+                target = CRS_FACTORY.getCRS("EPSG:" + targetSrid);
+            }
+            Set<CoordinateOperation> operations = CoordinateOperationFactory.createCoordinateOperations(
+                    (GeodeticCRS) source, (GeodeticCRS) target);
+            if (operations.isEmpty()) {
+                throw new IllegalArgumentException("Cannot find any coordinate operation from the SRID " +
+                        sourceSrid + " to the SRID " + targetSrid);
+            }
+            return CoordinateOperationFactory.getMostPrecise(operations);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Cannot create the coordinate operation from the SRID " +
+                    sourceSrid + " to the SRID " + targetSrid, e);
+        }
+    }
+
+    /**
+     * Reproject in place the given {@link Geometry} to the target SRID.
+     *
+     * @param geometry   {@link Geometry} to reproject. Its SRID is used as source SRID.
+     * @param targetSrid EPSG code of the target coordinate reference system.
+     * @return The given {@link Geometry}, reprojected.
+     */
+    public static Geometry reproject(Geometry geometry, int targetSrid) {
+        if (geometry == null || geometry.getSRID() == targetSrid) {
+            return geometry;
+        }
+        CoordinateOperation operation = getCoordinateOperation(geometry.getSRID(), targetSrid);
+        if (!geometry.isEmpty() && !operation.isIdentity()) {
+            geometry.apply(new TransformFilter(operation));
+        }
+        geometry.setSRID(targetSrid);
+        return geometry;
+    }
+
+    /**
+     * Reproject in place all the geometries of the rows of the given {@link Stream}, by batches of
+     * {@link #DEFAULT_BATCH_SIZE} rows.
+     *
+     * @param rows       {@link Stream} of rows containing the column labels and the values.
+     * @param targetSrid EPSG code of the target coordinate reference system.
+     * @return A {@link Stream} of the rows with reprojected geometries.
+     */
+    public static Stream<Map<String, Object>> reproject(Stream<Map<String, Object>> rows, int targetSrid) {
+        return reproject(rows, targetSrid, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Reproject in place all the geometries of the rows of the given {@link Stream}. The rows are gathered into
+     * batches whose geometries are reprojected in parallel, keeping the order of the rows.
+     *
+     * @param rows       {@link Stream} of rows containing the column labels and the values.
+     * @param targetSrid EPSG code of the target coordinate reference system.
+     * @param batchSize  Number of rows reprojected in parallel.
+     * @return A {@link Stream} of the rows with reprojected geometries.
+     */
+    public static Stream<Map<String, Object>> reproject(Stream<Map<String, Object>> rows, int targetSrid,
+                                                        int batchSize) {
+        int size = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+        Iterator<Map<String, Object>> source = rows.iterator();
+        Spliterator<List<Map<String, Object>>> batches = new Spliterators.AbstractSpliterator<List<Map<String, Object>>>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super List<Map<String, Object>>> action) {
+                List<Map<String, Object>> batch = new ArrayList<>(size);
+                while (batch.size() < size && source.hasNext()) {
+                    batch.add(source.next());
+                }
+                if (batch.isEmpty()) {
+                    return false;
+                }
+                batch.parallelStream().forEach(row -> row.values().forEach(value -> {
+                    if (value instanceof Geometry) {
+                        reproject((Geometry) value, targetSrid);
+                    }
+                }));
+                action.accept(batch);
+                return true;
+            }
+        };
+        return StreamSupport.stream(batches, false).flatMap(List::stream).onClose(rows::close);
+    }
+
+    /**
+     * {@link CoordinateSequenceFilter} applying a {@link CoordinateOperation} on each coordinate.
+     */
+    private static final class TransformFilter implements CoordinateSequenceFilter {
+        /** Operation to apply */
+        private final CoordinateOperation operation;
+
+        private TransformFilter(CoordinateOperation operation) {
+            this.operation = operation;
+        }
+
+        @Override
+        public void filter(CoordinateSequence seq, int i) {
+            boolean hasZ = seq.hasZ() && !Double.isNaN(seq.getZ(i));
+            double[] xyz;
+            try {
+                xyz = operation.transform(new double[]{seq.getX(i), seq.getY(i), hasZ ? seq.getZ(i) : 0});
+            } catch (Exception e) {
+                throw new RuntimeException("Unable to reproject the coordinate (" + seq.getX(i) + " " +
+                        seq.getY(i) + ")", e);
+            }
+            seq.setOrdinate(i, CoordinateSequence.X, xyz[0]);
+            seq.setOrdinate(i, CoordinateSequence.Y, xyz[1]);
+            if (hasZ && xyz.length > 2) {
+                seq.setOrdinate(i, CoordinateSequence.Z, xyz[2]);
+            }
+        }
+
+        @Override
+        public boolean isDone() {
+            return false;
+        }
+
+        @Override
+        public boolean isGeometryChanged() {
+            return true;
+        }
+    }
+}
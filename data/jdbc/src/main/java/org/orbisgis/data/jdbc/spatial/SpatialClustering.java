@@ -0,0 +1,349 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc.spatial;
+
+import org.h2gis.functions.io.utility.IOMethods;
+import org.h2gis.utilities.JDBCUtilities;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKBWriter;
+import org.orbisgis.data.api.dataset.ITable.ClusterBy;
+import org.orbisgis.data.api.datasource.IJdbcDataSource;
+import org.orbisgis.data.api.dsl.ICancellationToken;
+import org.orbisgis.data.jdbc.JdbcDataSource;
+import org.orbisgis.data.jdbc.JdbcSpatialTable;
+import org.orbisgis.data.jdbc.resultset.GeometryDecodingPipeline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Utility class writing the rows of a table sorted by the {@link ClusterBy} key of their geometry, so that the rows
+ * close in space are stored close in the saved table.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public final class SpatialClustering {
+
+    /** Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpatialClustering.class);
+    /** Number of cells of a side of the grid of the keys */
+    private static final int SIDE = 1 << ClusterBy.ORDER;
+
+    /** Table to save */
+    private final JdbcSpatialTable table;
+    /** {@link TableReader} of the table */
+    private final TableReader reader;
+    /** Statement inserting a row into the output table */
+    private final PreparedStatement insert;
+    /** Names of the columns of the table */
+    private final List<String> columns;
+    /** True for the geometry columns of the table */
+    private final boolean[] geometries;
+    /** Name of the geometry column of the key */
+    private final String geometryColumn;
+    /** Extent of the table */
+    private final Envelope extent;
+    /** Space filling curve used to sort the rows */
+    private final ClusterBy clusterBy;
+    /** Maximum number of rows sorted in memory and inserted by batch */
+    private final int batchSize;
+    /** Cancellation token of the table */
+    private final ICancellationToken token;
+    /** Writer of the geometries */
+    private final WKBWriter writer = new WKBWriter(3);
+    /** Number of rows added to the current batch */
+    private int count = 0;
+
+    private SpatialClustering(JdbcSpatialTable table, TableReader reader, PreparedStatement insert,
+                              List<String> columns, boolean[] geometries, String geometryColumn, Envelope extent,
+                              ClusterBy clusterBy, int batchSize) {
+        this.table = table;
+        this.reader = reader;
+        this.insert = insert;
+        this.columns = columns;
+        this.geometries = geometries;
+        this.geometryColumn = geometryColumn;
+        this.extent = extent;
+        this.clusterBy = clusterBy;
+        this.batchSize = batchSize;
+        this.token = table.getResultSetProperties().getCancellationToken();
+    }
+
+    /**
+     * Save the given table into a database, writing its rows sorted by the key of its first geometry column.
+     *
+     * The output table is created with the column types of the input table and each row is written once. As the
+     * squares of the grid aligned on a power of two cover a contiguous range of keys, the grid is split in squares,
+     * visited in the key order, until the rows of a square can be sorted in memory, so that at most one batch of
+     * rows is kept in memory, except for the rows sharing the same cell.
+     *
+     * @param table           Table to save.
+     * @param reader          {@link TableReader} of the table.
+     * @param dataSource      Connection to the output database.
+     * @param outputTableName Name of the output table.
+     * @param deleteTable     True to delete the output table if it exists.
+     * @param batchSize       Number of rows inserted by batch.
+     * @param clusterBy       Space filling curve used to sort the rows.
+     * @return The name of the saved table, formatted according the output datasource.
+     */
+    public static String save(JdbcSpatialTable table, TableReader reader, IJdbcDataSource dataSource,
+                              String outputTableName, boolean deleteTable, int batchSize, ClusterBy clusterBy) throws Exception {
+        Connection con = dataSource.getConnection();
+        Connection inputCon = table.getJdbcDataSource().getConnection();
+        if (con == null || inputCon == null) {
+            throw new SQLException("Cannot get the connection to the database");
+        }
+        int size = batchSize > 0 ? batchSize : GeometryDecodingPipeline.DEFAULT_BATCH_SIZE;
+        String tableName = IOMethods.exportToDataBase(inputCon, "(" + reader.getSelectQuery("*") + " WHERE 1=0)",
+                con, outputTableName, deleteTable ? -1 : 0, size);
+        if (tableName == null) {
+            throw new SQLException("Unable to create the table '" + outputTableName + "'.");
+        }
+        DBTypes dbType = dataSource.getDataBaseType();
+        List<String> outputColumns = JDBCUtilities.getColumnNames(con, TableLocation.parse(tableName, dbType));
+        List<String> inputColumns = new ArrayList<>(table.getColumnNamesTypes().keySet());
+        if (outputColumns.size() != inputColumns.size()) {
+            throw new SQLException("Unable to map the columns of the table '" + tableName + "'.");
+        }
+        Map<String, String> types = table.getColumnNamesTypes();
+        boolean[] geometries = new boolean[inputColumns.size()];
+        for (int i = 0; i < geometries.length; i++) {
+            geometries[i] = types.get(inputColumns.get(i)).toLowerCase().startsWith("geometry");
+        }
+        Geometry extentGeometry = table.getExtent();
+        Envelope extent = extentGeometry == null ? new Envelope() : extentGeometry.getEnvelopeInternal();
+
+        StringBuilder columns = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < outputColumns.size(); i++) {
+            columns.append(i > 0 ? ", " : "").append(TableLocation.quoteIdentifier(outputColumns.get(i), dbType));
+            values.append(i > 0 ? ", " : "").append(geometries[i] ? "ST_GeomFromWKB(?, ?)" : "?");
+        }
+        try (PreparedStatement ps = con.prepareStatement("INSERT INTO " + tableName + " (" + columns +
+                ") VALUES (" + values + ")")) {
+            SpatialClustering clustering = new SpatialClustering(table, reader, ps, inputColumns, geometries,
+                    table.getGeometricColumns().get(0), extent, clusterBy, size);
+            clustering.write(0, 0, SIDE);
+            clustering.writeAll(clustering.getNoGeometryFilter());
+            clustering.flush();
+            if (!con.getAutoCommit()) {
+                con.commit();
+            }
+        } catch (Exception e) {
+            if (!con.getAutoCommit()) {
+                con.rollback();
+            }
+            try (Statement statement = con.createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS " + tableName);
+            } catch (SQLException e2) {
+                LOGGER.error("Unable to drop the partially saved table '" + tableName + "'.", e2);
+            }
+            throw new SQLException("Unable to save the table '" + tableName + "' clustered by " + clusterBy + ".", e);
+        }
+        if (dataSource instanceof JdbcDataSource) {
+            ((JdbcDataSource) dataSource).invalidateCaches(outputTableName);
+        }
+        return tableName;
+    }
+
+    /**
+     * Write, in the key order, the rows whose geometry centre is in the given square of the grid.
+     *
+     * @param x    Column of the lower left cell of the square.
+     * @param y    Row of the lower left cell of the square.
+     * @param side Number of cells of a side of the square, a power of two.
+     */
+    private void write(int x, int y, int side) throws Exception {
+        //On a flat extent, all the rows are in the first column or row of the grid
+        if (x > 0 && !(extent.getWidth() > 0) || y > 0 && !(extent.getHeight() > 0)) {
+            return;
+        }
+        String filter = getFilter(x, y, side);
+        long rowCount = reader.count(filter);
+        if (rowCount == 0) {
+            return;
+        }
+        if (side == 1) {
+            writeAll(filter);
+        } else if (rowCount > batchSize) {
+            int half = side / 2;
+            List<int[]> squares = Arrays.asList(new int[]{x, y}, new int[]{x + half, y}, new int[]{x, y + half},
+                    new int[]{x + half, y + half});
+            squares.sort(Comparator.comparingLong(square -> getKey(square[0], square[1])));
+            for (int[] square : squares) {
+                write(square[0], square[1], half);
+            }
+        } else {
+            List<Map<String, Object>> rows = new ArrayList<>();
+            try (Stream<Map<String, Object>> stream = read(filter)) {
+                stream.forEach(rows::add);
+            }
+            List<Long> keys = new ArrayList<>(rows.size());
+            rows.forEach(row -> keys.add(clusterBy.getKey(extent, (Geometry) row.get(geometryColumn))));
+            Integer[] order = new Integer[rows.size()];
+            Arrays.setAll(order, i -> i);
+            Arrays.sort(order, Comparator.comparingLong(keys::get));
+            for (Integer i : order) {
+                add(rows.get(i));
+            }
+        }
+    }
+
+    /**
+     * Write the rows matching the given filter in the order they are read.
+     *
+     * @param filter WHERE clause of the rows.
+     */
+    private void writeAll(String filter) throws Exception {
+        try (Stream<Map<String, Object>> rows = read(filter)) {
+            for (Iterator<Map<String, Object>> it = rows.iterator(); it.hasNext(); ) {
+                add(it.next());
+            }
+        }
+    }
+
+    /**
+     * Return a {@link Stream} of the rows of the table matching the given filter.
+     *
+     * @param filter WHERE clause of the rows.
+     * @return A {@link Stream} of the rows, to close once consumed.
+     */
+    private Stream<Map<String, Object>> read(String filter) throws Exception {
+        return reader.read(reader.getSelectQuery("*") + filter, table.getParams(), batchSize,
+                Runtime.getRuntime().availableProcessors(), false);
+    }
+
+    /**
+     * Add the given row to the batch of inserted rows, inserting the batch once full.
+     *
+     * @param row Row to insert.
+     */
+    private void add(Map<String, Object> row) throws Exception {
+        int index = 1;
+        for (int i = 0; i < columns.size(); i++) {
+            Object value = row.get(columns.get(i));
+            if (geometries[i]) {
+                Geometry geometry = (Geometry) value;
+                insert.setObject(index++, geometry == null ? null : writer.write(geometry));
+                insert.setInt(index++, geometry == null ? 0 : geometry.getSRID());
+            } else {
+                insert.setObject(index++, value);
+            }
+        }
+        insert.addBatch();
+        if (++count == batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Insert the batch of rows.
+     */
+    private void flush() throws Exception {
+        if (count > 0) {
+            insert.executeBatch();
+            count = 0;
+            if (token != null) {
+                token.check();
+            }
+        }
+    }
+
+    /**
+     * Return the key of the given cell of the grid.
+     */
+    private long getKey(int x, int y) {
+        return clusterBy == ClusterBy.Z_ORDER ? ClusterBy.zOrder(x, y) : ClusterBy.hilbert(x, y);
+    }
+
+    /**
+     * Return the filter of the rows without geometry.
+     */
+    private String getNoGeometryFilter() {
+        String geometry = TableLocation.quoteIdentifier(geometryColumn, table.getDbType());
+        return " WHERE " + geometry + " IS NULL OR ST_IsEmpty(" + geometry + ")";
+    }
+
+    /**
+     * Return the filter of the rows whose geometry centre is in the given square of the grid, computing the cell of
+     * the centre as {@link ClusterBy#getKey(Envelope, Geometry)} does. The squares on the border of the grid are not
+     * bounded on this side, as the cells are clamped into the grid.
+     *
+     * @param x    Column of the lower left cell of the square.
+     * @param y    Row of the lower left cell of the square.
+     * @param side Number of cells of a side of the square.
+     * @return The WHERE clause of the rows.
+     */
+    private String getFilter(int x, int y, int side) {
+        String geometry = TableLocation.quoteIdentifier(geometryColumn, table.getDbType());
+        StringBuilder filter = new StringBuilder(" WHERE ").append(geometry).append(" IS NOT NULL AND NOT ST_IsEmpty(")
+                .append(geometry).append(")");
+        if (extent.getWidth() > 0) {
+            appendBounds(filter, "(ST_XMin(" + geometry + ") + ST_XMax(" + geometry + ")) / 2", extent.getMinX(),
+                    extent.getWidth(), x, side);
+        }
+        if (extent.getHeight() > 0) {
+            appendBounds(filter, "(ST_YMin(" + geometry + ") + ST_YMax(" + geometry + ")) / 2", extent.getMinY(),
+                    extent.getHeight(), y, side);
+        }
+        return filter.toString();
+    }
+
+    /**
+     * Append the bounds of the grid coordinate of the given centre expression.
+     */
+    private static void appendBounds(StringBuilder filter, String centre, double min, double size, int cell, int side) {
+        String grid = "((" + centre + " - CAST(" + min + " AS DOUBLE PRECISION)) / CAST(" + size +
+                " AS DOUBLE PRECISION) * " + (SIDE - 1) + ")";
+        if (cell > 0) {
+            filter.append(" AND ").append(grid).append(" >= ").append(cell);
+        }
+        if (cell + side < SIDE) {
+            filter.append(" AND ").append(grid).append(" < ").append(cell + side);
+        }
+    }
+}
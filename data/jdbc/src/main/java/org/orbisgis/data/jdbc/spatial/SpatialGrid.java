@@ -0,0 +1,519 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc.spatial;
+
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.orbisgis.data.api.dataset.ISpatialGrid;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of {@link ISpatialGrid} storing the count and the aggregated values of the cells in primitive
+ * arrays. The grid can be built from the result of the binning query generated by
+ * {@link #getSqlQuery(String, String, CellType, double, List)} or by binning rows in memory.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public class SpatialGrid implements ISpatialGrid {
+
+    /** Pattern of the supported aggregations */
+    private static final Pattern AGGREGATION = Pattern.compile(
+            "^\\s*(COUNT|SUM|AVG|MIN|MAX)\\s*\\(\\s*(\\*|\"[^\"]+\"|[\\w$]+)\\s*\\)\\s*$", Pattern.CASE_INSENSITIVE);
+    /** Height of the half of a hexagon of edge 1 */
+    private static final double HALF_HEIGHT = Math.sqrt(3) / 2;
+    /** Geometry factory used to build the cells */
+    private static final GeometryFactory FACTORY = new GeometryFactory();
+
+    /** Shape of the cells */
+    private final CellType cellType;
+    /** Size of the cells */
+    private final double cellSize;
+    /** SRID of the binned geometries */
+    private final int srid;
+    /** Absolute index of the first column */
+    private final int minColumn;
+    /** Absolute index of the first row */
+    private final int minRow;
+    /** Number of columns */
+    private final int columnCount;
+    /** Number of rows */
+    private final int rowCount;
+    /** Aggregations as given by the user */
+    private final List<String> aggregations;
+    /** Number of features per cell */
+    private final long[] counts;
+    /** Aggregated values per aggregation and cell */
+    private final double[][] values;
+
+    /**
+     * Build a grid from the binned cells.
+     *
+     * @param cellType     Shape of the cells.
+     * @param cellSize     Size of the cells.
+     * @param srid         SRID of the binned geometries.
+     * @param aggregations Aggregations as given by the user.
+     * @param cells        Count and aggregated values by cell key, see {@link #getKey(long, long)}.
+     */
+    private SpatialGrid(CellType cellType, double cellSize, int srid, List<String> aggregations,
+                        Map<Long, double[]> cells) {
+        this.cellType = cellType;
+        this.cellSize = cellSize;
+        this.srid = srid;
+        this.aggregations = Collections.unmodifiableList(new ArrayList<>(aggregations));
+        int minI = Integer.MAX_VALUE, minJ = Integer.MAX_VALUE, maxI = Integer.MIN_VALUE, maxJ = Integer.MIN_VALUE;
+        for (long key : cells.keySet()) {
+            minI = Math.min(minI, getColumn(key));
+            maxI = Math.max(maxI, getColumn(key));
+            minJ = Math.min(minJ, getRow(key));
+            maxJ = Math.max(maxJ, getRow(key));
+        }
+        this.minColumn = cells.isEmpty() ? 0 : minI;
+        this.minRow = cells.isEmpty() ? 0 : minJ;
+        this.columnCount = cells.isEmpty() ? 0 : maxI - minI + 1;
+        this.rowCount = cells.isEmpty() ? 0 : maxJ - minJ + 1;
+        long size = (long) columnCount * rowCount;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The grid of " + columnCount + " x " + rowCount + " cells is too " +
+                    "large, use a bigger cell size.");
+        }
+        this.counts = new long[(int) size];
+        this.values = new double[aggregations.size()][(int) size];
+        for (double[] array : values) {
+            Arrays.fill(array, Double.NaN);
+        }
+        cells.forEach((key, cell) -> {
+            int index = (getRow(key) - minRow) * columnCount + getColumn(key) - minColumn;
+            counts[index] = (long) cell[0];
+            for (int a = 0; a < values.length; a++) {
+                values[a][index] = cell[a + 1];
+            }
+        });
+    }
+
+    @Override
+    public CellType getCellType() {
+        return cellType;
+    }
+
+    @Override
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    @Override
+    public int getSrid() {
+        return srid;
+    }
+
+    @Override
+    public int getMinColumn() {
+        return minColumn;
+    }
+
+    @Override
+    public int getMinRow() {
+        return minRow;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public List<String> getAggregations() {
+        return aggregations;
+    }
+
+    @Override
+    public long[] getCounts() {
+        return counts;
+    }
+
+    @Override
+    public long getCount(int column, int row) {
+        int index = getIndex(column, row);
+        return index < 0 ? 0 : counts[index];
+    }
+
+    @Override
+    public double[] getValues(String aggregation) {
+        int a = aggregations.indexOf(aggregation);
+        if (a < 0) {
+            throw new IllegalArgumentException("The aggregation '" + aggregation + "' has not been computed.");
+        }
+        return values[a];
+    }
+
+    @Override
+    public double getValue(String aggregation, int column, int row) {
+        double[] array = getValues(aggregation);
+        int index = getIndex(column, row);
+        return index < 0 ? Double.NaN : array[index];
+    }
+
+    @Override
+    public Polygon getCell(int column, int row) {
+        Coordinate[] coordinates;
+        if (cellType == CellType.HEXAGON) {
+            double x = cellSize * 1.5 * column;
+            double y = cellSize * HALF_HEIGHT * (2 * row + Math.abs(column % 2));
+            double h = cellSize * HALF_HEIGHT;
+            coordinates = new Coordinate[]{new Coordinate(x, y), new Coordinate(x + cellSize / 2, y + h),
+                    new Coordinate(x + cellSize * 1.5, y + h), new Coordinate(x + cellSize * 2, y),
+                    new Coordinate(x + cellSize * 1.5, y - h), new Coordinate(x + cellSize / 2, y - h),
+                    new Coordinate(x, y)};
+        } else {
+            double x = column * cellSize;
+            double y = row * cellSize;
+            coordinates = new Coordinate[]{new Coordinate(x, y), new Coordinate(x + cellSize, y),
+                    new Coordinate(x + cellSize, y + cellSize), new Coordinate(x, y + cellSize),
+                    new Coordinate(x, y)};
+        }
+        Polygon polygon = FACTORY.createPolygon(coordinates);
+        polygon.setSRID(srid);
+        return polygon;
+    }
+
+    /**
+     * Return the index in the arrays of the given cell, -1 if it is out of the grid.
+     */
+    private int getIndex(int column, int row) {
+        if (column < minColumn || column >= minColumn + columnCount || row < minRow || row >= minRow + rowCount) {
+            return -1;
+        }
+        return (row - minRow) * columnCount + column - minColumn;
+    }
+
+    /**
+     * Return the key of the cell with the given absolute indexes.
+     *
+     * @param column Absolute column index.
+     * @param row    Absolute row index.
+     * @return The key of the cell.
+     */
+    public static long getKey(long column, long row) {
+        if (column < Integer.MIN_VALUE || column > Integer.MAX_VALUE || row < Integer.MIN_VALUE || row > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The cell (" + column + ", " + row + ") is out of the grid bounds, " +
+                    "use a bigger cell size.");
+        }
+        return (column << 32) | (row & 0xFFFFFFFFL);
+    }
+
+    private static int getColumn(long key) {
+        return (int) (key >> 32);
+    }
+
+    private static int getRow(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Return the key of the cell containing the given point.
+     *
+     * @param cellType Shape of the cells.
+     * @param cellSize Size of the cells.
+     * @param x        X coordinate of the point.
+     * @param y        Y coordinate of the point.
+     * @return The key of the cell.
+     */
+    public static long getCellKey(CellType cellType, double cellSize, double x, double y) {
+        if (cellType != CellType.HEXAGON) {
+            return getKey((long) Math.floor(x / cellSize), (long) Math.floor(y / cellSize));
+        }
+        //Cube coordinates of the flat topped hexagon, the cell (0, 0) being centered on (size, 0)
+        double q = (x - cellSize) * 2 / (3 * cellSize);
+        double r = ((cellSize - x) / 3 + Math.sqrt(3) * y / 3) / cellSize;
+        double s = -q - r;
+        double rq = Math.round(q), rr = Math.round(r), rs = Math.round(s);
+        double dq = Math.abs(rq - q), dr = Math.abs(rr - r), ds = Math.abs(rs - s);
+        if (dq > dr && dq > ds) {
+            rq = -rr - rs;
+        } else if (dr > ds) {
+            rr = -rq - rs;
+        }
+        long i = (long) rq;
+        long k = (long) rr;
+        return getKey(i, (2 * k + i - Math.abs(i % 2)) / 2);
+    }
+
+    /**
+     * Parse the given aggregations.
+     *
+     * @param aggregations Aggregations : COUNT, SUM, AVG, MIN or MAX of a column.
+     * @return The function and the column of each aggregation.
+     */
+    public static List<String[]> parseAggregations(String... aggregations) {
+        List<String[]> list = new ArrayList<>();
+        if (aggregations == null) {
+            return list;
+        }
+        for (String aggregation : aggregations) {
+            Matcher matcher = aggregation == null ? null : AGGREGATION.matcher(aggregation);
+            if (matcher == null || !matcher.matches()) {
+                throw new IllegalArgumentException("Unsupported aggregation '" + aggregation + "', only COUNT, " +
+                        "SUM, AVG, MIN and MAX of a column are supported.");
+            }
+            list.add(new String[]{matcher.group(1).toUpperCase(), matcher.group(2)});
+        }
+        return list;
+    }
+
+    /**
+     * Return the query binning the rows of the given query by the centroid of the given geometry column. The query
+     * returns the column index, the row index, the number of features, the SRID and the aggregated values of each
+     * non empty cell.
+     *
+     * @param source         Query reading the rows.
+     * @param geometryColumn Quoted name of the geometry column.
+     * @param cellType       Shape of the cells.
+     * @param cellSize       Size of the cells.
+     * @param aggregations   Parsed aggregations, see {@link #parseAggregations(String...)}.
+     * @return The binning query.
+     */
+    public static String getSqlQuery(String source, String geometryColumn, CellType cellType, double cellSize,
+                                     List<String[]> aggregations) {
+        String size = Double.toString(cellSize);
+        String query = "SELECT ST_X(orbisdata_c) AS orbisdata_x, ST_Y(orbisdata_c) AS orbisdata_y, * FROM (" +
+                "SELECT ST_Centroid(" + geometryColumn + ") AS orbisdata_c, * FROM (" + source + ") AS orbisdata_s " +
+                "WHERE " + geometryColumn + " IS NOT NULL AND NOT ST_IsEmpty(" + geometryColumn + ")) AS orbisdata_l1";
+        if (cellType == CellType.HEXAGON) {
+            query = "SELECT (orbisdata_x - " + size + ") * 2 / (3 * " + size + ") AS orbisdata_q, ((" + size +
+                    " - orbisdata_x) / 3 + SQRT(3) * orbisdata_y / 3) / " + size + " AS orbisdata_r, * FROM (" +
+                    query + ") AS orbisdata_l2";
+            query = "SELECT ROUND(orbisdata_q) AS orbisdata_rq, ROUND(orbisdata_r) AS orbisdata_rr, " +
+                    "ROUND(-orbisdata_q - orbisdata_r) AS orbisdata_rs, * FROM (" + query + ") AS orbisdata_l3";
+            String dq = "ABS(orbisdata_rq - orbisdata_q)";
+            String dr = "ABS(orbisdata_rr - orbisdata_r)";
+            String ds = "ABS(orbisdata_rs + orbisdata_q + orbisdata_r)";
+            query = "SELECT CAST(CASE WHEN " + dq + " > " + dr + " AND " + dq + " > " + ds +
+                    " THEN -orbisdata_rr - orbisdata_rs ELSE orbisdata_rq END AS BIGINT) AS orbisdata_i, " +
+                    "CAST(CASE WHEN " + dq + " > " + dr + " AND " + dq + " > " + ds + " THEN orbisdata_rr WHEN " +
+                    dr + " > " + ds + " THEN -orbisdata_rq - orbisdata_rs ELSE orbisdata_rr END AS BIGINT) " +
+                    "AS orbisdata_k, * FROM (" + query + ") AS orbisdata_l4";
+            query = "SELECT (2 * orbisdata_k + orbisdata_i - ABS(MOD(orbisdata_i, 2))) / 2 AS orbisdata_j, * FROM (" +
+                    query + ") AS orbisdata_l5";
+        } else {
+            query = "SELECT CAST(FLOOR(orbisdata_x / " + size + ") AS BIGINT) AS orbisdata_i, " +
+                    "CAST(FLOOR(orbisdata_y / " + size + ") AS BIGINT) AS orbisdata_j, * FROM (" + query +
+                    ") AS orbisdata_l2";
+        }
+        StringBuilder select = new StringBuilder("SELECT orbisdata_i, orbisdata_j, COUNT(*), MAX(ST_SRID(orbisdata_c))");
+        for (String[] aggregation : aggregations) {
+            select.append(", ").append(aggregation[0]).append("(").append(aggregation[1]).append(")");
+        }
+        return select.append(" FROM (").append(query).append(") AS orbisdata_cells GROUP BY orbisdata_i, orbisdata_j")
+                .toString();
+    }
+
+    /**
+     * Build a grid from the result of the query generated by
+     * {@link #getSqlQuery(String, String, CellType, double, List)}.
+     *
+     * @param rs           Result of the binning query.
+     * @param cellType     Shape of the cells.
+     * @param cellSize     Size of the cells.
+     * @param aggregations Aggregations as given by the user.
+     * @return The grid.
+     */
+    public static SpatialGrid read(ResultSet rs, CellType cellType, double cellSize, List<String> aggregations)
+            throws SQLException {
+        Map<Long, double[]> cells = new HashMap<>();
+        int srid = 0;
+        while (rs.next()) {
+            double[] cell = new double[aggregations.size() + 1];
+            cell[0] = rs.getLong(3);
+            srid = Math.max(srid, rs.getInt(4));
+            for (int a = 0; a < aggregations.size(); a++) {
+                double value = rs.getDouble(a + 5);
+                cell[a + 1] = rs.wasNull() ? Double.NaN : value;
+            }
+            cells.put(getKey(rs.getLong(1), rs.getLong(2)), cell);
+        }
+        return new SpatialGrid(cellType, cellSize, srid, aggregations, cells);
+    }
+
+    /**
+     * Bin in memory, in parallel, the given rows by the centroid of their geometry.
+     *
+     * @param rows           Rows to bin.
+     * @param geometryColumn Name of the geometry column in the rows.
+     * @param cellType       Shape of the cells.
+     * @param cellSize       Size of the cells.
+     * @param aggregations   Aggregations as given by the user.
+     * @param columns        Name in the rows of the column of each aggregation, null for COUNT(*).
+     * @return The grid.
+     */
+    public static SpatialGrid bin(Stream<Map<String, Object>> rows, String geometryColumn, CellType cellType,
+                                  double cellSize, List<String> aggregations, List<String> columns) {
+        List<String[]> parsed = parseAggregations(aggregations.toArray(new String[0]));
+        Map<Long, Accumulator> accumulators = new ConcurrentHashMap<>();
+        AtomicInteger srid = new AtomicInteger();
+        rows.parallel().forEach(row -> {
+            Geometry geometry = (Geometry) row.get(geometryColumn);
+            if (geometry == null || geometry.isEmpty()) {
+                return;
+            }
+            srid.accumulateAndGet(geometry.getSRID(), Math::max);
+            Point centroid = geometry.getCentroid();
+            long key = getCellKey(cellType, cellSize, centroid.getX(), centroid.getY());
+            Accumulator accumulator = accumulators.computeIfAbsent(key, k -> new Accumulator(parsed.size()));
+            synchronized (accumulator) {
+                accumulator.count++;
+                for (int a = 0; a < parsed.size(); a++) {
+                    Object value = columns.get(a) == null ? Boolean.TRUE : row.get(columns.get(a));
+                    if (value != null) {
+                        accumulator.add(a, value instanceof Number ? ((Number) value).doubleValue() : 0);
+                    }
+                }
+            }
+        });
+        Map<Long, double[]> cells = new HashMap<>();
+        accumulators.forEach((key, accumulator) -> {
+            double[] cell = new double[parsed.size() + 1];
+            cell[0] = accumulator.count;
+            for (int a = 0; a < parsed.size(); a++) {
+                cell[a + 1] = accumulator.get(a, parsed.get(a)[0]);
+            }
+            cells.put(key, cell);
+        });
+        return new SpatialGrid(cellType, cellSize, srid.get(), aggregations, cells);
+    }
+
+    /**
+     * Return true if the given database can bin the features.
+     *
+     * @param dbType Type of the database.
+     * @return True if the database can bin the features, false otherwise.
+     */
+    public static boolean isSupported(DBTypes dbType) {
+        return dbType == DBTypes.H2GIS || dbType == DBTypes.POSTGIS;
+    }
+
+    /**
+     * Return the name in the given columns of the column of each aggregation, null for COUNT(*).
+     *
+     * @param aggregations Parsed aggregations, see {@link #parseAggregations(String...)}.
+     * @param columnNames  Names of the columns of the binned rows.
+     * @return The name of the column of each aggregation.
+     */
+    public static List<String> getColumns(List<String[]> aggregations, Collection<String> columnNames) {
+        return aggregations.stream().map(aggregation -> {
+            if ("*".equals(aggregation[1])) {
+                return null;
+            }
+            String name = aggregation[1];
+            if (name.startsWith("\"")) {
+                String unquoted = name.substring(1, name.length() - 1);
+                return columnNames.stream().filter(unquoted::equals).findFirst()
+                        .orElseThrow(() -> new IllegalArgumentException("Unknown column " + name));
+            }
+            return columnNames.stream().filter(name::equalsIgnoreCase).findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown column " + name));
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * Accumulator of the values of a cell.
+     */
+    private static final class Accumulator {
+        /** Number of features */
+        private long count;
+        /** Number of non null values per aggregation */
+        private final long[] counts;
+        /** Sum of the values per aggregation */
+        private final double[] sums;
+        /** Minimum of the values per aggregation */
+        private final double[] mins;
+        /** Maximum of the values per aggregation */
+        private final double[] maxs;
+
+        private Accumulator(int size) {
+            counts = new long[size];
+            sums = new double[size];
+            mins = new double[size];
+            maxs = new double[size];
+            Arrays.fill(mins, Double.POSITIVE_INFINITY);
+            Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+        }
+
+        private void add(int a, double value) {
+            counts[a]++;
+            sums[a] += value;
+            mins[a] = Math.min(mins[a], value);
+            maxs[a] = Math.max(maxs[a], value);
+        }
+
+        private double get(int a, String function) {
+            if ("COUNT".equals(function)) {
+                return counts[a];
+            }
+            if (counts[a] == 0) {
+                return Double.NaN;
+            }
+            switch (function) {
+                case "SUM":
+                    return sums[a];
+                case "AVG":
+                    return sums[a] / counts[a];
+                case "MIN":
+                    return mins[a];
+                default:
+                    return maxs[a];
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc.spatial;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.ItemDistance;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.orbisgis.data.api.dataset.ISpatialIndex;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of {@link ISpatialIndex} based on a JTS {@link STRtree}.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public class SpatialIndex implements ISpatialIndex {
+
+    /** Distance between the geometries of two indexed features */
+    private static final ItemDistance FEATURE_DISTANCE = (item1, item2) ->
+            ((Feature) item1.getItem()).geometry.distance(((Feature) item2.getItem()).geometry);
+
+    /** Name of the indexed geometry column */
+    private final String geometryColumn;
+    /** Names of the attribute columns */
+    private final List<String> columns;
+    /** Packed tree containing the features */
+    private final STRtree tree;
+    /** Number of indexed features */
+    private final int size;
+
+    /**
+     * Build the index from a stream of rows. The rows without geometry are ignored.
+     *
+     * @param geometryColumn Name of the geometry column in the rows.
+     * @param columns        Names of the attribute columns kept in the rows.
+     * @param rows           Rows to index.
+     */
+    public SpatialIndex(String geometryColumn, List<String> columns, Stream<Map<String, Object>> rows) {
+        this.geometryColumn = geometryColumn;
+        this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+        List<Feature> features = rows
+                .filter(row -> row.get(geometryColumn) instanceof Geometry)
+                .map(row -> new Feature((Geometry) row.get(geometryColumn), Collections.unmodifiableMap(row)))
+                .collect(Collectors.toList());
+        //The envelopes are computed and cached by the geometries in parallel before the sequential packing
+        features.parallelStream().forEach(feature -> feature.geometry.getEnvelopeInternal());
+        this.tree = new STRtree();
+        for (Feature feature : features) {
+            tree.insert(feature.geometry.getEnvelopeInternal(), feature);
+        }
+        tree.build();
+        this.size = features.size();
+    }
+
+    @Override
+    public String getGeometryColumn() {
+        return geometryColumn;
+    }
+
+    @Override
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public List<Map<String, Object>> query(Envelope envelope) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        if (envelope == null || size == 0) {
+            return result;
+        }
+        tree.query(envelope, item -> result.add(((Feature) item).row));
+        return result;
+    }
+
+    @Override
+    public List<Map<String, Object>> nearest(Geometry geometry, int k) {
+        if (geometry == null || k <= 0 || size == 0) {
+            return new ArrayList<>();
+        }
+        Object[] items = tree.nearestNeighbour(geometry.getEnvelopeInternal(), new Feature(geometry, null),
+                FEATURE_DISTANCE, Math.min(k, size));
+        return Arrays.stream(items)
+                .map(Feature.class::cast)
+                .sorted(Comparator.comparingDouble(feature -> feature.geometry.distance(geometry)))
+                .map(feature -> feature.row)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Map<String, Object>> contains(Geometry point) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        if (point == null || size == 0) {
+            return result;
+        }
+        tree.query(point.getEnvelopeInternal(), item -> {
+            Feature feature = (Feature) item;
+            if (feature.getPrepared().contains(point)) {
+                result.add(feature.row);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Indexed row with its geometry.
+     */
+    private static final class Feature {
+        /** Geometry of the row */
+        private final Geometry geometry;
+        /** Indexed row */
+        private final Map<String, Object> row;
+        /** Prepared geometry, created on the first point lookup */
+        private volatile PreparedGeometry prepared;
+
+        private Feature(Geometry geometry, Map<String, Object> row) {
+            this.geometry = geometry;
+            this.row = row;
+        }
+
+        private PreparedGeometry getPrepared() {
+            PreparedGeometry prep = prepared;
+            if (prep == null) {
+                prep = PreparedGeometryFactory.prepare(geometry);
+                prepared = prep;
+            }
+            return prep;
+        }
+    }
+}
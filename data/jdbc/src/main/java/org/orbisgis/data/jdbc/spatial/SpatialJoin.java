@@ -0,0 +1,454 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc.spatial;
+
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.locationtech.jts.io.WKBWriter;
+import org.orbisgis.data.api.dataset.IJdbcSpatialTable.SpatialPredicate;
+import org.orbisgis.data.api.datasource.IJdbcDataSource;
+import org.orbisgis.data.jdbc.JdbcDataSource;
+import org.orbisgis.data.jdbc.JdbcSpatialTable;
+import org.orbisgis.data.jdbc.resultset.GeometryDecodingPipeline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * In memory spatial join between two {@link JdbcSpatialTable}, which may come from different databases.
+ *
+ * The common extent of the two tables is split into a grid of partitions. The rows of each table intersecting a
+ * partition are read with a bounding box filter, then joined in parallel with an {@link STRtree} built on the right
+ * rows. A joined pair is only returned by the partition containing the lower left corner of the intersection of the
+ * envelopes of its geometries, so that pairs read by several partitions are not duplicated. A partition containing
+ * more rows than expected, because the rows are not uniformly spread, is split into four before being read.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public class SpatialJoin {
+
+    /** Suffix added to the right columns having the same name as a left column */
+    public static final String RIGHT_SUFFIX = "_2";
+    /** Number of rows inserted by batch when saving the result */
+    private static final int BATCH_SIZE = 1000;
+    /** Default maximum number of rows of a table expected in a partition */
+    public static final int DEFAULT_PARTITION_SIZE = 100000;
+    /** Maximum number of times a partition is split into four */
+    private static final int MAX_SPLIT_DEPTH = 8;
+
+    /** Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpatialJoin.class);
+
+    /** Left table of the join */
+    private final JdbcSpatialTable left;
+    /** Reader of the left table */
+    private final TableReader leftReader;
+    /** Right table of the join */
+    private final JdbcSpatialTable right;
+    /** Reader of the right table */
+    private final TableReader rightReader;
+    /** Predicate to check between the left and the right geometries */
+    private final SpatialPredicate predicate;
+    /** Maximum number of rows of a table expected in a partition */
+    private final int partitionSize;
+
+    /**
+     * Main constructor.
+     *
+     * @param left          Left table of the join.
+     * @param leftReader    {@link TableReader} of the left table.
+     * @param right         Right table of the join.
+     * @param rightReader   {@link TableReader} of the right table.
+     * @param predicate     Predicate to check between the left and the right geometries.
+     * @param partitionSize Maximum number of rows of a table expected in a partition.
+     */
+    public SpatialJoin(JdbcSpatialTable left, TableReader leftReader, JdbcSpatialTable right, TableReader rightReader,
+                       SpatialPredicate predicate, int partitionSize) {
+        this.left = left;
+        this.leftReader = leftReader;
+        this.right = right;
+        this.rightReader = rightReader;
+        this.predicate = predicate;
+        this.partitionSize = Math.max(1, partitionSize);
+    }
+
+    /**
+     * Return a lazy {@link Stream} of the joined rows. The partitions are read and joined one after the other while
+     * the {@link Stream} is consumed.
+     *
+     * @return A {@link Stream} of the joined rows.
+     */
+    public Stream<Map<String, Object>> stream() throws Exception {
+        String leftGeometry = getGeometryColumn(left);
+        String rightGeometry = getGeometryColumn(right);
+        Geometry leftExtent = left.getExtent(TableLocation.quoteIdentifier(leftGeometry, left.getDbType()));
+        Geometry rightExtent = right.getExtent(TableLocation.quoteIdentifier(rightGeometry, right.getDbType()));
+        if (leftExtent == null || rightExtent == null || leftExtent.isEmpty() || rightExtent.isEmpty()) {
+            return Stream.empty();
+        }
+        //The extents, the partitions and the predicates are only meaningful in a common coordinate reference system
+        int leftSrid = getSrid(left, leftExtent);
+        int rightSrid = getSrid(right, rightExtent);
+        if (leftSrid != rightSrid) {
+            throw new IllegalArgumentException("The SRID of the left geometries (" + leftSrid + ") differs from the " +
+                    "SRID of the right geometries (" + rightSrid + "), one of the tables should be reprojected first.");
+        }
+        Envelope extent = leftExtent.getEnvelopeInternal().intersection(rightExtent.getEnvelopeInternal());
+        if (extent.isNull()) {
+            return Stream.empty();
+        }
+        Map<String, String> rightNames = getRightNames();
+        long rowCount = Math.max(left.getRowCount(), right.getRowCount());
+        int n = (int) Math.max(1, Math.ceil(Math.sqrt((double) rowCount / partitionSize)));
+        int nx = extent.getWidth() > 0 ? n : 1;
+        int ny = extent.getHeight() > 0 ? n : 1;
+        double cellWidth = extent.getWidth() / nx;
+        double cellHeight = extent.getHeight() / ny;
+        return IntStream.range(0, nx * ny).boxed().flatMap(cell -> {
+            int i = cell % nx;
+            int j = cell / nx;
+            Envelope partition = new Envelope(
+                    extent.getMinX() + i * cellWidth, i == nx - 1 ? extent.getMaxX() : extent.getMinX() + (i + 1) * cellWidth,
+                    extent.getMinY() + j * cellHeight, j == ny - 1 ? extent.getMaxY() : extent.getMinY() + (j + 1) * cellHeight);
+            return join(partition, i == nx - 1, j == ny - 1, 0, leftGeometry, leftSrid, rightGeometry, rightSrid,
+                    rightNames);
+        });
+    }
+
+    /**
+     * Return a lazy {@link Stream} of the joined rows of a partition, split into four partitions if one of the tables
+     * has too many rows in it.
+     */
+    private Stream<Map<String, Object>> join(Envelope partition, boolean lastX, boolean lastY, int depth,
+                                             String leftGeometry, int leftSrid, String rightGeometry, int rightSrid,
+                                             Map<String, String> rightNames) {
+        try {
+            boolean splitX = partition.getWidth() > 0;
+            boolean splitY = partition.getHeight() > 0;
+            if (depth < MAX_SPLIT_DEPTH && (splitX || splitY) &&
+                    (leftReader.count(getFilter(left, leftGeometry, leftSrid, partition)) > partitionSize ||
+                            rightReader.count(getFilter(right, rightGeometry, rightSrid, partition)) > partitionSize)) {
+                double midX = splitX ? partition.centre().getX() : partition.getMaxX();
+                double midY = splitY ? partition.centre().getY() : partition.getMaxY();
+                List<Envelope> children = new ArrayList<>();
+                children.add(new Envelope(partition.getMinX(), midX, partition.getMinY(), midY));
+                if (splitX) {
+                    children.add(new Envelope(midX, partition.getMaxX(), partition.getMinY(), midY));
+                }
+                if (splitY) {
+                    children.add(new Envelope(partition.getMinX(), midX, midY, partition.getMaxY()));
+                }
+                if (splitX && splitY) {
+                    children.add(new Envelope(midX, partition.getMaxX(), midY, partition.getMaxY()));
+                }
+                return children.stream().flatMap(child -> join(child,
+                        lastX && (!splitX || child.getMinX() == midX), lastY && (!splitY || child.getMinY() == midY),
+                        depth + 1, leftGeometry, leftSrid, rightGeometry, rightSrid, rightNames));
+            }
+            return joinPartition(partition, lastX, lastY, leftGeometry, leftSrid, rightGeometry, rightSrid,
+                    rightNames).stream();
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to join the partition " + partition, e);
+        }
+    }
+
+    /**
+     * Return the names of the right columns in the joined rows. A right column having the same name as a left column
+     * is renamed with the {@link #RIGHT_SUFFIX}, followed by a number if the new name is already used.
+     *
+     * @return The names of the right columns in the joined rows, by right column name.
+     */
+    private Map<String, String> getRightNames() throws Exception {
+        Collection<String> leftColumns = left.getColumnNames();
+        Collection<String> rightColumns = right.getColumnNames();
+        Set<String> used = new HashSet<>();
+        leftColumns.forEach(name -> used.add(name.toUpperCase()));
+        rightColumns.forEach(name -> used.add(name.toUpperCase()));
+        Map<String, String> names = new LinkedHashMap<>();
+        for (String name : rightColumns) {
+            String renamed = name;
+            if (leftColumns.contains(name)) {
+                renamed = name + RIGHT_SUFFIX;
+                for (int i = 3; used.contains(renamed.toUpperCase()); i++) {
+                    renamed = name + "_" + i;
+                }
+                used.add(renamed.toUpperCase());
+            }
+            names.put(name, renamed);
+        }
+        return names;
+    }
+
+    /**
+     * Save the joined rows into a table of the given {@link IJdbcDataSource}.
+     *
+     * @param dataSource      {@link IJdbcDataSource} where the result is saved.
+     * @param outputTableName Name of the output table.
+     * @param deleteTable     True to delete the output table if it already exists.
+     * @return The name of the output table.
+     */
+    public String save(IJdbcDataSource dataSource, String outputTableName, boolean deleteTable) throws Exception {
+        Connection con = dataSource.getConnection();
+        if (con == null) {
+            throw new SQLException("Cannot get the connection to the database");
+        }
+        DBTypes dbType = dataSource.getDataBaseType();
+        String tableName = TableLocation.parse(outputTableName, dbType).toString();
+        Map<String, String> columns = new LinkedHashMap<>(left.getColumnNamesTypes());
+        Map<String, String> rightNames = getRightNames();
+        right.getColumnNamesTypes().forEach((name, type) -> columns.put(rightNames.getOrDefault(name, name), type));
+        StringBuilder create = new StringBuilder("CREATE TABLE ").append(tableName).append(" (");
+        StringBuilder insert = new StringBuilder("INSERT INTO ").append(tableName).append(" VALUES (");
+        List<String> names = new ArrayList<>(columns.keySet());
+        boolean[] geometries = new boolean[names.size()];
+        for (int i = 0; i < names.size(); i++) {
+            String type = columns.get(names.get(i));
+            geometries[i] = type.toLowerCase().startsWith("geometry");
+            if (i > 0) {
+                create.append(", ");
+                insert.append(", ");
+            }
+            create.append(TableLocation.quoteIdentifier(names.get(i), dbType)).append(" ")
+                    .append(geometries[i] ? "GEOMETRY" : type);
+            insert.append(geometries[i] ? "ST_GeomFromWKB(?, ?)" : "?");
+        }
+        create.append(")");
+        insert.append(")");
+        try (Statement statement = con.createStatement()) {
+            if (deleteTable) {
+                statement.execute("DROP TABLE IF EXISTS " + tableName);
+            }
+            statement.execute(create.toString());
+        }
+        WKBWriter writer = new WKBWriter(3);
+        try (PreparedStatement ps = con.prepareStatement(insert.toString());
+             Stream<Map<String, Object>> rows = stream()) {
+            int count = 0;
+            for (Iterator<Map<String, Object>> it = rows.iterator(); it.hasNext(); ) {
+                Map<String, Object> row = it.next();
+                int index = 1;
+                for (int i = 0; i < names.size(); i++) {
+                    Object value = row.get(names.get(i));
+                    if (geometries[i]) {
+                        Geometry geometry = (Geometry) value;
+                        ps.setObject(index++, geometry == null ? null : writer.write(geometry));
+                        ps.setInt(index++, geometry == null ? 0 : geometry.getSRID());
+                    } else {
+                        ps.setObject(index++, value);
+                    }
+                }
+                ps.addBatch();
+                if (++count % BATCH_SIZE == 0) {
+                    ps.executeBatch();
+                }
+            }
+            if (count % BATCH_SIZE != 0) {
+                ps.executeBatch();
+            }
+            if (!con.getAutoCommit()) {
+                con.commit();
+            }
+        } catch (Exception e) {
+            if (!con.getAutoCommit()) {
+                con.rollback();
+            }
+            try (Statement statement = con.createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS " + tableName);
+            } catch (SQLException e2) {
+                LOGGER.error("Unable to drop the partially saved table '" + tableName + "'.", e2);
+            }
+            throw new SQLException("Unable to save the spatial join into the table '" + tableName + "'.", e);
+        }
+        if (dataSource instanceof JdbcDataSource) {
+            ((JdbcDataSource) dataSource).invalidateCaches(outputTableName);
+        }
+        return tableName;
+    }
+
+    /**
+     * Read and join the rows of a partition.
+     */
+    private List<Map<String, Object>> joinPartition(Envelope partition, boolean lastX, boolean lastY,
+                                                    String leftGeometry, int leftSrid,
+                                                    String rightGeometry, int rightSrid,
+                                                    Map<String, String> rightNames) throws Exception {
+        List<Map<String, Object>> leftRows;
+        List<Map<String, Object>> rightRows;
+        if (left.getJdbcDataSource() != right.getJdbcDataSource()) {
+            //The two sides use different connections so they can be read at the same time
+            CompletableFuture<List<Map<String, Object>>> future = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return read(rightReader, right, rightGeometry, rightSrid, partition);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            });
+            leftRows = read(leftReader, left, leftGeometry, leftSrid, partition);
+            try {
+                rightRows = future.join();
+            } catch (CompletionException e) {
+                throw new SQLException("Unable to read the right table", e.getCause());
+            }
+        } else {
+            leftRows = read(leftReader, left, leftGeometry, leftSrid, partition);
+            rightRows = read(rightReader, right, rightGeometry, rightSrid, partition);
+        }
+        if (leftRows.isEmpty() || rightRows.isEmpty()) {
+            return new ArrayList<>();
+        }
+        STRtree tree = new STRtree();
+        for (Map<String, Object> row : rightRows) {
+            Geometry geometry = (Geometry) row.get(rightGeometry);
+            if (geometry != null && !geometry.isEmpty()) {
+                tree.insert(geometry.getEnvelopeInternal(), row);
+            }
+        }
+        tree.build();
+        return leftRows.parallelStream().flatMap(leftRow -> {
+            Geometry geometry = (Geometry) leftRow.get(leftGeometry);
+            if (geometry == null || geometry.isEmpty()) {
+                return Stream.empty();
+            }
+            Envelope envelope = geometry.getEnvelopeInternal();
+            List<?> candidates = tree.query(envelope);
+            if (candidates.isEmpty()) {
+                return Stream.empty();
+            }
+            PreparedGeometry prepared = PreparedGeometryFactory.prepare(geometry);
+            List<Map<String, Object>> joined = new ArrayList<>();
+            for (Object candidate : candidates) {
+                Map<String, Object> rightRow = (Map<String, Object>) candidate;
+                Geometry other = (Geometry) rightRow.get(rightGeometry);
+                Envelope otherEnvelope = other.getEnvelopeInternal();
+                double x = Math.max(envelope.getMinX(), otherEnvelope.getMinX());
+                double y = Math.max(envelope.getMinY(), otherEnvelope.getMinY());
+                boolean inPartition = x >= partition.getMinX() && (x < partition.getMaxX() || lastX) &&
+                        y >= partition.getMinY() && (y < partition.getMaxY() || lastY);
+                if (inPartition && test(prepared, other)) {
+                    Map<String, Object> row = new LinkedHashMap<>(leftRow);
+                    rightRow.forEach((name, value) -> row.put(rightNames.getOrDefault(name, name), value));
+                    joined.add(row);
+                }
+            }
+            return joined.stream();
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * Read the rows of a table whose geometry envelope intersects the given partition.
+     */
+    private static List<Map<String, Object>> read(TableReader reader, JdbcSpatialTable table, String geometryColumn,
+                                                  int srid, Envelope partition) throws Exception {
+        String query = reader.getSelectQuery("*") + getFilter(table, geometryColumn, srid, partition);
+        try (Stream<Map<String, Object>> rows = reader.read(query, table.getParams(),
+                GeometryDecodingPipeline.DEFAULT_BATCH_SIZE, Runtime.getRuntime().availableProcessors(), false)) {
+            return rows.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Return the bounding box filter of the rows of a table intersecting the given partition.
+     */
+    private static String getFilter(JdbcSpatialTable table, String geometryColumn, int srid, Envelope partition) {
+        return " WHERE " + TableLocation.quoteIdentifier(geometryColumn, table.getDbType()) + " && ST_MakeEnvelope(" + partition.getMinX() + ", " +
+                partition.getMinY() + ", " + partition.getMaxX() + ", " + partition.getMaxY() + ", " + srid + ")";
+    }
+
+    /**
+     * Check the join predicate between a left and a right geometry.
+     */
+    private boolean test(PreparedGeometry left, Geometry right) {
+        switch (predicate) {
+            case CONTAINS:
+                return left.contains(right);
+            case WITHIN:
+                return left.within(right);
+            case COVERS:
+                return left.covers(right);
+            case COVERED_BY:
+                return left.coveredBy(right);
+            case TOUCHES:
+                return left.touches(right);
+            case CROSSES:
+                return left.crosses(right);
+            case OVERLAPS:
+                return left.overlaps(right);
+            case EQUALS:
+                return left.getGeometry().equalsTopo(right);
+            case INTERSECTS:
+            default:
+                return left.intersects(right);
+        }
+    }
+
+    /**
+     * Return the first geometry column of a table.
+     */
+    private static String getGeometryColumn(JdbcSpatialTable table) throws Exception {
+        List<String> columns = table.getGeometricColumns();
+        if (columns == null || columns.isEmpty()) {
+            throw new SQLException("Cannot find any geometry column");
+        }
+        return columns.get(0);
+    }
+
+    /**
+     * Return the SRID to use in the bounding box filter of a table.
+     */
+    private static int getSrid(JdbcSpatialTable table, Geometry extent) throws Exception {
+        if (table.getTableLocation() != null) {
+            return table.getSrid();
+        }
+        return extent.getSRID();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc.spatial;
+
+import org.orbisgis.data.jdbc.JdbcSpatialTable;
+import org.orbisgis.data.jdbc.resultset.GeometryDecodingPipeline;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Access to the rows of a {@link JdbcSpatialTable} given by the table to the spatial operations, so that they can
+ * read it with their own queries without the table exposing its queries.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public interface TableReader {
+
+    /**
+     * Return the query selecting the given columns of the table. A WHERE clause can be appended to it.
+     *
+     * @param columns Columns or expressions to select.
+     * @return The select query, using the parameters of the table.
+     */
+    String getSelectQuery(String columns);
+
+    /**
+     * Return the number of rows of the table matching the given filter.
+     *
+     * @param filter WHERE clause appended to the select query of the table, can be empty.
+     * @return The number of matching rows.
+     */
+    long count(String filter) throws Exception;
+
+    /**
+     * Return a {@link Stream} of the rows of the given query, the geometries being decoded by a
+     * {@link GeometryDecodingPipeline}.
+     *
+     * @param query        Query to read.
+     * @param params       Parameters of the query.
+     * @param batchSize    Number of rows decoded by a task.
+     * @param decoderCount Number of decoding threads.
+     * @param ordered      True to keep the order of the rows, false otherwise.
+     * @return A {@link Stream} of the rows, to close once consumed.
+     */
+    Stream<Map<String, Object>> read(String query, List<Object> params, int batchSize, int decoderCount,
+                                     boolean ordered) throws Exception;
+}
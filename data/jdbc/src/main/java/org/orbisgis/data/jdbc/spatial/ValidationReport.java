@@ -0,0 +1,156 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc.spatial;
+
+import org.orbisgis.data.api.dataset.IValidationReport;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Implementation of {@link IValidationReport} filled by {@link GeometryValidation}.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public class ValidationReport implements IValidationReport {
+
+    /** Name of the geometry column */
+    private final String columnName;
+    /** Number of checked geometries */
+    private long checkedCount = 0;
+    /** Number of invalid geometries */
+    private long invalidCount = 0;
+    /** Number of repaired geometries */
+    private long repairedCount = 0;
+    /** Validation errors of the first invalid rows */
+    private final Map<Object, String> invalidRows = new LinkedHashMap<>();
+    /** Repair errors of the first rows which could not be repaired */
+    private final Map<Object, String> failedRows = new LinkedHashMap<>();
+
+    /**
+     * Create an empty report.
+     *
+     * @param columnName Name of the geometry column.
+     */
+    public ValidationReport(String columnName) {
+        this.columnName = columnName;
+    }
+
+    /**
+     * Add the given number of checked geometries.
+     *
+     * @param count Number of checked geometries.
+     */
+    void addChecked(long count) {
+        checkedCount += count;
+    }
+
+    /**
+     * Add an invalid row.
+     *
+     * @param row   Identifier of the row.
+     * @param error Validation error.
+     */
+    void addInvalid(Object row, String error) {
+        invalidCount++;
+        if (invalidRows.size() < MAX_REPORTED_ROWS) {
+            invalidRows.put(row, error);
+        }
+    }
+
+    /**
+     * Add a repaired row.
+     */
+    void addRepaired() {
+        repairedCount++;
+    }
+
+    /**
+     * Add a row which could not be repaired.
+     *
+     * @param row   Identifier of the row.
+     * @param error Repair error.
+     */
+    void addFailed(Object row, String error) {
+        if (failedRows.size() < MAX_REPORTED_ROWS) {
+            failedRows.put(row, error);
+        }
+    }
+
+    @Override
+    public String getColumnName() {
+        return columnName;
+    }
+
+    @Override
+    public long getCheckedCount() {
+        return checkedCount;
+    }
+
+    @Override
+    public long getInvalidCount() {
+        return invalidCount;
+    }
+
+    @Override
+    public long getRepairedCount() {
+        return repairedCount;
+    }
+
+    @Override
+    public Map<Object, String> getInvalidRows() {
+        return Collections.unmodifiableMap(invalidRows);
+    }
+
+    @Override
+    public Map<Object, String> getFailedRows() {
+        return Collections.unmodifiableMap(failedRows);
+    }
+
+    @Override
+    public boolean isValid() {
+        return repairedCount == invalidCount;
+    }
+
+    @Override
+    public String toString() {
+        return columnName + " : " + checkedCount + " checked, " + invalidCount + " invalid, " +
+                repairedCount + " repaired, " + failedRows.size() + " failed";
+    }
+}
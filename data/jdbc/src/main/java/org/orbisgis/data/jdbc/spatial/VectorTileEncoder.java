@@ -0,0 +1,448 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc.spatial;
+
+import org.locationtech.jts.geom.*;
+import org.locationtech.jts.geom.util.GeometryFixer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In memory encoder of a one layer Mapbox Vector Tile (version 2.1 of the specification) from JTS geometries, used
+ * when the database cannot encode the tiles.
+ *
+ * The geometries are clipped to the tile extended by a buffer, transformed into the integer tile coordinates and
+ * encoded with the tile protobuf schema. The rings of the polygons are oriented as required by the specification and
+ * the rings or lines collapsed by the transformation are dropped.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public final class VectorTileEncoder {
+
+    /** Default size of a tile in tile coordinates */
+    public static final int DEFAULT_EXTENT = 4096;
+    /** Default size of the buffer around a tile in tile coordinates */
+    public static final int DEFAULT_BUFFER = 64;
+
+    /** Protobuf geometry types */
+    private static final int POINT = 1;
+    private static final int LINESTRING = 2;
+    private static final int POLYGON = 3;
+    /** Geometry commands */
+    private static final int MOVE_TO = 1;
+    private static final int LINE_TO = 2;
+    private static final int CLOSE_PATH = 7;
+
+    /** Name of the layer */
+    private final String layerName;
+    /** Envelope of the tile in the coordinates of the geometries */
+    private final Envelope tileEnvelope;
+    /** Envelope of the tile extended by the buffer */
+    private final Envelope clipEnvelope;
+    /** Size of the tile in tile coordinates */
+    private final int extent;
+    /** Attribute keys and their index */
+    private final Map<String, Integer> keys = new LinkedHashMap<>();
+    /** Attribute values and their index */
+    private final Map<Object, Integer> values = new LinkedHashMap<>();
+    /** Encoded features */
+    private final ByteArrayOutputStream features = new ByteArrayOutputStream();
+    /** Number of encoded features */
+    private int featureCount = 0;
+
+    /**
+     * Create an encoder using the default extent and buffer.
+     *
+     * @param layerName    Name of the layer.
+     * @param tileEnvelope Envelope of the tile in the coordinates of the geometries.
+     */
+    public VectorTileEncoder(String layerName, Envelope tileEnvelope) {
+        this(layerName, tileEnvelope, DEFAULT_EXTENT, DEFAULT_BUFFER);
+    }
+
+    /**
+     * Main constructor.
+     *
+     * @param layerName    Name of the layer.
+     * @param tileEnvelope Envelope of the tile in the coordinates of the geometries.
+     * @param extent       Size of the tile in tile coordinates.
+     * @param buffer       Size of the buffer around the tile in tile coordinates.
+     */
+    public VectorTileEncoder(String layerName, Envelope tileEnvelope, int extent, int buffer) {
+        if (extent <= 0 || buffer < 0) {
+            throw new IllegalArgumentException("The extent should be strictly positive and the buffer positive.");
+        }
+        this.layerName = layerName;
+        this.tileEnvelope = tileEnvelope;
+        this.extent = extent;
+        this.clipEnvelope = new Envelope(tileEnvelope);
+        this.clipEnvelope.expandBy(tileEnvelope.getWidth() * buffer / extent, tileEnvelope.getHeight() * buffer / extent);
+    }
+
+    /**
+     * Add a feature to the tile. The features whose geometry is null, outside of the buffered tile or collapsed
+     * into the tile coordinates are ignored.
+     *
+     * @param geometry   {@link Geometry} of the feature, in the coordinates of the tile envelope.
+     * @param attributes Attributes of the feature, the null values and the geometries being ignored.
+     * @return True if the feature has been added, false if it has been ignored.
+     */
+    public boolean addFeature(Geometry geometry, Map<String, Object> attributes) {
+        if (geometry == null || geometry.isEmpty() || !clipEnvelope.intersects(geometry.getEnvelopeInternal())) {
+            return false;
+        }
+        int dimension = geometry.getDimension();
+        List<Geometry> parts = new ArrayList<>();
+        extract(clip(geometry), dimension, parts);
+        List<Integer> commands = new ArrayList<>();
+        int[] cursor = new int[2];
+        int type;
+        if (dimension == 0) {
+            type = POINT;
+            encodePoints(parts, commands, cursor);
+        } else if (dimension == 1) {
+            type = LINESTRING;
+            for (Geometry part : parts) {
+                encodeLine(part.getCoordinates(), commands, cursor, false, false);
+            }
+        } else {
+            type = POLYGON;
+            for (Geometry part : parts) {
+                Polygon polygon = (Polygon) part;
+                if (encodeLine(polygon.getExteriorRing().getCoordinates(), commands, cursor, true, true)) {
+                    for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+                        encodeLine(polygon.getInteriorRingN(i).getCoordinates(), commands, cursor, true, false);
+                    }
+                }
+            }
+        }
+        if (commands.isEmpty()) {
+            return false;
+        }
+        ByteArrayOutputStream feature = new ByteArrayOutputStream();
+        List<Integer> tags = new ArrayList<>();
+        if (attributes != null) {
+            for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+                Object value = getValue(entry.getValue());
+                if (value != null) {
+                    tags.add(keys.computeIfAbsent(entry.getKey(), k -> keys.size()));
+                    tags.add(values.computeIfAbsent(value, k -> values.size()));
+                }
+            }
+        }
+        if (!tags.isEmpty()) {
+            writePacked(feature, 2, tags);
+        }
+        writeTag(feature, 3, 0);
+        writeVarint(feature, type);
+        writePacked(feature, 4, commands);
+        writeMessage(features, 2, feature);
+        featureCount++;
+        return true;
+    }
+
+    /**
+     * Return the number of features added to the tile.
+     *
+     * @return The number of features added to the tile.
+     */
+    public int getFeatureCount() {
+        return featureCount;
+    }
+
+    /**
+     * Return the encoded tile.
+     *
+     * @return The encoded tile, an empty array if no feature has been added.
+     */
+    public byte[] encode() {
+        if (featureCount == 0) {
+            return new byte[0];
+        }
+        ByteArrayOutputStream layer = new ByteArrayOutputStream();
+        writeString(layer, 1, layerName);
+        layer.writeBytes(features.toByteArray());
+        for (String key : keys.keySet()) {
+            writeString(layer, 3, key);
+        }
+        for (Object value : values.keySet()) {
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            if (value instanceof String) {
+                writeString(encoded, 1, (String) value);
+            } else if (value instanceof Float) {
+                writeTag(encoded, 2, 5);
+                writeFixed(encoded, Float.floatToIntBits((Float) value), 4);
+            } else if (value instanceof Double) {
+                writeTag(encoded, 3, 1);
+                writeFixed(encoded, Double.doubleToLongBits((Double) value), 8);
+            } else if (value instanceof Long) {
+                writeTag(encoded, 4, 0);
+                writeVarint(encoded, (Long) value);
+            } else {
+                writeTag(encoded, 7, 0);
+                writeVarint(encoded, (Boolean) value ? 1 : 0);
+            }
+            writeMessage(layer, 4, encoded);
+        }
+        writeTag(layer, 5, 0);
+        writeVarint(layer, extent);
+        writeTag(layer, 15, 0);
+        writeVarint(layer, 2);
+        ByteArrayOutputStream tile = new ByteArrayOutputStream();
+        writeMessage(tile, 3, layer);
+        return tile.toByteArray();
+    }
+
+    /**
+     * Clip the given {@link Geometry} to the buffered tile.
+     */
+    private Geometry clip(Geometry geometry) {
+        if (geometry.getDimension() == 0 || clipEnvelope.contains(geometry.getEnvelopeInternal())) {
+            return geometry;
+        }
+        Geometry clip = geometry.getFactory().toGeometry(clipEnvelope);
+        try {
+            return geometry.intersection(clip);
+        } catch (RuntimeException e) {
+            //Invalid geometries are repaired before being clipped again
+            return GeometryFixer.fix(geometry).intersection(clip);
+        }
+    }
+
+    /**
+     * Add to the list the simple geometries of the given dimension contained by the {@link Geometry}.
+     */
+    private static void extract(Geometry geometry, int dimension, List<Geometry> parts) {
+        for (int i = 0; i < geometry.getNumGeometries(); i++) {
+            Geometry part = geometry.getGeometryN(i);
+            if (part instanceof GeometryCollection) {
+                extract(part, dimension, parts);
+            } else if (!part.isEmpty() && part.getDimension() == dimension) {
+                parts.add(part);
+            }
+        }
+    }
+
+    /**
+     * Encode the points inside the buffered tile with a single MoveTo command.
+     */
+    private void encodePoints(List<Geometry> points, List<Integer> commands, int[] cursor) {
+        List<Integer> parameters = new ArrayList<>();
+        for (Geometry point : points) {
+            Coordinate coordinate = point.getCoordinate();
+            if (clipEnvelope.contains(coordinate)) {
+                int x = toTileX(coordinate.x);
+                int y = toTileY(coordinate.y);
+                parameters.add(zigZag(x - cursor[0]));
+                parameters.add(zigZag(y - cursor[1]));
+                cursor[0] = x;
+                cursor[1] = y;
+            }
+        }
+        if (!parameters.isEmpty()) {
+            commands.add(command(MOVE_TO, parameters.size() / 2));
+            commands.addAll(parameters);
+        }
+    }
+
+    /**
+     * Encode a line or a ring. The exterior rings are oriented with a positive area in tile coordinates, the
+     * interior ones with a negative area.
+     *
+     * @return True if the line has been encoded, false if it collapsed.
+     */
+    private boolean encodeLine(Coordinate[] coordinates, List<Integer> commands, int[] cursor, boolean ring,
+                               boolean exterior) {
+        List<int[]> points = new ArrayList<>(coordinates.length);
+        for (int i = 0; i < coordinates.length; i++) {
+            int[] point = {toTileX(coordinates[i].x), toTileY(coordinates[i].y)};
+            int[] last = points.isEmpty() ? null : points.get(points.size() - 1);
+            if (last == null || last[0] != point[0] || last[1] != point[1]) {
+                points.add(point);
+            }
+        }
+        if (ring) {
+            if (points.size() > 1 && points.get(0)[0] == points.get(points.size() - 1)[0] &&
+                    points.get(0)[1] == points.get(points.size() - 1)[1]) {
+                points.remove(points.size() - 1);
+            }
+            long area = 0;
+            for (int i = 0; i < points.size(); i++) {
+                int[] a = points.get(i);
+                int[] b = points.get((i + 1) % points.size());
+                area += (long) a[0] * b[1] - (long) b[0] * a[1];
+            }
+            if (points.size() < 3 || area == 0) {
+                return false;
+            }
+            if (area > 0 != exterior) {
+                Collections.reverse(points);
+            }
+        } else if (points.size() < 2) {
+            return false;
+        }
+        for (int i = 0; i < points.size(); i++) {
+            if (i == 0) {
+                commands.add(command(MOVE_TO, 1));
+            } else if (i == 1) {
+                commands.add(command(LINE_TO, points.size() - 1));
+            }
+            int[] point = points.get(i);
+            commands.add(zigZag(point[0] - cursor[0]));
+            commands.add(zigZag(point[1] - cursor[1]));
+            cursor[0] = point[0];
+            cursor[1] = point[1];
+        }
+        if (ring) {
+            commands.add(command(CLOSE_PATH, 1));
+        }
+        return true;
+    }
+
+    /**
+     * Convert an X coordinate into the tile coordinates.
+     */
+    private int toTileX(double x) {
+        return (int) Math.round((x - tileEnvelope.getMinX()) * extent / tileEnvelope.getWidth());
+    }
+
+    /**
+     * Convert an Y coordinate into the tile coordinates, whose Y axis goes down.
+     */
+    private int toTileY(double y) {
+        return (int) Math.round((tileEnvelope.getMaxY() - y) * extent / tileEnvelope.getHeight());
+    }
+
+    /**
+     * Return the value of an attribute as one of the types supported by the tiles : String, Float, Double, Long or
+     * Boolean, or null if the attribute should be ignored.
+     */
+    private static Object getValue(Object value) {
+        if (value == null || value instanceof Geometry) {
+            return null;
+        }
+        if (value instanceof String || value instanceof Float || value instanceof Double || value instanceof Long ||
+                value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return value.toString();
+    }
+
+    /**
+     * Return a command integer.
+     */
+    private static int command(int id, int count) {
+        return (id & 0x7) | (count << 3);
+    }
+
+    /**
+     * Return the ZigZag encoding of a parameter.
+     */
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    /**
+     * Write a protobuf field key.
+     */
+    private static void writeTag(ByteArrayOutputStream out, int field, int wireType) {
+        writeVarint(out, (field << 3) | wireType);
+    }
+
+    /**
+     * Write a protobuf variable length integer.
+     */
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Write a little endian protobuf fixed size value.
+     */
+    private static void writeFixed(ByteArrayOutputStream out, long value, int size) {
+        for (int i = 0; i < size; i++) {
+            out.write((int) (value >>> (8 * i)) & 0xFF);
+        }
+    }
+
+    /**
+     * Write a protobuf string field.
+     */
+    private static void writeString(ByteArrayOutputStream out, int field, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeTag(out, field, 2);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Write a protobuf embedded message field.
+     */
+    private static void writeMessage(ByteArrayOutputStream out, int field, ByteArrayOutputStream message) {
+        writeTag(out, field, 2);
+        writeVarint(out, message.size());
+        out.write(message.toByteArray(), 0, message.size());
+    }
+
+    /**
+     * Write a packed repeated unsigned integer field.
+     */
+    private static void writePacked(ByteArrayOutputStream out, int field, List<Integer> values) {
+        ByteArrayOutputStream packed = new ByteArrayOutputStream();
+        for (int value : values) {
+            writeVarint(packed, value & 0xFFFFFFFFL);
+        }
+        writeMessage(out, field, packed);
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Bundle JDBC is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc.spatial;
+
+import org.locationtech.jts.densify.Densifier;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tiling of the features in Mapbox Vector Tiles using the Web Mercator (EPSG:3857) XYZ tiling scheme, and writing of
+ * the tiles pyramids into a directory tree of {@code zoom/x/y.mvt} files.
+ *
+ * The features of the tiles are read one tile at a time, so that the connection to the database is never shared
+ * between threads, while the tiles already read are encoded and written in parallel. Only the tiles whose buffered envelope intersects the extent of
+ * the features are generated and the children of a tile whose buffered area does not contain any feature are skipped,
+ * as they are empty too.
+ * The tiles are written in a temporary file then moved so that a tile server never reads a partial tile.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public final class VectorTiles {
+
+    /** SRID of the Web Mercator projection used by the tiles */
+    public static final int WEB_MERCATOR = 3857;
+    /** Half of the side of the Web Mercator world, in meters */
+    public static final double ORIGIN_SHIFT = 20037508.342789244;
+    /** Highest supported zoom level */
+    public static final int MAX_ZOOM = 24;
+    /** Extension of the tile files */
+    public static final String EXTENSION = ".mvt";
+    /** Number of segments added on the sides of an envelope before its reprojection */
+    private static final int DENSIFY_SEGMENTS = 16;
+
+    private VectorTiles() {
+    }
+
+    /**
+     * Loader of a tile.
+     */
+    @FunctionalInterface
+    public interface TileLoader {
+        /**
+         * Read the features of a tile. This method is called by one thread at a time.
+         *
+         * @param zoom Zoom level of the tile.
+         * @param x    Column of the tile.
+         * @param y    Row of the tile.
+         * @return The encoding of the tile, which can run in any thread and returns the encoded tile, empty if the
+         * tile area contains features which have all been collapsed by the encoding. Null if the tile area does not
+         * contain any feature.
+         */
+        Callable<byte[]> load(int zoom, int x, int y) throws Exception;
+    }
+
+    /**
+     * Check the zoom level and the coordinates of a tile.
+     *
+     * @param zoom Zoom level of the tile.
+     * @param x    Column of the tile.
+     * @param y    Row of the tile.
+     */
+    public static void checkTile(int zoom, int x, int y) {
+        if (zoom < 0 || zoom > MAX_ZOOM) {
+            throw new IllegalArgumentException("The zoom level should be between 0 and " + MAX_ZOOM + ".");
+        }
+        int count = 1 << zoom;
+        if (x < 0 || x >= count || y < 0 || y >= count) {
+            throw new IllegalArgumentException("The tile " + zoom + "/" + x + "/" + y + " does not exist.");
+        }
+    }
+
+    /**
+     * Return the envelope of a tile in Web Mercator coordinates.
+     *
+     * @param zoom Zoom level of the tile.
+     * @param x    Column of the tile, from the west.
+     * @param y    Row of the tile, from the north.
+     * @return The envelope of the tile.
+     */
+    public static Envelope getTileEnvelope(int zoom, int x, int y) {
+        double size = 2 * ORIGIN_SHIFT / (1 << zoom);
+        return new Envelope(-ORIGIN_SHIFT + x * size, -ORIGIN_SHIFT + (x + 1) * size,
+                ORIGIN_SHIFT - (y + 1) * size, ORIGIN_SHIFT - y * size);
+    }
+
+    /**
+     * Return the envelope of a tile in Web Mercator coordinates, extended by the default buffer of the tiles.
+     *
+     * @param zoom Zoom level of the tile.
+     * @param x    Column of the tile, from the west.
+     * @param y    Row of the tile, from the north.
+     * @return The buffered envelope of the tile.
+     */
+    public static Envelope getBufferedTileEnvelope(int zoom, int x, int y) {
+        Envelope envelope = getTileEnvelope(zoom, x, y);
+        envelope.expandBy(envelope.getWidth() * VectorTileEncoder.DEFAULT_BUFFER / VectorTileEncoder.DEFAULT_EXTENT);
+        return envelope;
+    }
+
+    /**
+     * Return the file of a tile in a directory tree.
+     *
+     * @param directory Root directory of the tiles.
+     * @param zoom      Zoom level of the tile.
+     * @param x         Column of the tile.
+     * @param y         Row of the tile.
+     * @return The file of the tile.
+     */
+    public static File getTileFile(File directory, int zoom, int x, int y) {
+        return new File(directory, zoom + File.separator + x + File.separator + y + EXTENSION);
+    }
+
+    /**
+     * Reproject an envelope. The sides of the envelope are densified before the reprojection so that the result
+     * covers the curved reprojected envelope. The Web Mercator envelopes are clipped to the world extent.
+     *
+     * @param envelope   Envelope to reproject.
+     * @param sourceSrid SRID of the envelope.
+     * @param targetSrid SRID of the result.
+     * @return The reprojected envelope.
+     */
+    public static Envelope reproject(Envelope envelope, int sourceSrid, int targetSrid) {
+        if (envelope == null || envelope.isNull() || sourceSrid == targetSrid) {
+            return envelope;
+        }
+        Geometry geometry = new GeometryFactory().toGeometry(envelope);
+        double length = Math.max(envelope.getWidth(), envelope.getHeight()) / DENSIFY_SEGMENTS;
+        if (length > 0) {
+            geometry = Densifier.densify(geometry, length);
+        }
+        geometry.setSRID(sourceSrid);
+        Envelope result = Reprojection.reproject(geometry, targetSrid).getEnvelopeInternal();
+        if (targetSrid == WEB_MERCATOR) {
+            Envelope world = new Envelope(-ORIGIN_SHIFT, ORIGIN_SHIFT, -ORIGIN_SHIFT, ORIGIN_SHIFT);
+            result = Double.isFinite(result.getMinY()) && Double.isFinite(result.getMaxY()) ?
+                    result.intersection(world) : world;
+        }
+        return result;
+    }
+
+    /**
+     * Write the tiles intersecting the given extent for the zoom levels into a directory tree of
+     * {@code zoom/x/y.mvt} files.
+     *
+     * Without changed area, the tiles already present in the directory are kept and the missing ones are
+     * generated. With a changed area, only the tiles intersecting it are generated again, the tiles which became
+     * empty being removed, the other tiles being kept as they are.
+     *
+     * @param directory   Root directory of the tiles.
+     * @param minZoom     Lowest zoom level to generate.
+     * @param maxZoom     Highest zoom level to generate.
+     * @param extent      Extent of the features in Web Mercator coordinates.
+     * @param changedArea Web Mercator envelope of the modified features, null to only generate the missing tiles.
+     * @param loader      {@link TileLoader} generating the tiles.
+     * @return The number of written tiles.
+     */
+    public static int write(File directory, int minZoom, int maxZoom, Envelope extent, Envelope changedArea,
+                            TileLoader loader) throws Exception {
+        if (minZoom < 0 || maxZoom > MAX_ZOOM || minZoom > maxZoom) {
+            throw new IllegalArgumentException("The zoom levels should be ordered and between 0 and " + MAX_ZOOM +
+                    ".");
+        }
+        //Only the tiles of the changed area are generated again, the other ones are kept
+        Envelope range = changedArea != null ? changedArea : extent;
+        if (range == null || range.isNull()) {
+            return 0;
+        }
+        Files.createDirectories(directory.toPath());
+        AtomicInteger written = new AtomicInteger();
+        List<int[]> tiles = getTiles(minZoom, range);
+        //Tiles of the changed area known to be empty as their parent is, whose files should only be removed
+        List<int[]> emptyTiles = new ArrayList<>();
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            for (int zoom = minZoom; zoom <= maxZoom && !(tiles.isEmpty() && emptyTiles.isEmpty()); zoom++) {
+                List<int[]> covered = new ArrayList<>();
+                List<int[]> empty = new ArrayList<>();
+                //The tiles read and not yet written are bounded, as they keep their features in memory
+                Deque<Future<?>> pending = new ArrayDeque<>();
+                for (int[] tile : tiles) {
+                    File file = getTileFile(directory, zoom, tile[0], tile[1]);
+                    if (changedArea == null && file.exists()) {
+                        covered.add(tile);
+                        continue;
+                    }
+                    Callable<byte[]> encoding = loader.load(zoom, tile[0], tile[1]);
+                    if (encoding == null) {
+                        Files.deleteIfExists(file.toPath());
+                        empty.add(tile);
+                        continue;
+                    }
+                    covered.add(tile);
+                    pending.add(executor.submit(() -> writeTile(file, encoding.call(), written)));
+                    if (pending.size() > 2 * threadCount) {
+                        waitFor(pending.poll());
+                    }
+                }
+                while (!pending.isEmpty()) {
+                    waitFor(pending.poll());
+                }
+                for (int[] tile : emptyTiles) {
+                    Files.deleteIfExists(getTileFile(directory, zoom, tile[0], tile[1]).toPath());
+                }
+                tiles = getChildren(covered, zoom + 1, range);
+                if (changedArea != null) {
+                    emptyTiles.addAll(empty);
+                    emptyTiles = getChildren(emptyTiles, zoom + 1, changedArea);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return written.get();
+    }
+
+    /**
+     * Wait for the end of a task, throwing its failure.
+     */
+    private static void waitFor(Future<?> future) throws Exception {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Write an encoded tile, or remove its file if the tile is empty.
+     *
+     * @return Null, so that the method can be submitted as a {@link Callable}.
+     */
+    private static Void writeTile(File file, byte[] data, AtomicInteger written) throws IOException {
+        if (data == null || data.length == 0) {
+            Files.deleteIfExists(file.toPath());
+            return null;
+        }
+        Path parent = file.getParentFile().toPath();
+        Files.createDirectories(parent);
+        Path temporary = Files.createTempFile(parent, file.getName().replace(EXTENSION, "") + "_", ".tmp");
+        try {
+            Files.write(temporary, data);
+            Files.move(temporary, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        written.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Return the column and the row of the tiles of a zoom level whose buffered envelope intersects an envelope.
+     */
+    private static List<int[]> getTiles(int zoom, Envelope area) {
+        int count = 1 << zoom;
+        double size = 2 * ORIGIN_SHIFT / count;
+        Envelope envelope = new Envelope(area);
+        envelope.expandBy(size * VectorTileEncoder.DEFAULT_BUFFER / VectorTileEncoder.DEFAULT_EXTENT);
+        int minX = clamp((int) Math.floor((envelope.getMinX() + ORIGIN_SHIFT) / size), count);
+        int maxX = clamp((int) Math.floor((envelope.getMaxX() + ORIGIN_SHIFT) / size), count);
+        int minY = clamp((int) Math.floor((ORIGIN_SHIFT - envelope.getMaxY()) / size), count);
+        int maxY = clamp((int) Math.floor((ORIGIN_SHIFT - envelope.getMinY()) / size), count);
+        List<int[]> tiles = new ArrayList<>();
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                tiles.add(new int[]{x, y});
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * Return the children of the given tiles whose buffered envelope intersects an envelope.
+     */
+    private static List<int[]> getChildren(List<int[]> tiles, int zoom, Envelope envelope) {
+        List<int[]> children = new ArrayList<>(4 * tiles.size());
+        for (int[] tile : tiles) {
+            for (int i = 0; i < 4; i++) {
+                int x = 2 * tile[0] + i % 2;
+                int y = 2 * tile[1] + i / 2;
+                if (getBufferedTileEnvelope(zoom, x, y).intersects(envelope)) {
+                    children.add(new int[]{x, y});
+                }
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Clamp a tile index to the tiles of a zoom level.
+     */
+    private static int clamp(int index, int count) {
+        return Math.max(0, Math.min(count - 1, index));
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Bundle JDBC API is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC API is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2019-2020 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC API is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC API is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC API. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class dedicated to {@link TableCache}.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public class TableCacheTest {
+
+    /**
+     * Test the {@link TableCache#getModifiedTables(String)} method.
+     */
+    @Test
+    public void testGetModifiedTables() {
+        assertEquals(Collections.emptySet(), TableCache.getModifiedTables(null));
+        assertEquals(Collections.emptySet(), TableCache.getModifiedTables("SELECT * FROM cached"));
+        assertEquals(Set.of("cached"), TableCache.getModifiedTables("INSERT INTO cached VALUES (1)"));
+        assertEquals(Set.of("cached", "other"), TableCache.getModifiedTables(
+                "UPDATE public.cached SET id = 2;\n DELETE FROM \"other\" WHERE id = 1"));
+        assertEquals(Set.of("a", "b"), TableCache.getModifiedTables("DROP TABLE IF EXISTS a, b"));
+        assertEquals(Set.of("cached"), TableCache.getModifiedTables(
+                "WITH moved AS (DELETE FROM cached RETURNING *) SELECT * FROM moved"));
+        assertNull(TableCache.getModifiedTables("DROP SCHEMA test CASCADE"));
+
+        //The clauses using the statement keywords are not statements modifying a table
+        assertEquals(Set.of("child"), TableCache.getModifiedTables("CREATE TABLE child (id int, " +
+                "parent int REFERENCES parent (id) ON DELETE CASCADE ON UPDATE SET NULL)"));
+        assertEquals(Collections.emptySet(), TableCache.getModifiedTables("SELECT * FROM cached FOR UPDATE"));
+    }
+}
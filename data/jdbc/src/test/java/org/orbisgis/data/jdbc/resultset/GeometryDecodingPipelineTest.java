@@ -0,0 +1,161 @@
+/*
+ * Bundle JDBC API is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * JDBC API is distributed under LGPL 3 license.
+ *
+ * Copyright (C) 2019-2020 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * JDBC API is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * JDBC API is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JDBC API. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.data.jdbc.resultset;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.WKBWriter;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class dedicated to {@link GeometryDecodingPipeline}.
+ *
+ * @author Erwan Bocher (CNRS)
+ * @author Sylvain PALOMINOS (UBS Lab-STICC)
+ */
+public class GeometryDecodingPipelineTest {
+
+    /**
+     * WKB of the point read from the fake cursor.
+     */
+    private static final byte[] POINT = new WKBWriter().write(new GeometryFactory().createPoint(new Coordinate(1, 2)));
+
+    /**
+     * Return a fake {@link ResultSet} of rows made of an id and a geometry.
+     *
+     * @param failAt Row at which {@link ResultSet#next()} throws a {@link RuntimeException}, -1 to never fail.
+     * @param inNext Set to true while {@link ResultSet#next()} is running.
+     * @param closedInNext Set to true if the cursor is closed while {@link ResultSet#next()} is running.
+     * @return A fake {@link ResultSet}.
+     */
+    private static ResultSet getResultSet(int failAt, AtomicBoolean inNext, AtomicBoolean closedInNext) {
+        ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(
+                ResultSetMetaData.class.getClassLoader(), new Class<?>[]{ResultSetMetaData.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getColumnCount":
+                            return 2;
+                        case "getColumnLabel":
+                            return (int) args[0] == 1 ? "ID" : "THE_GEOM";
+                        case "getColumnTypeName":
+                            return (int) args[0] == 1 ? "INTEGER" : "GEOMETRY";
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        AtomicInteger row = new AtomicInteger();
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getMetaData":
+                            return metaData;
+                        case "next":
+                            inNext.set(true);
+                            try {
+                                Thread.sleep(1);
+                                if (row.incrementAndGet() == failAt) {
+                                    throw new IllegalStateException("Broken cursor");
+                                }
+                                return true;
+                            } finally {
+                                inNext.set(false);
+                            }
+                        case "getObject":
+                            return row.get();
+                        case "getBytes":
+                            return POINT;
+                        case "close":
+                            if (inNext.get()) {
+                                closedInNext.set(true);
+                            }
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * Test that a {@link RuntimeException} thrown by the reader thread ends the consumption.
+     */
+    @Test
+    public void testReaderFailure() {
+        AtomicBoolean inNext = new AtomicBoolean();
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            try (GeometryDecodingPipeline pipeline = new GeometryDecodingPipeline(
+                    getResultSet(25, inNext, new AtomicBoolean()), null, false, 10, 2, true)) {
+                RuntimeException e = assertThrows(RuntimeException.class, () -> {
+                    while (pipeline.hasNext()) {
+                        pipeline.next();
+                    }
+                });
+                assertEquals("Broken cursor", e.getCause().getMessage());
+            }
+        });
+    }
+
+    /**
+     * Test that closing a partially consumed pipeline stops the reader before closing the cursor.
+     */
+    @Test
+    public void testEarlyClose() {
+        AtomicBoolean inNext = new AtomicBoolean();
+        AtomicBoolean closedInNext = new AtomicBoolean();
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            GeometryDecodingPipeline pipeline = new GeometryDecodingPipeline(
+                    getResultSet(-1, inNext, closedInNext), null, false, 10, 2, false);
+            for (int i = 0; i < 35; i++) {
+                Map<String, Object> row = pipeline.next();
+                assertEquals(new Coordinate(1, 2), ((Geometry) row.get("THE_GEOM")).getCoordinate());
+            }
+            pipeline.close();
+            assertFalse(closedInNext.get());
+            assertFalse(pipeline.hasNext());
+        });
+    }
+}
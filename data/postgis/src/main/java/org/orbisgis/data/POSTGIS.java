@@ -47,6 +47,7 @@ import org.locationtech.jts.geom.Geometry;
 import org.orbisgis.data.api.dataset.IJdbcSpatialTable;
 import org.orbisgis.data.api.dataset.IJdbcTable;
 import org.orbisgis.data.api.dataset.ISpatialTable;
+import org.orbisgis.data.jdbc.CachedTable;
 import org.orbisgis.data.jdbc.JdbcDataSource;
 import org.orbisgis.data.jdbc.JdbcSpatialTable;
 import org.slf4j.Logger;
@@ -203,6 +204,7 @@ public class POSTGIS extends JdbcDataSource {
         } else {
             query = nameOrQuery;
             location = null;
+            getSpatialIndexAdvisor().analyze(query);
         }
         try {
             if (connection != null) {
@@ -252,6 +254,10 @@ public class POSTGIS extends JdbcDataSource {
 
     @Override
     public IJdbcTable getTable(String tableName) throws Exception {
+        CachedTable cached = getCachedTable(tableName, null);
+        if (cached != null) {
+            return cached;
+        }
         Connection connection = getConnection();
         Statement statement;
         try {
@@ -289,6 +295,10 @@ public class POSTGIS extends JdbcDataSource {
         if (params == null || params.isEmpty()) {
             return getTable(query);
         }
+        CachedTable cached = getCachedTable(query, params);
+        if (cached != null) {
+            return cached;
+        }
         PreparedStatement prepStatement;
         try {
             Connection connection = getConnection();
@@ -116,7 +116,9 @@ public class PostgisSpatialTable extends JdbcSpatialTable {
         if (getTableLocation() == null) {
             Connection con = getJdbcDataSource().getConnection();
             Tuple<String, GeometryMetaData> geomColumn = GeometryTableUtilities.getFirstColumnMetaData(getResultSetLimit(0));
-            ResultSet rs = getStatement().executeQuery("select st_srid(" + geomColumn.first() + ") from (" + getBaseQuery() + ") as foo limit 1");
+            String query = "select st_srid(" + geomColumn.first() + ") from (" + getBaseQuery() + ") as foo limit 1";
+            Statement st = getStatement(query);
+            ResultSet rs = st instanceof PreparedStatement ? ((PreparedStatement) st).executeQuery() : st.executeQuery(query);
             if (rs.next()) {
                 srid = rs.getInt(1);
             }
@@ -143,9 +145,20 @@ public class PostgisSpatialTable extends JdbcSpatialTable {
             }
             String query = "SELECT " + String.join(",", fieldNames) + " FROM " +
                     (getTableLocation() == null ? getBaseQuery() + " as foo" : getTableLocation().toString(getDbType()));
-            return new PostgisSpatialTable(null, query, getStatement(), getParams(), getJdbcDataSource());
+            return new PostgisSpatialTable(null, query, getStatement(query), getParams(), getJdbcDataSource());
         } catch (SQLException e) {
             throw new SQLException("Cannot reproject the table '" + getLocation() + "' in the SRID '" + srid + "'.\n", e);
         }
     }
+
+    @Override
+    public ISpatialTable lod(double tolerance) throws Exception {
+        String columns = getLodColumns(tolerance);
+        if (columns == null) {
+            //Client side fallback when the database cannot simplify the geometries
+            return (ISpatialTable) getJdbcDataSource().getSpatialTable(createLodTable(tolerance));
+        }
+        String query = "(" + getSelectQuery(columns) + ")";
+        return new PostgisSpatialTable(null, query, getStatement(query), getParams(), getJdbcDataSource());
+    }
 }
@@ -96,7 +96,8 @@ public class PostgisTable extends JdbcTable<StreamResultSet> {
 
     @Override
     public Stream<? extends StreamResultSet> stream() throws Exception {
-        Spliterator<StreamResultSet> spliterator = new ResultSetSpliterator<>(this.getRowCount(), new StreamResultSet(getResultSet()));
+        Spliterator<StreamResultSet> spliterator = new ResultSetSpliterator<>(this.getRowCount(), new StreamResultSet(getResultSet()),
+                getResultSetProperties().getCancellationToken());
         return StreamSupport.stream(spliterator, true);
     }
 }
\ No newline at end of file
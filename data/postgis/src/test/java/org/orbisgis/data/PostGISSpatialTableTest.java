@@ -41,17 +41,39 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Point;
+import org.orbisgis.data.api.dataset.IGeometryProfile;
 import org.orbisgis.data.api.dataset.IJdbcSpatialTable;
 import org.orbisgis.data.api.dataset.IJdbcTable;
+import org.orbisgis.data.api.dataset.IRaster;
+import org.orbisgis.data.api.dataset.ISpatialGrid;
 import org.orbisgis.data.api.dataset.ISpatialTable;
 import org.orbisgis.data.api.dataset.ITable;
+import org.orbisgis.data.api.dataset.IValidationReport;
 import org.orbisgis.data.jdbc.JdbcSpatialTable;
+import org.orbisgis.data.jdbc.spatial.VectorTiles;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -243,9 +265,24 @@ public class PostGISSpatialTableTest {
     @EnabledIfSystemProperty(named = "test.postgis", matches = "true")
     public void testGetRaster() throws Exception {
         ISpatialTable table = postGIS.getSpatialTable(TABLE_NAME);
-        assertThrows(UnsupportedOperationException.class, table::getRaster);
-        assertThrows(UnsupportedOperationException.class, () -> table.getRaster(0));
-        assertThrows(UnsupportedOperationException.class, () -> table.getRaster("col"));
+        assertThrows(SQLException.class, table::getRaster);
+        assertThrows(SQLException.class, () -> table.getRaster(0));
+        assertThrows(SQLException.class, () -> table.getRaster("col"));
+
+        postGIS.execute("DROP TABLE IF EXISTS rasters; CREATE TABLE rasters(the_geom geometry, rast raster);" +
+                "INSERT INTO rasters VALUES ('POINT(0 0)', ST_SetValue(ST_AddBand(" +
+                "ST_MakeEmptyRaster(300, 200, 10, 20, 1, -1, 0, 0, 4326), '16BSI'::text, 0, -1), 1, 2, 3, 42))");
+        ISpatialTable rasters = postGIS.getSpatialTable("rasters");
+        assertEquals(List.of("rast"), rasters.getRasterColumns());
+        assertTrue(rasters.next());
+        IRaster raster = rasters.getRaster();
+        assertEquals(300, raster.getMetadata().getWidth());
+        assertEquals(200, raster.getMetadata().getHeight());
+        assertEquals(4326, raster.getMetadata().getSrid());
+        assertEquals("16BSI", raster.getMetadata().getPixelType(0));
+        assertEquals(-1, raster.getMetadata().getNoDataValue(0));
+        assertEquals(42, raster.getValue(0, 1, 2));
+        assertEquals(0, raster.getValue(0, 0, 0));
     }
 
     /**
@@ -297,4 +334,187 @@ public class PostGISSpatialTableTest {
         table.setSrid(2121);
         assertEquals(2121, table.getSrid());
     }
+
+    /**
+     * Test the {@link JdbcSpatialTable#binToGrid(ISpatialGrid.CellType, double, boolean, String...)} method.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "test.postgis", matches = "true")
+    public void testBinToGrid() throws Exception {
+        postGIS.execute("DROP TABLE IF EXISTS binned;" +
+                "CREATE TABLE binned(id int, the_geom GEOMETRY, pop int);" +
+                "INSERT INTO binned SELECT x, ST_MakePoint(MOD(x * 37, 100) - 50.5, MOD(x * 61, 100) - 20.5), " +
+                "MOD(x, 7) FROM generate_series(1, 300) AS x;");
+        IJdbcSpatialTable<?> table = postGIS.getSpatialTable("binned");
+        for (ISpatialGrid.CellType cellType : ISpatialGrid.CellType.values()) {
+            ISpatialGrid grid = table.binToGrid(cellType, 10, "SUM(pop)");
+            ISpatialGrid client = table.binToGrid(cellType, 10, true, "SUM(pop)");
+            assertEquals(300, Arrays.stream(grid.getCounts()).sum());
+            assertEquals(grid.getMinColumn(), client.getMinColumn());
+            assertEquals(grid.getMinRow(), client.getMinRow());
+            assertArrayEquals(grid.getCounts(), client.getCounts());
+            assertArrayEquals(grid.getValues("SUM(pop)"), client.getValues("SUM(pop)"));
+        }
+        postGIS.execute("DROP TABLE IF EXISTS binned");
+    }
+
+    /**
+     * Test the {@link JdbcSpatialTable#getVectorTile(int, int, int, String...)} and
+     * {@link JdbcSpatialTable#writeVectorTiles(File, int, int, String...)} methods.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "test.postgis", matches = "true")
+    public void testVectorTiles() throws Exception {
+        postGIS.execute("DROP TABLE IF EXISTS tiled;" +
+                "CREATE TABLE tiled(id int, the_geom GEOMETRY(GEOMETRY, 4326), name varchar);" +
+                "INSERT INTO tiled VALUES (1, 'SRID=4326;POINT(-3 47.5)', 'vannes'), " +
+                "(2, 'SRID=4326;LINESTRING(-3 47, -2 48)', 'line'), " +
+                "(3, 'SRID=4326;POLYGON((-4 47, -2 47, -2 48, -4 48, -4 47))', null)");
+        IJdbcSpatialTable<?> table = postGIS.getSpatialTable("tiled");
+        byte[] tile = table.getVectorTile(0, 0, 0);
+        assertTrue(tile.length > 0);
+        assertTrue(new String(tile, StandardCharsets.UTF_8).contains("tiled"));
+        assertEquals(0, table.getVectorTile(3, 0, 0).length);
+
+        File directory = new File("./target/vector_tiles");
+        if (directory.exists()) {
+            try (Stream<Path> paths = Files.walk(directory.toPath())) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+        int written = table.writeVectorTiles(directory, 0, 6);
+        assertTrue(written > 0);
+        assertTrue(VectorTiles.getTileFile(directory, 0, 0, 0).exists());
+        assertEquals(0, table.writeVectorTiles(directory, 0, 6));
+        postGIS.execute("DROP TABLE IF EXISTS tiled");
+    }
+
+    /**
+     * Test the {@link JdbcSpatialTable#writeGeoJson(OutputStream, boolean, boolean, String...)} method.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "test.postgis", matches = "true")
+    public void testWriteGeoJson() throws Exception {
+        postGIS.execute("DROP TABLE IF EXISTS features;" +
+                "CREATE TABLE features(id int, the_geom GEOMETRY, name varchar);" +
+                "INSERT INTO features VALUES (1, 'POINT(1 2)', 'a'), " +
+                "(2, 'MULTILINESTRING Z((0 0 1, 1 1 2), (2 2 3, 3 3.25 4))', null), (3, null, 'c')");
+        IJdbcSpatialTable<?> table = postGIS.getSpatialTable("features");
+        ByteArrayOutputStream server = new ByteArrayOutputStream();
+        ByteArrayOutputStream client = new ByteArrayOutputStream();
+        assertEquals(3, table.writeGeoJson(server, true));
+        assertEquals(3, table.writeGeoJson(client, true, true));
+        String[] lines = client.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals("{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[1.0,2.0]}," +
+                "\"properties\":{\"id\":1,\"name\":\"a\"}}", lines[0]);
+        assertTrue(lines[1].contains("[[[0.0,0.0,1.0],[1.0,1.0,2.0]],[[2.0,2.0,3.0],[3.0,3.25,4.0]]]"));
+        assertTrue(server.toString(StandardCharsets.UTF_8).contains("\"geometry\":null"));
+        postGIS.execute("DROP TABLE IF EXISTS features");
+    }
+
+    /**
+     * Test the {@link JdbcSpatialTable#getGeometryProfiles(int)} method.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "test.postgis", matches = "true")
+    public void testGeometryProfiles() throws Exception {
+        postGIS.execute("DROP TABLE IF EXISTS profiled, declared;" +
+                "CREATE TABLE declared(id int, the_geom GEOMETRY(POINTZ, 4326));" +
+                "CREATE TABLE profiled(id int, the_geom GEOMETRY);" +
+                "INSERT INTO profiled SELECT x, ST_SetSRID(ST_MakePoint(x, x), 2154) FROM generate_series(1, 100000) AS x;" +
+                "ANALYZE profiled");
+        IJdbcSpatialTable<?> declared = postGIS.getSpatialTable("declared");
+        IGeometryProfile profile = declared.getGeometryProfiles().get("the_geom");
+        assertEquals(IGeometryProfile.Confidence.DECLARED, profile.getConfidence());
+        assertEquals(4326, profile.getSrid());
+        IJdbcSpatialTable<?> table = postGIS.getSpatialTable("profiled");
+        profile = table.getGeometryProfiles(100).get("the_geom");
+        assertEquals(IGeometryProfile.Confidence.SAMPLED, profile.getConfidence());
+        assertEquals("POINT", profile.getGeometryType());
+        assertEquals(2154, profile.getSrid());
+        assertTrue(profile.getSampleSize() <= 100);
+        IJdbcSpatialTable<?> query = postGIS.getSpatialTable("(SELECT * FROM profiled WHERE id < 10)");
+        profile = query.getGeometryProfiles(100).get("the_geom");
+        assertEquals(IGeometryProfile.Confidence.EXACT, profile.getConfidence());
+        assertEquals(9, profile.getSampleSize());
+        postGIS.execute("DROP TABLE IF EXISTS profiled, declared");
+    }
+
+    /**
+     * Test the {@link JdbcSpatialTable#nearestAll(Collection, int, boolean)} method.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "test.postgis", matches = "true")
+    public void testNearest() throws Exception {
+        postGIS.execute("DROP TABLE IF EXISTS grid;" +
+                "CREATE TABLE grid(id int, the_geom GEOMETRY(POINT, 2154));" +
+                "INSERT INTO grid SELECT x, ST_SetSRID(ST_MakePoint(x % 100, x / 100), 2154) " +
+                "FROM generate_series(0, 9999) AS x;" +
+                "CREATE INDEX ON grid USING GIST(the_geom)");
+        GeometryFactory factory = new GeometryFactory();
+        IJdbcSpatialTable<?> table = postGIS.getSpatialTable("grid");
+        List<Map<String, Object>> rows = table.nearest(factory.createPoint(new Coordinate(50.1, 50.2)), 3);
+        assertEquals(Arrays.asList(5050, 5150, 5051), rows.stream().map(row -> row.get("id"))
+                .collect(Collectors.toList()));
+        assertEquals(Arrays.asList("id", "the_geom"), new ArrayList<>(rows.get(0).keySet()));
+        List<Geometry> geometries = Arrays.asList(factory.createPoint(new Coordinate(-1000, -1000)), null,
+                factory.createPoint(new Coordinate(99.4, 0.1)));
+        List<List<Map<String, Object>>> nearest = table.nearestAll(geometries, 5);
+        assertEquals(0, nearest.get(0).get(0).get("id"));
+        assertTrue(nearest.get(1).isEmpty());
+        assertEquals(99, nearest.get(2).get(0).get("id"));
+        List<List<Map<String, Object>>> clientSide = table.nearestAll(geometries, 5, true);
+        for (int i = 0; i < geometries.size(); i++) {
+            assertEquals(nearest.get(i).stream().map(row -> row.get("id")).collect(Collectors.toList()),
+                    clientSide.get(i).stream().map(row -> row.get("id")).collect(Collectors.toList()));
+        }
+        postGIS.execute("DROP TABLE IF EXISTS grid");
+    }
+
+    /**
+     * Test the {@link JdbcSpatialTable#coordinates(String, boolean, boolean)} method.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "test.postgis", matches = "true")
+    public void testCoordinates() throws Exception {
+        postGIS.execute("DROP TABLE IF EXISTS points;" +
+                "CREATE TABLE points(id int, the_geom GEOMETRY);" +
+                "INSERT INTO points SELECT x, ST_MakePoint(x, -x) FROM generate_series(1, 2500) AS x;" +
+                "INSERT INTO points VALUES (2501, null), (2502, 'POINT Z(1 2 3)'), (2503, 'POINT EMPTY')");
+        IJdbcSpatialTable<?> table = postGIS.getSpatialTable("(SELECT * FROM points ORDER BY id)");
+        double[] coordinates = table.coordinates("the_geom", true);
+        assertEquals(3 * 2503, coordinates.length);
+        assertEquals(-2500, coordinates[3 * 2499 + 1]);
+        assertTrue(Double.isNaN(coordinates[3 * 2500]));
+        assertEquals(3, coordinates[3 * 2501 + 2]);
+        assertArrayEquals(coordinates, table.coordinates("the_geom", true, true));
+        assertEquals(2 * 2503, table.coordinatesBuffer(null, false).remaining());
+        postGIS.execute("DROP TABLE IF EXISTS points");
+    }
+
+    /**
+     * Test the {@link JdbcSpatialTable#validate(boolean, boolean, int)} method.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "test.postgis", matches = "true")
+    public void testValidate() throws Exception {
+        postGIS.execute("DROP TABLE IF EXISTS invalid;" +
+                "CREATE TABLE invalid(id int, the_geom GEOMETRY);" +
+                "INSERT INTO invalid VALUES (1, 'POLYGON((0 0, 1 0, 1 1, 0 1, 0 0))'), " +
+                "(2, 'POLYGON((0 0, 1 1, 1 0, 0 1, 0 0))'), (3, 'POINT(1 1)'), (4, null)");
+        IJdbcSpatialTable<?> table = postGIS.getSpatialTable("invalid");
+        IValidationReport report = table.validate();
+        assertEquals(3, report.getCheckedCount());
+        assertEquals(1, report.getInvalidCount());
+        assertFalse(report.isValid());
+        report = table.validate(true);
+        assertEquals(1, report.getRepairedCount());
+        assertTrue(report.isValid());
+        assertTrue(table.validate().isValid());
+        postGIS.execute("UPDATE invalid SET the_geom = 'POLYGON((0 0, 1 1, 1 0, 0 1, 0 0))' WHERE id = 2");
+        report = table.validate(true, true, 1);
+        assertEquals(1, report.getRepairedCount());
+        assertTrue(table.validate().isValid());
+        postGIS.execute("DROP TABLE IF EXISTS invalid");
+    }
 }